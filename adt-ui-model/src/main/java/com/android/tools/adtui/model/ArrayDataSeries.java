@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link DataSeries} whose X values are stored in a growable primitive {@code long[]} so that lookups are true O(log n) binary
+ * searches and range queries return views over the backing storage instead of copies. Data must be added in non-decreasing X order,
+ * which is how profiler timelines are populated.
+ *
+ * Subclasses decide how the Y values are stored, which lets them avoid boxing until a {@link SeriesData} is actually requested.
+ */
+public abstract class ArrayDataSeries<E> implements DataSeries<E> {
+  protected static final int DEFAULT_CAPACITY = 16;
+
+  @NotNull private long[] myX;
+  private int mySize;
+
+  protected ArrayDataSeries() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  protected ArrayDataSeries(int initialCapacity) {
+    myX = new long[Math.max(1, initialCapacity)];
+  }
+
+  /**
+   * Returns the value of Y at a given index. The index is guaranteed to be in [0, {@link #size()}).
+   */
+  public abstract E getY(int index);
+
+  /**
+   * Called when the backing storage needs to grow so that subclasses can grow their Y storage to {@code newCapacity} as well.
+   */
+  protected abstract void growValues(int newCapacity);
+
+  /**
+   * Appends {@code x} and returns the index at which the corresponding Y value must be stored by the subclass.
+   */
+  protected final int appendX(long x) {
+    if (mySize > 0 && x < myX[mySize - 1]) {
+      throw new IllegalArgumentException("Data must be added in increasing order of x: " + x + " < " + myX[mySize - 1]);
+    }
+    if (mySize == myX.length) {
+      int newCapacity = myX.length + (myX.length >> 1) + 1;
+      myX = Arrays.copyOf(myX, newCapacity);
+      growValues(newCapacity);
+    }
+    myX[mySize] = x;
+    return mySize++;
+  }
+
+  public int size() {
+    return mySize;
+  }
+
+  public long getX(int index) {
+    return myX[checkIndex(index)];
+  }
+
+  /**
+   * Returns {@code index} if it is in [0, {@link #size()}), or throws an {@link IndexOutOfBoundsException}.
+   */
+  protected final int checkIndex(int index) {
+    return checkIndex(index, mySize);
+  }
+
+  private static int checkIndex(int index, int size) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    return index;
+  }
+
+  /**
+   * Removes all data from the series. Views previously returned by {@link #getDataForRange(Range)} must not be used afterwards.
+   */
+  public void clear() {
+    mySize = 0;
+  }
+
+  /**
+   * Returns the index of the last data point whose X is less than or equal to {@code x}, clamped to [0, size - 1]. For consistency with
+   * {@link DefaultDataSeries#getNearestXIndex(long)}, when several points share the same X the match may be any of them.
+   */
+  public int getNearestXIndex(long x) {
+    int index = Arrays.binarySearch(myX, 0, mySize, x);
+    if (index < 0) {
+      // No exact match, step to the position to the left of the insertion point so that we round down.
+      index = -index - 2;
+    }
+    return Math.max(0, Math.min(index, mySize - 1));
+  }
+
+  /**
+   * Returns the data within the given range, plus the data points just before and after it unless they match exactly the boundaries of
+   * the range, so that lines drawn from the data reach the edges of the range. This is what the in-memory series of captures return.
+   */
+  @Override
+  public List<SeriesData<E>> getDataForRange(Range range) {
+    if (mySize == 0 || range.isEmpty()) {
+      return Collections.emptyList();
+    }
+    int fromIndex = getNearestXIndex((long)range.getMin());
+    int toIndex = Arrays.binarySearch(myX, 0, mySize, (long)range.getMax());
+    if (toIndex < 0) {
+      // No exact match, step to the insertion point so that we round up.
+      toIndex = Math.min(-toIndex - 1, mySize - 1);
+    }
+    return new RangeView(fromIndex, toIndex + 1);
+  }
+
+  @NotNull
+  public List<SeriesData<E>> getAllData() {
+    return new RangeView(0, mySize);
+  }
+
+  /**
+   * A read-only view over [fromIndex, toIndex) of the series. Since the series is append-only, data within the view never changes after
+   * it is created even if more data is added to the series, so no copy is needed.
+   */
+  private final class RangeView extends AbstractList<SeriesData<E>> implements RandomAccess {
+    private final int myFromIndex;
+    private final int mySize;
+
+    RangeView(int fromIndex, int toIndex) {
+      myFromIndex = fromIndex;
+      mySize = toIndex - fromIndex;
+    }
+
+    @Override
+    public SeriesData<E> get(int index) {
+      int seriesIndex = myFromIndex + checkIndex(index, mySize);
+      return new SeriesData<>(myX[seriesIndex], getY(seriesIndex));
+    }
+
+    @Override
+    public int size() {
+      return mySize;
+    }
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An {@link ArrayDataSeries} that stores its Y values in a primitive {@code double[]}. Suitable for rates and
+ * fractional values such as CPU usage or network speed.
+ */
+public class DoubleDataSeries extends ArrayDataSeries<Double> {
+  @NotNull private double[] myValues;
+
+  public DoubleDataSeries() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public DoubleDataSeries(int initialCapacity) {
+    super(initialCapacity);
+    myValues = new double[Math.max(1, initialCapacity)];
+  }
+
+  public void add(long x, double y) {
+    myValues[appendX(x)] = y;
+  }
+
+  /**
+   * Returns the unboxed value of Y at a given index.
+   */
+  public double getDoubleY(int index) {
+    return myValues[checkIndex(index)];
+  }
+
+  @Override
+  public Double getY(int index) {
+    return getDoubleY(index);
+  }
+
+  @Override
+  protected void growValues(int newCapacity) {
+    myValues = Arrays.copyOf(myValues, newCapacity);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class ArrayDataSeriesTest {
+
+  @Test
+  public void testNearestXIndexRoundsDown() {
+    LongDataSeries series = new LongDataSeries(2);
+    for (int i = 0; i < 10; i++) {
+      series.add(i * 10, i);
+    }
+    assertThat(series.size()).isEqualTo(10);
+    assertThat(series.getNearestXIndex(-5)).isEqualTo(0);
+    assertThat(series.getNearestXIndex(0)).isEqualTo(0);
+    assertThat(series.getNearestXIndex(25)).isEqualTo(2);
+    assertThat(series.getNearestXIndex(30)).isEqualTo(3);
+    assertThat(series.getNearestXIndex(1000)).isEqualTo(9);
+  }
+
+  @Test
+  public void testGetDataForRangeIncludesNeighboringPoints() {
+    LongDataSeries series = new LongDataSeries();
+    for (int i = 0; i < 100; i++) {
+      series.add(i * 2, i);
+    }
+    assertThat(getXs(series.getDataForRange(new Range(0, 198)))).hasSize(100);
+    assertThat(getXs(series.getDataForRange(new Range(15, 20)))).containsExactly(14L, 16L, 18L, 20L).inOrder();
+    assertThat(getXs(series.getDataForRange(new Range(-10, 5)))).containsExactly(0L, 2L, 4L, 6L).inOrder();
+    assertThat(getXs(series.getDataForRange(new Range(195, 500)))).containsExactly(194L, 196L, 198L).inOrder();
+    assertThat(getXs(series.getDataForRange(new Range(41, 41)))).containsExactly(40L, 42L).inOrder();
+    assertThat(getXs(series.getDataForRange(new Range(40, 40)))).containsExactly(40L);
+    assertThat(series.getDataForRange(new Range())).isEmpty();
+    assertThat(new LongDataSeries().getDataForRange(new Range(0, 10))).isEmpty();
+  }
+
+  @Test
+  public void testDoubleDataSeries() {
+    DoubleDataSeries series = new DoubleDataSeries(1);
+    series.add(1, 0.5);
+    series.add(5, 1.5);
+    series.add(9, 2.5);
+    assertThat(series.getAllData())
+      .containsExactly(new SeriesData<>(1, 0.5), new SeriesData<>(5, 1.5), new SeriesData<>(9, 2.5)).inOrder();
+    assertThat(series.getDoubleY(1)).isEqualTo(1.5);
+    assertThat(series.getNearestXIndex(6)).isEqualTo(1);
+  }
+
+  @Test
+  public void testRangeViewUnaffectedByLaterAdds() {
+    LongDataSeries series = new LongDataSeries(1);
+    series.add(0, 5);
+    series.add(10, 15);
+    List<SeriesData<Long>> view = series.getDataForRange(new Range(0, 100));
+    for (int i = 2; i < 50; i++) {
+      series.add(i * 10, i * 10 + 5);
+    }
+    assertThat(view).containsExactly(new SeriesData<>(0, 5L), new SeriesData<>(10, 15L)).inOrder();
+    assertThat(series.getLongY(49)).isEqualTo(495L);
+    assertThat(series.getAllData()).hasSize(50);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testGetOutOfBoundsThrows() {
+    LongDataSeries series = new LongDataSeries();
+    series.add(10, 1);
+    series.getDataForRange(new Range(0, 100)).get(1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOutOfOrderAddThrows() {
+    LongDataSeries series = new LongDataSeries();
+    series.add(10, 1);
+    series.add(5, 2);
+  }
+
+  private static List<Long> getXs(List<SeriesData<Long>> data) {
+    return data.stream().map(point -> point.x).collect(Collectors.toList());
+  }
+}
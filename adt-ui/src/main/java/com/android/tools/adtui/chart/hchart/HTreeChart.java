@@ -119,6 +119,15 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
   @NotNull
   private final HTreeChartReducer<N> myReducer;
 
+  /**
+   * Index of the tree used to find the rectangles to draw when the default reducer is used. Built on the first render pass after the tree
+   * changes, and null if the tree can't be indexed, in which case all the nodes in range are visited and reduced.
+   */
+  @Nullable
+  private HTreeChartIndex<N> myIndex;
+
+  private boolean myIndexBuilt;
+
   @Nullable
   private Image myCanvas;
 
@@ -215,6 +224,8 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
   }
 
   private void rootChanged() {
+    myIndex = null;
+    myIndexBuilt = false;
     myCachedMaxHeight = calculateMaximumHeight();
     // Update preferred size using calculated height to make sure containers of this chart account for the height change during layout.
     setPreferredSize(new Dimension(getPreferredSize().width, myCachedMaxHeight));
@@ -248,7 +259,9 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     }
     UIUtil.drawImage(g, myCanvas, 0, 0, null);
     addDebugInfo("Draw time %.2fms", (System.nanoTime() - startTime) / 1e6);
-    addDebugInfo("# of nodes %d", myNodes.size());
+    if (myIndex == null) {
+      addDebugInfo("# of nodes %d", myNodes.size());
+    }
     addDebugInfo("# of reduced nodes %d", myDrawnNodes.size());
   }
 
@@ -266,26 +279,26 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     g.setFont(getFont());
 
     myDrawnNodes.clear();
-    myDrawnNodes.addAll(myNodes);
-
     myDrawnRectangles.clear();
-    // Transform
-    for (Rectangle2D.Float rect : myRectangles) {
-      Rectangle2D.Float newRect = new Rectangle2D.Float();
-      newRect.x = rect.x * (float)dim.getWidth();
-      newRect.y = rect.y;
-      newRect.width = Math.max(0, rect.width * (float)dim.getWidth() - myNodeXPaddingPx);
-      newRect.height = rect.height;
-
-      if (myOrientation == HTreeChart.Orientation.BOTTOM_UP) {
-        newRect.y = (float)(dim.getHeight() - newRect.y - newRect.getHeight());
+    if (myIndex != null) {
+      // The index already merges the nodes inside a pixel, as the default reducer does.
+      myIndex.forEachVisibleRun(myXRange, (float)dim.getWidth(), myNodeXPaddingPx, myRootVisible, (first, last) -> {
+        Rectangle2D.Float rect = toCanvasRectangle(createRectangle(first), dim);
+        if (last != first) {
+          rect.width = (float)(toCanvasRectangle(createRectangle(last), dim).getMaxX() - rect.getMinX());
+        }
+        myDrawnNodes.add(first);
+        myDrawnRectangles.add(rect);
+      });
+    }
+    else {
+      myDrawnNodes.addAll(myNodes);
+      for (Rectangle2D.Float rect : myRectangles) {
+        myDrawnRectangles.add(toCanvasRectangle(rect, dim));
       }
-
-      myDrawnRectangles.add(newRect);
+      myReducer.reduce(myDrawnRectangles, myDrawnNodes);
     }
 
-    myReducer.reduce(myDrawnRectangles, myDrawnNodes);
-
     assert myDrawnRectangles.size() == myDrawnNodes.size();
     assert myRenderer != null;
     for (int i = 0; i < myDrawnNodes.size(); ++i) {
@@ -302,6 +315,23 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     g.dispose();
   }
 
+  /**
+   * Transforms a rectangle created by {@link #createRectangle(HNode)} into canvas coordinates.
+   */
+  @NotNull
+  private Rectangle2D.Float toCanvasRectangle(@NotNull Rectangle2D.Float rect, @NotNull Dimension dim) {
+    Rectangle2D.Float newRect = new Rectangle2D.Float();
+    newRect.x = rect.x * (float)dim.getWidth();
+    newRect.y = rect.y;
+    newRect.width = Math.max(0, rect.width * (float)dim.getWidth() - myNodeXPaddingPx);
+    newRect.height = rect.height;
+
+    if (myOrientation == HTreeChart.Orientation.BOTTOM_UP) {
+      newRect.y = (float)(dim.getHeight() - newRect.y - newRect.getHeight());
+    }
+    return newRect;
+  }
+
   private void updateNodesAndClearCanvas() {
     myNodes.clear();
     myRectangles.clear();
@@ -309,6 +339,15 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     if (myRoot == null) {
       return;
     }
+    if (!myIndexBuilt) {
+      // The index emulates the default reducer, so it can't be used with a custom one.
+      myIndex = myReducer instanceof DefaultHTreeChartReducer ? HTreeChartIndex.build(myRoot) : null;
+      myIndexBuilt = true;
+    }
+    if (myIndex != null) {
+      // The nodes to draw depend on the width of the canvas, so they are looked up in the index when redrawing it.
+      return;
+    }
 
     if (inRange(myRoot)) {
       myNodes.add(myRoot);
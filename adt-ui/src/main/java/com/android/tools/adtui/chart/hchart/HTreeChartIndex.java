@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.hchart;
+
+import com.android.tools.adtui.model.HNode;
+import com.android.tools.adtui.model.Range;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Index of the nodes of a {@link HTreeChart} tree, used to find the rectangles to draw without visiting every node in the visible range.
+ * <p>
+ * Nodes are grouped by level of the tree, in chronological order. For a given X range and chart width, the visible nodes of a level are
+ * found with a binary search, and each run of nodes that ends inside the same pixel is skipped over with another binary search and drawn
+ * as a single rectangle, as {@link DefaultHTreeChartReducer} would do. The number of rectangles visited is thus bounded by the number of
+ * pixels of each level rather than by the number of nodes in the range.
+ * <p>
+ * The index requires the nodes of each level to have the same depth, to be sorted by both start and end, and to lie within their parent,
+ * which is the case of call trees. {@link #build(HNode)} returns null for trees that don't satisfy it.
+ */
+final class HTreeChartIndex<N extends HNode<N>> {
+  @NotNull private final N myRoot;
+  @NotNull private final List<List<N>> myLevels;
+
+  private HTreeChartIndex(@NotNull N root, @NotNull List<List<N>> levels) {
+    myRoot = root;
+    myLevels = levels;
+  }
+
+  /**
+   * @return the index of the given tree, or null if the tree can't be indexed
+   */
+  @Nullable
+  static <N extends HNode<N>> HTreeChartIndex<N> build(@NotNull N root) {
+    List<List<N>> levels = new ArrayList<>();
+    List<N> level = new ArrayList<>();
+    level.add(root);
+    while (!level.isEmpty()) {
+      levels.add(level);
+      List<N> nextLevel = new ArrayList<>();
+      for (N parent : level) {
+        for (int i = 0; i < parent.getChildCount(); ++i) {
+          N child = parent.getChildAt(i);
+          if (child.getStart() < parent.getStart() || child.getEnd() > parent.getEnd()) {
+            return null;
+          }
+          if (!nextLevel.isEmpty()) {
+            N previous = nextLevel.get(nextLevel.size() - 1);
+            if (child.getDepth() != previous.getDepth() || child.getStart() < previous.getStart() || child.getEnd() < previous.getEnd()) {
+              return null;
+            }
+          }
+          nextLevel.add(child);
+        }
+      }
+      level = nextLevel;
+    }
+    return new HTreeChartIndex<>(root, levels);
+  }
+
+  /**
+   * Calls {@code consumer} for every rectangle to draw for the given X range and chart width, level by level and in chronological order
+   * within a level. The consumer receives the first and the last node of a run of nodes merged into a single rectangle; they are the same
+   * node when a rectangle spans several pixels.
+   *
+   * @param xPaddingPx horizontal padding subtracted from the width of every rectangle, in pixels
+   */
+  void forEachVisibleRun(@NotNull Range xRange, float widthPx, int xPaddingPx, boolean rootVisible, @NotNull BiConsumer<N, N> consumer) {
+    if (!inRange(myRoot, xRange)) {
+      return;
+    }
+    for (int depth = rootVisible ? 0 : 1; depth < myLevels.size(); ++depth) {
+      List<N> level = myLevels.get(depth);
+      int index = firstEndingAfter(level, xRange.getMin());
+      int last = lastStartingBefore(level, xRange.getMax());
+      while (index <= last) {
+        N node = level.get(index);
+        double minX = getMinX(node, xRange, widthPx);
+        double maxX = getMaxX(node, xRange, widthPx, xPaddingPx);
+        if (Math.floor(minX) < Math.floor(maxX)) {
+          // Crossing several pixels on X axis.
+          consumer.accept(node, node);
+          ++index;
+          continue;
+        }
+        // Whole rectangle inside a pixel on X axis, combine it with the following ones that end inside the same pixel.
+        int runEnd = lastEndingBefore(level, index, last, Math.floor(maxX) + 1, xRange, widthPx, xPaddingPx);
+        consumer.accept(node, level.get(runEnd));
+        index = runEnd + 1;
+      }
+    }
+  }
+
+  private static boolean inRange(@NotNull HNode<?> node, @NotNull Range xRange) {
+    return node.getStart() <= xRange.getMax() && node.getEnd() >= xRange.getMin();
+  }
+
+  /**
+   * @return the index of the first node of the level that ends at or after {@code min}
+   */
+  private static <N extends HNode<N>> int firstEndingAfter(@NotNull List<N> level, double min) {
+    int low = 0;
+    int high = level.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (level.get(mid).getEnd() < min) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the index of the last node of the level that starts at or before {@code max}, or -1 if there is none
+   */
+  private static <N extends HNode<N>> int lastStartingBefore(@NotNull List<N> level, double max) {
+    int low = 0;
+    int high = level.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (level.get(mid).getStart() <= max) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low - 1;
+  }
+
+  /**
+   * @return the index of the last node in {@code [from, to]} whose rectangle ends before {@code limitX}, knowing that the node at
+   * {@code from} does
+   */
+  private static <N extends HNode<N>> int lastEndingBefore(@NotNull List<N> level, int from, int to, double limitX,
+                                                           @NotNull Range xRange, float widthPx, int xPaddingPx) {
+    int low = from + 1;
+    int high = to + 1;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (getMaxX(level.get(mid), xRange, widthPx, xPaddingPx) < limitX) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low - 1;
+  }
+
+  // The following methods replicate the float arithmetic of HTreeChart, so that nodes end up in the same pixels as the drawn rectangles.
+
+  private static double getMinX(@NotNull HNode<?> node, @NotNull Range xRange, float widthPx) {
+    return (float)((node.getStart() - xRange.getMin()) / xRange.getLength()) * widthPx;
+  }
+
+  private static double getMaxX(@NotNull HNode<?> node, @NotNull Range xRange, float widthPx, int xPaddingPx) {
+    float left = (float)((node.getStart() - xRange.getMin()) / xRange.getLength());
+    float right = (float)((node.getEnd() - xRange.getMin()) / xRange.getLength());
+    return (double)(left * widthPx) + Math.max(0, (right - left) * widthPx - xPaddingPx);
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.hchart;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.adtui.model.DefaultHNode;
+import com.android.tools.adtui.model.Range;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class HTreeChartIndexTest {
+  private static final float WIDTH_PX = 800;
+  private static final int PADDING_PX = 1;
+
+  @Test
+  public void visibleRunsMatchDefaultReducer() {
+    Random random = new Random(0);
+    DefaultHNode<String> root = new DefaultHNode<>("root", 0, 1_000_000);
+    addChildren(root, random);
+    HTreeChartIndex<DefaultHNode<String>> index = HTreeChartIndex.build(root);
+    assertThat(index).isNotNull();
+
+    Range[] ranges = {new Range(0, 1_000_000), new Range(250_000, 260_000), new Range(-5_000, 3_000), new Range(999_990, 1_500_000)};
+    for (Range range : ranges) {
+      for (boolean rootVisible : new boolean[]{true, false}) {
+        List<DefaultHNode<String>> expectedNodes = new ArrayList<>();
+        List<Rectangle2D.Float> expectedRectangles = new ArrayList<>();
+        collectInRange(root, range, rootVisible, expectedNodes, expectedRectangles);
+        new DefaultHTreeChartReducer<DefaultHNode<String>>().reduce(expectedRectangles, expectedNodes);
+
+        List<DefaultHNode<String>> nodes = new ArrayList<>();
+        List<Rectangle2D.Float> rectangles = new ArrayList<>();
+        index.forEachVisibleRun(range, WIDTH_PX, PADDING_PX, rootVisible, (first, last) -> {
+          Rectangle2D.Float rect = createRectangle(first, range);
+          rect.width = (float)(createRectangle(last, range).getMaxX() - rect.getMinX());
+          nodes.add(first);
+          rectangles.add(rect);
+        });
+
+        assertThat(nodes).containsExactlyElementsIn(expectedNodes).inOrder();
+        for (int i = 0; i < rectangles.size(); ++i) {
+          assertThat(rectangles.get(i).getMinX()).isEqualTo(expectedRectangles.get(i).getMinX());
+          assertThat(rectangles.get(i).getMaxX()).isEqualTo(expectedRectangles.get(i).getMaxX());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void treesWithOverlappingSiblingsAreNotIndexed() {
+    DefaultHNode<String> root = new DefaultHNode<>("root", 0, 100);
+    addChild(root, new DefaultHNode<>("A", 0, 60));
+    addChild(root, new DefaultHNode<>("B", 40, 50));
+    assertThat(HTreeChartIndex.build(root)).isNull();
+  }
+
+  @Test
+  public void treesWithChildrenOutsideTheirParentAreNotIndexed() {
+    DefaultHNode<String> root = new DefaultHNode<>("root", 0, 100);
+    addChild(root, new DefaultHNode<>("A", 50, 150));
+    assertThat(HTreeChartIndex.build(root)).isNull();
+  }
+
+  /**
+   * Adds a random number of non-overlapping children to the given node, recursively.
+   */
+  private static void addChildren(DefaultHNode<String> node, Random random) {
+    if (node.getDepth() == 6 || node.getDuration() < 2) {
+      return;
+    }
+    long start = node.getStart();
+    int childCount = random.nextInt(node.getDepth() < 2 ? 200 : 8);
+    for (int i = 0; i < childCount && start < node.getEnd(); i++) {
+      long childStart = start + random.nextInt((int)Math.min(node.getEnd() - start, 1000));
+      long childEnd = Math.min(node.getEnd(), childStart + random.nextInt((int)Math.max(1, node.getDuration() / (childCount + 1))));
+      DefaultHNode<String> child = new DefaultHNode<>("child", childStart, childEnd);
+      addChild(node, child);
+      addChildren(child, random);
+      start = childEnd;
+    }
+  }
+
+  private static void addChild(DefaultHNode<String> parent, DefaultHNode<String> child) {
+    child.setDepth(parent.getDepth() + 1);
+    parent.addChild(child);
+  }
+
+  /**
+   * Collects the nodes in range and their rectangles the way {@link HTreeChart} does when the tree isn't indexed.
+   */
+  private static void collectInRange(DefaultHNode<String> root, Range range, boolean rootVisible,
+                                     List<DefaultHNode<String>> nodes, List<Rectangle2D.Float> rectangles) {
+    if (root.getStart() <= range.getMax() && root.getEnd() >= range.getMin()) {
+      nodes.add(root);
+    }
+    for (int head = 0; head < nodes.size(); head++) {
+      DefaultHNode<String> node = nodes.get(head);
+      for (int i = 0; i < node.getChildCount(); ++i) {
+        DefaultHNode<String> child = node.getChildAt(i);
+        if (child.getStart() <= range.getMax() && child.getEnd() >= range.getMin()) {
+          nodes.add(child);
+        }
+      }
+    }
+    if (!rootVisible && !nodes.isEmpty()) {
+      nodes.remove(0);
+    }
+    for (DefaultHNode<String> node : nodes) {
+      rectangles.add(createRectangle(node, range));
+    }
+  }
+
+  private static Rectangle2D.Float createRectangle(DefaultHNode<String> node, Range range) {
+    float left = (float)((node.getStart() - range.getMin()) / range.getLength());
+    float right = (float)((node.getEnd() - range.getMin()) / range.getLength());
+    Rectangle2D.Float rect = new Rectangle2D.Float();
+    rect.x = left * WIDTH_PX;
+    rect.y = node.getDepth();
+    rect.width = Math.max(0, (right - left) * WIDTH_PX - PADDING_PX);
+    rect.height = 1;
+    return rect;
+  }
+}
@@ -24,6 +24,7 @@ import java.util.Iterator;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import org.jetbrains.annotations.NotNull;
@@ -270,6 +271,55 @@ public class FutureCallbackExecutor implements Executor {
     }
   }
 
+  /**
+   * Execute a task from the {@code taskFactory} for each element of the {@code iterator},
+   * with at most {@code maxConcurrency} tasks running at the same time. Each time the
+   * {@link ListenableFuture} of a task completes, the task of the next element is started.
+   *
+   * <p>This is a less strict version of {@link #executeFuturesInSequence(Iterator, Function)},
+   * for tasks that can run in parallel but should still be throttled.
+   *
+   * <p>Returns a {@link ListenableFuture} that completes when all tasks have completed.
+   *
+   * @param iterator       The source of elements to process
+   * @param maxConcurrency The maximum number of tasks running at the same time
+   * @param taskFactory    A factory {@link Function} that returns a {@link ListenableFuture} for a given element
+   * @param <T>            The type of the elements to process
+   */
+  @NotNull
+  public <T> ListenableFuture<Void> executeFuturesInParallel(@NotNull Iterator<T> iterator,
+                                                             int maxConcurrency,
+                                                             @NotNull Function<T, ListenableFuture<Void>> taskFactory) {
+    SettableFuture<Void> finalResult = SettableFuture.create();
+    int workerCount = Math.max(1, maxConcurrency);
+    AtomicInteger runningWorkers = new AtomicInteger(workerCount);
+    for (int i = 0; i < workerCount; i++) {
+      executeFuturesInParallelWorker(iterator, taskFactory, runningWorkers, finalResult);
+    }
+    return finalResult;
+  }
+
+  private <T> void executeFuturesInParallelWorker(@NotNull Iterator<T> iterator,
+                                                  @NotNull Function<T, ListenableFuture<Void>> taskFactory,
+                                                  @NotNull AtomicInteger runningWorkers,
+                                                  @NotNull SettableFuture<Void> finalResult) {
+    T element = null;
+    boolean hasNext;
+    synchronized (iterator) {
+      hasNext = iterator.hasNext();
+      if (hasNext) {
+        element = iterator.next();
+      }
+    }
+    if (hasNext) {
+      ListenableFuture<Void> future = taskFactory.apply(element);
+      addConsumer(future, (aVoid, throwable) -> executeFuturesInParallelWorker(iterator, taskFactory, runningWorkers, finalResult));
+    }
+    else if (runningWorkers.decrementAndGet() == 0) {
+      finalResult.set(null);
+    }
+  }
+
   /**
    * Similar to {@link Function} but allows the {@link #apply(Object)} method to throw checked exceptions.
    */
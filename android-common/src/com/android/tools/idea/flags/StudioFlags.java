@@ -124,6 +124,16 @@ public final class StudioFlags {
     "For Android O or newer, supports single-point selection which shows a snapshot of the heap at the specific time.",
     true);
 
+  public static final Flag<Boolean> PROFILER_MEMORY_MAPPED_HEAP_DUMP = Flag.create(
+    PROFILER, "memory.heapdump.mmap", "Memory-map heap dumps",
+    "Spill heap dumps to a temporary file and memory-map it instead of keeping the whole dump in the IDE heap while it is analyzed.",
+    false);
+
+  public static final Flag<Boolean> PROFILER_PERSIST_SESSIONS = Flag.create(
+    PROFILER, "sessions.persist", "Keep profiling sessions across restarts",
+    "Reload the sessions recorded in previous Studio runs from the datastore instead of deleting them on startup.",
+    false);
+
   public static final Flag<Boolean> PROFILER_MEMORY_CSV_EXPORT = Flag.create(
     PROFILER, "memory.csv", "Allow exporting entries in memory profiler",
     "Allow exporting entries in the views for heap dump and native/JVM recordings in CSV format.",
@@ -365,6 +375,11 @@ public final class StudioFlags {
     "Enable binary cache of classes used in preview",
     true);
 
+  public static final Flag<Boolean> NELE_CLASS_BINARY_PERSISTENT_CACHE = Flag.create(
+    NELE, "toggle.layout.editor.class.binary.persistent.cache", "Enable persistent binary cache",
+    "Keep the binary cache of classes used in preview on disk, so that it survives IDE restarts",
+    true);
+
   public static final Flag<Boolean> NELE_STATE_LIST_PICKER = Flag.create(
     NELE, "state.list.picker", "Enable State List Picker",
     "Enable state list picker for selector drawable.",
@@ -972,6 +987,12 @@ public final class StudioFlags {
     "render correctly.",
     false);
 
+  public static final Flag<Integer> COMPOSE_PREVIEW_MAX_CONCURRENT_RENDERS = Flag.create(
+    COMPOSE, "preview.max.concurrent.renders", "Maximum number of Compose previews rendering at the same time",
+    "Layoutlib renders one preview at a time, but the other requests can prepare their render or process their result in the " +
+    "meantime. A value of 1 renders the previews one after the other.",
+    4);
+
   public static final Flag<Boolean> COMPOSE_PREVIEW_SCROLL_ON_CARET_MOVE = Flag.create(
     COMPOSE, "preview.scroll.on.caret.move", "Enable the Compose Preview scrolling when the caret moves",
     "If enabled, when moving the caret in the text editor, the Preview will show the preview currently under the cursor.",
@@ -1253,6 +1274,16 @@ public final class StudioFlags {
   );
   // endregion
 
+  //region Device File Explorer
+  private static final FlagGroup DEVICE_EXPLORER = new FlagGroup(FLAGS, "device.explorer", "Device File Explorer");
+  public static final Flag<Boolean> DEVICE_EXPLORER_DOWNLOAD_DIRECTORY_ARCHIVE = Flag.create(
+    DEVICE_EXPLORER, "download.directory.archive", "Download directories as archives",
+    "Downloads directories as a single \"tar\" archive streamed from the device, instead of one file at a time. " +
+    "This is much faster for directories containing many small files. Requires a device running API 24 or later.",
+    false
+  );
+  // endregion
+
   //region Suggested Import(s)
   private static final FlagGroup SUGGESTED_IMPORT = new FlagGroup(FLAGS, "suggested.import", "Suggested import");
   public static final Flag<Boolean> ENABLE_SUGGESTED_IMPORT = Flag.create(
@@ -29,6 +29,7 @@ import com.android.tools.idea.explorer.fs.DeviceFileSystemServiceListener;
 import com.android.tools.idea.explorer.fs.DeviceState;
 import com.android.tools.idea.explorer.fs.FileTransferProgress;
 import com.android.tools.idea.explorer.ui.TreeUtil;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.utils.FileUtils;
 import com.google.common.primitives.Ints;
 import com.google.common.util.concurrent.FutureCallback;
@@ -71,6 +72,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.Stack;
@@ -107,6 +109,10 @@ public class DeviceExplorerController {
   private static final String DEVICE_EXPLORER_BUSY_MESSAGE = "Device Explorer is busy, please retry later or cancel current operation";
   private static final long FILE_ENTRY_CREATION_TIMEOUT_MILLIS = 10_000;
   private static final long FILE_ENTRY_DELETION_TIMEOUT_MILLIS = 10_000;
+  /**
+   * Maximum number of files of a directory downloaded at the same time.
+   */
+  private static final int DIRECTORY_DOWNLOAD_CONCURRENCY = 4;
 
   private int myShowLoadingNodeDelayMillis = 200;
   private int myTransferringNodeRepaintMillis = 100;
@@ -850,14 +856,48 @@ public class DeviceExplorerController {
 
       SettableFuture<Void> futureResult = SettableFuture.create();
 
+      ListenableFuture<Boolean> futureArchive = StudioFlags.DEVICE_EXPLORER_DOWNLOAD_DIRECTORY_ARCHIVE.get() ?
+                                                downloadDirectoryArchive(treeNode, localDirectoryPath, tracker) :
+                                                Futures.immediateFuture(false);
+      myEdtExecutor.addConsumer(futureArchive, (downloaded, throwable) -> {
+        if (throwable != null) {
+          tracker.addProblem(throwable);
+          futureResult.set(null);
+        }
+        else if (downloaded) {
+          futureResult.set(null);
+        }
+        else {
+          futureResult.setFuture(downloadDirectoryChildren(treeNode, localDirectoryPath, tracker));
+        }
+      });
+      return futureResult;
+    }
+
+    @NotNull
+    private ListenableFuture<Void> downloadDirectoryChildren(@NotNull DeviceFileEntryNode treeNode,
+                                                             @NotNull Path localDirectoryPath,
+                                                             @NotNull FileTransferOperationTracker tracker) {
+      SettableFuture<Void> futureResult = SettableFuture.create();
+
       ListenableFuture<Void> futureLoadChildren = loadNodeChildren(treeNode);
       myEdtExecutor.addCallback(futureLoadChildren, new FutureCallback<Void>() {
         @Override
         public void onSuccess(@Nullable Void result) {
-          ListenableFuture<Void> futureDownloadChildren = executeFuturesInSequence(treeNode.getChildEntryNodes().iterator(), node -> {
-            Path nodePath = localDirectoryPath.resolve(node.getEntry().getName());
-            return downloadSingleNode(node, nodePath, tracker);
-          });
+          // Files are downloaded in parallel, as the transfer of small files is dominated by round trips to the device.
+          // Directories are downloaded one after the other, so that the number of concurrent transfers stays bounded.
+          Map<Boolean, List<DeviceFileEntryNode>> nodesByIsDirectory = treeNode.getChildEntryNodes().stream()
+            .collect(Collectors.partitioningBy(node -> node.getEntry().isDirectory()));
+          ListenableFuture<Void> futureDownloadFiles = myEdtExecutor.executeFuturesInParallel(
+            nodesByIsDirectory.get(false).iterator(), DIRECTORY_DOWNLOAD_CONCURRENCY, node -> {
+              Path nodePath = localDirectoryPath.resolve(node.getEntry().getName());
+              return downloadSingleNode(node, nodePath, tracker);
+            });
+          ListenableFuture<Void> futureDownloadChildren = myEdtExecutor.transformAsync(futureDownloadFiles, aVoid ->
+            executeFuturesInSequence(nodesByIsDirectory.get(true).iterator(), node -> {
+              Path nodePath = localDirectoryPath.resolve(node.getEntry().getName());
+              return downloadSingleNode(node, nodePath, tracker);
+            }));
           myEdtExecutor.addConsumer(futureDownloadChildren, (aVoid, throwable) -> {
             if (throwable != null) {
               tracker.addProblem(throwable);
@@ -876,6 +916,56 @@ public class DeviceExplorerController {
       return futureResult;
     }
 
+    /**
+     * Downloads a directory as a single archive, if supported by its entry.
+     *
+     * @return a future that completes with {@code true} if the directory was downloaded, and {@code false} if its
+     * children have to be downloaded one by one
+     */
+    @NotNull
+    private ListenableFuture<Boolean> downloadDirectoryArchive(@NotNull DeviceFileEntryNode treeNode,
+                                                               @NotNull Path localDirectoryPath,
+                                                               @NotNull FileTransferOperationTracker tracker) {
+      DeviceFileEntry entry = treeNode.getEntry();
+      AtomicReference<Long> sizeRef = new AtomicReference<>(0L);
+      startNodeDownload(treeNode);
+      ListenableFuture<Integer> futureArchive = entry.downloadDirectoryArchive(localDirectoryPath, new FileTransferProgress() {
+        @Override
+        public void progress(long currentBytes, long totalBytes) {
+          tracker.processFileBytes(currentBytes - sizeRef.get());
+          sizeRef.set(currentBytes);
+          tracker.setDownloadFileText(entry.getFullPath(), currentBytes, totalBytes);
+        }
+
+        @Override
+        public boolean isCancelled() {
+          return tracker.isCancelled();
+        }
+      });
+      logFuture(futureArchive, millis -> String.format(Locale.US, "Downloaded directory archive in %,d msec: %s", millis,
+                                                       entry.getFullPath()));
+
+      SettableFuture<Boolean> futureResult = SettableFuture.create();
+      myEdtExecutor.addConsumer(futureArchive, (fileCount, throwable) -> {
+        stopNodeDownload(treeNode);
+        if (throwable != null) {
+          futureResult.setException(throwable);
+        }
+        else if (fileCount == null) {
+          futureResult.set(false);
+        }
+        else {
+          for (int i = 0; i < fileCount; i++) {
+            tracker.processFile();
+          }
+          tracker.getSummary().addFileCount(fileCount);
+          tracker.getSummary().addByteCount(sizeRef.get());
+          futureResult.set(true);
+        }
+      });
+      return futureResult;
+    }
+
     @Override
     public void copyNodePathsInvoked(@NotNull List<DeviceFileEntryNode> treeNodes) {
       String text = treeNodes.stream().map(x -> x.getEntry().getFullPath()).collect(Collectors.joining("\n"));
@@ -928,11 +1018,14 @@ public class DeviceExplorerController {
         })
         .collect(Collectors.toSet());
 
+      // All directories are reloaded at once, so that the file system can list them in a single request to the device
       myView.startTreeBusyIndicator();
-      ListenableFuture<Void> futuresRefresh = executeFuturesInSequence(directoryNodes.iterator(), treeNode -> {
+      List<ListenableFuture<Void>> futuresLoad = new ArrayList<>();
+      for (DeviceFileEntryNode treeNode : directoryNodes) {
         treeNode.setLoaded(false);
-        return loadNodeChildren(treeNode);
-      });
+        futuresLoad.add(loadNodeChildren(treeNode));
+      }
+      ListenableFuture<List<Void>> futuresRefresh = Futures.successfulAsList(futuresLoad);
       myEdtExecutor.addListener(futuresRefresh, myView::stopTreeBusyIndicator);
     }
 
@@ -1524,10 +1617,15 @@ public class DeviceExplorerController {
 
     @Override
     public void treeNodeExpanding(@NotNull DeviceFileEntryNode node) {
-      loadNodeChildren(node);
+      // Expanding a node may reuse an earlier listing of the directory, but an explicit refresh always lists it again
+      loadNodeChildren(node, true);
     }
 
     private ListenableFuture<Void> loadNodeChildren(@NotNull final DeviceFileEntryNode node) {
+      return loadNodeChildren(node, false);
+    }
+
+    private ListenableFuture<Void> loadNodeChildren(@NotNull final DeviceFileEntryNode node, boolean useCachedListing) {
       // Ensure node is expanded only once
       if (node.isLoaded()) {
         return Futures.immediateFuture(null);
@@ -1554,7 +1652,8 @@ public class DeviceExplorerController {
       myLoadingNodesAlarms.addRequest(showLoadingNode, myShowLoadingNodeDelayMillis);
 
       startLoadChildren(node);
-      ListenableFuture<List<DeviceFileEntry>> futureEntries = node.getEntry().getEntries();
+      ListenableFuture<List<DeviceFileEntry>> futureEntries =
+        useCachedListing ? node.getEntry().getCachedEntries() : node.getEntry().getEntries();
       myEdtExecutor.addCallback(futureEntries, new FutureCallback<List<DeviceFileEntry>>() {
         @Override
         public void onSuccess(List<DeviceFileEntry> result) {
@@ -1644,6 +1743,19 @@ public class DeviceExplorerController {
                                  @NotNull DeviceFileEntry entry) {
             node.setEntry(entry);
           }
+
+          @Override
+          public boolean isNodeUpToDate(@NotNull DeviceFileEntryNode node,
+                                        @NotNull DeviceFileEntry entry) {
+            DeviceFileEntry nodeEntry = node.getEntry();
+            return nodeEntry.isDirectory() == entry.isDirectory() &&
+                   nodeEntry.isFile() == entry.isFile() &&
+                   nodeEntry.isSymbolicLink() == entry.isSymbolicLink() &&
+                   nodeEntry.getSize() == entry.getSize() &&
+                   Objects.equals(nodeEntry.getSymbolicLinkTarget(), entry.getSymbolicLinkTarget()) &&
+                   nodeEntry.getPermissions().getText().equals(entry.getPermissions().getText()) &&
+                   nodeEntry.getLastModifiedDate().getText().equals(entry.getLastModifiedDate().getText());
+          }
         };
 
       List<DeviceFileEntryNode> addedNodes = TreeUtil.updateChildrenNodes(treeModel, parentNode, newEntries, updateChildrenOps);
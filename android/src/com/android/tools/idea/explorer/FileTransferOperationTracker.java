@@ -36,6 +36,7 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
   @NotNull private final FileTransferSummary mySummary;
   private long myFinishedWorkUnits;
   private long myTotalWorkUnits;
+  private long myTransferredBytes;
   private int myCurrentFileCount;
   private int myTotalFileCount;
   @SuppressWarnings("unused") private int myCurrentDirectoryCount;
@@ -87,6 +88,7 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
 
   public void processFileBytes(long byteCount) {
     myFinishedWorkUnits += FileTransferWorkEstimator.getFileContentsWorkUnits(byteCount);
+    myTransferredBytes += byteCount;
     showProgress();
   }
 
@@ -106,7 +108,7 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
                             HumanReadableUtil.getHumanizedSize(currentBytes),
                             HumanReadableUtil.getHumanizedSize(totalBytes));
     }
-    setStatusText(text);
+    setStatusText(text + getThroughputText());
   }
 
   public void setDownloadFileText(@NotNull String entryFullPath, long currentBytes, long totalBytes) {
@@ -124,7 +126,19 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
                             HumanReadableUtil.getHumanizedSize(currentBytes),
                             HumanReadableUtil.getHumanizedSize(totalBytes));
     }
-    setStatusText(text);
+    setStatusText(text + getThroughputText());
+  }
+
+  /**
+   * Returns the average transfer rate of the whole operation so far, as files may be transferred concurrently.
+   */
+  @NotNull
+  private String getThroughputText() {
+    long durationMillis = getDurationMillis();
+    if (myTransferredBytes <= 0 || durationMillis <= 0) {
+      return "";
+    }
+    return String.format(" - %s/s", HumanReadableUtil.getHumanizedSize(myTransferredBytes * 1000 / durationMillis));
   }
 
   public void addWorkEstimate(FileTransferWorkEstimate estimate) {
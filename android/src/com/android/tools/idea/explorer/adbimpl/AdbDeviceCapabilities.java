@@ -23,6 +23,7 @@ import com.android.ddmlib.ShellCommandUnresponsiveException;
 import com.android.ddmlib.SyncException;
 import com.android.ddmlib.SyncService;
 import com.android.ddmlib.TimeoutException;
+import com.android.sdklib.AndroidVersion;
 import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
@@ -54,6 +55,8 @@ public class AdbDeviceCapabilities {
   @Nullable private Boolean mySupportsCpCommand;
   @Nullable private Boolean myEscapingLs;
   @Nullable private Boolean mySupportsMkTempCommand;
+  @Nullable private Boolean mySupportsTarStreaming;
+  @Nullable private Boolean mySupportsStatCommand;
 
   public AdbDeviceCapabilities(@NotNull IDevice device) {
     myDevice = device;
@@ -141,6 +144,34 @@ public class AdbDeviceCapabilities {
     return mySupportsMkTempCommand;
   }
 
+  /**
+   * Returns {@code true} if a "tar" archive can be streamed from the device through a shell command. Before Android N, the output
+   * of shell commands goes through a pseudo-terminal which rewrites line feeds, so binary output is only reliable from API 24.
+   */
+  public synchronized boolean supportsTarStreaming()
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
+    assertNotDispatchThread();
+
+    if (mySupportsTarStreaming == null) {
+      mySupportsTarStreaming = supportsTarStreamingWorker();
+    }
+    return mySupportsTarStreaming;
+  }
+
+  /**
+   * Returns {@code true} if the "stat" command is available to read the modification time of a directory. The command
+   * comes with "toybox", which ships with Android M and later.
+   */
+  public synchronized boolean supportsStatCommand()
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
+    assertNotDispatchThread();
+
+    if (mySupportsStatCommand == null) {
+      mySupportsStatCommand = supportsStatCommandWorker();
+    }
+    return mySupportsStatCommand;
+  }
+
   private static void assertNotDispatchThread() {
     Application application = ApplicationManager.getApplication();
     assert application == null || !application.isDispatchThread();
@@ -376,6 +407,52 @@ public class AdbDeviceCapabilities {
     }
   }
 
+  private boolean supportsTarStreamingWorker()
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
+    AndroidVersion version = myDevice.getVersion();
+    if (version == null || !version.isGreaterOrEqualThan(AndroidVersion.VersionCodes.N)) {
+      return false;
+    }
+
+    // Archive a directory that always exists, discarding the archive itself
+    String command = new AdbShellCommandBuilder().withText("tar -cf /dev/null -C ").withEscapedPath(DEVICE_TEMP_DIRECTORY).withText(" .")
+      .build();
+    AdbShellCommandResult commandResult = AdbShellCommandsUtil.executeCommand(myDevice, command);
+    try {
+      commandResult.throwIfError();
+      return true;
+    }
+    catch (AdbShellCommandException e) {
+      LOGGER.info(String.format("Device \"%s\" does not seem to support the \"tar\" command: %s",
+                                DeviceUtil.toDebugString(myDevice),
+                                getCommandOutputExtract(commandResult)),
+                  e);
+      return false;
+    }
+  }
+
+  private boolean supportsStatCommandWorker()
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
+    AndroidVersion version = myDevice.getVersion();
+    if (version == null || !version.isGreaterOrEqualThan(AndroidVersion.VersionCodes.M)) {
+      return false;
+    }
+
+    String command = new AdbShellCommandBuilder().withText("stat -c %y ").withEscapedPath(DEVICE_TEMP_DIRECTORY).build();
+    AdbShellCommandResult commandResult = AdbShellCommandsUtil.executeCommand(myDevice, command);
+    try {
+      commandResult.throwIfError();
+      return !commandResult.getOutput().isEmpty();
+    }
+    catch (AdbShellCommandException e) {
+      LOGGER.info(String.format("Device \"%s\" does not seem to support the \"stat\" command: %s",
+                                DeviceUtil.toDebugString(myDevice),
+                                getCommandOutputExtract(commandResult)),
+                  e);
+      return false;
+    }
+  }
+
   /**
    * An {@link AutoCloseable} wrapper around a temporary file on a remote device.
    * The {@link #close()} method attempts to delete the file from the remote device
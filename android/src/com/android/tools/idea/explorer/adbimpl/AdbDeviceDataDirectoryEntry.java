@@ -223,10 +223,18 @@ public class AdbDeviceDataDirectoryEntry extends AdbDeviceForwardingFileEntry {
     @NotNull
     @Override
     public ListenableFuture<List<DeviceFileEntry>> getEntries() {
-      // Create "run-as" entries for child entries
-      ListenableFuture<List<AdbFileListingEntry>> futureChildren =
-        myDevice.getAdbFileListing().getChildrenRunAs(myEntry, myPackageName);
+      return toEntries(myDevice.getAdbFileListing().getChildrenRunAs(myEntry, myPackageName));
+    }
+
+    @NotNull
+    @Override
+    public ListenableFuture<List<DeviceFileEntry>> getCachedEntries() {
+      return toEntries(myDevice.getAdbFileListing().getCachedChildrenRunAs(myEntry, myPackageName));
+    }
 
+    @NotNull
+    private ListenableFuture<List<DeviceFileEntry>> toEntries(@NotNull ListenableFuture<List<AdbFileListingEntry>> futureChildren) {
+      // Create "run-as" entries for child entries
       return myDevice.getTaskExecutor().transform(futureChildren, entries -> {
         assert entries != null;
         return ContainerUtil.map(entries, x -> new AdbDevicePackageDirectoryEntry(this, x, myPackageName));
@@ -43,6 +43,13 @@ public class AdbDeviceDefaultFileEntry extends AdbDeviceFileEntry {
     return myDevice.getTaskExecutor().transformAsync(futureMountPoint, AdbDeviceFileEntry::getEntries);
   }
 
+  @NotNull
+  @Override
+  public ListenableFuture<List<DeviceFileEntry>> getCachedEntries() {
+    ListenableFuture<AdbDeviceFileEntry> futureMountPoint = myDevice.resolveMountPoint(this);
+    return myDevice.getTaskExecutor().transformAsync(futureMountPoint, AdbDeviceFileEntry::getCachedEntries);
+  }
+
   @NotNull
   @Override
   public ListenableFuture<Void> delete() {
@@ -87,6 +94,16 @@ public class AdbDeviceDefaultFileEntry extends AdbDeviceFileEntry {
     });
   }
 
+  @NotNull
+  @Override
+  public ListenableFuture<Integer> downloadDirectoryArchive(@NotNull Path localPath, @NotNull FileTransferProgress progress) {
+    ListenableFuture<AdbDeviceFileEntry> futureMountPoint = myDevice.resolveMountPoint(this);
+    return myDevice.getTaskExecutor().transformAsync(futureMountPoint, x -> {
+      assert x != null;
+      return x.downloadDirectoryArchive(localPath, progress);
+    });
+  }
+
   @NotNull
   @Override
   public ListenableFuture<Void> uploadFile(@NotNull Path localPath, @NotNull String fileName, @NotNull FileTransferProgress progress) {
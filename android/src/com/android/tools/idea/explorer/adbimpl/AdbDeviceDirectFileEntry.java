@@ -51,7 +51,17 @@ public class AdbDeviceDirectFileEntry extends AdbDeviceFileEntry {
   @NotNull
   @Override
   public ListenableFuture<List<DeviceFileEntry>> getEntries() {
-    ListenableFuture<List<AdbFileListingEntry>> children = myDevice.getAdbFileListing().getChildrenRunAs(myEntry, myRunAs);
+    return toEntries(myDevice.getAdbFileListing().getChildrenRunAs(myEntry, myRunAs));
+  }
+
+  @NotNull
+  @Override
+  public ListenableFuture<List<DeviceFileEntry>> getCachedEntries() {
+    return toEntries(myDevice.getAdbFileListing().getCachedChildrenRunAs(myEntry, myRunAs));
+  }
+
+  @NotNull
+  private ListenableFuture<List<DeviceFileEntry>> toEntries(@NotNull ListenableFuture<List<AdbFileListingEntry>> children) {
     return myDevice.getTaskExecutor().transform(children, result -> {
       assert result != null;
       return result.stream()
@@ -107,6 +117,21 @@ public class AdbDeviceDirectFileEntry extends AdbDeviceFileEntry {
     });
   }
 
+  @NotNull
+  @Override
+  public ListenableFuture<Integer> downloadDirectoryArchive(@NotNull Path localPath,
+                                                            @NotNull FileTransferProgress progress) {
+    ListenableFuture<Boolean> futureSupported =
+      myDevice.getTaskExecutor().executeAsync(() -> isDirectory() && myDevice.getCapabilities().supportsTarStreaming());
+    return myDevice.getTaskExecutor().transformAsync(futureSupported, supported -> {
+      assert supported != null;
+      if (!supported) {
+        return Futures.immediateFuture(null);
+      }
+      return myDevice.getAdbFileTransfer().downloadDirectoryArchive(getFullPath(), localPath, progress, myRunAs);
+    });
+  }
+
   @NotNull
   @Override
   public ListenableFuture<Void> uploadFile(@NotNull Path localPath,
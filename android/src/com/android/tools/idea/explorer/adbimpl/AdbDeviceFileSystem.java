@@ -24,6 +24,8 @@ import com.android.tools.idea.explorer.fs.DeviceState;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.text.StringUtil;
 import java.util.List;
 import java.util.Objects;
@@ -32,7 +34,7 @@ import java.util.concurrent.Executor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-public class AdbDeviceFileSystem implements DeviceFileSystem {
+public class AdbDeviceFileSystem implements DeviceFileSystem, Disposable {
   @NotNull private final IDevice myDevice;
   @NotNull private final AdbDeviceCapabilities myDeviceCapabilities;
   @NotNull private final AdbFileListing myFileListing;
@@ -49,6 +51,14 @@ public class AdbDeviceFileSystem implements DeviceFileSystem {
     myFileListing = new AdbFileListing(myDevice, myDeviceCapabilities, myTaskExecutor);
     myFileOperations = new AdbFileOperations(myDevice, myDeviceCapabilities, myTaskExecutor);
     myFileTransfer = new AdbFileTransfer(myDevice, myFileOperations, myEdtExecutor, myTaskExecutor);
+    Disposer.register(this, myFileTransfer);
+  }
+
+  /**
+   * Closes the connections kept open to the device. Called when the device is disconnected, or when the service is disposed.
+   */
+  @Override
+  public void dispose() {
   }
 
   public AdbDeviceFileSystem(AdbDeviceFileSystemService service, IDevice device) {
@@ -31,6 +31,7 @@ import com.google.common.util.concurrent.SettableFuture;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.util.concurrency.EdtExecutorService;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -77,10 +78,22 @@ public final class AdbDeviceFileSystemService implements Disposable, DeviceFileS
     AndroidDebugBridge.removeDeviceChangeListener(myDeviceChangeListener);
     AndroidDebugBridge.removeDebugBridgeChangeListener(myDebugBridgeChangeListener);
     myBridge = null;
-    myDevices.clear();
+    clearDevices();
     myListeners.clear();
   }
 
+  @NotNull
+  private AdbDeviceFileSystem createDevice(@NotNull IDevice device) {
+    AdbDeviceFileSystem deviceFileSystem = new AdbDeviceFileSystem(device, myEdtExecutor, myTaskExecutor);
+    Disposer.register(this, deviceFileSystem);
+    return deviceFileSystem;
+  }
+
+  private void clearDevices() {
+    myDevices.forEach(Disposer::dispose);
+    myDevices.clear();
+  }
+
   public enum State {
     Initial,
     SetupRunning,
@@ -227,7 +240,7 @@ public final class AdbDeviceFileSystemService implements Disposable, DeviceFileS
       LOGGER.info("Debug bridge changed");
       myEdtExecutor.execute(() -> {
         if (myBridge != null) {
-          myDevices.clear();
+          clearDevices();
           myListeners.forEach(DeviceFileSystemServiceListener::serviceRestarted);
           myBridge = null;
         }
@@ -236,7 +249,7 @@ public final class AdbDeviceFileSystemService implements Disposable, DeviceFileS
           myBridge = bridge;
           if (myBridge.hasInitialDeviceList()) {
             Arrays.stream(myBridge.getDevices())
-              .map(d -> new AdbDeviceFileSystem(d, myEdtExecutor, myTaskExecutor))
+              .map(this::createDevice)
               .forEach(myDevices::add);
           }
         }
@@ -251,7 +264,7 @@ public final class AdbDeviceFileSystemService implements Disposable, DeviceFileS
       myEdtExecutor.execute(() -> {
         DeviceFileSystem deviceFileSystem = findDevice(device);
         if (deviceFileSystem == null) {
-          AdbDeviceFileSystem newDevice = new AdbDeviceFileSystem(device, myEdtExecutor, myTaskExecutor);
+          AdbDeviceFileSystem newDevice = createDevice(device);
           myDevices.add(newDevice);
           myListeners.forEach(x -> x.deviceAdded(newDevice));
         }
@@ -266,6 +279,7 @@ public final class AdbDeviceFileSystemService implements Disposable, DeviceFileS
         if (deviceFileSystem != null) {
           myListeners.forEach(x -> x.deviceRemoved(deviceFileSystem));
           myDevices.remove(deviceFileSystem);
+          Disposer.dispose(deviceFileSystem);
         }
       });
     }
@@ -49,6 +49,12 @@ public abstract class AdbDeviceForwardingFileEntry extends AdbDeviceFileEntry {
     return getForwardedFileEntry().getEntries();
   }
 
+  @NotNull
+  @Override
+  public ListenableFuture<List<DeviceFileEntry>> getCachedEntries() {
+    return getForwardedFileEntry().getCachedEntries();
+  }
+
   @NotNull
   @Override
   public ListenableFuture<Void> delete() {
@@ -79,6 +85,12 @@ public abstract class AdbDeviceForwardingFileEntry extends AdbDeviceFileEntry {
     return getForwardedFileEntry().downloadFile(localPath, progress);
   }
 
+  @NotNull
+  @Override
+  public ListenableFuture<Integer> downloadDirectoryArchive(@NotNull Path localPath, @NotNull FileTransferProgress progress) {
+    return getForwardedFileEntry().downloadDirectoryArchive(localPath, progress);
+  }
+
   @NotNull
   @Override
   public ListenableFuture<Void> uploadFile(@NotNull Path localPath, @NotNull String fileName, @NotNull FileTransferProgress progress) {
@@ -20,15 +20,25 @@ import com.android.ddmlib.IDevice;
 import com.android.ddmlib.ShellCommandUnresponsiveException;
 import com.android.ddmlib.TimeoutException;
 import com.android.tools.idea.concurrency.FutureCallbackExecutor;
+import com.google.common.base.Strings;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.text.StringUtil;
+import net.jcip.annotations.GuardedBy;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
@@ -41,11 +51,31 @@ import static com.android.ddmlib.FileListingService.LS_L_PATTERN;
 public class AdbFileListing {
   @NotNull public static final Logger LOGGER = Logger.getInstance(AdbFileListing.class);
   @NotNull private static final Pattern BACKSLASH = Pattern.compile("\\", Pattern.LITERAL);
+  @NotNull private static final String LISTING_MARKER = "DEVICE-EXPLORER-LISTING";
+  /**
+   * Batched listing commands are split so that they stay below the length older versions of "adbd" accept.
+   */
+  private static final int MAX_BATCH_COMMAND_LENGTH = 800;
+  private static final int MAX_CACHED_LISTINGS = 500;
 
   @NotNull private final IDevice myDevice;
   @NotNull private AdbDeviceCapabilities myDeviceCapabilities;
   @NotNull private final FutureCallbackExecutor myExecutor;
   @NotNull private final AdbFileListingEntry myRoot;
+  @NotNull private final Object myLock = new Object();
+  /**
+   * The requests waiting for a listing command, by "run-as" package. Each package has its own queue, so that listing the
+   * directories of an application doesn't wait for the listings of another one.
+   */
+  @GuardedBy("myLock")
+  @NotNull private final Map<String, List<ListingRequest>> myPendingRequests = new HashMap<>();
+  @GuardedBy("myLock")
+  @NotNull private final Map<String, CachedListing> myCache = new LinkedHashMap<String, CachedListing>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CachedListing> eldest) {
+      return size() > MAX_CACHED_LISTINGS;
+    }
+  };
 
   public AdbFileListing(@NotNull IDevice device, @NotNull AdbDeviceCapabilities deviceCapabilities, @NotNull Executor taskExecutor) {
     myDevice = device;
@@ -64,28 +94,243 @@ public class AdbFileListing {
     return getChildrenRunAs(parentEntry, null);
   }
 
+  /**
+   * Returns the entries of a directory, as currently listed by the device.
+   *
+   * <p>Requests made while a listing command is running are batched into the next shell command.
+   */
   @NotNull
   public ListenableFuture<List<AdbFileListingEntry>> getChildrenRunAs(@NotNull AdbFileListingEntry parentEntry,
                                                                       @Nullable String runAs) {
-    return myExecutor.executeAsync(() -> {
-      // Run "ls -l" command and process matching output lines
-      String command = getCommand(runAs, "ls -l ").withDirectoryEscapedPath(parentEntry.getFullPath()).build(); //$NON-NLS-1$
+    return addRequest(new ListingRequest(parentEntry, runAs, false));
+  }
+
+  /**
+   * Returns the entries of a directory like {@link #getChildrenRunAs(AdbFileListingEntry, String)}, but reuses the entries of
+   * an earlier listing if the modification time of the directory didn't change since, when the device supports it.
+   *
+   * <p>The modification time of a directory only changes when entries are added, removed or renamed, so the size, date and
+   * permissions of reused entries may be stale. This is only meant for expanding a directory, not for refreshing it.
+   */
+  @NotNull
+  public ListenableFuture<List<AdbFileListingEntry>> getCachedChildrenRunAs(@NotNull AdbFileListingEntry parentEntry,
+                                                                            @Nullable String runAs) {
+    return addRequest(new ListingRequest(parentEntry, runAs, true));
+  }
+
+  @NotNull
+  private ListenableFuture<List<AdbFileListingEntry>> addRequest(@NotNull ListingRequest request) {
+    String runAsKey = Strings.nullToEmpty(request.myRunAs);
+    synchronized (myLock) {
+      List<ListingRequest> pendingRequests = myPendingRequests.get(runAsKey);
+      if (pendingRequests != null) {
+        // A listing command for this package is running, the request is served by the next one
+        pendingRequests.add(request);
+      }
+      else {
+        myPendingRequests.put(runAsKey, new ArrayList<>(Collections.singletonList(request)));
+        myExecutor.execute(() -> processPendingRequests(runAsKey, request.myRunAs));
+      }
+    }
+    return request.myResult;
+  }
+
+  private void processPendingRequests(@NotNull String runAsKey, @Nullable String runAs) {
+    while (true) {
+      List<ListingRequest> requests;
+      synchronized (myLock) {
+        List<ListingRequest> pendingRequests = myPendingRequests.get(runAsKey);
+        if (pendingRequests.isEmpty()) {
+          myPendingRequests.remove(runAsKey);
+          return;
+        }
+        requests = new ArrayList<>(pendingRequests);
+        pendingRequests.clear();
+      }
+
+      try {
+        listDirectories(requests, runAs);
+      }
+      catch (Throwable t) {
+        requests.forEach(request -> request.myResult.setException(t));
+      }
+    }
+  }
+
+  private void listDirectories(@NotNull List<ListingRequest> requests, @Nullable String runAs)
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
+    Map<String, List<ListingRequest>> requestsByPath = requests.stream()
+      .collect(Collectors.groupingBy(request -> request.myParentEntry.getFullPath(), LinkedHashMap::new, Collectors.toList()));
+    boolean escaping = myDeviceCapabilities.hasEscapingLs();
+
+    if (!myDeviceCapabilities.supportsStatCommand()) {
+      if (requestsByPath.size() == 1) {
+        // Nothing to batch or to revalidate, list the directory with a plain "ls" command
+        AdbFileListingEntry parentEntry = requests.get(0).myParentEntry;
+        String command = getCommand(runAs, "ls -l ").withDirectoryEscapedPath(parentEntry.getFullPath()).build(); //$NON-NLS-1$
+        AdbShellCommandResult commandResult = AdbShellCommandsUtil.executeCommand(myDevice, command);
+        List<AdbFileListingEntry> entries = processLsOutput(commandResult.getOutput(), escaping, parentEntry);
+        if (entries.isEmpty() && commandResult.isError()) {
+          commandResult.throwIfError();
+        }
+        requests.forEach(request -> request.myResult.set(new ArrayList<>(entries)));
+        return;
+      }
+      completeRequests(requestsByPath, executeBatch(new ArrayList<>(requestsByPath.keySet()), Collections.emptySet(), false, runAs),
+                       escaping, runAs);
+      return;
+    }
+
+    // Validate cached listings and list uncached directories in a single command
+    List<String> paths = new ArrayList<>(requestsByPath.keySet());
+    Map<String, CachedListing> cachedListings = new HashMap<>();
+    synchronized (myLock) {
+      for (String path : paths) {
+        if (!requestsByPath.get(path).stream().allMatch(request -> request.myUseCache)) {
+          continue;
+        }
+        CachedListing cachedListing = myCache.get(getCacheKey(path, runAs));
+        if (cachedListing != null) {
+          cachedListings.put(path, cachedListing);
+        }
+      }
+    }
+    Map<String, DirectoryOutput> outputs = executeBatch(paths, cachedListings.keySet(), true, runAs);
+
+    List<String> stalePaths = new ArrayList<>();
+    for (Map.Entry<String, CachedListing> entry : cachedListings.entrySet()) {
+      DirectoryOutput output = outputs.get(entry.getKey());
+      if (output != null && output.myStamp != null && output.myStamp.equals(entry.getValue().myStamp)) {
+        requestsByPath.remove(entry.getKey()).forEach(request -> request.myResult.set(new ArrayList<>(entry.getValue().myEntries)));
+      }
+      else {
+        stalePaths.add(entry.getKey());
+      }
+    }
+    if (!stalePaths.isEmpty()) {
+      stalePaths.forEach(outputs::remove);
+      outputs.putAll(executeBatch(stalePaths, Collections.emptySet(), true, runAs));
+    }
+    completeRequests(requestsByPath, outputs, escaping, runAs);
+  }
 
-      AdbShellCommandResult commandResult = AdbShellCommandsUtil.executeCommand(myDevice, command);
-      boolean escaping = myDeviceCapabilities.hasEscapingLs();
+  /**
+   * Runs a shell command that outputs, for each directory, a marker line with the index of the directory and (optionally) its
+   * modification time, followed by the output of "ls -l" unless the directory is in {@code skipListingPaths}.
+   */
+  @NotNull
+  private Map<String, DirectoryOutput> executeBatch(@NotNull List<String> paths,
+                                                    @NotNull Set<String> skipListingPaths,
+                                                    boolean withStamps,
+                                                    @Nullable String runAs)
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
+    Map<String, DirectoryOutput> outputs = new HashMap<>();
+    StringBuilder commandText = new StringBuilder();
+    int firstIndex = 0;
+    for (int i = 0; i < paths.size(); i++) {
+      String path = new AdbShellCommandBuilder().withDirectoryEscapedPath(paths.get(i)).build();
+      StringBuilder segment = new StringBuilder();
+      segment.append("echo \"").append(LISTING_MARKER).append(' ').append(i);
+      if (withStamps) {
+        segment.append(" $(stat -c %y ").append(path).append(" 2>/dev/null)");
+      }
+      segment.append('"');
+      if (!skipListingPaths.contains(paths.get(i))) {
+        segment.append("; ls -l ").append(path).append(" || echo ").append(AdbShellCommandsUtil.ERROR_LINE_MARKER);
+      }
 
-      List<AdbFileListingEntry> entries = commandResult.getOutput()
-        .stream()
-        .map(line -> processLsOutputLine(line, escaping, parentEntry))
-        .filter(Objects::nonNull)
-        .collect(Collectors.toList());
-      if (entries.isEmpty() && commandResult.isError()) {
-        commandResult.throwIfError();
+      if (commandText.length() > 0 && commandText.length() + segment.length() > MAX_BATCH_COMMAND_LENGTH) {
+        executeBatchCommand(commandText.toString(), paths, firstIndex, runAs, outputs);
+        commandText.setLength(0);
+        firstIndex = i;
+      }
+      if (commandText.length() > 0) {
+        commandText.append("; ");
+      }
+      commandText.append(segment);
+    }
+    if (commandText.length() > 0) {
+      executeBatchCommand(commandText.toString(), paths, firstIndex, runAs, outputs);
+    }
+    return outputs;
+  }
+
+  private void executeBatchCommand(@NotNull String commandText,
+                                   @NotNull List<String> paths,
+                                   int firstIndex,
+                                   @Nullable String runAs,
+                                   @NotNull Map<String, DirectoryOutput> outputs)
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
+    String command = getCommand(runAs, commandText).build();
+    AdbShellCommandResult commandResult = AdbShellCommandsUtil.executeCommandNoErrorCheck(myDevice, command);
+
+    DirectoryOutput current = null;
+    for (String line : commandResult.getOutput()) {
+      if (line.startsWith(LISTING_MARKER)) {
+        String[] parts = line.trim().split(" ", 3);
+        int index = Integer.parseInt(parts[1]);
+        if (index < firstIndex || index >= paths.size()) {
+          throw AdbShellCommandException.create("Unexpected output of shell command %s", command);
+        }
+        String stamp = parts.length > 2 ? StringUtil.nullize(parts[2].trim()) : null;
+        current = new DirectoryOutput(stamp);
+        outputs.put(paths.get(index), current);
+      }
+      else if (current != null) {
+        if (line.trim().equals(AdbShellCommandsUtil.ERROR_LINE_MARKER)) {
+          current.myError = true;
+        }
+        else {
+          current.myLines.add(line);
+        }
+      }
+    }
+  }
+
+  private void completeRequests(@NotNull Map<String, List<ListingRequest>> requestsByPath,
+                                @NotNull Map<String, DirectoryOutput> outputs,
+                                boolean escaping,
+                                @Nullable String runAs) {
+    requestsByPath.forEach((path, requests) -> {
+      DirectoryOutput output = outputs.get(path);
+      AdbFileListingEntry parentEntry = requests.get(0).myParentEntry;
+      try {
+        if (output == null) {
+          throw AdbShellCommandException.create("Unable to list entries of directory %s", path);
+        }
+        List<AdbFileListingEntry> entries = processLsOutput(output.myLines, escaping, parentEntry);
+        if (entries.isEmpty() && output.myError) {
+          new AdbShellCommandResult("ls -l " + path, output.myLines, true).throwIfError();
+        }
+        if (output.myStamp != null) {
+          synchronized (myLock) {
+            myCache.put(getCacheKey(path, runAs), new CachedListing(output.myStamp, entries));
+          }
+        }
+        requests.forEach(request -> request.myResult.set(new ArrayList<>(entries)));
+      }
+      catch (AdbShellCommandException e) {
+        requests.forEach(request -> request.myResult.setException(e));
       }
-      return entries;
     });
   }
 
+  @NotNull
+  private static List<AdbFileListingEntry> processLsOutput(@NotNull List<String> lines,
+                                                           boolean escaping,
+                                                           @NotNull AdbFileListingEntry parentEntry) {
+    return lines
+      .stream()
+      .map(line -> processLsOutputLine(line, escaping, parentEntry))
+      .filter(Objects::nonNull)
+      .collect(Collectors.toList());
+  }
+
+  @NotNull
+  private static String getCacheKey(@NotNull String path, @Nullable String runAs) {
+    return Strings.nullToEmpty(runAs) + ":" + path;
+  }
+
   /**
    * Determine if a symlink entry points to a directory. This is a best effort process,
    * as the target of the symlink might not be accessible, in which case the future value
@@ -229,4 +474,40 @@ public class AdbFileListing {
     }
     return command.withText(text);
   }
+
+  private static final class ListingRequest {
+    @NotNull private final AdbFileListingEntry myParentEntry;
+    @Nullable private final String myRunAs;
+    private final boolean myUseCache;
+    @NotNull private final SettableFuture<List<AdbFileListingEntry>> myResult = SettableFuture.create();
+
+    private ListingRequest(@NotNull AdbFileListingEntry parentEntry, @Nullable String runAs, boolean useCache) {
+      myParentEntry = parentEntry;
+      myRunAs = runAs;
+      myUseCache = useCache;
+    }
+  }
+
+  private static final class DirectoryOutput {
+    /**
+     * The modification time of the directory, or {@code null} if unknown.
+     */
+    @Nullable private final String myStamp;
+    @NotNull private final List<String> myLines = new ArrayList<>();
+    private boolean myError;
+
+    private DirectoryOutput(@Nullable String stamp) {
+      myStamp = stamp;
+    }
+  }
+
+  private static final class CachedListing {
+    @NotNull private final String myStamp;
+    @NotNull private final List<AdbFileListingEntry> myEntries;
+
+    private CachedListing(@NotNull String stamp, @NotNull List<AdbFileListingEntry> entries) {
+      myStamp = stamp;
+      myEntries = entries;
+    }
+  }
 }
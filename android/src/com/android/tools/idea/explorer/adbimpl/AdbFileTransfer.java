@@ -18,28 +18,46 @@ package com.android.tools.idea.explorer.adbimpl;
 import static com.android.tools.idea.explorer.adbimpl.AdbPathUtil.DEVICE_TEMP_DIRECTORY;
 
 import com.android.ddmlib.IDevice;
+import com.android.ddmlib.IShellOutputReceiver;
 import com.android.ddmlib.SyncException;
 import com.android.ddmlib.SyncService;
 import com.android.tools.idea.concurrency.FutureCallbackExecutor;
 import com.android.tools.idea.explorer.fs.FileTransferProgress;
 import com.android.tools.idea.explorer.fs.ThrottledProgress;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Disposer;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Locale;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.Executor;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-public class AdbFileTransfer {
+public class AdbFileTransfer implements Disposable {
   @NotNull private static Logger LOGGER = Logger.getInstance(AdbFileTransfer.class);
+  private static final int TAR_BLOCK_SIZE = 512;
 
   @NotNull private final IDevice myDevice;
   @NotNull private final AdbFileOperations myFileOperations;
   @NotNull private final FutureCallbackExecutor myProgressExecutor;
   @NotNull private final FutureCallbackExecutor myTaskExecutor;
+  @NotNull private final AdbSyncServicePool mySyncServicePool;
 
   public AdbFileTransfer(@NotNull IDevice device,
                          @NotNull AdbFileOperations fileOperations,
@@ -49,6 +67,12 @@ public class AdbFileTransfer {
     myFileOperations = fileOperations;
     myProgressExecutor = FutureCallbackExecutor.wrap(progressExecutor);
     myTaskExecutor = FutureCallbackExecutor.wrap(taskExecutor);
+    mySyncServicePool = new AdbSyncServicePool(device, myTaskExecutor);
+    Disposer.register(this, mySyncServicePool);
+  }
+
+  @Override
+  public void dispose() {
   }
 
   @NotNull
@@ -121,29 +145,110 @@ public class AdbFileTransfer {
     });
   }
 
+  /**
+   * Downloads the contents of a remote directory, recursively, to a local directory, as a "tar" archive streamed over a single
+   * shell connection. This avoids one sync request per file, which dominates the transfer time of trees of many small files.
+   *
+   * <p>The archive is spooled to a local temporary file before being extracted. Symbolic links are not extracted, and neither are
+   * entries that would end up outside {@code localPath}.
+   *
+   * @return a future that completes with the number of files extracted
+   */
   @NotNull
-  private ListenableFuture<Void> downloadFileWorker(@NotNull String remotePath,
-                                                    long remotePathSize,
-                                                    @NotNull Path localPath,
-                                                    @NotNull FileTransferProgress progress) {
-
-    ListenableFuture<SyncService> futureSyncService = getSyncService();
+  public ListenableFuture<Integer> downloadDirectoryArchive(@NotNull String remotePath,
+                                                            @NotNull Path localPath,
+                                                            @NotNull FileTransferProgress progress,
+                                                            @Nullable String runAs) {
+    AdbShellCommandBuilder builder = new AdbShellCommandBuilder();
+    if (runAs != null) {
+      builder.withRunAs(runAs);
+    }
+    // Errors go to stderr, which is mixed with the archive on stdout, so they are discarded. The exit code of "tar" is
+    // appended to the archive instead, see readArchiveExitCode.
+    String command = builder.withText("tar -cf - -C ").withDirectoryEscapedPath(remotePath).withText(" . 2>/dev/null; echo -n $?").build();
 
-    ListenableFuture<Void> futurePull = myTaskExecutor.transform(futureSyncService, syncService -> {
-      assert syncService != null;
+    return myTaskExecutor.executeAsync(() -> {
+      Path archivePath = Files.createTempFile("device-explorer", ".tar");
       try {
         long startTime = System.nanoTime();
-        syncService.pullFile(remotePath,
-                             localPath.toString(),
-                             new SingleFileProgressMonitor(myProgressExecutor, progress, remotePathSize));
+        try (OutputStream archive = new BufferedOutputStream(Files.newOutputStream(archivePath))) {
+          AdbShellCommandsUtil.executeRawCommand(myDevice, command, new ArchiveReceiver(archive, myProgressExecutor, progress));
+        }
+        if (progress.isCancelled()) {
+          throw new CancellationException();
+        }
+        String exitCode = readArchiveExitCode(archivePath);
+        if (!"0".equals(exitCode)) {
+          throw new IOException(String.format("Unable to create an archive of directory \"%s\" (exit code %s)", remotePath, exitCode));
+        }
+        int fileCount = extractArchive(archivePath, localPath);
         long endTime = System.nanoTime();
-        LOGGER.info(String.format(Locale.US, "Pull file took %,d ms to execute: \"%s\" -> \"%s\"", (endTime - startTime) / 1_000_000,
-                                  remotePath, localPath));
-        return null;
+        LOGGER.info(String.format(Locale.US, "Pull directory archive took %,d ms to execute (%,d files): \"%s\" -> \"%s\"",
+                                  (endTime - startTime) / 1_000_000, fileCount, remotePath, localPath));
+        return fileCount;
       }
       finally {
-        syncService.close();
+        Files.deleteIfExists(archivePath);
+      }
+    });
+  }
+
+  /**
+   * Returns the exit code of the "tar" command, written after the archive. Archives are made of {@link #TAR_BLOCK_SIZE} byte blocks, so the
+   * exit code is what follows the last complete block.
+   */
+  @VisibleForTesting
+  @NotNull
+  static String readArchiveExitCode(@NotNull Path archivePath) throws IOException {
+    try (SeekableByteChannel channel = Files.newByteChannel(archivePath)) {
+      long size = channel.size();
+      ByteBuffer buffer = ByteBuffer.allocate((int)(size % TAR_BLOCK_SIZE));
+      channel.position(size - buffer.capacity());
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        // Keep reading until the buffer is full
+      }
+      return new String(buffer.array(), StandardCharsets.US_ASCII).trim();
+    }
+  }
+
+  @VisibleForTesting
+  static int extractArchive(@NotNull Path archivePath, @NotNull Path localPath) throws IOException {
+    Path root = localPath.toAbsolutePath().normalize();
+    int fileCount = 0;
+    try (TarArchiveInputStream archive = new TarArchiveInputStream(new BufferedInputStream(Files.newInputStream(archivePath)))) {
+      for (TarArchiveEntry entry = archive.getNextTarEntry(); entry != null; entry = archive.getNextTarEntry()) {
+        Path target = root.resolve(entry.getName()).normalize();
+        if (!target.startsWith(root)) {
+          LOGGER.warn(String.format("Skipping archive entry outside of the target directory: \"%s\"", entry.getName()));
+          continue;
+        }
+        if (entry.isDirectory()) {
+          Files.createDirectories(target);
+        }
+        else if (entry.isFile()) {
+          Files.createDirectories(target.getParent());
+          Files.copy(archive, target, StandardCopyOption.REPLACE_EXISTING);
+          fileCount++;
+        }
       }
+    }
+    return fileCount;
+  }
+
+  @NotNull
+  private ListenableFuture<Void> downloadFileWorker(@NotNull String remotePath,
+                                                    long remotePathSize,
+                                                    @NotNull Path localPath,
+                                                    @NotNull FileTransferProgress progress) {
+
+    ListenableFuture<Void> futurePull = withSyncService(syncService -> {
+      long startTime = System.nanoTime();
+      syncService.pullFile(remotePath,
+                           localPath.toString(),
+                           new SingleFileProgressMonitor(myProgressExecutor, progress, remotePathSize));
+      long endTime = System.nanoTime();
+      LOGGER.info(String.format(Locale.US, "Pull file took %,d ms to execute: \"%s\" -> \"%s\"", (endTime - startTime) / 1_000_000,
+                                remotePath, localPath));
     });
 
     return myTaskExecutor.catchingAsync(futurePull, SyncException.class, syncError -> {
@@ -162,25 +267,16 @@ public class AdbFileTransfer {
                                                   @NotNull String remotePath,
                                                   @NotNull FileTransferProgress progress) {
 
-    ListenableFuture<SyncService> futureSyncService = getSyncService();
-
-    ListenableFuture<Void> futurePush = myTaskExecutor.transform(futureSyncService, syncService -> {
-      assert syncService != null;
-      try {
-        long fileLength = localPath.toFile().length();
-        long startTime = System.nanoTime();
-        syncService.pushFile(localPath.toString(),
-                             remotePath,
-                             new SingleFileProgressMonitor(myProgressExecutor, progress, fileLength));
-        long endTime = System.nanoTime();
-        LOGGER.info(String
-                      .format(Locale.US, "Push file took %,d ms to execute: \"%s\" -> \"%s\"", (endTime - startTime) / 1_000_000, localPath,
-                              remotePath));
-        return null;
-      }
-      finally {
-        syncService.close();
-      }
+    ListenableFuture<Void> futurePush = withSyncService(syncService -> {
+      long fileLength = localPath.toFile().length();
+      long startTime = System.nanoTime();
+      syncService.pushFile(localPath.toString(),
+                           remotePath,
+                           new SingleFileProgressMonitor(myProgressExecutor, progress, fileLength));
+      long endTime = System.nanoTime();
+      LOGGER.info(String
+                    .format(Locale.US, "Push file took %,d ms to execute: \"%s\" -> \"%s\"", (endTime - startTime) / 1_000_000, localPath,
+                            remotePath));
     });
 
     return myTaskExecutor.catchingAsync(futurePush, SyncException.class, syncError -> {
@@ -194,17 +290,31 @@ public class AdbFileTransfer {
     });
   }
 
+  /**
+   * Runs {@code transfer} with a {@link SyncService} connection of the pool, and gives the connection back to the pool when done.
+   */
   @NotNull
-  private ListenableFuture<SyncService> getSyncService() {
-    return myTaskExecutor.executeAsync(() -> {
-      SyncService sync = myDevice.getSyncService();
-      if (sync == null) {
-        throw new IOException("Unable to open synchronization service to device");
+  private ListenableFuture<Void> withSyncService(@NotNull SyncTransfer transfer) {
+    ListenableFuture<SyncService> futureSyncService = mySyncServicePool.acquire();
+    return myTaskExecutor.transform(futureSyncService, syncService -> {
+      assert syncService != null;
+      boolean completed = false;
+      try {
+        transfer.run(syncService);
+        completed = true;
+        return null;
+      }
+      finally {
+        mySyncServicePool.release(syncService, completed);
       }
-      return sync;
     });
   }
 
+  @FunctionalInterface
+  private interface SyncTransfer {
+    void run(@NotNull SyncService syncService) throws Exception;
+  }
+
   /**
    * Forward callbacks from a {@link SyncService.ISyncProgressMonitor}, running on a pooled thread,
    * to a {@link FileTransferProgress}, using the provided {@link Executor}, typically the
@@ -261,4 +371,50 @@ public class AdbFileTransfer {
       }
     }
   }
+
+  /**
+   * Writes the output of a shell command to a stream, reporting the number of bytes received to a {@link FileTransferProgress}.
+   */
+  private static class ArchiveReceiver implements IShellOutputReceiver {
+    private static final int PROGRESS_REPORT_INTERVAL_MILLIS = 50;
+    @NotNull private final OutputStream myOutputStream;
+    @NotNull private final Executor myCallbackExecutor;
+    @NotNull private final FileTransferProgress myProgress;
+    @NotNull private final ThrottledProgress myThrottledProgress = new ThrottledProgress(PROGRESS_REPORT_INTERVAL_MILLIS);
+    private long myCurrentBytes;
+
+    ArchiveReceiver(@NotNull OutputStream outputStream, @NotNull Executor callbackExecutor, @NotNull FileTransferProgress progress) {
+      myOutputStream = outputStream;
+      myCallbackExecutor = callbackExecutor;
+      myProgress = progress;
+    }
+
+    @Override
+    public void addOutput(byte[] data, int offset, int length) {
+      try {
+        myOutputStream.write(data, offset, length);
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      myCurrentBytes += length;
+      if (myThrottledProgress.check()) {
+        // Capture value for lambda (since lambda may be executed after some delay)
+        final long currentBytes = myCurrentBytes;
+        // The size of the archive is not known in advance.
+        myCallbackExecutor.execute(() -> myProgress.progress(currentBytes, 0));
+      }
+    }
+
+    @Override
+    public void flush() {
+      final long currentBytes = myCurrentBytes;
+      myCallbackExecutor.execute(() -> myProgress.progress(currentBytes, 0));
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return myProgress.isCancelled();
+    }
+  }
 }
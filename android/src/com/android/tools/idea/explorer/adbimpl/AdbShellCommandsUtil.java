@@ -28,7 +28,7 @@ import java.util.Objects;
 
 public class AdbShellCommandsUtil {
   @NotNull private static final Logger LOGGER = Logger.getInstance(AdbShellCommandsUtil.class);
-  @NotNull private static final String ERROR_LINE_MARKER = "ERR-ERR-ERR-ERR";
+  @NotNull static final String ERROR_LINE_MARKER = "ERR-ERR-ERR-ERR";
   @NotNull private static final String COMMAND_ERROR_CHECK_SUFFIX = " || echo " + ERROR_LINE_MARKER;
 
   public static AdbShellCommandResult executeCommand(@NotNull IDevice device, @NotNull String command)
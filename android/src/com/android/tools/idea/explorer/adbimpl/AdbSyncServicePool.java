@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.explorer.adbimpl;
+
+import com.android.ddmlib.IDevice;
+import com.android.ddmlib.SyncService;
+import com.android.tools.idea.concurrency.FutureCallbackExecutor;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.intellij.openapi.Disposable;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import net.jcip.annotations.GuardedBy;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A pool of {@link SyncService} connections to a device.
+ *
+ * <p>Opening a sync connection costs a couple of round trips to the ADB server and the device, which dominates the time it takes
+ * to transfer a small file. Connections are returned to the pool once a transfer completes successfully, so that the next transfer
+ * can reuse them. At most {@link #MAX_CONNECTIONS} connections are open at the same time; requests made when they are all in use
+ * wait for one to be released. Idle connections are closed after {@link #IDLE_TIMEOUT_NANOS}, and all of them are closed when the
+ * pool is disposed along with the device file system.
+ */
+class AdbSyncServicePool implements Disposable {
+  static final int MAX_CONNECTIONS = 4;
+
+  /**
+   * Connections idle for longer than this are closed instead of being reused, as the ADB server may have dropped them in the meantime.
+   */
+  @VisibleForTesting
+  static final long IDLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+  @NotNull private final IDevice myDevice;
+  @NotNull private final FutureCallbackExecutor myTaskExecutor;
+  @NotNull private final ScheduledExecutorService myScheduler;
+  @NotNull private final Ticker myTicker;
+  @NotNull private final Object myLock = new Object();
+
+  @GuardedBy("myLock")
+  @NotNull private final Deque<IdleConnection> myIdleConnections = new ArrayDeque<>();
+  @GuardedBy("myLock")
+  @NotNull private final Deque<SettableFuture<SyncService>> myWaiters = new ArrayDeque<>();
+  @GuardedBy("myLock")
+  private int myOpenConnectionCount;
+  @GuardedBy("myLock")
+  @Nullable private ScheduledFuture<?> myEviction;
+  @GuardedBy("myLock")
+  private boolean myIsDisposed;
+
+  AdbSyncServicePool(@NotNull IDevice device, @NotNull FutureCallbackExecutor taskExecutor) {
+    this(device, taskExecutor, AppExecutorUtil.getAppScheduledExecutorService(), Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  AdbSyncServicePool(@NotNull IDevice device,
+                     @NotNull FutureCallbackExecutor taskExecutor,
+                     @NotNull ScheduledExecutorService scheduler,
+                     @NotNull Ticker ticker) {
+    myDevice = device;
+    myTaskExecutor = taskExecutor;
+    myScheduler = scheduler;
+    myTicker = ticker;
+  }
+
+  /**
+   * Returns a future that completes with a connection once one is available. The connection must be given back with
+   * {@link #release(SyncService, boolean)} when done with it.
+   */
+  @NotNull
+  ListenableFuture<SyncService> acquire() {
+    synchronized (myLock) {
+      if (myIsDisposed) {
+        return Futures.immediateFailedFuture(new IOException("Device file system has been closed"));
+      }
+      SyncService sync = pollIdleConnection();
+      if (sync != null) {
+        return Futures.immediateFuture(sync);
+      }
+      if (myOpenConnectionCount < MAX_CONNECTIONS) {
+        myOpenConnectionCount++;
+        return openConnection();
+      }
+      SettableFuture<SyncService> waiter = SettableFuture.create();
+      myWaiters.add(waiter);
+      return waiter;
+    }
+  }
+
+  /**
+   * Gives a connection back to the pool.
+   *
+   * @param reusable {@code true} if the last transfer completed normally. Connections of failed or cancelled transfers may be
+   *                 in the middle of an exchange with the device, so they are closed.
+   */
+  void release(@NotNull SyncService sync, boolean reusable) {
+    synchronized (myLock) {
+      if (reusable && !myIsDisposed) {
+        while (!myWaiters.isEmpty()) {
+          if (myWaiters.poll().set(sync)) {
+            return;
+          }
+        }
+        myIdleConnections.push(new IdleConnection(sync, myTicker.read()));
+        scheduleEviction(IDLE_TIMEOUT_NANOS);
+        return;
+      }
+      myOpenConnectionCount--;
+      if (!myIsDisposed) {
+        openConnectionForWaiter();
+      }
+    }
+    sync.close();
+  }
+
+  /**
+   * Closes the idle connections, and the ones in use as soon as they are released. Pending and later requests fail.
+   */
+  @Override
+  public void dispose() {
+    List<SyncService> idleConnections = new ArrayList<>();
+    List<SettableFuture<SyncService>> waiters;
+    synchronized (myLock) {
+      myIsDisposed = true;
+      if (myEviction != null) {
+        myEviction.cancel(false);
+        myEviction = null;
+      }
+      while (!myIdleConnections.isEmpty()) {
+        idleConnections.add(myIdleConnections.pop().mySync);
+        myOpenConnectionCount--;
+      }
+      waiters = new ArrayList<>(myWaiters);
+      myWaiters.clear();
+    }
+    idleConnections.forEach(SyncService::close);
+    waiters.forEach(waiter -> waiter.setException(new IOException("Device file system has been closed")));
+  }
+
+  @VisibleForTesting
+  int getIdleConnectionCount() {
+    synchronized (myLock) {
+      return myIdleConnections.size();
+    }
+  }
+
+  @GuardedBy("myLock")
+  private void scheduleEviction(long delayNanos) {
+    if (myEviction == null) {
+      myEviction = myScheduler.schedule(this::evictIdleConnections, delayNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Closes the connections that have been idle for {@link #IDLE_TIMEOUT_NANOS}, so they don't stay open until the next transfer.
+   */
+  private void evictIdleConnections() {
+    List<SyncService> expiredConnections = new ArrayList<>();
+    synchronized (myLock) {
+      myEviction = null;
+      long now = myTicker.read();
+      // The least recently released connections are at the end of the deque.
+      while (!myIdleConnections.isEmpty() && now - myIdleConnections.peekLast().myIdleSinceNanos >= IDLE_TIMEOUT_NANOS) {
+        expiredConnections.add(myIdleConnections.pollLast().mySync);
+        myOpenConnectionCount--;
+      }
+      if (!myIdleConnections.isEmpty() && !myIsDisposed) {
+        scheduleEviction(IDLE_TIMEOUT_NANOS - (now - myIdleConnections.peekLast().myIdleSinceNanos));
+      }
+    }
+    expiredConnections.forEach(SyncService::close);
+  }
+
+  /**
+   * Opens a new connection for the first waiter that isn't cancelled, if any, after a connection has been closed.
+   */
+  @GuardedBy("myLock")
+  private void openConnectionForWaiter() {
+    while (!myWaiters.isEmpty()) {
+      SettableFuture<SyncService> waiter = myWaiters.poll();
+      if (!waiter.isCancelled()) {
+        myOpenConnectionCount++;
+        waiter.setFuture(openConnection());
+        return;
+      }
+    }
+  }
+
+  @GuardedBy("myLock")
+  @Nullable
+  private SyncService pollIdleConnection() {
+    long now = myTicker.read();
+    while (!myIdleConnections.isEmpty()) {
+      IdleConnection connection = myIdleConnections.pop();
+      if (now - connection.myIdleSinceNanos < IDLE_TIMEOUT_NANOS) {
+        return connection.mySync;
+      }
+      connection.mySync.close();
+      myOpenConnectionCount--;
+    }
+    return null;
+  }
+
+  @NotNull
+  private ListenableFuture<SyncService> openConnection() {
+    ListenableFuture<SyncService> futureSync = myTaskExecutor.executeAsync(() -> {
+      SyncService sync = myDevice.getSyncService();
+      if (sync == null) {
+        throw new IOException("Unable to open synchronization service to device");
+      }
+      return sync;
+    });
+    myTaskExecutor.addConsumer(futureSync, (sync, throwable) -> {
+      if (throwable != null) {
+        synchronized (myLock) {
+          myOpenConnectionCount--;
+          openConnectionForWaiter();
+        }
+      }
+    });
+    return futureSync;
+  }
+
+  private static final class IdleConnection {
+    @NotNull private final SyncService mySync;
+    private final long myIdleSinceNanos;
+
+    private IdleConnection(@NotNull SyncService sync, long idleSinceNanos) {
+      mySync = sync;
+      myIdleSinceNanos = idleSinceNanos;
+    }
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.explorer.fs;
 
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -56,6 +57,16 @@ public interface DeviceFileEntry {
   @NotNull
   ListenableFuture<List<DeviceFileEntry>> getEntries();
 
+  /**
+   * The list of entries contained in this directory, which may be the entries of an earlier listing if the file system
+   * knows that no entry has been added or removed since. Attributes of the entries may be stale, so this is only meant
+   * for expanding a directory: refreshing it uses {@link #getEntries()}.
+   */
+  @NotNull
+  default ListenableFuture<List<DeviceFileEntry>> getCachedEntries() {
+    return getEntries();
+  }
+
   /**
    * Deletes the entry from the device file system.
    */
@@ -93,6 +104,19 @@ public interface DeviceFileEntry {
   ListenableFuture<Void> downloadFile(@NotNull Path localPath,
                                       @NotNull FileTransferProgress progress);
 
+  /**
+   * Downloads the contents of this directory, recursively, to a local directory in a single transfer, which is faster than
+   * downloading its entries one by one when the directory contains many small files.
+   *
+   * <p>The returned future completes with the number of files downloaded, or with <code>null</code> if the entry does not
+   * support this kind of transfer, in which case nothing was downloaded.
+   */
+  @NotNull
+  default ListenableFuture<Integer> downloadDirectoryArchive(@NotNull Path localPath,
+                                                             @NotNull FileTransferProgress progress) {
+    return Futures.immediateFuture(null);
+  }
+
   /**
    * Uploads the contents of a local file to a remote {@link DeviceFileEntry} directory.
    */
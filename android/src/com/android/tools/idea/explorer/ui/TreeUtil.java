@@ -83,6 +83,11 @@ public class TreeUtil {
 
     /** (Optionally) update a given TreeNode with a new entry value */
     void updateNode(@NotNull T node, @NotNull U entry);
+
+    /** Returns {@code true} if a TreeNode already presents an entry, in which case it is neither updated nor repainted */
+    default boolean isNodeUpToDate(@NotNull T node, @NotNull U entry) {
+      return false;
+    }
   }
 
   /**
@@ -173,8 +178,10 @@ public class TreeUtil {
 
         int compareResult = ops.compareNodeWithEntry(childNode, newEntries.get(newEntryIndex));
         if (compareResult == 0) {
-          ops.updateNode(childNode, newEntries.get(newEntryIndex));
-          treeModel.nodeChanged(childNode);
+          if (!ops.isNodeUpToDate(childNode, newEntries.get(newEntryIndex))) {
+            ops.updateNode(childNode, newEntries.get(newEntryIndex));
+            treeModel.nodeChanged(childNode);
+          }
           childIndex++;
           newEntryIndex++;
           continue;
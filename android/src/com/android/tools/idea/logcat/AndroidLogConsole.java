@@ -24,6 +24,7 @@ import com.android.tools.idea.ddms.actions.TerminateVMAction;
 import com.android.tools.idea.logcat.AndroidLogcatView.MyConfigureLogcatHeaderAction;
 import com.android.tools.idea.logcat.AndroidLogcatView.MyRestartAction;
 import com.intellij.diagnostic.logging.LogConsoleBase;
+import com.intellij.diagnostic.logging.LogFilter;
 import com.intellij.diagnostic.logging.LogFormatter;
 import com.intellij.execution.impl.ConsoleViewImpl;
 import com.intellij.execution.ui.ConsoleView;
@@ -148,4 +149,20 @@ public final class AndroidLogConsole extends LogConsoleBase {
     // side effect.
     onTextFilterChange();
   }
+
+  /**
+   * Replays the buffered logcat messages that can pass the new filter instead of filtering the text of the console again.
+   */
+  @Override
+  public void onFilterStateChange(LogFilter filter) {
+    myView.replayLogcat();
+  }
+
+  /**
+   * @see #onFilterStateChange(LogFilter)
+   */
+  @Override
+  public void onTextFilterChange() {
+    myView.replayLogcat();
+  }
 }
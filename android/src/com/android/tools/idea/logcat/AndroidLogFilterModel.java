@@ -201,6 +201,34 @@ final class AndroidLogFilterModel extends LogFilterModel {
     }
   }
 
+  /**
+   * Resets the state of the message being processed before the buffered messages are replayed. Unlike {@link #processingStarted()}, the
+   * messages rejected by {@link #beginRejectingOldMessages()} keep being rejected.
+   */
+  void replayStarted() {
+    LogCatHeader rejectBeforeHeader = myRejectBeforeHeader;
+    processingStarted();
+    myRejectBeforeHeader = rejectBeforeHeader;
+  }
+
+  /**
+   * Returns the minimum log level of the messages that can be accepted by the selected log level and the configured filter.
+   */
+  @NotNull
+  Log.LogLevel getMinimumLogLevel() {
+    LogFilter selectedLogLevelFilter = getSelectedLogLevelFilter();
+    Log.LogLevel minLevel = selectedLogLevelFilter != null ? ((AndroidLogLevelFilter)selectedLogLevelFilter).myLogLevel : Log.LogLevel.VERBOSE;
+    if (myConfiguredFilter != null && myConfiguredFilter.getMinimumLogLevel().getPriority() > minLevel.getPriority()) {
+      minLevel = myConfiguredFilter.getMinimumLogLevel();
+    }
+    return minLevel;
+  }
+
+  @Nullable
+  AndroidLogcatFilter getConfiguredFilter() {
+    return myConfiguredFilter;
+  }
+
   @Override
   public void processingStarted() {
     myPrevHeader = null;
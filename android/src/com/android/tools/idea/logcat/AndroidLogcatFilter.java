@@ -17,6 +17,7 @@ package com.android.tools.idea.logcat;
 
 import com.android.ddmlib.Log;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * A filter which can reject lines of logcat output.
@@ -33,4 +34,28 @@ public interface AndroidLogcatFilter {
    * Returns {@code true} if the current logcat message should be accepted, {@code false} otherwise.
    */
   boolean isApplicable(@NotNull String message, @NotNull String tag, @NotNull String pkg, int pid, @NotNull Log.LogLevel logLevel);
+
+  /**
+   * Returns the minimum log level of the messages this filter can accept. The buffered messages below it are skipped without being
+   * tested when the filter changes.
+   */
+  @NotNull
+  default Log.LogLevel getMinimumLogLevel() {
+    return Log.LogLevel.VERBOSE;
+  }
+
+  /**
+   * Returns {@code false} if no message with the given tag can be accepted by this filter.
+   */
+  default boolean isTagAccepted(@NotNull String tag) {
+    return true;
+  }
+
+  /**
+   * Returns the process id of the only process whose messages this filter can accept, or null if it can accept messages of any process.
+   */
+  @Nullable
+  default Integer getProcessId() {
+    return null;
+  }
 }
@@ -127,6 +127,50 @@ public final class AndroidLogcatReceiver extends AndroidOutputReceiver implement
     }
   }
 
+  /**
+   * Processes a complete log message, as decoded by {@link LogcatBinaryReceiver}. The message is split into lines, which go through the
+   * same stack trace expansion as the lines received from textual logcat. Leading and trailing empty lines are dropped, as they are by
+   * {@link #processNewLine(String)}.
+   */
+  void processMessage(@NotNull LogCatHeader header, @NotNull String message) {
+    myStackTraceExpander.reset();
+    myActiveHeader = header;
+    myLineIndex = 0;
+    myDelayedNewlineCount = 0;
+
+    int end = message.length();
+    while (end > 0 && isLineBreak(message.charAt(end - 1))) {
+      end--;
+    }
+    int start = 0;
+    while (start < end && isLineBreak(message.charAt(start))) {
+      start++;
+    }
+    while (start < end) {
+      int lineEnd = message.indexOf('\n', start);
+      if (lineEnd < 0 || lineEnd > end) {
+        lineEnd = end;
+      }
+      String line = message.substring(start, lineEnd);
+      if (line.indexOf('\r') >= 0) {
+        line = CARRIAGE_RETURN.matcher(line).replaceAll("");
+      }
+      if (line.isEmpty()) {
+        notifyLine(header, line);
+      }
+      else {
+        for (String processedLine : myStackTraceExpander.process(line)) {
+          notifyLine(header, processedLine);
+        }
+      }
+      start = lineEnd + 1;
+    }
+  }
+
+  private static boolean isLineBreak(char c) {
+    return c == '\n' || c == '\r';
+  }
+
   // This method is package protected so other Logcat components can feed receiver processed log lines if they need to
   void notifyLine(@NotNull LogCatHeader header, @NotNull String line) {
     myLogcatListener.onLogLineReceived(new LogCatMessage(header, line));
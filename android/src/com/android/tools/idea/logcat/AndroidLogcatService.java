@@ -19,6 +19,7 @@ import com.android.ddmlib.*;
 import com.android.ddmlib.Log.LogLevel;
 import com.android.ddmlib.logcat.LogCatHeader;
 import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.sdklib.AndroidVersion;
 import com.android.tools.idea.IdeInfo;
 import com.android.tools.idea.run.LoggingReceiver;
 import com.google.common.collect.ArrayListMultimap;
@@ -48,6 +49,8 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * {@link AndroidLogcatService} is the class that manages logs in all connected devices and emulators.
@@ -56,30 +59,15 @@ import java.util.concurrent.TimeUnit;
  */
 @ThreadSafe
 public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceChangeListener, Disposable {
+  /**
+   * Maximum number of log lines kept per device, in addition to the character limit of the console cycle buffer.
+   */
+  private static final int MAX_BUFFERED_LINES = 500_000;
+
   private static Logger getLog() {
     return Logger.getInstance(AndroidLogcatService.class);
   }
 
-  private static class LogcatBuffer {
-    private int myBufferSize;
-    private final LinkedList<LogCatMessage> myMessages = new LinkedList<>();
-
-    public void addMessage(@NotNull LogCatMessage message) {
-      myMessages.add(message);
-      myBufferSize += message.getMessage().length();
-      if (ConsoleBuffer.useCycleBuffer()) {
-        while (myBufferSize > ConsoleBuffer.getCycleBufferSize()) {
-          myBufferSize -= myMessages.removeFirst().getMessage().length();
-        }
-      }
-    }
-
-    @NotNull
-    public List<LogCatMessage> getMessages() {
-      return myMessages;
-    }
-  }
-
   private static class ListenerConnector implements LogcatListener {
     @GuardedBy("myListenerLock")
     @Nullable private LogcatListener myListener; // Initially not null, set to null when disconnected.
@@ -163,6 +151,13 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
 
     default void onCleared() {
     }
+
+    /**
+     * Called when the buffered messages are about to be replayed to the listener by
+     * {@link #replayMessages(IDevice, LogcatListener, LogLevel, Predicate, Integer)}, before any of them is sent.
+     */
+    default void onReplayStarted() {
+    }
   }
 
   private final Object myLock;
@@ -173,7 +168,7 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
   private final Map<IDevice, AndroidLogcatReceiver> myLogReceivers;
 
   @GuardedBy("myLock")
-  private final Map<IDevice, LogcatBuffer> myLogBuffers;
+  private final Map<IDevice, LogcatRingBuffer> myLogBuffers;
 
   /**
    * This is a list of commands to execute per device. We use a newSingleThreadExecutor
@@ -212,11 +207,16 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
 
       AndroidLogcatReceiver receiver = newAndroidLogcatReceiver(device);
       myLogReceivers.put(device, receiver);
-      myLogBuffers.put(device, new LogcatBuffer());
+      myLogBuffers.put(device, newLogcatBuffer());
       myExecutors.get(device).execute(() -> executeLogcat(device, receiver));
     }
   }
 
+  @NotNull
+  private static LogcatRingBuffer newLogcatBuffer() {
+    return new LogcatRingBuffer(MAX_BUFFERED_LINES, ConsoleBuffer.useCycleBuffer() ? ConsoleBuffer.getCycleBufferSize() : -1);
+  }
+
   @NotNull
   private AndroidLogcatReceiver newAndroidLogcatReceiver(@NotNull IDevice device) {
     return new AndroidLogcatReceiver(device, new LogcatListener() {
@@ -225,10 +225,10 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
         Iterable<ListenerConnector> connectors;
         synchronized (myLock) {
           connectors = ImmutableList.copyOf(myDeviceToListenerMultimap.get(device));
-          LogcatBuffer buffer = myLogBuffers.get(device);
+          LogcatRingBuffer buffer = myLogBuffers.get(device);
 
           if (buffer != null) {
-            buffer.addMessage(line);
+            buffer.add(line);
           }
         }
 
@@ -239,7 +239,12 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
 
   private static void executeLogcat(@NotNull IShellEnabledDevice device, @NotNull AndroidLogcatReceiver receiver) {
     try {
-      execute(device, supportsEpochFormatModifier(device) ? "logcat -v long -v epoch" : "logcat -v long", receiver, Duration.ZERO);
+      if (supportsBinaryFormat(device)) {
+        executeBinaryLogcat((IDevice)device, receiver);
+      }
+      else {
+        execute(device, supportsEpochFormatModifier(device) ? "logcat -v long -v epoch" : "logcat -v long", receiver, Duration.ZERO);
+      }
     }
     catch (Throwable throwable) {
       getLog().warn(throwable);
@@ -249,6 +254,26 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     }
   }
 
+  /**
+   * Before Android N, the output of shell commands goes through a pseudo-terminal which rewrites line feeds, so binary output is only
+   * reliable from API 24.
+   */
+  private static boolean supportsBinaryFormat(@NotNull IShellEnabledDevice device) {
+    if (!(device instanceof IDevice)) {
+      return false;
+    }
+    AndroidVersion version = ((IDevice)device).getVersion();
+    return version != null && version.isGreaterOrEqualThan(AndroidVersion.VersionCodes.N);
+  }
+
+  /**
+   * Receives logcat in binary format, which {@link LogcatBinaryReceiver} decodes without parsing text headers.
+   */
+  private static void executeBinaryLogcat(@NotNull IDevice device, @NotNull AndroidLogcatReceiver receiver)
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
+    device.executeShellCommand("logcat -B", new LogcatBinaryReceiver(device, receiver), 0, TimeUnit.MILLISECONDS);
+  }
+
   private static boolean supportsEpochFormatModifier(@NotNull IShellEnabledDevice device)
       throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
     LogcatHelpReceiver receiver = new LogcatHelpReceiver();
@@ -364,9 +389,62 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
    * to a UI thread. For example, don't directly invoke a runnable on the UI thread per line, but consider batching many log lines first.
    */
   public void addListener(@NotNull IDevice device, @NotNull LogcatListener listener, boolean addOldLogs) {
+    addListener(device, listener, addOldLogs ? LogcatRingBuffer::getMessages : buffer -> ImmutableList.of());
+  }
+
+  /**
+   * Same as {@link #addListener(IDevice, LogcatListener, boolean)} with {@code addOldLogs} set to true, except that only the old log
+   * messages of the process with the given pid are sent to the listener, along with the line that interrupted each run of them. They are
+   * looked up in the pid index of the buffer rather than by replaying every buffered message. New messages are still sent unfiltered.
+   */
+  public void addListenerForProcess(@NotNull IDevice device, @NotNull LogcatListener listener, int pid) {
+    addListener(device, listener, buffer -> buffer.getMessagesOfProcess(pid));
+  }
+
+  /**
+   * Replays the old log messages of the device to a listener, which is added if it isn't already. Only the messages with at least the
+   * given level, whose tag is accepted by {@code tagFilter} and, if {@code pid} is not null, of the process with that pid are replayed.
+   * They are looked up in the level, tag and pid indexes of the buffer rather than by testing every buffered message.
+   * <p>
+   * No message is sent to the listener between {@link LogcatListener#onReplayStarted()} and the replayed messages, and new messages are
+   * still sent unfiltered. Logcat keeps running while the listener is replaced.
+   */
+  public void replayMessages(@NotNull IDevice device,
+                             @NotNull LogcatListener listener,
+                             @NotNull LogLevel minLevel,
+                             @NotNull Predicate<String> tagFilter,
+                             @Nullable Integer pid) {
+    synchronized (myLock) {
+      for (Iterator<ListenerConnector> iter = myDeviceToListenerMultimap.get(device).iterator(); iter.hasNext(); ) {
+        ListenerConnector connector = iter.next();
+        if (connector.isConnectedTo(listener)) {
+          // Waits for the message being sent to the listener, if any.
+          connector.disconnectListener();
+          iter.remove();
+        }
+      }
+      listener.onReplayStarted();
+      addListener(device, listener, buffer -> buffer.getMessages(minLevel, tagFilter, pid));
+    }
+  }
+
+  /**
+   * Returns the process ids of the log messages buffered for the device, in no particular order.
+   */
+  @NotNull
+  public int[] getBufferedProcessIds(@NotNull IDevice device) {
+    synchronized (myLock) {
+      LogcatRingBuffer buffer = myLogBuffers.get(device);
+      return buffer != null ? buffer.getProcessIds() : new int[0];
+    }
+  }
+
+  private void addListener(@NotNull IDevice device,
+                           @NotNull LogcatListener listener,
+                           @NotNull Function<LogcatRingBuffer, List<LogCatMessage>> getOldMessages) {
     synchronized (myLock) {
-      List<LogCatMessage> oldMessages =
-          addOldLogs && myLogBuffers.containsKey(device) ? myLogBuffers.get(device).getMessages() : ImmutableList.of();
+      LogcatRingBuffer buffer = myLogBuffers.get(device);
+      List<LogCatMessage> oldMessages = buffer != null ? getOldMessages.apply(buffer) : ImmutableList.of();
 
       ListenerConnector listenerConnector = new ListenerConnector(listener, oldMessages);
       myDeviceToListenerMultimap.put(device, listenerConnector);
@@ -290,6 +290,30 @@ public class AndroidLogcatView {
     }
   }
 
+  /**
+   * Clears the console and replays the buffered messages of the device that can pass the current filters. The messages that can't pass
+   * the selected log level or the level, tag and pid of the configured filter are skipped by looking them up in the indexes of the
+   * logcat buffer. The filter model tests the others as usual.
+   */
+  void replayLogcat() {
+    UIUtil.invokeLaterIfNeeded(() -> {
+      if (myProject.isDisposed()) {
+        return;
+      }
+      IDevice device = myDevice;
+      if (device == null) {
+        myLogcatReceiver.onReplayStarted();
+        return;
+      }
+      AndroidLogcatFilter filter = myLogFilterModel.getConfiguredFilter();
+      AndroidLogcatService.getInstance().replayMessages(device,
+                                                        myLogcatReceiver,
+                                                        myLogFilterModel.getMinimumLogLevel(),
+                                                        filter != null ? filter::isTagAccepted : tag -> true,
+                                                        filter != null ? filter.getProcessId() : null);
+    });
+  }
+
   @Nullable
   IDevice getSelectedDevice() {
     if (myDeviceContext != null) {
@@ -16,6 +16,7 @@
 package com.android.tools.idea.logcat;
 
 import com.android.ddmlib.Log;
+import com.google.common.primitives.Ints;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -123,6 +124,23 @@ public final class DefaultAndroidLogcatFilter implements AndroidLogcatFilter {
     return true;
   }
 
+  @Override
+  @NotNull
+  public Log.LogLevel getMinimumLogLevel() {
+    return myLogLevel != null ? myLogLevel : Log.LogLevel.VERBOSE;
+  }
+
+  @Override
+  public boolean isTagAccepted(@NotNull String tag) {
+    return myTagPattern == null || myTagPattern.matcher(tag).find();
+  }
+
+  @Override
+  @Nullable
+  public Integer getProcessId() {
+    return myPid != null && !myPid.isEmpty() ? Ints.tryParse(myPid) : null;
+  }
+
   @Override
   @NotNull
   public String getName() {
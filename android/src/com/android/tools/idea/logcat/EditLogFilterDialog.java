@@ -1,6 +1,7 @@
 // Copyright 2000-2019 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package com.android.tools.idea.logcat;
 
+import com.android.ddmlib.IDevice;
 import com.android.ddmlib.Log.LogLevel;
 import com.android.tools.idea.logcat.PersistentAndroidLogFilters.FilterData;
 import com.google.common.collect.Lists;
@@ -32,7 +33,6 @@ import com.intellij.util.IconUtil;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.time.ZoneId;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -60,7 +60,6 @@ final class EditLogFilterDialog extends DialogWrapper {
   private final Project myProject;
   private final List<FilterData> myFilters;
   private final AndroidLogcatView myView;
-  private final AndroidLogcatFormatter myFormatter;
   private final Splitter mySplitter;
 
   private JPanel myContentPanel;
@@ -94,7 +93,6 @@ final class EditLogFilterDialog extends DialogWrapper {
     myProject = view.getProject();
     myFilters = PersistentAndroidLogFilters.getInstance(myProject).getFilters();
     myView = view;
-    myFormatter = new AndroidLogcatFormatter(ZoneId.systemDefault(), AndroidLogcatPreferences.getInstance(myProject));
 
     mySplitter = new Splitter(false, 0.25f);
     mySplitter.setFirstComponent(myLeftPanel);
@@ -272,19 +270,16 @@ final class EditLogFilterDialog extends DialogWrapper {
     }
     myExistingMessagesParsed = true;
 
-    final StringBuffer document = myView.getLogConsole().getOriginalDocument();
-    if (document == null) {
+    // The console only shows the lines that pass the current filter, so the pids are taken from the logcat buffer instead.
+    final IDevice device = myView.getSelectedDevice();
+    if (device == null) {
       return;
     }
 
-    final Set<String> pidSet = new HashSet<>();
-
-    final String[] lines = StringUtil.splitByLines(document.toString());
-    for (String line : lines) {
-      pidSet.add(Integer.toString(myFormatter.parseMessage(line).getPid()));
+    myUsedPids = Lists.newArrayList();
+    for (int pid : AndroidLogcatService.getInstance().getBufferedProcessIds(device)) {
+      myUsedPids.add(Integer.toString(pid));
     }
-
-    myUsedPids = Lists.newArrayList(pidSet);
   }
 
   private void resetFieldEditors() {
@@ -43,5 +43,11 @@ abstract class FormattedLogcatReceiver implements AndroidLogcatService.LogcatLis
     }
   }
 
+  @Override
+  public void onReplayStarted() {
+    // The first replayed line starts a message, even if it has the header of the last line received.
+    myActiveHeader = null;
+  }
+
   abstract void receiveFormattedLogLine(@NotNull String line);
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.IDevice;
+import com.android.ddmlib.IShellOutputReceiver;
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.google.common.annotations.VisibleForTesting;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An {@link IShellOutputReceiver} which decodes the output of 'logcat -B', a stream of binary {@code logger_entry} records, and hands
+ * each message to an {@link AndroidLogcatReceiver}. Unlike the textual formats, there is no header line to match against regular
+ * expressions, so decoding a message costs little more than copying its bytes.
+ * <p>
+ * Each record is a little-endian header followed by the payload:
+ * <pre>
+ *   uint16_t len;       // length of the payload
+ *   uint16_t hdr_size;  // size of the header, or 0 for the 20 byte version 1 header
+ *   int32_t  pid;
+ *   uint32_t tid;
+ *   uint32_t sec;
+ *   uint32_t nsec;
+ *   ...                 // lid, uid, etc. depending on the version
+ *   uint8_t  priority;  // payload: priority, then NUL terminated tag and message
+ *   char     tag[];
+ *   char     msg[];
+ * </pre>
+ */
+final class LogcatBinaryReceiver implements IShellOutputReceiver {
+  private static final int V1_HEADER_SIZE = 20;
+
+  /**
+   * Log levels indexed by Android log priority.
+   */
+  private static final LogLevel[] LOG_LEVELS = new LogLevel[8];
+
+  static {
+    for (LogLevel level : LogLevel.values()) {
+      if (level.getPriority() < LOG_LEVELS.length) {
+        LOG_LEVELS[level.getPriority()] = level;
+      }
+    }
+  }
+
+  @NotNull private final IDevice myDevice;
+  @NotNull private final AndroidLogcatReceiver myReceiver;
+
+  /**
+   * Bytes received but not decoded yet, because they don't form a complete record.
+   */
+  private byte[] myPending = new byte[64 * 1024];
+  private int myPendingLength;
+
+  LogcatBinaryReceiver(@NotNull IDevice device, @NotNull AndroidLogcatReceiver receiver) {
+    myDevice = device;
+    myReceiver = receiver;
+  }
+
+  @Override
+  public void addOutput(byte[] data, int offset, int length) {
+    if (isCancelled()) {
+      return;
+    }
+    if (myPendingLength + length > myPending.length) {
+      myPending = Arrays.copyOf(myPending, Math.max(myPending.length * 2, myPendingLength + length));
+    }
+    System.arraycopy(data, offset, myPending, myPendingLength, length);
+    myPendingLength += length;
+
+    int position = 0;
+    while (myPendingLength - position >= V1_HEADER_SIZE) {
+      int payloadLength = readUnsignedShort(myPending, position);
+      int headerSize = readUnsignedShort(myPending, position + 2);
+      if (headerSize < V1_HEADER_SIZE) {
+        // Version 1 records have no header size, the field is padding.
+        headerSize = V1_HEADER_SIZE;
+      }
+      int recordLength = headerSize + payloadLength;
+      if (myPendingLength - position < recordLength) {
+        break;
+      }
+      decodeRecord(position, headerSize, payloadLength);
+      position += recordLength;
+    }
+    System.arraycopy(myPending, position, myPending, 0, myPendingLength - position);
+    myPendingLength -= position;
+  }
+
+  private void decodeRecord(int position, int headerSize, int payloadLength) {
+    byte[] bytes = myPending;
+    int payload = position + headerSize;
+    int payloadEnd = payload + payloadLength;
+    if (payloadLength < 2) {
+      return;
+    }
+    int priority = bytes[payload];
+    LogLevel level = priority >= 0 && priority < LOG_LEVELS.length ? LOG_LEVELS[priority] : null;
+    if (level == null) {
+      // Not a text log, e.g. a record of the events buffer.
+      return;
+    }
+
+    int tagStart = payload + 1;
+    int tagEnd = indexOfNul(bytes, tagStart, payloadEnd);
+    int messageStart = Math.min(tagEnd + 1, payloadEnd);
+    int messageEnd = indexOfNul(bytes, messageStart, payloadEnd);
+
+    int pid = readInt(bytes, position + 4);
+    int tid = readInt(bytes, position + 8);
+    long seconds = readInt(bytes, position + 12) & 0xFFFFFFFFL;
+    long nanos = readInt(bytes, position + 16) & 0xFFFFFFFFL;
+
+    String tag = new String(bytes, tagStart, tagEnd - tagStart, StandardCharsets.UTF_8);
+    String message = new String(bytes, messageStart, messageEnd - messageStart, StandardCharsets.UTF_8);
+    LogCatHeader header = new LogCatHeader(level, pid, tid, getAppName(pid), tag, Instant.ofEpochSecond(seconds, nanos));
+    myReceiver.processMessage(header, message);
+  }
+
+  @NotNull
+  private String getAppName(int pid) {
+    String name = myDevice.getClientName(pid);
+    return name == null || name.isEmpty() ? "?" : name;
+  }
+
+  private static int indexOfNul(byte @NotNull [] bytes, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (bytes[i] == 0) {
+        return i;
+      }
+    }
+    return to;
+  }
+
+  private static int readUnsignedShort(byte @NotNull [] bytes, int offset) {
+    return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+  }
+
+  private static int readInt(byte @NotNull [] bytes, int offset) {
+    return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+  }
+
+  @Override
+  public void flush() {
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return myReceiver.isCancelled();
+  }
+
+  /**
+   * @return the number of bytes received that don't form a complete record yet
+   */
+  @VisibleForTesting
+  int getPendingByteCount() {
+    return myPendingLength;
+  }
+}
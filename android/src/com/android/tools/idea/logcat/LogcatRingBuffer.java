@@ -0,0 +1,384 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.google.common.annotations.VisibleForTesting;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TIntObjectHashMap;
+import gnu.trove.TObjectIntHashMap;
+import java.lang.reflect.Array;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Predicate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A bounded store of logcat lines, kept in a ring of primitive arrays rather than as a list of {@link LogCatMessage} objects.
+ * <p>
+ * Tags and application names are interned for as long as a stored line uses them, and every slot of the ring is indexed by log level, tag
+ * and pid, so the lines of a given process, tag or minimum level are found by combining bit sets instead of testing every stored line.
+ * <p>
+ * Once the ring holds {@code capacity} lines, or more than {@code maxCharacters} characters of messages, the oldest lines are dropped.
+ * This class is not thread safe.
+ */
+final class LogcatRingBuffer {
+  private static final int INITIAL_SIZE = 1024;
+  private static final LogLevel[] LOG_LEVELS = LogLevel.values();
+
+  private final int myCapacity;
+  private final int myMaxCharacters;
+
+  // Columns of the ring, indexed by slot. The oldest line is at myHead.
+  private byte[] myLevels = new byte[0];
+  private int[] myPids = new int[0];
+  private int[] myTids = new int[0];
+  private int[] myAppNames = new int[0];
+  private int[] myTags = new int[0];
+  private long[] myEpochSeconds = new long[0];
+  private int[] myNanos = new int[0];
+  /**
+   * Whether the line is a continuation of the previous one, i.e. whether it was received with the same header instance.
+   */
+  private BitSet myContinuations = new BitSet();
+  private String[] myMessages = new String[0];
+
+  private int myHead;
+  private int mySize;
+  private long myCharacterCount;
+  @Nullable private LogCatHeader myLastHeader;
+
+  // Interned strings, indexed by id. The id of a string is reused once no stored line refers to it anymore.
+  private final List<String> myStrings = new ArrayList<>();
+  private final TIntArrayList myStringReferenceCounts = new TIntArrayList();
+  private final TIntArrayList myFreeStringIds = new TIntArrayList();
+  private final TObjectIntHashMap<String> myStringIds = new TObjectIntHashMap<>();
+
+  private final BitSet[] myLevelIndex = new BitSet[LOG_LEVELS.length];
+  private final TIntObjectHashMap<BitSet> myTagIndex = new TIntObjectHashMap<>();
+  private final TIntObjectHashMap<BitSet> myPidIndex = new TIntObjectHashMap<>();
+
+  /**
+   * @param capacity      the maximum number of lines kept
+   * @param maxCharacters the maximum number of characters of messages kept, or a negative value for no limit
+   */
+  LogcatRingBuffer(int capacity, int maxCharacters) {
+    myCapacity = capacity;
+    myMaxCharacters = maxCharacters;
+    for (int i = 0; i < myLevelIndex.length; i++) {
+      myLevelIndex[i] = new BitSet();
+    }
+  }
+
+  void add(@NotNull LogCatMessage message) {
+    if (mySize == myMessages.length) {
+      if (myMessages.length < myCapacity) {
+        grow();
+      }
+      else {
+        removeFirst();
+      }
+    }
+
+    LogCatHeader header = message.getHeader();
+    int slot = toSlot(mySize);
+    int level = header.getLogLevel().ordinal();
+    int tag = intern(header.getTag());
+    myLevels[slot] = (byte)level;
+    myPids[slot] = header.getPid();
+    myTids[slot] = header.getTid();
+    myAppNames[slot] = intern(header.getAppName());
+    myTags[slot] = tag;
+    myEpochSeconds[slot] = header.getTimestamp().getEpochSecond();
+    myNanos[slot] = header.getTimestamp().getNano();
+    myContinuations.set(slot, header == myLastHeader);
+    myMessages[slot] = message.getMessage();
+    index(slot, level, tag, header.getPid());
+
+    myLastHeader = header;
+    myCharacterCount += message.getMessage().length();
+    mySize++;
+
+    if (myMaxCharacters >= 0) {
+      while (myCharacterCount > myMaxCharacters) {
+        removeFirst();
+      }
+    }
+  }
+
+  int size() {
+    return mySize;
+  }
+
+  /**
+   * @return the process ids of the stored lines, in no particular order
+   */
+  @NotNull
+  int[] getProcessIds() {
+    return myPidIndex.keys();
+  }
+
+  @VisibleForTesting
+  int getInternedStringCount() {
+    return myStringIds.size();
+  }
+
+  /**
+   * @return all the lines of the buffer, oldest first
+   */
+  @NotNull
+  List<LogCatMessage> getMessages() {
+    List<LogCatMessage> messages = new ArrayList<>(mySize);
+    LogCatHeader header = null;
+    for (int i = 0; i < mySize; i++) {
+      header = addMessage(messages, toSlot(i), header);
+    }
+    return messages;
+  }
+
+  /**
+   * Returns the lines with at least the given log level whose tag is accepted by {@code tagFilter}, oldest first, looked up in the level,
+   * tag and pid indexes. The filter is tested once per distinct tag rather than once per line.
+   *
+   * @param pid the process id of the lines to return, or null for lines of any process
+   */
+  @NotNull
+  List<LogCatMessage> getMessages(@NotNull LogLevel minLevel, @NotNull Predicate<String> tagFilter, @Nullable Integer pid) {
+    BitSet slots = new BitSet();
+    for (int level = minLevel.ordinal(); level < myLevelIndex.length; level++) {
+      slots.or(myLevelIndex[level]);
+    }
+    if (pid != null) {
+      BitSet pidSlots = myPidIndex.get(pid);
+      if (pidSlots == null) {
+        return new ArrayList<>();
+      }
+      slots.and(pidSlots);
+    }
+    BitSet tagSlots = new BitSet();
+    myTagIndex.forEachEntry((tag, slotsOfTag) -> {
+      if (tagFilter.test(myStrings.get(tag))) {
+        tagSlots.or(slotsOfTag);
+      }
+      return true;
+    });
+    slots.and(tagSlots);
+
+    List<LogCatMessage> messages = new ArrayList<>(slots.cardinality());
+    LogCatHeader header = null;
+    int previousPosition = -1;
+    for (int position = nextPosition(slots, 0); position >= 0; position = nextPosition(slots, position + 1)) {
+      // A line only continues the previous message if the line before it was returned as well.
+      header = addMessage(messages, toSlot(position), position == previousPosition + 1 ? header : null);
+      previousPosition = position;
+    }
+    return messages;
+  }
+
+  /**
+   * Returns the lines of the process with the given pid, oldest first, looked up in the pid index.
+   * <p>
+   * Each run of lines of the process is followed by the next line of another process, if there is one. Listeners such as
+   * {@link com.android.tools.idea.run.ApplicationLogListener} rely on it to tell that the next line of the process starts a new message,
+   * as they would if every line was replayed.
+   */
+  @NotNull
+  List<LogCatMessage> getMessagesOfProcess(int pid) {
+    List<LogCatMessage> messages = new ArrayList<>();
+    BitSet slots = myPidIndex.get(pid);
+    if (slots == null) {
+      return messages;
+    }
+    for (int position = nextPosition(slots, 0); position >= 0; position = nextPosition(slots, position + 1)) {
+      LogCatHeader header = null;
+      for (; position < mySize && slots.get(toSlot(position)); position++) {
+        header = addMessage(messages, toSlot(position), header);
+      }
+      if (position == mySize) {
+        break;
+      }
+      addMessage(messages, toSlot(position), null);
+    }
+    return messages;
+  }
+
+  /**
+   * @return the first position from {@code fromPosition} on whose slot is in {@code slots}, or -1 if there is none
+   */
+  private int nextPosition(@NotNull BitSet slots, int fromPosition) {
+    if (fromPosition >= mySize) {
+      return -1;
+    }
+    int fromSlot = toSlot(fromPosition);
+    if (fromSlot >= myHead) {
+      int slot = slots.nextSetBit(fromSlot);
+      if (slot >= 0) {
+        return slot - myHead;
+      }
+      fromSlot = 0;
+    }
+    // The ring wraps around, so the slots before the head come last.
+    int slot = slots.nextSetBit(fromSlot);
+    return slot >= 0 && slot < myHead ? slot + myMessages.length - myHead : -1;
+  }
+
+  /**
+   * Adds the line at the given slot to {@code messages}, reusing the header of the previous line if the line is its continuation, and
+   * returns the header of the line.
+   *
+   * @param previousHeader the header of the line of the previous slot, or null if it wasn't added
+   */
+  @NotNull
+  private LogCatHeader addMessage(@NotNull List<LogCatMessage> messages, int slot, @Nullable LogCatHeader previousHeader) {
+    LogCatHeader header = previousHeader;
+    if (header == null || !myContinuations.get(slot)) {
+      header = new LogCatHeader(LOG_LEVELS[myLevels[slot]],
+                                myPids[slot],
+                                myTids[slot],
+                                myStrings.get(myAppNames[slot]),
+                                myStrings.get(myTags[slot]),
+                                Instant.ofEpochSecond(myEpochSeconds[slot], myNanos[slot]));
+    }
+    messages.add(new LogCatMessage(header, myMessages[slot]));
+    return header;
+  }
+
+  private int toSlot(int position) {
+    int slot = myHead + position;
+    return slot < myMessages.length ? slot : slot - myMessages.length;
+  }
+
+  private int intern(@NotNull String string) {
+    if (myStringIds.containsKey(string)) {
+      int id = myStringIds.get(string);
+      myStringReferenceCounts.set(id, myStringReferenceCounts.get(id) + 1);
+      return id;
+    }
+    int id;
+    if (myFreeStringIds.isEmpty()) {
+      id = myStrings.size();
+      myStrings.add(string);
+      myStringReferenceCounts.add(1);
+    }
+    else {
+      id = myFreeStringIds.remove(myFreeStringIds.size() - 1);
+      myStrings.set(id, string);
+      myStringReferenceCounts.set(id, 1);
+    }
+    myStringIds.put(string, id);
+    return id;
+  }
+
+  private void release(int id) {
+    int referenceCount = myStringReferenceCounts.get(id) - 1;
+    myStringReferenceCounts.set(id, referenceCount);
+    if (referenceCount == 0) {
+      myStringIds.remove(myStrings.get(id));
+      myStrings.set(id, null);
+      myFreeStringIds.add(id);
+    }
+  }
+
+  private void index(int slot, int level, int tag, int pid) {
+    myLevelIndex[level].set(slot);
+    getOrCreate(myTagIndex, tag).set(slot);
+    getOrCreate(myPidIndex, pid).set(slot);
+  }
+
+  @NotNull
+  private static BitSet getOrCreate(@NotNull TIntObjectHashMap<BitSet> index, int key) {
+    BitSet slots = index.get(key);
+    if (slots == null) {
+      slots = new BitSet();
+      index.put(key, slots);
+    }
+    return slots;
+  }
+
+  private void removeFirst() {
+    int slot = myHead;
+    myLevelIndex[myLevels[slot]].clear(slot);
+    removeFromIndex(myTagIndex, myTags[slot], slot);
+    removeFromIndex(myPidIndex, myPids[slot], slot);
+    release(myAppNames[slot]);
+    release(myTags[slot]);
+    myCharacterCount -= myMessages[slot].length();
+    myMessages[slot] = null;
+
+    myHead = toSlot(1);
+    mySize--;
+    if (mySize == 0) {
+      myHead = 0;
+      myLastHeader = null;
+    }
+  }
+
+  private static void removeFromIndex(@NotNull TIntObjectHashMap<BitSet> index, int key, int slot) {
+    BitSet slots = index.get(key);
+    slots.clear(slot);
+    if (slots.isEmpty()) {
+      index.remove(key);
+    }
+  }
+
+  /**
+   * Grows the columns of the ring, moving the lines so that the oldest one is in the first slot, and rebuilds the indexes.
+   */
+  private void grow() {
+    int length = (int)Math.min(myCapacity, Math.max(INITIAL_SIZE, 2L * myMessages.length));
+    myLevels = unwrap(myLevels, new byte[length]);
+    myPids = unwrap(myPids, new int[length]);
+    myTids = unwrap(myTids, new int[length]);
+    myAppNames = unwrap(myAppNames, new int[length]);
+    myTags = unwrap(myTags, new int[length]);
+    myEpochSeconds = unwrap(myEpochSeconds, new long[length]);
+    myNanos = unwrap(myNanos, new int[length]);
+    myMessages = unwrap(myMessages, new String[length]);
+
+    BitSet continuations = new BitSet();
+    for (int i = 0; i < mySize; i++) {
+      continuations.set(i, myContinuations.get(toSlot(i)));
+    }
+    myContinuations = continuations;
+    myHead = 0;
+
+    for (BitSet slots : myLevelIndex) {
+      slots.clear();
+    }
+    myTagIndex.clear();
+    myPidIndex.clear();
+    for (int slot = 0; slot < mySize; slot++) {
+      index(slot, myLevels[slot], myTags[slot], myPids[slot]);
+    }
+  }
+
+  /**
+   * Copies the lines of {@code column} to the start of {@code newColumn}, oldest first.
+   */
+  @NotNull
+  private <T> T unwrap(@NotNull T column, @NotNull T newColumn) {
+    int length = Array.getLength(column);
+    int firstPart = Math.min(mySize, length - myHead);
+    System.arraycopy(column, myHead, newColumn, 0, firstPart);
+    System.arraycopy(column, 0, newColumn, firstPart, mySize - firstPart);
+    return newColumn;
+  }
+}
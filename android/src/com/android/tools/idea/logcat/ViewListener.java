@@ -70,6 +70,19 @@ final class ViewListener extends FormattedLogcatReceiver {
     console.clear();
   }
 
+  @Override
+  public void onReplayStarted() {
+    super.onReplayStarted();
+    myView.getLogFilterModel().replayStarted();
+    LogConsoleBase console = myView.getLogConsole();
+
+    if (console.getConsole() == null) {
+      return;
+    }
+
+    console.clear();
+  }
+
   /**
    * Delegates to an Alarm but synchronizes on disposal so we don't try to execute a request after it's disposed.
    */
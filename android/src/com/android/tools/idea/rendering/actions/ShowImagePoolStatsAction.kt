@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.actions
+
+import com.android.tools.idea.rendering.RenderService
+import com.intellij.ide.scratch.ScratchFileService
+import com.intellij.ide.scratch.ScratchRootType
+import com.intellij.openapi.actionSystem.AnAction
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.fileEditor.FileEditorManager
+import com.intellij.openapi.fileTypes.PlainTextLanguage
+import com.intellij.openapi.util.text.StringUtil
+
+/**
+ * Internal action that dumps the statistics of the image pool shared by the renders of the current project.
+ */
+class ShowImagePoolStatsAction : AnAction("Show Render Image Pool Stats") {
+  override fun update(e: AnActionEvent) {
+    e.presentation.isEnabled = e.project != null
+  }
+
+  override fun actionPerformed(e: AnActionEvent) {
+    val project = e.project ?: return
+    val stats = RenderService.getInstance(project).sharedImagePool.stats ?: return
+    val buckets = stats.bucketStats.sortedWith(compareBy({ it.minWidth }, { it.minHeight }))
+    val textOutput = buildString {
+      appendLine("Allocated: ${StringUtil.formatFileSize(stats.totalBytesAllocated())}")
+      appendLine("In use: ${StringUtil.formatFileSize(stats.totalBytesInUse())}")
+      appendLine("Pooled: ${StringUtil.formatFileSize(stats.totalBytesPooled())} of ${StringUtil.formatFileSize(stats.maxBytesPooled())}")
+      appendLine()
+      appendLine("Bucket\tMax size\tHits\tMisses\tHit rate\tReturned\tRejected\tEvicted\tLast access")
+      for (bucket in buckets) {
+        val requests = bucket.bucketHits() + bucket.bucketMisses()
+        val hitRate = if (requests == 0L) 0L else bucket.bucketHits() * 100 / requests
+        appendLine("${bucket.minWidth}x${bucket.minHeight}\t${bucket.maxSize()}\t${bucket.bucketHits()}\t${bucket.bucketMisses()}\t" +
+                   "$hitRate%\t${bucket.imageWasReturned()}\t${bucket.bucketWasFull()}\t${bucket.imageWasEvicted()}\t" +
+                   "${StringUtil.formatDuration(System.currentTimeMillis() - bucket.lastAccessTimeMs)} ago")
+      }
+    }
+
+    val scratchFile = ScratchRootType.getInstance().createScratchFile(
+      project,
+      "image_pool_stats.txt",
+      PlainTextLanguage.INSTANCE,
+      textOutput,
+      ScratchFileService.Option.create_new_always
+    ) ?: return
+    FileEditorManager.getInstance(project).openFile(scratchFile, true)
+  }
+}
@@ -116,6 +116,11 @@ public interface ImagePool {
      * Returns the number of times we had an image that was returned to this bucket.
      */
     long imageWasReturned();
+
+    /**
+     * Returns the number of times an idle image was dropped from this bucket to keep the pool within its memory limit.
+     */
+    long imageWasEvicted();
   }
 
   interface Stats {
@@ -123,6 +128,16 @@ public interface ImagePool {
 
     long totalBytesInUse();
 
+    /**
+     * Returns the number of bytes held by idle images waiting in the pool to be reused.
+     */
+    long totalBytesPooled();
+
+    /**
+     * Returns the limit for {@link #totalBytesPooled()}.
+     */
+    long maxBytesPooled();
+
     BucketStats[] getBucketStats();
   }
 
@@ -19,10 +19,9 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.FinalizablePhantomReference;
 import com.google.common.base.FinalizableReferenceQueue;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.EvictingQueue;
-import com.google.common.collect.ForwardingQueue;
 import com.google.common.collect.Sets;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.LowMemoryWatcher;
 import java.awt.AlphaComposite;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
@@ -31,14 +30,14 @@ import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
 import java.awt.image.WritableRaster;
 import java.lang.ref.Reference;
-import java.lang.ref.SoftReference;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
-import java.util.NoSuchElementException;
-import java.util.Queue;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -53,11 +52,18 @@ import org.jetbrains.annotations.Nullable;
  * Class that offers a pool of {@link BufferedImage}s. The returned {@link Image} do not offer a direct access
  * to the underlying {@link BufferedImage} to avoid clients holding references to it.
  * Once the {@link Image} is not being referenced anymore, it will be automatically returned to the pool.
+ * <p>
+ * Idle images are held strongly, up to a total size of {@code maxPooledBytes}. When the limit is exceeded, the least
+ * recently returned images are evicted regardless of the bucket they belong to. All idle images are dropped when
+ * the IDE is low on memory.
  */
 @SuppressWarnings("ALL")
 class ImagePoolImpl implements ImagePool {
   private static final Logger LOG = Logger.getInstance(ImagePoolImpl.class);
 
+  /** Default limit of the memory held by idle images in the pool. */
+  static final long DEFAULT_MAX_POOLED_BYTES = Runtime.getRuntime().maxMemory() / 10;
+
   private static final Bucket NULL_BUCKET = new Bucket();
   private final int[] myBucketSizes;
   private final HashMap<String, Bucket> myPool = new HashMap<>();
@@ -70,6 +76,14 @@ class ImagePoolImpl implements ImagePool {
   private final LongAdder myTotalAllocatedBytes = new LongAdder();
   private final LongAdder myTotalInUseBytes = new LongAdder();
 
+  private final long myMaxPooledBytes;
+  /** Guards the contents of the buckets, {@link #myPooledImages} and {@link #myPooledBytes}. */
+  private final Object myPoolLock = new Object();
+  /** Idle images of all buckets, from the least to the most recently returned one. */
+  private final LinkedHashMap<BufferedImage, Bucket> myPooledImages = new LinkedHashMap<>();
+  private long myPooledBytes;
+  private final LowMemoryWatcher myLowMemoryWatcher = LowMemoryWatcher.register(() -> evictPooledImages(0));
+
   private final Stats myStats = new Stats() {
     @Override
     public long totalBytesAllocated() {
@@ -81,6 +95,18 @@ class ImagePoolImpl implements ImagePool {
       return myTotalInUseBytes.sum();
     }
 
+    @Override
+    public long totalBytesPooled() {
+      synchronized (myPoolLock) {
+        return myPooledBytes;
+      }
+    }
+
+    @Override
+    public long maxBytesPooled() {
+      return myMaxPooledBytes;
+    }
+
     @Override
     public BucketStats[] getBucketStats() {
       return myBucketStats.values().stream()
@@ -91,28 +117,35 @@ class ImagePoolImpl implements ImagePool {
   /**
    * Constructs a new {@link ImagePoolImpl} with a custom queue sizing policy. The passed bucketSizingPolicy will be called
    * every time that a new cache is needed for a given (width, height) -> (imageType).
-   * The return value from calling that function will be the size of the EvictingQueue used for caching the pooled
-   * images.
+   * The return value from calling that function will be the maximum number of pooled images kept in the bucket.
    *
    * @param bucketSizes        Array containing a list of the allowed bucket sizes. The images will be allocated into a bucket that fits its two
    *                           dimensions. If an image contains one dimension bigger than the biggest given bucket size, the image won't be
    *                           allocated into the pool.
    * @param bucketSizingPolicy Function that returns the maximum size for a given bucket. The bucket is defined by width, height and image
    *                           type. If the returned size is 0, no pooling will be done for that bucket size.
+   * @param maxPooledBytes     Maximum number of bytes held by the idle images in all buckets.
    */
-  ImagePoolImpl(@NotNull int[] bucketSizes, @NotNull BiFunction<Integer, Integer, Function<Integer, Integer>> bucketSizingPolicy) {
+  ImagePoolImpl(@NotNull int[] bucketSizes,
+                @NotNull BiFunction<Integer, Integer, Function<Integer, Integer>> bucketSizingPolicy,
+                long maxPooledBytes) {
     if (LOG.isDebugEnabled()) {
-      LOG.debug("New ImagePool " + Arrays.toString(bucketSizes));
+      LOG.debug("New ImagePool " + Arrays.toString(bucketSizes) + " limited to " + maxPooledBytes + " bytes");
     }
     myBucketSizes = bucketSizes;
     Arrays.sort(myBucketSizes);
     myBucketSizingPolicy = bucketSizingPolicy;
+    myMaxPooledBytes = maxPooledBytes;
+  }
+
+  ImagePoolImpl(@NotNull int[] bucketSizes, @NotNull BiFunction<Integer, Integer, Function<Integer, Integer>> bucketSizingPolicy) {
+    this(bucketSizes, bucketSizingPolicy, DEFAULT_MAX_POOLED_BYTES);
   }
 
   private boolean isDisposed = false;
 
   /**
-   * Returns the key to be used for indexing the {@link EvictingQueue}.
+   * Returns the key to be used for indexing the {@link Bucket}.
    */
   @NotNull
   private static String getPoolKey(int w, int h, int type) {
@@ -170,7 +203,7 @@ class ImagePoolImpl implements ImagePool {
       int size = myBucketSizingPolicy.apply(finalWidthBucket, finalHeightBucket).apply(type);
 
       if (size == 0) {
-        // For size 0, do not allocate extra memory for a new EvictingQueue.
+        // For size 0, do not allocate extra memory for a new Bucket.
         return NULL_BUCKET;
       }
 
@@ -186,7 +219,7 @@ class ImagePoolImpl implements ImagePool {
   ImageImpl create(final int w, final int h, final int type, @Nullable Consumer<BufferedImage> freedCallback) {
     assert !isDisposed : "ImagePool already disposed";
 
-    // To avoid creating a large number of EvictingQueues, we distribute the images in buckets and use that
+    // To avoid creating a large number of queues, we distribute the images in buckets and use that
     Bucket bucket = getTypeBucket(w, h, type);
     BucketStatsImpl bucketStats = myBucketStats.get(bucket);
     if (LOG.isDebugEnabled()) {
@@ -194,15 +227,9 @@ class ImagePoolImpl implements ImagePool {
                               bucketStats != null));
     }
 
-    BufferedImage image;
-    SoftReference<BufferedImage> imageRef;
-    try {
-      imageRef = bucket.remove();
-      while ((image = imageRef.get()) == null) {
-        imageRef = bucket.remove();
-      }
-
-      long totalSize = image.getWidth() * image.getHeight();
+    BufferedImage image = takePooledImage(bucket);
+    if (image != null) {
+      long totalSize = (long)image.getWidth() * image.getHeight();
       if (bucketStats != null) {
         bucketStats.bucketHit();
       }
@@ -225,7 +252,7 @@ class ImagePoolImpl implements ImagePool {
         g.dispose();
       }
     }
-    catch (NoSuchElementException e) {
+    else {
       if (LOG.isDebugEnabled()) {
         LOG.debug(String.format("  New image %dx%d - %d\n", w, h, type));
       }
@@ -239,10 +266,9 @@ class ImagePoolImpl implements ImagePool {
       // Set acceleration priority to 0.9 out of 1.0. We reserve 1.0 for the shared buffers
       // that we paint to screen.
       image.setAccelerationPriority(0.9f);
-      long estimatedSize = newImageWidth * newImageHeight * 4;
+      long estimatedSize = getEstimatedSize(image);
       myTotalAllocatedBytes.add(estimatedSize);
       myTotalInUseBytes.add(estimatedSize);
-
     }
 
     ImageImpl pooledImage = new ImageImpl(w, h, image);
@@ -253,7 +279,9 @@ class ImagePoolImpl implements ImagePool {
       public void finalizeReferent() {
         // This method might be called twice if the user has manually called the free() method. The second call will have no effect.
         if (myReferences.remove(this)) {
-          boolean accepted = bucket.offer(new SoftReference<>(imagePointer));
+          long estimatedSize = getEstimatedSize(imagePointer);
+          myTotalInUseBytes.add(-estimatedSize);
+          boolean accepted = returnPooledImage(bucket, imagePointer);
           if (bucketStats != null) {
             if (accepted) {
               bucketStats.returnedImageAccepted();
@@ -268,13 +296,9 @@ class ImagePoolImpl implements ImagePool {
                                     w, h, type, bucket.myMinWidth, bucket.myMinHeight));
           }
 
-          long estimatedSize = imagePointer.getWidth() * imagePointer.getHeight() * 4;
           if (!accepted) {
             myTotalAllocatedBytes.add(-estimatedSize);
           }
-          else {
-            myTotalInUseBytes.add(-estimatedSize);
-          }
           if (freedCallback != null) {
             freedCallback.accept(imagePointer);
           }
@@ -287,6 +311,71 @@ class ImagePoolImpl implements ImagePool {
     return pooledImage;
   }
 
+  private static long getEstimatedSize(@NotNull BufferedImage image) {
+    return (long)image.getWidth() * image.getHeight() * 4;
+  }
+
+  /**
+   * Removes the most recently returned image from the given bucket, or returns null if the bucket is empty.
+   */
+  @Nullable
+  private BufferedImage takePooledImage(@NotNull Bucket bucket) {
+    synchronized (myPoolLock) {
+      BufferedImage image = bucket.poll();
+      if (image != null) {
+        myPooledImages.remove(image);
+        myPooledBytes -= getEstimatedSize(image);
+      }
+      return image;
+    }
+  }
+
+  /**
+   * Adds a freed image to the given bucket and evicts the least recently returned images if the pool goes over its memory limit.
+   *
+   * @return true if the image was added to the pool, false if it was rejected
+   */
+  private boolean returnPooledImage(@NotNull Bucket bucket, @NotNull BufferedImage image) {
+    long estimatedSize = getEstimatedSize(image);
+    synchronized (myPoolLock) {
+      if (isDisposed || estimatedSize > myMaxPooledBytes || !bucket.offer(image)) {
+        return false;
+      }
+      myPooledImages.put(image, bucket);
+      myPooledBytes += estimatedSize;
+      evictPooledImages(myMaxPooledBytes);
+      return true;
+    }
+  }
+
+  /**
+   * Drops the least recently returned idle images until the total size of the idle images does not exceed {@code maxPooledBytes}.
+   */
+  private void evictPooledImages(long maxPooledBytes) {
+    synchronized (myPoolLock) {
+      Iterator<Map.Entry<BufferedImage, Bucket>> iterator = myPooledImages.entrySet().iterator();
+      while (myPooledBytes > maxPooledBytes && iterator.hasNext()) {
+        Map.Entry<BufferedImage, Bucket> eldest = iterator.next();
+        iterator.remove();
+        BufferedImage image = eldest.getKey();
+        Bucket bucket = eldest.getValue();
+        bucket.remove(image);
+
+        long estimatedSize = getEstimatedSize(image);
+        myPooledBytes -= estimatedSize;
+        myTotalAllocatedBytes.add(-estimatedSize);
+        BucketStatsImpl bucketStats = myBucketStats.get(bucket);
+        if (bucketStats != null) {
+          bucketStats.imageEvicted();
+        }
+        if (LOG.isDebugEnabled()) {
+          LOG.debug(String.format("Evicted image (%dx%d) from bucket (%dx%d)\n",
+                                  image.getWidth(), image.getHeight(), bucket.myMinWidth, bucket.myMinHeight));
+        }
+      }
+    }
+  }
+
   private static final class BucketStatsImpl implements BucketStats {
     private final Bucket myBucket;
     private final AtomicLong myLastAccessMs = new AtomicLong(System.currentTimeMillis());
@@ -294,6 +383,7 @@ class ImagePoolImpl implements ImagePool {
     private final AtomicLong myBucketHit = new AtomicLong(0);
     private final AtomicLong myBucketFull = new AtomicLong(0);
     private final AtomicLong myBucketHadSpace = new AtomicLong(0);
+    private final AtomicLong myBucketEvicted = new AtomicLong(0);
 
     BucketStatsImpl(@NotNull Bucket bucket) {
       myBucket = bucket;
@@ -339,6 +429,11 @@ class ImagePoolImpl implements ImagePool {
       return myBucketHadSpace.get();
     }
 
+    @Override
+    public long imageWasEvicted() {
+      return myBucketEvicted.get();
+    }
+
     void bucketHit() {
       myLastAccessMs.set(System.currentTimeMillis());
       myBucketHit.incrementAndGet();
@@ -356,10 +451,17 @@ class ImagePoolImpl implements ImagePool {
     void returnedImageRejected() {
       myBucketFull.incrementAndGet();
     }
+
+    void imageEvicted() {
+      myBucketEvicted.incrementAndGet();
+    }
   }
 
-  private static class Bucket extends ForwardingQueue<SoftReference<BufferedImage>> {
-    private final Queue<SoftReference<BufferedImage>> myDelegate;
+  /**
+   * Idle images of similar dimensions. The contents of a bucket are guarded by {@link #myPoolLock}.
+   */
+  private static class Bucket {
+    private final ArrayDeque<BufferedImage> myImages;
     private final int myMinWidth;
     private final int myMinHeight;
     private final int myMaxSize;
@@ -369,19 +471,37 @@ class ImagePoolImpl implements ImagePool {
       myMinWidth = minWidth;
       myMinHeight = minHeight;
       myMaxSize = maxSize;
-      myDelegate = new ArrayBlockingQueue<>(maxSize);
+      myImages = new ArrayDeque<>();
     }
 
     Bucket() {
       myMinWidth = 0;
       myMinHeight = 0;
       myMaxSize = 0;
-      myDelegate = EvictingQueue.create(0);
+      myImages = new ArrayDeque<>(0);
     }
 
-    @Override
-    protected Queue<SoftReference<BufferedImage>> delegate() {
-      return myDelegate;
+    /**
+     * Adds the image to the bucket unless the bucket is full.
+     */
+    boolean offer(@NotNull BufferedImage image) {
+      if (myImages.size() >= myMaxSize) {
+        return false;
+      }
+      myImages.addLast(image);
+      return true;
+    }
+
+    /**
+     * Removes and returns the most recently added image, or returns null if the bucket is empty.
+     */
+    @Nullable
+    BufferedImage poll() {
+      return myImages.pollLast();
+    }
+
+    void remove(@NotNull BufferedImage image) {
+      myImages.removeFirstOccurrence(image);
     }
 
     int getMaxSize() {
@@ -426,7 +546,11 @@ class ImagePoolImpl implements ImagePool {
    * Disposes the image pool
    */
   public void dispose() {
-    isDisposed = true;
+    myLowMemoryWatcher.stop();
+    synchronized (myPoolLock) {
+      isDisposed = true;
+      evictPooledImages(0);
+    }
     myFinalizableReferenceQueue.close();
     myReferences.clear();
     myPool.clear();
@@ -56,6 +56,8 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Predicate;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -108,6 +110,12 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   private final Table<ResourceNamespace, ResourceType, Set<SingleNamespaceResourceRepository>> myUnreconciledResources =
       Tables.newCustomTable(new HashMap<>(), () -> Maps.newEnumMap(ResourceType.class));
 
+  /**
+   * Merged resources that can be read without obtaining {@code ITEM_MAP_LOCK}, by namespace and by ordinal of the resource type. A slice
+   * is created under the lock when its type is first read, and cleared when a child repository invalidates the type.
+   */
+  private final Map<ResourceNamespace, AtomicReferenceArray<SnapshotSlice>> mySnapshots = new ConcurrentHashMap<>();
+
   MultiResourceRepository(@NotNull String displayName) {
     super(displayName);
   }
@@ -149,6 +157,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
         myModificationCounts[i++] = child.getModificationCount();
       }
       myCachedMaps.clear();
+      mySnapshots.clear();
 
       invalidateParentCaches();
     }
@@ -359,6 +368,124 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     return map;
   }
 
+  /**
+   * Returns the slice of {@link #mySnapshots} for the given namespace and type, taking {@code ITEM_MAP_LOCK} only to create it.
+   */
+  @NotNull
+  private SnapshotSlice getSnapshotSlice(@NotNull ResourceNamespace namespace, @NotNull ResourceType type) {
+    AtomicReferenceArray<SnapshotSlice> slices = mySnapshots.get(namespace);
+    SnapshotSlice slice = slices == null ? null : slices.get(type.ordinal());
+    if (slice != null) {
+      return slice;
+    }
+
+    synchronized (ITEM_MAP_LOCK) {
+      return getCurrentSnapshotSlice(namespace, type);
+    }
+  }
+
+  @GuardedBy("ITEM_MAP_LOCK")
+  @NotNull
+  private SnapshotSlice getCurrentSnapshotSlice(@NotNull ResourceNamespace namespace, @NotNull ResourceType type) {
+    AtomicReferenceArray<SnapshotSlice> slices =
+        mySnapshots.computeIfAbsent(namespace, key -> new AtomicReferenceArray<>(ResourceType.values().length));
+    SnapshotSlice slice = slices.get(type.ordinal());
+    if (slice == null) {
+      slice = new SnapshotSlice();
+      slices.set(type.ordinal(), slice);
+    }
+    return slice;
+  }
+
+  /**
+   * Returns the merged resources of the given namespace and type. The result is taken from {@link #mySnapshots} without locking unless
+   * the type has been invalidated since all of its resources were last read.
+   */
+  @NotNull
+  private ImmutableListMultimap<String, ResourceItem> getSnapshot(@NotNull ResourceNamespace namespace, @NotNull ResourceType type) {
+    ImmutableListMultimap<String, ResourceItem> map = getSnapshotSlice(namespace, type).myAllItems;
+    if (map != null) {
+      return map;
+    }
+
+    synchronized (ITEM_MAP_LOCK) {
+      // The slice may have been invalidated since it was obtained.
+      SnapshotSlice slice = getCurrentSnapshotSlice(namespace, type);
+      map = slice.myAllItems;
+      if (map == null) {
+        map = ImmutableListMultimap.copyOf(getMap(namespace, type));
+        slice.myAllItems = map;
+      }
+      return map;
+    }
+  }
+
+  /**
+   * Returns the merged resources of the given namespace, type and name. Unless all resources of the type have already been copied to
+   * {@link #mySnapshots}, only the resources with the given name are copied, so that a lookup following an invalidation doesn't copy
+   * all resources of the type.
+   */
+  @NotNull
+  private ImmutableList<ResourceItem> getSnapshot(@NotNull ResourceNamespace namespace,
+                                                  @NotNull ResourceType type,
+                                                  @NotNull String name) {
+    SnapshotSlice slice = getSnapshotSlice(namespace, type);
+    ImmutableListMultimap<String, ResourceItem> map = slice.myAllItems;
+    if (map != null) {
+      return map.get(name);
+    }
+    ImmutableList<ResourceItem> items = slice.myItemsByName.get(name);
+    if (items != null) {
+      return items;
+    }
+
+    synchronized (ITEM_MAP_LOCK) {
+      // The slice may have been invalidated since it was obtained.
+      slice = getCurrentSnapshotSlice(namespace, type);
+      items = slice.myItemsByName.get(name);
+      if (items == null) {
+        items = ImmutableList.copyOf(getMap(namespace, type).get(name));
+        slice.myItemsByName.put(name, items);
+      }
+      return items;
+    }
+  }
+
+  @GuardedBy("ITEM_MAP_LOCK")
+  private void removeFromSnapshot(@NotNull ResourceNamespace namespace, @NotNull ResourceType[] types) {
+    AtomicReferenceArray<SnapshotSlice> slices = mySnapshots.get(namespace);
+    if (slices != null) {
+      for (ResourceType type : types) {
+        slices.set(type.ordinal(), null);
+      }
+    }
+  }
+
+  @Override
+  @NotNull
+  public ListMultimap<String, ResourceItem> getResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
+    return getSnapshot(namespace, resourceType);
+  }
+
+  @Override
+  @NotNull
+  public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
+                                         @NotNull ResourceType resourceType,
+                                         @NotNull String resourceName) {
+    return getSnapshot(namespace, resourceType, resourceName);
+  }
+
+  @Override
+  @NotNull
+  public Set<String> getResourceNames(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
+    return getSnapshot(namespace, resourceType).keySet();
+  }
+
+  @Override
+  public boolean hasResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType, @NotNull String resourceName) {
+    return !getSnapshot(namespace, resourceType, resourceName).isEmpty();
+  }
+
   @GuardedBy("ITEM_MAP_LOCK")
   @NotNull
   private static ListMultimap<String, ResourceItem> getResourcesUnderLock(@NotNull SingleNamespaceResourceRepository repository,
@@ -417,6 +544,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     myCachedMaps.clear();
     myResourceNames.clear();
     myUnreconciledResources.clear();
+    mySnapshots.clear();
     setModificationCount(ourModificationCounter.incrementAndGet());
 
     invalidateParentCaches();
@@ -435,6 +563,9 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     // In such a case we don't need to do anything.
     ImmutableList<SingleNamespaceResourceRepository> leafs = myLeafsByNamespace.get(namespace);
     if (leafs != null && leafs.contains(repository)) {
+      // The snapshot has to be updated even for a single leaf since it holds a copy of the leaf's resources.
+      removeFromSnapshot(namespace, types);
+
       // Update myUnreconciledResources only if myCachedMaps is used for this namespace.
       if (leafs.size() != 1) {
         for (ResourceType type : types) {
@@ -499,6 +630,15 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     }
   }
 
+  /**
+   * Immutable copies of the merged resources of one namespace and type, made while the slice is in {@link #mySnapshots}. The resources of
+   * a name are copied when they are looked up, and all resources of the type when they are all requested.
+   */
+  private static class SnapshotSlice {
+    @NotNull final Map<String, ImmutableList<ResourceItem>> myItemsByName = new ConcurrentHashMap<>();
+    @Nullable volatile ImmutableListMultimap<String, ResourceItem> myAllItems;
+  }
+
   private static class ResourcePriorityComparator implements Comparator<ResourceItem> {
     private final Object2IntOpenHashMap<SingleNamespaceResourceRepository> repositoryOrdering;
 
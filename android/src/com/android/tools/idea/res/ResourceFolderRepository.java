@@ -121,6 +121,8 @@ import com.intellij.psi.xml.XmlProcessingInstruction;
 import com.intellij.psi.xml.XmlTag;
 import com.intellij.psi.xml.XmlText;
 import com.intellij.serviceContainer.AlreadyDisposedException;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -139,6 +141,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -174,7 +177,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
    * Increment when making changes that may affect content of repository cache files.
    * Used together with CachingData.codeVersion. Important for developer builds.
    */
-  static final String CACHE_FILE_FORMAT_VERSION = "2";
+  static final String CACHE_FILE_FORMAT_VERSION = "4";
   private static final byte[] CACHE_FILE_HEADER = "Resource cache".getBytes(UTF_8);
   /**
    * Maximum fraction of resources out of date in the cache for the cache to be considered fresh.
@@ -190,6 +193,11 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
       Comparator.comparing(ResourceItemSource::getFolderConfiguration);
   private static final Logger LOG = Logger.getInstance(ResourceFolderRepository.class);
   private static final Tracer TRACER = new Tracer(false);
+  /** Executor used for reading contents of resource files that could not be loaded from the cache. */
+  private static final Executor ourFileReadingExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+      "ResourceFolderRepository File Reader", Math.min(Runtime.getRuntime().availableProcessors(), 4));
+  /** Maximum number of resource files read ahead of parsing and not parsed yet. */
+  private static final int PREFETCH_WINDOW = 16;
 
   @NotNull private final AndroidFacet myFacet;
   @NotNull private final PsiTreeChangeListener myPsiListener;
@@ -209,6 +217,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
   // Statistics of the initial repository loading.
   private int myNumXmlFilesLoadedInitially; // Doesn't count files that were explicitly skipped.
   private int myNumXmlFilesLoadedInitiallyFromSources;
+  private int myNumXmlFilesValidatedByContent; // Files loaded from cache despite a changed time stamp or length.
 
   @SuppressWarnings("InstanceGuardedByStatic")
   @GuardedBy("ITEM_MAP_LOCK")
@@ -237,10 +246,12 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
    * defined in the XML files that changed recently are skipped. Whether an XML has changed or not is determined by
    * comparing the combined hash of the file modification time and the length obtained by calling
    * {@link VirtualFile#getTimeStamp()} and {@link VirtualFile#getLength()} with the hash value stored in the cache.
-   * The checks are located in {@link #deserializeResourceSourceFile} and {@link #deserializeFileResourceItem}.
+   * If they differ, the hash of the file contents is compared with the one stored in the cache, so that files that were
+   * touched without being modified, e.g. by a VCS branch switch, don't need to be parsed again. The checks are located
+   * in {@link #validateFileHashes}.
    * <p>
-   * The remaining resources are then loaded by parsing XML files that were not present in the cache or were newer
-   * than their cached versions.
+   * The remaining resources are then loaded by parsing XML files that were not present in the cache or were changed
+   * since their cached versions. Contents of these files are read in parallel before parsing.
    * <p>
    * If a significant (determined by {@link #CACHE_STALENESS_THRESHOLD}} percentage of resources was loaded by parsing
    * XML files and {@code cachingData.cacheCreationExecutor} is not null, the new cache file is created using that
@@ -363,7 +374,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
    */
   @VisibleForTesting
   boolean hasFreshFileCache() {
-    return myNumXmlFilesLoadedInitiallyFromSources <= myNumXmlFilesLoadedInitially * CACHE_STALENESS_THRESHOLD;
+    return myNumXmlFilesLoadedInitiallyFromSources + myNumXmlFilesValidatedByContent <=
+           myNumXmlFilesLoadedInitially * CACHE_STALENESS_THRESHOLD;
   }
 
   @TestOnly
@@ -376,6 +388,11 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
     return myNumXmlFilesLoadedInitiallyFromSources;
   }
 
+  @TestOnly
+  int getNumXmlFilesValidatedByContent() {
+    return myNumXmlFilesValidatedByContent;
+  }
+
   @Nullable
   private PsiFile ensureValid(@NotNull PsiFile psiFile) {
     if (psiFile.isValid()) {
@@ -2071,7 +2088,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
     RepositoryConfiguration configuration = configurations.get(configIndex);
     VirtualFile virtualFile =
         ((ResourceFolderRepository)configuration.getRepository()).getResourceDir().findFileByRelativePath(relativePath);
-    if (!stream.validateContents(FileTimeStampLengthHasher.hash(virtualFile))) {
+    if (!validateFileHashes(stream, virtualFile)) {
       virtualFile = null;
     }
 
@@ -2115,7 +2132,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
       idGenerating = folderType != null && FolderTypeRelationship.isIdGeneratingFolderType(folderType);
     }
     if (idGenerating) {
-      if (!stream.validateContents(FileTimeStampLengthHasher.hash(virtualFile))) {
+      if (!validateFileHashes(stream, virtualFile)) {
         virtualFile = null;
       }
 
@@ -2139,6 +2156,23 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
     }
   }
 
+  /**
+   * Reads the hashes written by {@link VfsResourceFile#serialize} or {@link VfsFileResourceItem#serialize} from the stream
+   * and checks whether they match the current state of the given file. The hash of the file contents is computed only when
+   * the time stamp or the length of the file don't match the cache.
+   */
+  private boolean validateFileHashes(@NotNull Base128InputStream stream, @Nullable VirtualFile virtualFile) throws IOException {
+    if (stream.validateContents(FileTimeStampLengthHasher.hash(virtualFile))) {
+      stream.validateContents(FileContentHasher.hash(null)); // Skip the content hash.
+      return true;
+    }
+    if (!stream.validateContents(FileContentHasher.hash(virtualFile)) || virtualFile == null) {
+      return false;
+    }
+    myNumXmlFilesValidatedByContent++;
+    return true;
+  }
+
   @Override
   protected void invalidateParentCaches() {
     synchronized (ITEM_MAP_LOCK) {
@@ -2157,6 +2191,67 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
    * Tracks state used by the initial scan, which may be used to save the state to a cache.
    * The file cache omits non-XML single-file items, since those are easily derived from the file path.
    */
+  /**
+   * Reads the contents of the files to be parsed on {@link #ourFileReadingExecutor}, in the order they are parsed, while the loader
+   * parses the files read before. Parsing itself stays sequential since it updates the state of the loader, but it mostly doesn't wait
+   * for the disk. At most {@link #PREFETCH_WINDOW} files are read or being read ahead of the parser, which bounds the memory held by
+   * their contents.
+   * <p>
+   * This class is not thread safe. It is used by the thread loading the repository.
+   */
+  private static final class FilePrefetcher {
+    @NotNull private final List<VirtualFile> myFiles;
+    @NotNull private final Map<VirtualFile, CompletableFuture<byte[]>> myContents = new HashMap<>();
+    private int myNextFileIndex;
+
+    FilePrefetcher(@NotNull List<VirtualFile> files) {
+      myFiles = files;
+      readAhead();
+    }
+
+    /**
+     * Returns the contents of the given file, waiting for them to be read if necessary, or null if the file is not being prefetched
+     * or could not be read.
+     */
+    byte @Nullable [] getContents(@NotNull VirtualFile file) {
+      CompletableFuture<byte[]> contents = myContents.get(file);
+      return contents == null ? null : contents.join();
+    }
+
+    /**
+     * Drops the contents of a file that has been parsed and starts reading the next file.
+     */
+    void release(@NotNull VirtualFile file) {
+      if (myContents.remove(file) != null) {
+        readAhead();
+      }
+    }
+
+    void cancel() {
+      for (CompletableFuture<byte[]> contents : myContents.values()) {
+        contents.cancel(false);
+      }
+      myContents.clear();
+      myNextFileIndex = myFiles.size();
+    }
+
+    private void readAhead() {
+      while (myContents.size() < PREFETCH_WINDOW && myNextFileIndex < myFiles.size()) {
+        VirtualFile file = myFiles.get(myNextFileIndex++);
+        myContents.put(file, CompletableFuture.supplyAsync(() -> read(file), ourFileReadingExecutor));
+      }
+    }
+
+    private static byte @Nullable [] read(@NotNull VirtualFile file) {
+      try {
+        return file.contentsToByteArray();
+      }
+      catch (IOException e) {
+        return null; // The file will be read again while parsing and the error will be handled there.
+      }
+    }
+  }
+
   private static class Loader extends RepositoryLoader<ResourceFolderRepository> {
     @NotNull private final ResourceFolderRepository myRepository;
     @NotNull private final VirtualFile myResourceDir;
@@ -2170,6 +2265,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
     @Nullable private PathString myLastPathString;
 
     @NotNull Set<VirtualFile> myFilesToReparseAsPsi = new HashSet<>();
+    /** Reads the files to be parsed ahead of parsing, or null if they are read while parsing. */
+    @Nullable private FilePrefetcher myPrefetcher;
     private final FileDocumentManager myFileDocumentManager;
 
     Loader(@NotNull ResourceFolderRepository repository, @Nullable ResourceFolderRepositoryCachingData cachingData) {
@@ -2216,6 +2313,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
         if (!stream.validateContents(fileHeader)) {
           return; // Cache file header doesn't match.
         }
+        stream.enableStringTable();
         ResourceSerializationUtil.readResourcesFromStream(stream, Maps.newHashMapWithExpectedSize(1000), null, myRepository,
                                                           item -> addResourceItem(item, myRepository));
       }
@@ -2255,6 +2353,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
     }
 
     private void scanResFolder() {
+      List<FileToLoad> filesToLoad = new ArrayList<>();
       try {
         for (VirtualFile subDir : myResourceDir.getChildren()) {
           if (subDir.isValid() && subDir.isDirectory()) {
@@ -2280,24 +2379,36 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                   continue;
                 }
 
-                PathString pathString = FileExtensions.toPathString(file);
-                myLastVirtualFile = file;
-                myLastPathString = pathString;
-                try {
-                  loadResourceFile(pathString, folderInfo, configuration);
-                  if (isParsableFile(file, folderInfo)) {
-                    countCacheMiss();
-                  }
-                }
-                catch (ParsingException e) {
-                  // Reparse the file as PSI. The PSI parser is more forgiving than KXmlParser because
-                  // it is designed to work with potentially malformed files in the middle of editing.
-                  myFilesToReparseAsPsi.add(file);
-                }
+                filesToLoad.add(new FileToLoad(file, folderInfo, configuration));
               }
             }
           }
         }
+
+        myPrefetcher = createPrefetcher(filesToLoad);
+
+        for (FileToLoad fileToLoad : filesToLoad) {
+          VirtualFile file = fileToLoad.file;
+          PathString pathString = FileExtensions.toPathString(file);
+          myLastVirtualFile = file;
+          myLastPathString = pathString;
+          try {
+            loadResourceFile(pathString, fileToLoad.folderInfo, fileToLoad.configuration);
+            if (isParsableFile(file, fileToLoad.folderInfo)) {
+              countCacheMiss();
+            }
+          }
+          catch (ParsingException e) {
+            // Reparse the file as PSI. The PSI parser is more forgiving than KXmlParser because
+            // it is designed to work with potentially malformed files in the middle of editing.
+            myFilesToReparseAsPsi.add(file);
+          }
+          finally {
+            if (myPrefetcher != null) {
+              myPrefetcher.release(file);
+            }
+          }
+        }
       }
       catch (ProcessCanceledException e) {
         throw e;
@@ -2305,6 +2416,12 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
       catch (Exception e) {
         LOG.error("Failed to load resources from " + myResourceDirectoryOrFile, e);
       }
+      finally {
+        if (myPrefetcher != null) {
+          myPrefetcher.cancel();
+          myPrefetcher = null;
+        }
+      }
 
       super.finishLoading(myRepository);
 
@@ -2345,6 +2462,20 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
       }
     }
 
+    /**
+     * Returns a prefetcher of the XML files that are going to be parsed, or null if there are too few of them to be worth it.
+     */
+    @Nullable
+    private static FilePrefetcher createPrefetcher(@NotNull List<FileToLoad> filesToLoad) {
+      List<VirtualFile> parsableFiles = new ArrayList<>();
+      for (FileToLoad fileToLoad : filesToLoad) {
+        if (isParsableFile(fileToLoad.file, fileToLoad.folderInfo)) {
+          parsableFiles.add(fileToLoad.file);
+        }
+      }
+      return parsableFiles.size() < 2 ? null : new FilePrefetcher(parsableFiles);
+    }
+
     private static boolean isParsableFile(@NotNull VirtualFile file, @NotNull FolderInfo folderInfo) {
       return (folderInfo.folderType == VALUES || folderInfo.isIdGenerating) && isXmlFile(file.getName());
     }
@@ -2366,7 +2497,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
       if (virtualFile == null) {
         throw new NoSuchFileException(file.getNativePath());
       }
-      return virtualFile.getInputStream();
+      byte[] contents = myPrefetcher == null ? null : myPrefetcher.getContents(virtualFile);
+      return contents == null ? virtualFile.getInputStream() : new ByteArrayInputStream(contents);
     }
 
     @Nullable
@@ -2479,6 +2611,18 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
       ++myRepository.myNumXmlFilesLoadedInitially;
       ++myRepository.myNumXmlFilesLoadedInitiallyFromSources;
     }
+
+    private static class FileToLoad {
+      @NotNull final VirtualFile file;
+      @NotNull final FolderInfo folderInfo;
+      @NotNull final RepositoryConfiguration configuration;
+
+      FileToLoad(@NotNull VirtualFile file, @NotNull FolderInfo folderInfo, @NotNull RepositoryConfiguration configuration) {
+        this.file = file;
+        this.folderInfo = folderInfo;
+        this.configuration = configuration;
+      }
+    }
   }
 
   private static class ParsingException extends RuntimeException {
@@ -18,6 +18,7 @@ package com.android.tools.idea.run;
 import com.android.ddmlib.AndroidDebugBridge;
 import com.android.ddmlib.IDevice;
 import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableTable;
 import com.google.common.collect.Table;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.util.Disposer;
@@ -43,13 +44,26 @@ public class DeviceStateCache<T> implements AndroidDebugBridge.IDeviceChangeList
   }
 
   @Nullable
-  public T get(@NotNull IDevice device, @NotNull String pkgName) {
+  public synchronized T get(@NotNull IDevice device, @NotNull String pkgName) {
     return myCache.get(device.getSerialNumber(), pkgName);
   }
 
   @Nullable
   public T put(@NotNull IDevice device, @NotNull String pkgName, @NotNull T data) {
-    return myCache.put(device.getSerialNumber(), pkgName, data);
+    return put(device.getSerialNumber(), pkgName, data);
+  }
+
+  @Nullable
+  public synchronized T put(@NotNull String serial, @NotNull String pkgName, @NotNull T data) {
+    return myCache.put(serial, pkgName, data);
+  }
+
+  /**
+   * Returns a snapshot of the cache, as a table from device serial and package name to cached data.
+   */
+  @NotNull
+  public synchronized Table<String, String, T> asTable() {
+    return ImmutableTable.copyOf(myCache);
   }
 
   @Override
@@ -57,7 +71,7 @@ public class DeviceStateCache<T> implements AndroidDebugBridge.IDeviceChangeList
   }
 
   @Override
-  public void deviceDisconnected(IDevice device) {
+  public synchronized void deviceDisconnected(IDevice device) {
     myCache.row(device.getSerialNumber()).clear();
   }
 
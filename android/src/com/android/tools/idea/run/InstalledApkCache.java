@@ -22,23 +22,52 @@ import com.android.ddmlib.ShellCommandUnresponsiveException;
 import com.android.ddmlib.TimeoutException;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Splitter;
-import com.google.common.hash.HashCode;
+import com.google.common.collect.Table;
 import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.components.StoragePathMacros;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.xmlb.annotations.Attribute;
+import com.intellij.util.xmlb.annotations.Tag;
+import com.intellij.util.xmlb.annotations.XCollection;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-public class InstalledApkCache implements Disposable {
+/**
+ * Keeps track of the apks installed on devices, so that launches can skip installing an apk that didn't change.
+ * <p>
+ * The install state of the packages and the hashes of the apks are persisted, so that they are still known after the IDE restarts. An
+ * apk is only hashed again once its size or modification time changes.
+ */
+@State(name = "InstalledApkCache", storages = @Storage(StoragePathMacros.CACHE_FILE))
+public class InstalledApkCache implements Disposable, PersistentStateComponent<InstalledApkCache.CacheState> {
+  private static final long DUMPSYS_TIMEOUT_MS = 500;
+  /**
+   * Printed before the output of "dumpsys package" for every package of a batched query.
+   */
+  private static final String PACKAGE_OUTPUT_MARKER = "INSTALLED-APK-CACHE-PACKAGE ";
+
   private final DeviceStateCache<CacheData> myCache;
+  /** Maps from apk path -> hash of the apk when it had the recorded size and modification time */
+  private final Map<String, ApkHash> myApkHashes = new ConcurrentHashMap<>();
 
   /** Diagnostic output set by {@link #getLastUpdateTime(com.android.ddmlib.IDevice, String)} */
   private String myDiagnosticOutput;
@@ -51,21 +80,80 @@ public class InstalledApkCache implements Disposable {
   public void dispose() {
   }
 
+  @NotNull
+  @Override
+  public CacheState getState() {
+    CacheState state = new CacheState();
+    for (Table.Cell<String, String, CacheData> cell : myCache.asTable().cellSet()) {
+      state.installedApks.add(new InstalledApk(cell.getRowKey(), cell.getColumnKey(), cell.getValue().lastUpdateTime, cell.getValue().hash));
+    }
+    for (ApkHash apkHash : myApkHashes.values()) {
+      // Forget the apks that were deleted, e.g. by a clean build.
+      if (new File(apkHash.path).isFile()) {
+        state.apkHashes.add(apkHash);
+      }
+    }
+    return state;
+  }
+
+  @Override
+  public void loadState(@NotNull CacheState state) {
+    for (InstalledApk installedApk : state.installedApks) {
+      if (installedApk.serial != null && installedApk.packageName != null && installedApk.lastUpdateTime != null &&
+          installedApk.hash != null) {
+        myCache.put(installedApk.serial, installedApk.packageName, new CacheData(installedApk.lastUpdateTime, installedApk.hash));
+      }
+    }
+    for (ApkHash apkHash : state.apkHashes) {
+      if (apkHash.path != null && apkHash.hash != null) {
+        myApkHashes.put(apkHash.path, apkHash);
+      }
+    }
+  }
+
   public boolean isInstalled(
       @NotNull IDevice device,
       @NotNull File apk,
       @NotNull String pkgName,
       @Nullable Integer userId) throws IOException {
-    CacheData state = myCache.get(device, pkgName);
-    if (state == null) {
-      return false;
+    return getInstalledPackages(device, Collections.singletonMap(pkgName, apk), userId).contains(pkgName);
+  }
+
+  /**
+   * Returns the packages whose apk is already installed on the device, querying the device once for all of them.
+   *
+   * @param apks a map from package name to the apk of the package
+   */
+  @NotNull
+  public Set<String> getInstalledPackages(
+      @NotNull IDevice device,
+      @NotNull Map<String, File> apks,
+      @Nullable Integer userId) throws IOException {
+    Map<String, CacheData> states = new HashMap<>();
+    for (String pkgName : apks.keySet()) {
+      CacheData state = myCache.get(device, pkgName);
+      if (state != null) {
+        states.put(pkgName, state);
+      }
+    }
+    if (states.isEmpty()) {
+      return Collections.emptySet();
     }
 
-    InstallState currentState = getInstallState(device, pkgName);
-    return currentState != null &&
-           state.installState.lastUpdateTime.equals(currentState.lastUpdateTime) &&
-           state.hash.equals(hash(apk)) &&
-           (userId == null || currentState.users.contains(userId));
+    Map<String, InstallState> currentStates = getInstallStates(device, states.keySet());
+    Set<String> installedPackages = new HashSet<>();
+    for (Map.Entry<String, CacheData> entry : states.entrySet()) {
+      String pkgName = entry.getKey();
+      CacheData state = entry.getValue();
+      InstallState currentState = currentStates.get(pkgName);
+      if (currentState != null &&
+          state.lastUpdateTime.equals(currentState.lastUpdateTime) &&
+          state.hash.equals(hash(apks.get(pkgName))) &&
+          (userId == null || currentState.users.contains(userId))) {
+        installedPackages.add(pkgName);
+      }
+    }
+    return installedPackages;
   }
 
   public void setInstalled(@NotNull IDevice device, @NotNull File apk, @NotNull String pkgName) throws IOException {
@@ -83,12 +171,24 @@ public class InstalledApkCache implements Disposable {
       return;
     }
 
-    myCache.put(device, pkgName, new CacheData(installState, hash(apk)));
+    myCache.put(device, pkgName, new CacheData(installState.lastUpdateTime, hash(apk)));
   }
 
+  /**
+   * Returns the hash of the content of the apk, which is only computed again once the size or the modification time of the apk changes.
+   * The hash function is stable across IDE sessions, so that hashes can be persisted.
+   */
   @NotNull
-  private static HashCode hash(@NotNull File apk) throws IOException {
-    return Files.hash(apk, Hashing.goodFastHash(32));
+  private String hash(@NotNull File apk) throws IOException {
+    String path = apk.getAbsolutePath();
+    long size = apk.length();
+    long lastModified = apk.lastModified();
+    ApkHash apkHash = myApkHashes.get(path);
+    if (apkHash == null || apkHash.size != size || apkHash.lastModified != lastModified) {
+      apkHash = new ApkHash(path, size, lastModified, Files.hash(apk, Hashing.farmHashFingerprint64()).toString());
+      myApkHashes.put(path, apkHash);
+    }
+    return apkHash.hash;
   }
 
   @VisibleForTesting
@@ -102,17 +202,72 @@ public class InstalledApkCache implements Disposable {
    */
   @Nullable
   public InstallState getInstallState(@NotNull IDevice device, @NotNull String pkgName) {
-    boolean deviceHasPackage = false;
     myDiagnosticOutput = null;
 
     String output;
     try {
-      output = executeShellCommand(device, "dumpsys package " + pkgName, 500, TimeUnit.MILLISECONDS);
+      output = executeShellCommand(device, "dumpsys package " + pkgName, DUMPSYS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
     }
     catch (Exception e) {
       myDiagnosticOutput = String.format("Error executing 'dumpsys package %1$s:\n%2$s'", pkgName, e.getMessage());
       return null;
     }
+    return parseInstallState(pkgName, output);
+  }
+
+  /**
+   * Returns the install states of the given packages, running a single shell command on the device. Packages that were not found are
+   * left out.
+   */
+  @NotNull
+  public Map<String, InstallState> getInstallStates(@NotNull IDevice device, @NotNull Collection<String> pkgNames) {
+    if (pkgNames.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    if (pkgNames.size() == 1) {
+      String pkgName = pkgNames.iterator().next();
+      InstallState state = getInstallState(device, pkgName);
+      return state == null ? Collections.emptyMap() : Collections.singletonMap(pkgName, state);
+    }
+
+    // "dumpsys package" only dumps one package at a time, so the dumps are chained and told apart by a marker line.
+    List<String> commands = new ArrayList<>();
+    for (String pkgName : pkgNames) {
+      commands.add("echo '" + PACKAGE_OUTPUT_MARKER + pkgName + "'; dumpsys package " + pkgName);
+    }
+    String output;
+    try {
+      output = executeShellCommand(device, String.join("; ", commands), DUMPSYS_TIMEOUT_MS * pkgNames.size(), TimeUnit.MILLISECONDS);
+    }
+    catch (Exception e) {
+      Logger.getInstance(InstalledApkCache.class).info("Error executing 'dumpsys package' for " + pkgNames, e);
+      return Collections.emptyMap();
+    }
+
+    Map<String, InstallState> states = new HashMap<>();
+    String pkgName = null;
+    StringBuilder packageOutput = new StringBuilder();
+    for (String line : Splitter.on("\n").split(output + "\n" + PACKAGE_OUTPUT_MARKER)) {
+      if (line.startsWith(PACKAGE_OUTPUT_MARKER)) {
+        if (pkgName != null && pkgNames.contains(pkgName)) {
+          InstallState state = parseInstallState(pkgName, packageOutput.toString());
+          if (state != null) {
+            states.put(pkgName, state);
+          }
+        }
+        pkgName = line.substring(PACKAGE_OUTPUT_MARKER.length()).trim();
+        packageOutput.setLength(0);
+      }
+      else {
+        packageOutput.append(line).append('\n');
+      }
+    }
+    return states;
+  }
+
+  @Nullable
+  private InstallState parseInstallState(@NotNull String pkgName, @NotNull String output) {
+    boolean deviceHasPackage = false;
 
     // The follow code assumes that the output of "dumpsys package <pkgname>" has at least the following line:
     //       Package [pkgName]
@@ -177,11 +332,56 @@ public class InstalledApkCache implements Disposable {
   }
 
   private static class CacheData {
-    @NotNull private final InstallState installState;
-    @NotNull private final HashCode hash;
+    @NotNull private final String lastUpdateTime;
+    @NotNull private final String hash;
+
+    private CacheData(@NotNull String lastUpdateTime, @NotNull String hash) {
+      this.lastUpdateTime = lastUpdateTime;
+      this.hash = hash;
+    }
+  }
+
+  public static class CacheState {
+    @XCollection(propertyElementName = "installed-apks")
+    public List<InstalledApk> installedApks = new ArrayList<>();
+    @XCollection(propertyElementName = "apk-hashes")
+    public List<ApkHash> apkHashes = new ArrayList<>();
+  }
+
+  @Tag("installed-apk")
+  public static class InstalledApk {
+    @Attribute("serial") public String serial;
+    @Attribute("package") public String packageName;
+    @Attribute("last-update-time") public String lastUpdateTime;
+    @Attribute("hash") public String hash;
+
+    @SuppressWarnings("unused") // Used by the XML serializer.
+    public InstalledApk() {
+    }
+
+    public InstalledApk(@NotNull String serial, @NotNull String packageName, @NotNull String lastUpdateTime, @NotNull String hash) {
+      this.serial = serial;
+      this.packageName = packageName;
+      this.lastUpdateTime = lastUpdateTime;
+      this.hash = hash;
+    }
+  }
+
+  @Tag("apk-hash")
+  public static class ApkHash {
+    @Attribute("path") public String path;
+    @Attribute("size") public long size;
+    @Attribute("last-modified") public long lastModified;
+    @Attribute("hash") public String hash;
+
+    @SuppressWarnings("unused") // Used by the XML serializer.
+    public ApkHash() {
+    }
 
-    private CacheData(@NotNull InstallState installState, @NotNull HashCode hash) {
-      this.installState = installState;
+    public ApkHash(@NotNull String path, long size, long lastModified, @NotNull String hash) {
+      this.path = path;
+      this.size = size;
+      this.lastModified = lastModified;
       this.hash = hash;
     }
   }
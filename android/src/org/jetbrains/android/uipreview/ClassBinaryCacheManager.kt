@@ -17,10 +17,14 @@ package org.jetbrains.android.uipreview
 
 import com.android.annotations.concurrency.AnyThread
 import com.android.annotations.concurrency.GuardedBy
+import com.android.tools.idea.flags.StudioFlags.NELE_CLASS_BINARY_PERSISTENT_CACHE
 import com.google.common.base.Ticker
 import com.google.common.cache.CacheBuilder
+import com.intellij.openapi.application.PathManager
 import com.intellij.openapi.module.Module
+import com.intellij.util.concurrency.AppExecutorUtil
 import org.jetbrains.annotations.TestOnly
+import java.nio.file.Paths
 import java.time.Duration
 import java.util.WeakHashMap
 import java.util.concurrent.locks.ReentrantLock
@@ -28,10 +32,17 @@ import kotlin.concurrent.withLock
 
 private const val MAX_WEIGHT_BYTES = 100_000_000L // We will store no more than 100Mb of cached classes
 private const val EXPIRE_MINUTES = 30L // We will store cached classes for no longer than 30 minutes
+private const val MAX_PACK_SIZE_BYTES = 500_000_000L // The persistent cache is discarded once it gets bigger than 500Mb
 /**
  * A class binary representation cache.
+ *
+ * Classes are kept in memory and, when a [packFile] is given, persisted to disk so that they don't need to be read and transformed again
+ * after the IDE restarts. Classes missing from memory are looked up in the [packFile].
  */
-class ClassBinaryCacheManager private constructor(ticker: Ticker, maxWeight: Long, expireMinutes: Long) {
+class ClassBinaryCacheManager private constructor(ticker: Ticker,
+                                                  maxWeight: Long,
+                                                  expireMinutes: Long,
+                                                  private val packFile: ClassBinaryPackFile?) {
   @GuardedBy("this")
   private val moduleCaches = WeakHashMap<Module, ModuleClassCache>()
   private var lock = ReentrantLock()
@@ -85,6 +96,9 @@ class ClassBinaryCacheManager private constructor(ticker: Ticker, maxWeight: Lon
     @Synchronized
     private fun notCurrentDependency(path: String?) = path !in libraryPaths
 
+    @Synchronized
+    private fun currentDependencies() = libraryPaths
+
     // @LayoutlibRenderThread
     override fun get(fqcn: String, transformationId: String): ByteArray? {
       val key = getCachingKey(fqcn, transformationId)
@@ -94,16 +108,30 @@ class ClassBinaryCacheManager private constructor(ticker: Ticker, maxWeight: Lon
         libraryPath?.let {
           lock.withLock { libraryPath2ClassFqns.remove(libraryPath) }?.forEach { globalCache.invalidate(it) }
         }
-        return null
+        return getPersisted(fqcn, transformationId)
       }
 
-      return globalCache.getIfPresent(key)
+      return globalCache.getIfPresent(key) ?: getPersisted(fqcn, transformationId)
+    }
+
+    /**
+     * Looks up the class in the [packFile] and keeps it in memory if it was found.
+     */
+    private fun getPersisted(fqcn: String, transformationId: String): ByteArray? {
+      val (libraryPath, data) = packFile?.get(fqcn, transformationId, currentDependencies()) ?: return null
+      cache(fqcn, transformationId, libraryPath, data)
+      return data
     }
 
     private fun getCachingKey(fqcn: String, transformationId: String) = "$transformationId:$fqcn"
 
     // @LayoutlibRenderThread
     override fun put(fqcn: String, transformationId: String, libraryPath: String, data: ByteArray) {
+      cache(fqcn, transformationId, libraryPath, data)
+      packFile?.put(fqcn, transformationId, libraryPath, data)
+    }
+
+    private fun cache(fqcn: String, transformationId: String, libraryPath: String, data: ByteArray) {
       val key = getCachingKey(fqcn, transformationId)
       lock.withLock {
         classFqn2LibraryPath[key] = libraryPath
@@ -120,12 +148,18 @@ class ClassBinaryCacheManager private constructor(ticker: Ticker, maxWeight: Lon
   }
 
   companion object {
-    private val globalManager = ClassBinaryCacheManager(Ticker.systemTicker(), MAX_WEIGHT_BYTES, EXPIRE_MINUTES)
+    private val globalManager = ClassBinaryCacheManager(
+      Ticker.systemTicker(), MAX_WEIGHT_BYTES, EXPIRE_MINUTES,
+      if (NELE_CLASS_BINARY_PERSISTENT_CACHE.get())
+        ClassBinaryPackFile(Paths.get(PathManager.getSystemPath(), "android", "class-binary-cache", "classes.pack"), MAX_PACK_SIZE_BYTES,
+                            AppExecutorUtil.createBoundedApplicationPoolExecutor("ClassBinaryPackFile", 1))
+      else null)
 
     @JvmStatic
     fun getInstance() = globalManager
 
     @TestOnly
-    fun getTestInstance(ticker: Ticker, maxWeight: Long, expireMinutes: Long) = ClassBinaryCacheManager(ticker, maxWeight, expireMinutes)
+    fun getTestInstance(ticker: Ticker, maxWeight: Long, expireMinutes: Long, packFile: ClassBinaryPackFile? = null) =
+      ClassBinaryCacheManager(ticker, maxWeight, expireMinutes, packFile)
   }
 }
\ No newline at end of file
@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.uipreview
+
+import com.android.annotations.concurrency.GuardedBy
+import com.google.common.hash.Hashing
+import com.google.common.io.Files.asByteSource
+import com.intellij.openapi.diagnostic.Logger
+import java.io.File
+import java.io.IOException
+import java.nio.BufferUnderflowException
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.TreeMap
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
+import java.util.zip.CRC32
+
+private const val PACK_MAGIC = 0x434C5350 // "CLSP"
+private const val PACK_VERSION = 2
+private const val HEADER_SIZE = 2 * Int.SIZE_BYTES
+private const val RECORD_HEADER_SIZE = 2 * Int.SIZE_BYTES
+private const val CLASS_RECORD: Byte = 1
+private const val LIBRARY_RECORD: Byte = 2
+
+private val LOG = Logger.getInstance(ClassBinaryPackFile::class.java)
+
+/**
+ * A persistent store of class binaries, kept in a single append-only pack file that is memory-mapped for reading.
+ *
+ * Classes are looked up and stored from the layoutlib render thread, so the records are written and the libraries are hashed on the given
+ * [executor], which must run its tasks in order. A class can't be found in the pack until its library has been hashed.
+ *
+ * Entries are content-addressed: they are keyed by the hash of the library the class was read from, the class fqcn and the
+ * transformation id, so the entry of a class is not returned anymore once its library has changed, even if the library is still at the
+ * same path. A class is only stored once per library content. Entries are never removed one by one; instead the whole pack is discarded
+ * when it is opened after growing above [maxSizeBytes].
+ *
+ * The hash of each library is stored in the pack too, along with the size and modification time the library had when it was hashed, so
+ * that the classes of a library that hasn't changed since can be found right after the pack is opened again, without hashing it.
+ *
+ * Every record is preceded by its size and checksum. Reading the pack stops at the first record that doesn't match its checksum, e.g.
+ * because the IDE was killed while writing it, and new records overwrite it.
+ */
+class ClassBinaryPackFile(private val file: Path, private val maxSizeBytes: Long, private val executor: Executor) {
+  private class Entry(val libraryHash: String, val libraryPath: String, val offset: Int, val length: Int)
+
+  private data class LibraryHash(val size: Long, val lastModified: Long, val hash: String) {
+    fun isUpToDate(library: File) = library.length() == size && library.lastModified() == lastModified
+  }
+
+  @GuardedBy("this")
+  private var channel: FileChannel? = null
+  /**
+   * The mapped regions of the pack, by offset. Records appended after the pack was mapped are mapped in a new region when first read.
+   */
+  @GuardedBy("this")
+  private val mappedRegions = TreeMap<Int, MappedByteBuffer>()
+  /**
+   * The end of the records that are mapped.
+   */
+  @GuardedBy("this")
+  private var mappedEnd = 0L
+  @GuardedBy("this")
+  private var writePosition = 0L
+  @GuardedBy("this")
+  private var isUnavailable = false
+
+  /**
+   * A mapping from "transformationId:fqcn" to the entries of the class, one per library content.
+   */
+  @GuardedBy("this")
+  private val entries = mutableMapOf<String, MutableList<Entry>>()
+
+  /**
+   * A mapping from a library path to its size and modification time and the hash of its content, read from the pack when it is opened.
+   */
+  private val libraryHashes = ConcurrentHashMap<String, LibraryHash>()
+
+  /**
+   * The libraries being hashed on the [executor].
+   */
+  private val pendingLibraryHashes = ConcurrentHashMap.newKeySet<String>()
+
+  /**
+   * Returns the library path and the binary data of the class with the given [fqcn] and [transformationId], provided it was stored
+   * from one of the given [libraryPaths] and that library hasn't changed since.
+   */
+  @Synchronized
+  fun get(fqcn: String, transformationId: String, libraryPaths: Set<String>): Pair<String, ByteArray>? {
+    if (ensureOpen() == null) return null
+    val candidates = entries[getEntryKey(fqcn, transformationId)] ?: return null
+    for (entry in candidates) {
+      if (entry.libraryPath in libraryPaths && entry.libraryHash == getKnownLibraryHash(entry.libraryPath)) {
+        return readData(entry)?.let { entry.libraryPath to it }
+      }
+    }
+    // The class is only stored once per library content, so it may have been stored from a copy of the library at another path.
+    for (entry in candidates) {
+      val libraryPath = libraryPaths.firstOrNull { libraryHashes[it]?.hash == entry.libraryHash } ?: continue
+      if (entry.libraryHash == getKnownLibraryHash(libraryPath)) {
+        return readData(entry)?.let { libraryPath to it }
+      }
+    }
+    return null
+  }
+
+  /**
+   * Appends the binary [data] of the class with the given [fqcn] and [transformationId], read from the library at [libraryPath], unless
+   * the class is already stored for the same library content. The record is written on the [executor].
+   */
+  fun put(fqcn: String, transformationId: String, libraryPath: String, data: ByteArray) {
+    executor.execute {
+      val libraryHash = computeLibraryHash(libraryPath) ?: return@execute
+      write(fqcn, transformationId, libraryPath, libraryHash, data)
+    }
+  }
+
+  @Synchronized
+  private fun write(fqcn: String, transformationId: String, libraryPath: String, libraryHash: String, data: ByteArray) {
+    if (ensureOpen() == null) return
+    if (entries[getEntryKey(fqcn, transformationId)]?.any { it.libraryHash == libraryHash } == true) return
+
+    if (!append(encodeClassRecord(libraryHash, transformationId, fqcn, libraryPath, data))) return
+    addEntry(fqcn, transformationId, Entry(libraryHash, libraryPath, (writePosition - data.size).toInt(), data.size))
+  }
+
+  @Synchronized
+  private fun writeLibraryHash(libraryPath: String, libraryHash: LibraryHash) {
+    if (ensureOpen() == null) return
+    append(encodeLibraryRecord(libraryPath, libraryHash))
+  }
+
+  /**
+   * Writes the [record] at the end of the pack and returns whether it was written.
+   */
+  @GuardedBy("this")
+  private fun append(record: ByteBuffer): Boolean {
+    val channel = channel ?: return false
+    if (writePosition > maxSizeBytes) return false
+
+    val recordStart = writePosition
+    try {
+      while (record.hasRemaining()) {
+        channel.write(record, recordStart + record.position())
+      }
+    }
+    catch (e: IOException) {
+      LOG.warn("Unable to write to class binary cache $file", e)
+      close()
+      return false
+    }
+    writePosition += record.limit()
+    return true
+  }
+
+  private fun getEntryKey(fqcn: String, transformationId: String) = "$transformationId:$fqcn"
+
+  @GuardedBy("this")
+  private fun addEntry(fqcn: String, transformationId: String, entry: Entry) {
+    val candidates = entries.computeIfAbsent(getEntryKey(fqcn, transformationId)) { mutableListOf() }
+    candidates.removeIf { it.libraryHash == entry.libraryHash && it.libraryPath == entry.libraryPath }
+    candidates.add(entry)
+  }
+
+  /**
+   * Returns the hash of the content of the library at [libraryPath] if it is known and the library hasn't changed since. Otherwise the
+   * library is hashed on the [executor] and null is returned unless that has already completed.
+   */
+  private fun getKnownLibraryHash(libraryPath: String): String? {
+    val library = File(libraryPath)
+    libraryHashes[libraryPath]?.takeIf { it.isUpToDate(library) }?.let { return it.hash }
+    if (pendingLibraryHashes.add(libraryPath)) {
+      executor.execute {
+        try {
+          computeLibraryHash(libraryPath)
+        }
+        finally {
+          pendingLibraryHashes.remove(libraryPath)
+        }
+      }
+    }
+    return libraryHashes[libraryPath]?.takeIf { it.isUpToDate(library) }?.hash
+  }
+
+  /**
+   * Returns the hash of the content of the library at [libraryPath], which is only computed again once the library has changed. A new
+   * hash is stored in the pack.
+   */
+  private fun computeLibraryHash(libraryPath: String): String? {
+    // Make sure the hashes stored in the pack are known before deciding to hash the library again.
+    synchronized(this) { ensureOpen() }
+    val library = File(libraryPath)
+    libraryHashes[libraryPath]?.takeIf { it.isUpToDate(library) }?.let { return it.hash }
+    val size = library.length()
+    val lastModified = library.lastModified()
+    val hash = try {
+      asByteSource(library).hash(Hashing.farmHashFingerprint64()).toString()
+    }
+    catch (e: IOException) {
+      return null
+    }
+    val libraryHash = LibraryHash(size, lastModified, hash)
+    libraryHashes[libraryPath] = libraryHash
+    writeLibraryHash(libraryPath, libraryHash)
+    return hash
+  }
+
+  @GuardedBy("this")
+  private fun readData(entry: Entry): ByteArray? {
+    if (entry.offset + entry.length > mappedEnd) {
+      // The entry was written after the pack was last mapped, so the records appended since then are mapped.
+      val channel = channel ?: return null
+      try {
+        mappedRegions[mappedEnd.toInt()] = channel.map(FileChannel.MapMode.READ_ONLY, mappedEnd, writePosition - mappedEnd)
+      }
+      catch (e: IOException) {
+        LOG.warn("Unable to read class binary cache $file", e)
+        return null
+      }
+      mappedEnd = writePosition
+    }
+    // Regions end at record boundaries, so the entry is within a single region.
+    val (regionOffset, region) = mappedRegions.floorEntry(entry.offset) ?: return null
+    val data = ByteArray(entry.length)
+    (region.duplicate().position(entry.offset - regionOffset) as ByteBuffer).get(data)
+    return data
+  }
+
+  @GuardedBy("this")
+  private fun ensureOpen(): FileChannel? {
+    if (isUnavailable) return null
+    channel?.let { return it }
+    return try {
+      open()
+    }
+    catch (e: IOException) {
+      LOG.warn("Unable to open class binary cache $file", e)
+      close()
+      null
+    }
+  }
+
+  @GuardedBy("this")
+  private fun open(): FileChannel {
+    Files.createDirectories(file.parent)
+    if (Files.exists(file) && Files.size(file) > maxSizeBytes) {
+      Files.delete(file)
+    }
+    val channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+    this.channel = channel
+
+    val size = channel.size()
+    if (size >= HEADER_SIZE) {
+      val buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+      if (buffer.getInt() == PACK_MAGIC && buffer.getInt() == PACK_VERSION) {
+        mappedRegions[0] = buffer
+        writePosition = readEntries(buffer).toLong()
+        // Records written from now on overwrite whatever follows the last valid record, and are mapped in regions of their own.
+        mappedEnd = writePosition
+        return channel
+      }
+    }
+
+    val header = ByteBuffer.allocate(HEADER_SIZE).putInt(PACK_MAGIC).putInt(PACK_VERSION)
+    header.flip()
+    while (header.hasRemaining()) {
+      channel.write(header, header.position().toLong())
+    }
+    writePosition = HEADER_SIZE.toLong()
+    return channel
+  }
+
+  /**
+   * Indexes the records of the pack, and reads the library hashes stored in it, and returns the position following the last valid one.
+   */
+  @GuardedBy("this")
+  private fun readEntries(buffer: ByteBuffer): Int {
+    var end = HEADER_SIZE
+    buffer.position(end)
+    records@ while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+      val payloadSize = buffer.getInt()
+      val checksum = buffer.getInt()
+      if (payloadSize <= 0 || payloadSize > buffer.remaining()) break
+      val payload = buffer.slice()
+      payload.limit(payloadSize)
+      val crc = CRC32()
+      crc.update(payload.duplicate())
+      if (crc.value.toInt() != checksum) break
+
+      try {
+        when (payload.get()) {
+          CLASS_RECORD -> {
+            val libraryHash = payload.getString()
+            val transformationId = payload.getString()
+            val fqcn = payload.getString()
+            val libraryPath = payload.getString()
+            val dataSize = payload.getInt()
+            if (dataSize != payload.remaining()) break@records
+            addEntry(fqcn, transformationId, Entry(libraryHash, libraryPath, end + RECORD_HEADER_SIZE + payload.position(), dataSize))
+          }
+          LIBRARY_RECORD -> {
+            val libraryPath = payload.getString()
+            val size = payload.getLong()
+            val lastModified = payload.getLong()
+            // Libraries are hashed again when they change, so the latest record of a library is the one that counts.
+            libraryHashes[libraryPath] = LibraryHash(size, lastModified, payload.getString())
+          }
+          else -> break@records
+        }
+      }
+      catch (e: BufferUnderflowException) {
+        break
+      }
+      end += RECORD_HEADER_SIZE + payloadSize
+      buffer.position(end)
+    }
+    return end
+  }
+
+  @GuardedBy("this")
+  private fun close() {
+    isUnavailable = true
+    entries.clear()
+    mappedRegions.clear()
+    mappedEnd = 0
+    try {
+      channel?.close()
+    }
+    catch (ignored: IOException) {
+    }
+    channel = null
+  }
+
+  private fun ByteBuffer.getString(): String {
+    val bytes = ByteArray(getInt())
+    get(bytes)
+    return String(bytes, Charsets.UTF_8)
+  }
+
+  private fun encodeClassRecord(libraryHash: String,
+                                transformationId: String,
+                                fqcn: String,
+                                libraryPath: String,
+                                data: ByteArray): ByteBuffer {
+    val strings = listOf(libraryHash, transformationId, fqcn, libraryPath).map { it.toByteArray(Charsets.UTF_8) }
+    val payloadSize = 1 + strings.sumBy { Int.SIZE_BYTES + it.size } + Int.SIZE_BYTES + data.size
+    val record = startRecord(CLASS_RECORD, payloadSize)
+    strings.forEach { record.putInt(it.size).put(it) }
+    record.putInt(data.size).put(data)
+    return finishRecord(record)
+  }
+
+  private fun encodeLibraryRecord(libraryPath: String, libraryHash: LibraryHash): ByteBuffer {
+    val path = libraryPath.toByteArray(Charsets.UTF_8)
+    val hash = libraryHash.hash.toByteArray(Charsets.UTF_8)
+    val payloadSize = 1 + Int.SIZE_BYTES + path.size + 2 * Long.SIZE_BYTES + Int.SIZE_BYTES + hash.size
+    val record = startRecord(LIBRARY_RECORD, payloadSize)
+    record.putInt(path.size).put(path)
+    record.putLong(libraryHash.size).putLong(libraryHash.lastModified)
+    record.putInt(hash.size).put(hash)
+    return finishRecord(record)
+  }
+
+  private fun startRecord(type: Byte, payloadSize: Int): ByteBuffer =
+    ByteBuffer.allocate(RECORD_HEADER_SIZE + payloadSize).putInt(payloadSize).putInt(0).put(type)
+
+  private fun finishRecord(record: ByteBuffer): ByteBuffer {
+    val crc = CRC32()
+    crc.update(record.array(), RECORD_HEADER_SIZE, record.position() - RECORD_HEADER_SIZE)
+    record.putInt(Int.SIZE_BYTES, crc.value.toInt())
+    record.flip()
+    return record
+  }
+}
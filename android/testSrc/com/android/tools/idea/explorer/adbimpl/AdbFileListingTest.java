@@ -17,6 +17,7 @@ package com.android.tools.idea.explorer.adbimpl;
 
 import com.android.ddmlib.IDevice;
 import com.android.ddmlib.ShellCommandUnresponsiveException;
+import com.android.sdklib.AndroidVersion;
 import com.android.tools.idea.explorer.adbimpl.AdbFileListingEntry.EntryKind;
 import com.google.common.util.concurrent.ListenableFuture;
 import org.hamcrest.core.IsInstanceOf;
@@ -27,6 +28,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
@@ -35,6 +37,7 @@ import java.util.function.Consumer;
 
 import static com.android.tools.idea.explorer.adbimpl.TestDevices.COMMAND_ERROR_CHECK_SUFFIX;
 import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.when;
 
 public class AdbFileListingTest {
   private static final long TIMEOUT_MILLISECONDS = 30_000;
@@ -354,6 +357,96 @@ public class AdbFileListingTest {
     assertDirectoryLink(fileListing, rootEntries, "vendor", true);
   }
 
+  @Test
+  public void test_EmulatorApi25_RevalidatesCachedChildren() throws Exception {
+    // Prepare
+    TestShellCommands commands = new TestShellCommands();
+    TestDevices.addEmulatorApi25Commands(commands);
+    commands.add("stat -c %y /data/local/tmp" + COMMAND_ERROR_CHECK_SUFFIX, "2017-03-06 21:15:03.120000000 -0800\n");
+    String stampCommand = "su 0 sh -c 'echo \"DEVICE-EXPLORER-LISTING 0 $(stat -c %y / 2>/dev/null)\"'";
+    String listCommand = "su 0 sh -c 'echo \"DEVICE-EXPLORER-LISTING 0 $(stat -c %y / 2>/dev/null)\"; ls -l / || echo ERR-ERR-ERR-ERR'";
+    commands.add(listCommand, "DEVICE-EXPLORER-LISTING 0 2017-03-06 21:15:01.450000000 -0800\n" +
+                              "drwxr-xr-x  29 root   root         0 2017-03-06 21:15 acct\n");
+    commands.add(stampCommand, "DEVICE-EXPLORER-LISTING 0 2017-03-06 21:15:01.450000000 -0800\n");
+    IDevice device = commands.createMockDevice();
+    when(device.getVersion()).thenReturn(new AndroidVersion(25));
+    Executor taskExecutor = PooledThreadExecutor.INSTANCE;
+    AdbFileListing fileListing = new AdbFileListing(device, new AdbDeviceCapabilities(device), taskExecutor);
+    AdbFileListingEntry root = waitForFuture(fileListing.getRoot());
+
+    // Act & Assert: First listing, then a cached listing as the directory is unchanged
+    assertThat(waitForFuture(fileListing.getChildren(root)).stream().map(AdbFileListingEntry::getName)).containsExactly("acct");
+    commands.add(listCommand, "DEVICE-EXPLORER-LISTING 0 2017-03-06 21:15:01.450000000 -0800\n" +
+                              "drwxr-xr-x  29 root   root         0 2017-03-06 21:15 acct\n" +
+                              "drwxrwx---   6 system cache     4096 2016-12-10 21:19 cache\n");
+    assertThat(waitForFuture(fileListing.getCachedChildrenRunAs(root, null)).stream().map(AdbFileListingEntry::getName))
+      .containsExactly("acct");
+
+    // Act & Assert: The directory has been modified, so it is listed again
+    commands.add(stampCommand, "DEVICE-EXPLORER-LISTING 0 2017-03-06 21:16:42.000000000 -0800\n");
+    assertThat(waitForFuture(fileListing.getCachedChildrenRunAs(root, null)).stream().map(AdbFileListingEntry::getName))
+      .containsExactly("acct", "cache").inOrder();
+
+    // Act & Assert: An explicit listing ignores the cache, since entries may have been modified in place
+    commands.add(listCommand, "DEVICE-EXPLORER-LISTING 0 2017-03-06 21:15:01.450000000 -0800\n" +
+                              "drwxr-xr-x  29 root   root         0 2017-03-06 21:15 acct\n" +
+                              "drwxrwx---   6 system cache     8192 2016-12-10 21:20 cache\n");
+    List<AdbFileListingEntry> entries = waitForFuture(fileListing.getChildren(root));
+    assertThat(entries.stream().map(AdbFileListingEntry::getSize)).containsExactly(0L, 8192L).inOrder();
+  }
+
+  @Test
+  public void test_EmulatorApi25_ListsRunAsPackagesIndependently() throws Exception {
+    // Prepare
+    TestShellCommands commands = new TestShellCommands();
+    TestDevices.addEmulatorApi25Commands(commands);
+    commands.add("stat -c %y /data/local/tmp" + COMMAND_ERROR_CHECK_SUFFIX, "2017-03-06 21:15:03.120000000 -0800\n");
+    IDevice device = commands.createMockDevice();
+    when(device.getVersion()).thenReturn(new AndroidVersion(25));
+    List<Runnable> tasks = new ArrayList<>();
+    AdbFileListing fileListing = new AdbFileListing(device, new AdbDeviceCapabilities(device), tasks::add);
+    AdbFileListingEntry root = waitForFuture(fileListing.getRoot());
+
+    // Act
+    fileListing.getChildrenRunAs(root, null);
+    fileListing.getChildrenRunAs(root, "com.example.rainbow");
+    fileListing.getChildrenRunAs(root, "com.example.rainbow");
+
+    // Assert: A listing for one package doesn't wait for the listings of the others
+    assertThat(tasks).hasSize(2);
+  }
+
+  @Test
+  public void test_EmulatorApi25_BatchesPendingRequests() throws Exception {
+    // Prepare
+    TestShellCommands commands = new TestShellCommands();
+    TestDevices.addEmulatorApi25Commands(commands);
+    commands.add("stat -c %y /data/local/tmp" + COMMAND_ERROR_CHECK_SUFFIX, "2017-03-06 21:15:03.120000000 -0800\n");
+    commands.add("su 0 sh -c '" +
+                 "echo \"DEVICE-EXPLORER-LISTING 0 $(stat -c %y / 2>/dev/null)\"; ls -l / || echo ERR-ERR-ERR-ERR; " +
+                 "echo \"DEVICE-EXPLORER-LISTING 1 $(stat -c %y /system/ 2>/dev/null)\"; ls -l /system/ || echo ERR-ERR-ERR-ERR'",
+                 "DEVICE-EXPLORER-LISTING 0 2017-03-06 21:15:01.450000000 -0800\n" +
+                 "drwxr-xr-x  29 root   root         0 2017-03-06 21:15 acct\n" +
+                 "DEVICE-EXPLORER-LISTING 1 1969-12-31 16:00:00.000000000 -0800\n" +
+                 "-rw-r--r--  1 root root  2006 2017-02-22 09:07 build.prop\n");
+    IDevice device = commands.createMockDevice();
+    when(device.getVersion()).thenReturn(new AndroidVersion(25));
+    List<Runnable> tasks = new ArrayList<>();
+    AdbFileListing fileListing = new AdbFileListing(device, new AdbDeviceCapabilities(device), tasks::add);
+    AdbFileListingEntry root = waitForFuture(fileListing.getRoot());
+    AdbFileListingEntry system = new AdbFileListingEntryBuilder().setPath("/system").setKind(EntryKind.DIRECTORY).build();
+
+    // Act
+    ListenableFuture<List<AdbFileListingEntry>> rootEntries = fileListing.getChildren(root);
+    ListenableFuture<List<AdbFileListingEntry>> systemEntries = fileListing.getChildren(system);
+    assertThat(tasks).hasSize(1);
+    tasks.get(0).run();
+
+    // Assert
+    assertThat(waitForFuture(rootEntries).stream().map(AdbFileListingEntry::getFullPath)).containsExactly("/acct");
+    assertThat(waitForFuture(systemEntries).stream().map(AdbFileListingEntry::getFullPath)).containsExactly("/system/build.prop");
+  }
+
   private static void assertDirectoryLink(@NotNull AdbFileListing fileListing,
                                           @NotNull List<AdbFileListingEntry> entries,
                                           @NotNull String name,
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.explorer.adbimpl;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Tests for the handling of the archives made by "tar" on the device when downloading a directory.
+ */
+public class AdbFileTransferArchiveTest {
+  @Rule
+  public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void readArchiveExitCodeOfSuccessfulCommand() throws Exception {
+    // Prepare
+    Path archive = createArchive("0\n");
+
+    // Act/Assert
+    assertThat(AdbFileTransfer.readArchiveExitCode(archive)).isEqualTo("0");
+  }
+
+  @Test
+  public void readArchiveExitCodeOfFailedCommand() throws Exception {
+    // Prepare
+    Path archive = createArchive("1\n");
+
+    // Act/Assert
+    assertThat(AdbFileTransfer.readArchiveExitCode(archive)).isEqualTo("1");
+  }
+
+  @Test
+  public void readArchiveExitCodeWithoutArchive() throws Exception {
+    // Prepare: "tar" failed before writing anything, so only the exit code is there
+    Path archive = myTemporaryFolder.newFile("empty.tar").toPath();
+    Files.write(archive, "2\n".getBytes(StandardCharsets.US_ASCII));
+
+    // Act/Assert
+    assertThat(AdbFileTransfer.readArchiveExitCode(archive)).isEqualTo("2");
+  }
+
+  @Test
+  public void extractArchiveCreatesFilesAndDirectories() throws Exception {
+    // Prepare
+    Path archive = createArchive("0\n");
+    Path target = myTemporaryFolder.newFolder("target").toPath();
+
+    // Act
+    int fileCount = AdbFileTransfer.extractArchive(archive, target);
+
+    // Assert
+    assertThat(fileCount).isEqualTo(2);
+    assertThat(new String(Files.readAllBytes(target.resolve("dir/file1.txt")), StandardCharsets.UTF_8)).isEqualTo("contents1");
+    assertThat(new String(Files.readAllBytes(target.resolve("dir/sub/file2.txt")), StandardCharsets.UTF_8)).isEqualTo("contents2");
+    assertThat(Files.isDirectory(target.resolve("dir/empty"))).isTrue();
+  }
+
+  @Test
+  public void extractArchiveSkipsEntriesOutsideOfTarget() throws Exception {
+    // Prepare
+    Path archive = myTemporaryFolder.newFile("escape.tar").toPath();
+    try (TarArchiveOutputStream output = new TarArchiveOutputStream(Files.newOutputStream(archive))) {
+      addFile(output, "../outside.txt", "outside");
+      addFile(output, "dir/inside.txt", "inside");
+    }
+    Path target = myTemporaryFolder.newFolder("target").toPath();
+
+    // Act
+    int fileCount = AdbFileTransfer.extractArchive(archive, target);
+
+    // Assert
+    assertThat(fileCount).isEqualTo(1);
+    assertThat(Files.exists(target.resolve("dir/inside.txt"))).isTrue();
+    assertThat(Files.exists(target.getParent().resolve("outside.txt"))).isFalse();
+  }
+
+  /**
+   * Creates an archive the way the device does: the "tar" output followed by the exit code of the command.
+   */
+  @NotNull
+  private Path createArchive(@NotNull String exitCode) throws IOException {
+    Path archive = myTemporaryFolder.newFile().toPath();
+    try (OutputStream stream = Files.newOutputStream(archive)) {
+      TarArchiveOutputStream output = new TarArchiveOutputStream(stream);
+      addDirectory(output, "dir/");
+      addFile(output, "dir/file1.txt", "contents1");
+      addDirectory(output, "dir/empty/");
+      addFile(output, "dir/sub/file2.txt", "contents2");
+      output.finish();
+      stream.write(exitCode.getBytes(StandardCharsets.US_ASCII));
+    }
+    return archive;
+  }
+
+  private static void addDirectory(@NotNull TarArchiveOutputStream output, @NotNull String name) throws IOException {
+    output.putArchiveEntry(new TarArchiveEntry(name));
+    output.closeArchiveEntry();
+  }
+
+  private static void addFile(@NotNull TarArchiveOutputStream output, @NotNull String name, @NotNull String contents) throws IOException {
+    byte[] bytes = contents.getBytes(StandardCharsets.UTF_8);
+    TarArchiveEntry entry = new TarArchiveEntry(name);
+    entry.setSize(bytes.length);
+    output.putArchiveEntry(entry);
+    output.write(bytes);
+    output.closeArchiveEntry();
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.explorer.adbimpl;
+
+import com.android.ddmlib.IDevice;
+import com.android.ddmlib.SyncService;
+import com.android.tools.idea.concurrency.FutureCallbackExecutor;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AdbSyncServicePoolTest {
+  private IDevice myDevice;
+  private ScheduledFuture<?> myEviction;
+  private final List<Runnable> myScheduledEvictions = new ArrayList<>();
+  private final List<Long> myScheduledDelays = new ArrayList<>();
+  private final AtomicLong myNanoTime = new AtomicLong();
+  private AdbSyncServicePool myPool;
+
+  @Before
+  public void setUp() throws Exception {
+    myDevice = mock(IDevice.class);
+    when(myDevice.getSyncService()).thenAnswer(invocation -> mock(SyncService.class));
+
+    myEviction = mock(ScheduledFuture.class);
+    ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+    when(scheduler.schedule(any(Runnable.class), anyLong(), any(TimeUnit.class))).thenAnswer(invocation -> {
+      myScheduledEvictions.add(invocation.getArgument(0));
+      TimeUnit unit = invocation.getArgument(2);
+      myScheduledDelays.add(unit.toNanos(invocation.getArgument(1)));
+      return myEviction;
+    });
+
+    Ticker ticker = new Ticker() {
+      @Override
+      public long read() {
+        return myNanoTime.get();
+      }
+    };
+    myPool = new AdbSyncServicePool(myDevice, new FutureCallbackExecutor(MoreExecutors.directExecutor()), scheduler, ticker);
+  }
+
+  @Test
+  public void releasedConnectionIsReused() throws Exception {
+    // Act
+    SyncService sync = myPool.acquire().get();
+    myPool.release(sync, true);
+    SyncService reused = myPool.acquire().get();
+
+    // Assert
+    assertThat(reused).isSameAs(sync);
+    verify(myDevice, times(1)).getSyncService();
+    verify(sync, never()).close();
+  }
+
+  @Test
+  public void connectionOfFailedTransferIsClosed() throws Exception {
+    // Act
+    SyncService sync = myPool.acquire().get();
+    myPool.release(sync, false);
+    SyncService other = myPool.acquire().get();
+
+    // Assert
+    verify(sync).close();
+    assertThat(other).isNotSameAs(sync);
+    verify(myDevice, times(2)).getSyncService();
+  }
+
+  @Test
+  public void requestsWaitForAConnectionWhenAllAreInUse() throws Exception {
+    // Prepare
+    List<SyncService> connections = new ArrayList<>();
+    for (int i = 0; i < AdbSyncServicePool.MAX_CONNECTIONS; i++) {
+      connections.add(myPool.acquire().get());
+    }
+
+    // Act
+    ListenableFuture<SyncService> waiter = myPool.acquire();
+    boolean doneBeforeRelease = waiter.isDone();
+    myPool.release(connections.get(0), true);
+
+    // Assert
+    assertThat(doneBeforeRelease).isFalse();
+    assertThat(waiter.get()).isSameAs(connections.get(0));
+    verify(myDevice, times(AdbSyncServicePool.MAX_CONNECTIONS)).getSyncService();
+  }
+
+  @Test
+  public void closingAConnectionOpensOneForTheNextWaiter() throws Exception {
+    // Prepare
+    List<SyncService> connections = new ArrayList<>();
+    for (int i = 0; i < AdbSyncServicePool.MAX_CONNECTIONS; i++) {
+      connections.add(myPool.acquire().get());
+    }
+    ListenableFuture<SyncService> waiter = myPool.acquire();
+
+    // Act
+    myPool.release(connections.get(0), false);
+
+    // Assert
+    assertThat(waiter.get()).isNotSameAs(connections.get(0));
+    verify(myDevice, times(AdbSyncServicePool.MAX_CONNECTIONS + 1)).getSyncService();
+  }
+
+  @Test
+  public void idleConnectionsAreClosedAfterTimeout() throws Exception {
+    // Prepare
+    SyncService sync1 = myPool.acquire().get();
+    SyncService sync2 = myPool.acquire().get();
+    myPool.release(sync1, true);
+    myNanoTime.addAndGet(AdbSyncServicePool.IDLE_TIMEOUT_NANOS / 2);
+    myPool.release(sync2, true);
+
+    // Act: the first eviction only closes the connection that has been idle long enough
+    assertThat(myScheduledEvictions).hasSize(1);
+    assertThat(myScheduledDelays.get(0)).isEqualTo(AdbSyncServicePool.IDLE_TIMEOUT_NANOS);
+    myNanoTime.addAndGet(AdbSyncServicePool.IDLE_TIMEOUT_NANOS / 2);
+    myScheduledEvictions.get(0).run();
+
+    // Assert
+    verify(sync1).close();
+    verify(sync2, never()).close();
+    assertThat(myPool.getIdleConnectionCount()).isEqualTo(1);
+    assertThat(myScheduledEvictions).hasSize(2);
+    assertThat(myScheduledDelays.get(1)).isEqualTo(AdbSyncServicePool.IDLE_TIMEOUT_NANOS / 2);
+
+    // Act: the next eviction closes the remaining one
+    myNanoTime.addAndGet(AdbSyncServicePool.IDLE_TIMEOUT_NANOS / 2);
+    myScheduledEvictions.get(1).run();
+
+    // Assert
+    verify(sync2).close();
+    assertThat(myPool.getIdleConnectionCount()).isEqualTo(0);
+    assertThat(myScheduledEvictions).hasSize(2);
+  }
+
+  @Test
+  public void expiredIdleConnectionIsNotReused() throws Exception {
+    // Prepare
+    SyncService sync = myPool.acquire().get();
+    myPool.release(sync, true);
+    myNanoTime.addAndGet(AdbSyncServicePool.IDLE_TIMEOUT_NANOS);
+
+    // Act
+    SyncService other = myPool.acquire().get();
+
+    // Assert
+    verify(sync).close();
+    assertThat(other).isNotSameAs(sync);
+  }
+
+  @Test
+  public void disposeClosesIdleConnectionsAndFailsRequests() throws Exception {
+    // Prepare
+    List<SyncService> connections = new ArrayList<>();
+    for (int i = 0; i < AdbSyncServicePool.MAX_CONNECTIONS; i++) {
+      connections.add(myPool.acquire().get());
+    }
+    ListenableFuture<SyncService> waiter = myPool.acquire();
+    myPool.release(connections.get(0), true);
+    SyncService idle = waiter.get();
+    myPool.release(idle, true);
+
+    // Act
+    myPool.dispose();
+
+    // Assert
+    verify(idle).close();
+    verify(myEviction).cancel(false);
+    assertThat(myPool.getIdleConnectionCount()).isEqualTo(0);
+    assertFailsWithIOException(myPool.acquire());
+
+    // Connections still in use are closed once their transfer completes
+    SyncService inUse = connections.get(1);
+    verify(inUse, never()).close();
+    myPool.release(inUse, true);
+    verify(inUse).close();
+    assertThat(myPool.getIdleConnectionCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void disposeFailsPendingRequests() throws Exception {
+    // Prepare
+    for (int i = 0; i < AdbSyncServicePool.MAX_CONNECTIONS; i++) {
+      myPool.acquire().get();
+    }
+    ListenableFuture<SyncService> waiter = myPool.acquire();
+
+    // Act
+    myPool.dispose();
+
+    // Assert
+    assertFailsWithIOException(waiter);
+  }
+
+  private static void assertFailsWithIOException(ListenableFuture<SyncService> future) throws InterruptedException {
+    try {
+      future.get();
+      fail("Expected the request to fail");
+    }
+    catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IOException.class);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.explorer.adbimpl;
+
+import com.android.tools.idea.concurrency.FutureCallbackExecutor;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Tests for {@link FutureCallbackExecutor#executeFuturesInParallel}, which throttles the transfers of a directory download.
+ */
+public class FutureCallbackExecutorParallelTest {
+  private final FutureCallbackExecutor myExecutor = new FutureCallbackExecutor(MoreExecutors.directExecutor());
+
+  @Test
+  public void runsAtMostMaxConcurrencyTasks() throws Exception {
+    // Prepare
+    List<Integer> elements = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+    List<SettableFuture<Void>> running = new ArrayList<>();
+    List<Integer> started = new ArrayList<>();
+
+    // Act
+    ListenableFuture<Void> result = myExecutor.executeFuturesInParallel(elements.iterator(), 3, element -> {
+      started.add(element);
+      SettableFuture<Void> future = SettableFuture.create();
+      running.add(future);
+      return future;
+    });
+
+    // Assert
+    assertThat(started).containsExactly(0, 1, 2).inOrder();
+    for (int i = 0; i < elements.size(); i++) {
+      assertThat(result.isDone()).isFalse();
+      // Completing a task starts the next one, if any
+      running.get(i).set(null);
+      assertThat(started).hasSize(Math.min(elements.size(), i + 4));
+    }
+    assertThat(started).isEqualTo(elements);
+    assertThat(result.isDone()).isTrue();
+  }
+
+  @Test
+  public void continuesAfterFailedTasks() throws Exception {
+    // Prepare
+    List<Integer> started = new ArrayList<>();
+
+    // Act
+    ListenableFuture<Void> result = myExecutor.executeFuturesInParallel(IntStream.range(0, 5).iterator(), 2, element -> {
+      started.add(element);
+      return element % 2 == 0 ? Futures.immediateFailedFuture(new RuntimeException("Task failed")) : Futures.immediateFuture(null);
+    });
+
+    // Assert
+    assertThat(started).containsExactly(0, 1, 2, 3, 4);
+    assertThat(result.isDone()).isTrue();
+  }
+
+  @Test
+  public void completesWithoutElements() throws Exception {
+    // Act
+    ListenableFuture<Void> result =
+      myExecutor.executeFuturesInParallel(Collections.<Integer>emptyIterator(), 4, element -> Futures.immediateFuture(null));
+
+    // Assert
+    assertThat(result.isDone()).isTrue();
+    assertThat(result.get()).isNull();
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.repositories.search
+
+import org.hamcrest.CoreMatchers.equalTo
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertThat
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class LocalMavenRepositoryIndexTest {
+  @get:Rule
+  val temporaryFolder = TemporaryFolder()
+
+  private lateinit var repositoryDir: File
+  private lateinit var indexFile: File
+
+  @Before
+  fun setUp() {
+    repositoryDir = temporaryFolder.newFolder("repository")
+    indexFile = File(temporaryFolder.root, "index/repository.idx")
+    addVersion("com/example/libs", "lib1", "1.0")
+    addVersion("com/example/libs", "lib2", "1.0")
+    addVersion("com/example/jlib", "lib3", "0.5")
+  }
+
+  @Test
+  fun searchBuildsIndex() {
+    val index = LocalMavenRepositoryIndex(repositoryDir, indexFile)
+
+    assertThat(index.search("com.example.libs", null).describe(), equalTo(listOf("com.example.libs:lib1:[1.0]",
+                                                                                  "com.example.libs:lib2:[1.0]")))
+    assertThat(index.search("com.example.*", "lib3").describe(), equalTo(listOf("com.example.jlib:lib3:[0.5]")))
+    assertTrue(indexFile.isFile)
+  }
+
+  @Test
+  fun refreshFindsNewVersions() {
+    val index = LocalMavenRepositoryIndex(repositoryDir, indexFile)
+    assertThat(index.search(null, "lib1").describe(), equalTo(listOf("com.example.libs:lib1:[1.0]")))
+
+    val artifactDir = addVersion("com/example/libs", "lib1", "1.1")
+    // Make sure the change is seen even on file systems with a coarse modification time.
+    artifactDir.setLastModified(artifactDir.lastModified() + 2000)
+    index.refresh()
+
+    assertThat(index.search(null, "lib1").describe(), equalTo(listOf("com.example.libs:lib1:[1.0, 1.1]")))
+  }
+
+  @Test
+  fun indexIsLoadedFromDisk() {
+    LocalMavenRepositoryIndex(repositoryDir, indexFile).refresh()
+    // Artifacts are found in the persisted index without walking the repository again.
+    File(repositoryDir, "com/example/jlib").deleteRecursively()
+
+    val index = LocalMavenRepositoryIndex(repositoryDir, indexFile)
+    assertThat(index.search("com.example.jlib", null).describe(), equalTo(listOf("com.example.jlib:lib3:[0.5]")))
+  }
+
+  @Test
+  fun wildcards() {
+    assertTrue(matchesWildcard("lib1", "lib*"))
+    assertTrue(matchesWildcard("lib1", "*1"))
+    assertTrue(matchesWildcard("com.example.lib", "com.*.lib"))
+    assertTrue(matchesWildcard("lib", "lib*"))
+    assertFalse(matchesWildcard("lib1", "lib"))
+    assertFalse(matchesWildcard("comXexample", "com.example"))
+    assertFalse(matchesWildcard("lib1", "*2"))
+  }
+
+  private fun addVersion(groupPath: String, name: String, version: String): File {
+    val artifactDir = File(repositoryDir, "$groupPath/$name")
+    val versionDir = File(artifactDir, version)
+    versionDir.mkdirs()
+    File(versionDir, "$name-$version.pom").writeText("<project/>")
+    return artifactDir
+  }
+
+  private fun List<LocalMavenRepositoryIndex.IndexedArtifact>.describe() =
+    map { "${it.groupId}:${it.name}:${it.versions}" }.sorted()
+}
@@ -50,7 +50,8 @@ class LocalMavenRepositoryTest {
   @Before
   fun setUp() {
     repositoryDir = File(AndroidTestBase.getTestDataPath(), PathUtil.toSystemDependentName(TestProjectPaths.PSD_SAMPLE_REPO))
-    repository = LocalMavenRepository(repositoryDir.absoluteFile, "Test")
+    // The index isn't persisted, so that the tests don't write to the system directory of the IDE.
+    repository = LocalMavenRepository(repositoryDir.absoluteFile, "Test", LocalMavenRepositoryIndex(repositoryDir.absoluteFile, null))
   }
 
   @Test
@@ -19,6 +19,8 @@ import com.android.ide.common.repository.GradleVersion
 import com.android.tools.idea.gradle.repositories.search.CachingRepositorySearchFactory
 import com.android.tools.idea.gradle.repositories.search.ArtifactRepositorySearchService
 import com.android.tools.idea.gradle.repositories.search.FoundArtifact
+import com.android.tools.idea.gradle.repositories.search.LocalMavenRepository
+import com.android.tools.idea.gradle.repositories.search.LocalMavenRepositoryIndex
 import com.android.tools.idea.gradle.repositories.search.SearchQuery
 import com.android.tools.idea.gradle.repositories.search.SearchRequest
 import com.android.tools.idea.gradle.repositories.search.SearchResult
@@ -26,10 +28,16 @@ import com.google.common.util.concurrent.Futures
 import com.google.common.util.concurrent.ListenableFuture
 import org.hamcrest.CoreMatchers.equalTo
 import org.junit.Assert.assertThat
+import org.junit.Rule
 import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.concurrent.TimeUnit
 
 
 class CachingRepositorySearchFactoryTest {
+  @get:Rule
+  val temporaryFolder = TemporaryFolder()
 
   private class TestRepository(val id: String, val onSearch: () -> Unit) : ArtifactRepositorySearchService {
     override fun search(request: SearchRequest): ListenableFuture<SearchResult> {
@@ -69,4 +77,35 @@ class CachingRepositorySearchFactoryTest {
     assertThat(a2Searched, equalTo(0))
     assertThat(b2Searched, equalTo(1))
   }
-}
\ No newline at end of file
+
+  @Test
+  fun testLocalRepositoryResultsRevalidated() {
+    val repositoryDir = temporaryFolder.newFolder("repository")
+    val artifactDir = File(repositoryDir, "com/example/lib1")
+    addVersion(artifactDir, "1.0")
+    // Don't throttle the revalidations of the index, so that every search revalidates it.
+    val localRepo = LocalMavenRepository(repositoryDir, "Local", LocalMavenRepositoryIndex(repositoryDir, null, 0))
+    val repos = CachingRepositorySearchFactory().create(listOf(localRepo))
+    val request = SearchRequest(SearchQuery("com.example", "lib1"), 10, 0)
+    assertThat(repos.search(request).get(10, TimeUnit.SECONDS).versions(), equalTo(listOf("1.0")))
+
+    addVersion(artifactDir, "1.1")
+    // Make sure the change is seen even on file systems with a coarse modification time.
+    artifactDir.setLastModified(artifactDir.lastModified() + 2000)
+
+    // The search revalidates the index in the background, and the cached result is replaced once the index generation changes.
+    val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10)
+    while (repos.search(request).get(10, TimeUnit.SECONDS).versions() != listOf("1.0", "1.1") && System.nanoTime() < deadline) {
+      Thread.sleep(10)
+    }
+    assertThat(repos.search(request).get(10, TimeUnit.SECONDS).versions(), equalTo(listOf("1.0", "1.1")))
+  }
+
+  private fun addVersion(artifactDir: File, version: String) {
+    val versionDir = File(artifactDir, version)
+    versionDir.mkdirs()
+    File(versionDir, "${artifactDir.name}-$version.pom").writeText("<project/>")
+  }
+
+  private fun SearchResult.versions() = artifacts.flatMap { artifact -> artifact.versions.map { it.toString() } }.sorted()
+}
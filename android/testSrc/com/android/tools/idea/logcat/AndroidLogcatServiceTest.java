@@ -16,6 +16,7 @@
 package com.android.tools.idea.logcat;
 
 import com.android.ddmlib.IDevice;
+import com.android.ddmlib.Log.LogLevel;
 import com.android.ddmlib.MultiLineReceiver;
 import com.android.ddmlib.logcat.LogCatMessage;
 import com.google.common.collect.ImmutableList;
@@ -47,6 +48,7 @@ public class AndroidLogcatServiceTest {
 
     private final List<String> myReceivedMessages = new ArrayList<String>();
     private boolean myCleared;
+    private boolean myReplayStarted;
 
     @Override
     public void onLogLineReceived(@NotNull LogCatMessage line) {
@@ -59,6 +61,12 @@ public class AndroidLogcatServiceTest {
       myReceivedMessages.clear();
     }
 
+    @Override
+    public void onReplayStarted() {
+      myReplayStarted = true;
+      myReceivedMessages.clear();
+    }
+
     public void reset() {
       myCleared = false;
       myReceivedMessages.clear();
@@ -270,6 +278,29 @@ public class AndroidLogcatServiceTest {
     myLogcatListener.assertAllReceived();
   }
 
+  @Test
+  public void testReplayMessages() throws Exception {
+    when(mockDevice.isOnline()).thenReturn(true);
+    myLogcatService.addListener(mockDevice, myLogcatListener, true);
+    myExecuteShellCommandLatch.await();
+    myLogcatListener.assertAllReceived();
+
+    CountDownLatch replayed = new CountDownLatch(1);
+    TestLogcatListener listener = new TestLogcatListener() {
+      @Override
+      public void onLogLineReceived(@NotNull LogCatMessage line) {
+        super.onLogLineReceived(line);
+        replayed.countDown();
+      }
+    };
+    myLogcatService.addListener(mockDevice, listener);
+    myLogcatService.replayMessages(mockDevice, listener, LogLevel.WARN, tag -> tag.equals("DummySecond"), 1493);
+    assertTrue(replayed.await(5, TimeUnit.SECONDS));
+
+    assertTrue(listener.myReplayStarted);
+    assertEquals(ImmutableList.of("1537486751.439: W/DummySecond(1493): Second Line1"), listener.myReceivedMessages);
+  }
+
   @Test
   public void consoleGetsClearedWhenDeviceIsDisconnected() {
     myLogcatService.addListener(mockDevice, myLogcatListener);
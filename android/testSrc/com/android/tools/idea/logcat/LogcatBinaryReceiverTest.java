@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.ddmlib.IDevice;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LogcatBinaryReceiverTest {
+  static final int V4_HEADER_SIZE = 28;
+  static final int PRIORITY_WARN = 5;
+
+  private TestFormattedLogcatReceiver myLogcatListener;
+  private LogcatBinaryReceiver myReceiver;
+
+  @Before
+  public void setUp() {
+    IDevice device = AndroidLogcatReceiverTest.createMockDevice();
+    myLogcatListener = new TestFormattedLogcatReceiver();
+    myReceiver = new LogcatBinaryReceiver(device, new AndroidLogcatReceiver(device, myLogcatListener));
+  }
+
+  @Test
+  public void decodesSimpleLogEntry() {
+    byte[] record = createRecord(V4_HEADER_SIZE, 1493, 1595, 1534635551, 439_000_000, PRIORITY_WARN, "EDMNativeHelper",
+                                 "EDMNativeHelperService is published");
+    myReceiver.addOutput(record, 0, record.length);
+
+    String expected = "2018-08-18 16:39:11.439 1493-1595/dummy.client.name W/EDMNativeHelper: EDMNativeHelperService is published\n";
+    assertThat(myLogcatListener.toString()).isEqualTo(expected);
+    assertThat(myReceiver.getPendingByteCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void decodesVersion1Header() {
+    byte[] record = createRecord(0, 99, 99, 1516739696, 789_000_000, 2, "UnknownClient", "Dummy Message");
+    myReceiver.addOutput(record, 0, record.length);
+
+    assertThat(myLogcatListener.toString()).isEqualTo("2018-01-23 12:34:56.789 99-99/? V/UnknownClient: Dummy Message\n");
+  }
+
+  @Test
+  public void decodesRecordsSplitAcrossChunks() {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    byte[] first = createRecord(V4_HEADER_SIZE, 99, 99, 1516739696, 789_000_000, 2, "UnknownClient", "First");
+    byte[] second = createRecord(V4_HEADER_SIZE, 99, 99, 1516739696, 789_000_000, 2, "UnknownClient", "Second");
+    stream.write(first, 0, first.length);
+    stream.write(second, 0, second.length);
+    byte[] bytes = stream.toByteArray();
+    for (int i = 0; i < bytes.length; i++) {
+      myReceiver.addOutput(bytes, i, 1);
+    }
+
+    String expected = "2018-01-23 12:34:56.789 99-99/? V/UnknownClient: First\n" +
+                      "2018-01-23 12:34:56.789 99-99/? V/UnknownClient: Second\n";
+    assertThat(myLogcatListener.toString()).isEqualTo(expected);
+    assertThat(myReceiver.getPendingByteCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void splitsMultilineMessagesAndDropsTrailingNewlines() {
+    byte[] record = createRecord(V4_HEADER_SIZE, 99, 99, 1516739696, 789_000_000, 2, "UnknownClient", "\nLine 1\n\nLine 2\n\n");
+    myReceiver.addOutput(record, 0, record.length);
+
+    String expected = "2018-01-23 12:34:56.789 99-99/? V/UnknownClient: Line 1\n" +
+                      "+ \n" +
+                      "+ Line 2\n";
+    assertThat(myLogcatListener.toString()).isEqualTo(expected);
+  }
+
+  @Test
+  public void skipsRecordsWithoutTextPriority() {
+    byte[] binary = createRecord(V4_HEADER_SIZE, 99, 99, 1516739696, 789_000_000, 0x7F, "", "");
+    byte[] text = createRecord(V4_HEADER_SIZE, 99, 99, 1516739696, 789_000_000, 2, "UnknownClient", "Dummy Message");
+    myReceiver.addOutput(binary, 0, binary.length);
+    myReceiver.addOutput(text, 0, text.length);
+
+    assertThat(myLogcatListener.toString()).isEqualTo("2018-01-23 12:34:56.789 99-99/? V/UnknownClient: Dummy Message\n");
+  }
+
+  /**
+   * Creates a {@code logger_entry} record as written by 'logcat -B'. A header size of 0 creates a version 1 record.
+   */
+  @NotNull
+  static byte[] createRecord(int headerSize, int pid, int tid, int seconds, int nanos, int priority, @NotNull String tag,
+                             @NotNull String message) {
+    byte[] tagBytes = tag.getBytes(StandardCharsets.UTF_8);
+    byte[] messageBytes = message.getBytes(StandardCharsets.UTF_8);
+    int payloadLength = 1 + tagBytes.length + 1 + messageBytes.length + 1;
+    int actualHeaderSize = headerSize == 0 ? 20 : headerSize;
+    ByteBuffer buffer = ByteBuffer.allocate(actualHeaderSize + payloadLength).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putShort((short)payloadLength).putShort((short)headerSize).putInt(pid).putInt(tid).putInt(seconds).putInt(nanos);
+    buffer.position(actualHeaderSize);
+    buffer.put((byte)priority).put(tagBytes).put((byte)0).put(messageBytes).put((byte)0);
+    return buffer.array();
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.tools.idea.run.ApplicationLogListener;
+import com.intellij.openapi.util.Key;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+public class LogcatRingBufferTest {
+  private static final Instant TIMESTAMP = Instant.ofEpochSecond(1534635551, 439_000_000);
+
+  @Test
+  public void returnsMessagesInOrder() {
+    LogcatRingBuffer buffer = new LogcatRingBuffer(10, -1);
+    LogCatHeader first = createHeader(LogLevel.WARN, 1493, "DummyFirst");
+    LogCatHeader second = createHeader(LogLevel.INFO, 1493, "DummySecond");
+    buffer.add(new LogCatMessage(first, "First Line1"));
+    buffer.add(new LogCatMessage(first, "First Line2"));
+    buffer.add(new LogCatMessage(second, "Second Line1"));
+
+    List<LogCatMessage> messages = buffer.getMessages();
+    assertThat(toStrings(messages)).containsExactly(
+      "1534635551.439: W/DummyFirst(1493): First Line1",
+      "1534635551.439: W/DummyFirst(1493): First Line2",
+      "1534635551.439: I/DummySecond(1493): Second Line1").inOrder();
+    // Lines of the same message share their header, which tells listeners they are continuation lines.
+    assertThat(messages.get(1).getHeader()).isSameAs(messages.get(0).getHeader());
+    assertThat(messages.get(2).getHeader()).isNotSameAs(messages.get(1).getHeader());
+  }
+
+  @Test
+  public void dropsOldestLinesWhenFull() {
+    LogcatRingBuffer buffer = new LogcatRingBuffer(3, -1);
+    for (int i = 0; i < 5; i++) {
+      buffer.add(new LogCatMessage(createHeader(LogLevel.DEBUG, i, "Tag"), "Line" + i));
+    }
+
+    assertThat(buffer.size()).isEqualTo(3);
+    assertThat(toMessages(buffer.getMessages())).containsExactly("Line2", "Line3", "Line4").inOrder();
+    assertThat(toMessages(buffer.getMessagesOfProcess(0))).isEmpty();
+    // The line of another process that follows is replayed too.
+    assertThat(toMessages(buffer.getMessagesOfProcess(3))).containsExactly("Line3", "Line4").inOrder();
+  }
+
+  @Test
+  public void dropsOldestLinesAboveCharacterLimit() {
+    LogcatRingBuffer buffer = new LogcatRingBuffer(100, 10);
+    buffer.add(new LogCatMessage(createHeader(LogLevel.DEBUG, 1, "Tag"), "12345"));
+    buffer.add(new LogCatMessage(createHeader(LogLevel.DEBUG, 1, "Tag"), "6789"));
+    buffer.add(new LogCatMessage(createHeader(LogLevel.DEBUG, 1, "Tag"), "ab"));
+
+    assertThat(toMessages(buffer.getMessages())).containsExactly("6789", "ab").inOrder();
+  }
+
+  @Test
+  public void filtersByPid() {
+    LogcatRingBuffer buffer = new LogcatRingBuffer(4000, -1);
+    for (int i = 0; i < 3000; i++) {
+      LogCatHeader header = createHeader(LogLevel.DEBUG, i % 3, "Tag" + (i % 5));
+      buffer.add(new LogCatMessage(header, "Line" + i));
+      buffer.add(new LogCatMessage(header, "Continuation" + i));
+    }
+
+    List<LogCatMessage> messages = buffer.getMessagesOfProcess(2);
+    // Each message of the process is followed by the first line of the next one, which is from another process.
+    assertThat(messages).hasSize(2000);
+    for (int i = 0; i < messages.size(); i += 3) {
+      LogCatHeader header = messages.get(i).getHeader();
+      assertThat(header.getPid()).isEqualTo(2);
+      assertThat(messages.get(i + 1).getHeader()).isSameAs(header);
+      assertThat(messages.get(i + 1).getMessage()).isEqualTo(messages.get(i).getMessage().replace("Line", "Continuation"));
+      if (i + 2 < messages.size()) {
+        assertThat(messages.get(i + 2).getHeader().getPid()).isEqualTo(0);
+        assertThat(messages.get(i + 2).getHeader()).isNotSameAs(header);
+      }
+    }
+    // The buffer only kept the last 4000 lines, i.e. the messages from 1000 on.
+    assertThat(messages.get(0).getMessage()).isEqualTo("Line1001");
+    assertThat(messages.get(messages.size() - 2).getMessage()).isEqualTo("Line2999");
+    assertThat(buffer.getMessagesOfProcess(3)).isEmpty();
+  }
+
+  @Test
+  public void filtersByLevelTagAndPid() {
+    LogcatRingBuffer buffer = new LogcatRingBuffer(4000, -1);
+    for (int i = 0; i < 3000; i++) {
+      LogCatHeader header = createHeader(i % 2 == 0 ? LogLevel.DEBUG : LogLevel.ERROR, i % 3, "Tag" + (i % 5));
+      buffer.add(new LogCatMessage(header, "Line" + i));
+      buffer.add(new LogCatMessage(header, "Continuation" + i));
+    }
+
+    List<LogCatMessage> messages = buffer.getMessages(LogLevel.WARN, tag -> tag.equals("Tag4"), 2);
+    // The buffer kept the messages from 1000 on, and the errors of process 2 with tag Tag4 are the ones from 1019 on, every 30 messages.
+    assertThat(messages).hasSize(2 * 67);
+    assertThat(messages.get(0).getMessage()).isEqualTo("Line1019");
+    for (int i = 0; i < messages.size(); i += 2) {
+      LogCatHeader header = messages.get(i).getHeader();
+      assertThat(header.getLogLevel()).isEqualTo(LogLevel.ERROR);
+      assertThat(header.getTag()).isEqualTo("Tag4");
+      assertThat(header.getPid()).isEqualTo(2);
+      assertThat(messages.get(i + 1).getHeader()).isSameAs(header);
+      if (i > 0) {
+        // Lines of other messages were skipped in between, so consecutive messages don't share their header.
+        assertThat(header).isNotSameAs(messages.get(i - 1).getHeader());
+      }
+    }
+    assertThat(buffer.getMessages(LogLevel.VERBOSE, tag -> true, null)).hasSize(4000);
+    assertThat(buffer.getMessages(LogLevel.ASSERT, tag -> true, null)).isEmpty();
+    assertThat(buffer.getMessages(LogLevel.VERBOSE, tag -> true, 3)).isEmpty();
+    assertThat(buffer.getMessages(LogLevel.VERBOSE, tag -> false, null)).isEmpty();
+  }
+
+  @Test
+  public void replayedLinesOfProcessKeepTheirMessageBoundaries() {
+    LogcatRingBuffer buffer = new LogcatRingBuffer(10, -1);
+    buffer.add(new LogCatMessage(createHeader(LogLevel.INFO, 1493, "Tag"), "Line1"));
+    buffer.add(new LogCatMessage(createHeader(LogLevel.INFO, 1500, "Tag"), "Other"));
+    // Same header values as the first line, but a different message.
+    buffer.add(new LogCatMessage(createHeader(LogLevel.INFO, 1493, "Tag"), "Line2"));
+
+    List<String> output = new ArrayList<>();
+    ApplicationLogListener listener = new ApplicationLogListener("?", 1493) {
+      @Override
+      protected String formatLogLine(@NotNull LogCatMessage line) {
+        return "Header: " + line.getMessage();
+      }
+
+      @Override
+      protected void notifyTextAvailable(@NotNull String message, @NotNull Key key) {
+        output.add(message);
+      }
+    };
+    buffer.getMessagesOfProcess(1493).forEach(listener::onLogLineReceived);
+
+    assertThat(output).containsExactly("Header: Line1\n", "Header: Line2\n").inOrder();
+  }
+
+  @Test
+  public void releasesInternedStringsOfDroppedLines() {
+    LogcatRingBuffer buffer = new LogcatRingBuffer(3, -1);
+    for (int i = 0; i < 100; i++) {
+      buffer.add(new LogCatMessage(createHeader(LogLevel.DEBUG, 1, "Tag" + i), "Line" + i));
+    }
+
+    // The tags of the last three lines and the application name.
+    assertThat(buffer.getInternedStringCount()).isEqualTo(4);
+    assertThat(toStrings(buffer.getMessages())).containsExactly(
+      "1534635551.439: D/Tag97(1): Line97",
+      "1534635551.439: D/Tag98(1): Line98",
+      "1534635551.439: D/Tag99(1): Line99").inOrder();
+  }
+
+  @NotNull
+  private static LogCatHeader createHeader(@NotNull LogLevel level, int pid, @NotNull String tag) {
+    return new LogCatHeader(level, pid, 1595, "?", tag, TIMESTAMP);
+  }
+
+  @NotNull
+  private static List<String> toStrings(@NotNull List<LogCatMessage> messages) {
+    return messages.stream().map(LogCatMessage::toString).collect(Collectors.toList());
+  }
+
+  @NotNull
+  private static List<String> toMessages(@NotNull List<LogCatMessage> messages) {
+    return messages.stream().map(LogCatMessage::getMessage).collect(Collectors.toList());
+  }
+}
@@ -23,6 +23,7 @@ import org.junit.Test;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -144,6 +145,35 @@ public class ImagePoolImplTest {
     gc();
   }
 
+  @Test
+  public void testMemoryLimitEvictsLeastRecentlyReturnedImage() {
+    // 50x50 images are allocated as 500x500 (1MB), 600x50 images as 1000x500 (2MB).
+    ImagePoolImpl pool = new ImagePoolImpl(new int[]{50, 500, 1000}, (w, h) -> (type) -> 10, 2_500_000);
+    try {
+      ImagePoolImpl.ImageImpl small = pool.create(50, 50, BufferedImage.TYPE_INT_ARGB, null);
+      ImagePoolImpl.ImageImpl large = pool.create(600, 50, BufferedImage.TYPE_INT_ARGB, null);
+      BufferedImage smallPtr = small.myBuffer;
+      BufferedImage largePtr = large.myBuffer;
+
+      small.dispose();
+      assertEquals(1_000_000, pool.getStats().totalBytesPooled());
+      // Returning the large image goes over the limit, so the small one, returned earlier, is evicted from its bucket.
+      large.dispose();
+      assertEquals(2_000_000, pool.getStats().totalBytesPooled());
+      assertEquals(2_000_000, pool.getStats().totalBytesAllocated());
+      assertEquals(0, pool.getStats().totalBytesInUse());
+      long evicted = Arrays.stream(pool.getStats().getBucketStats()).mapToLong(ImagePool.BucketStats::imageWasEvicted).sum();
+      assertEquals(1, evicted);
+
+      assertNotEquals(smallPtr, pool.create(50, 50, BufferedImage.TYPE_INT_ARGB, null).myBuffer);
+      assertEquals(largePtr, pool.create(600, 50, BufferedImage.TYPE_INT_ARGB, null).myBuffer);
+      assertEquals(0, pool.getStats().totalBytesPooled());
+    }
+    finally {
+      pool.dispose();
+    }
+  }
+
   @Test
   public void testDefaultPooling() throws InterruptedException {
     // Small images won't be pooled
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res;
+
+import static com.android.ide.common.rendering.api.ResourceNamespace.RES_AUTO;
+
+import com.android.ide.common.resources.ResourceItem;
+import com.android.ide.common.resources.ResourceMergerItem;
+import com.android.resources.ResourceType;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Checks that {@link MultiResourceRepository} lookups from many threads stay consistent while a child repository keeps changing. The read
+ * throughput is measured by MultiResourceRepositoryBenchmark in the ide-perf-tests.
+ */
+public class MultiResourceRepositoryConcurrencyTest extends AndroidTestCase {
+  private static final int MODULE_COUNT = 60;
+  private static final int IDS_PER_MODULE = 100;
+  private static final int READER_COUNT = 8;
+  private static final int READS_PER_READER = 20_000;
+  private static final String VOLATILE_ID = "volatile_id";
+
+  public void testConcurrentReadsDuringUpdates() throws Exception {
+    List<TestLocalResourceRepository> modules = new ArrayList<>();
+    for (int i = 0; i < MODULE_COUNT; i++) {
+      TestLocalResourceRepository module = new TestLocalResourceRepository(RES_AUTO);
+      module.addResources(RES_AUTO, ResourceType.ID, createIds(i, false));
+      modules.add(module);
+    }
+    ProjectResourceRepository projectResources = ProjectResourceRepository.createForTest(myFacet, ImmutableList.copyOf(modules));
+    AppResourceRepository appResources = AppResourceRepository.createForTest(
+      myFacet, ImmutableList.of(projectResources), ImmutableList.of(ResourcesTestsUtil.getTestAarRepositoryFromExplodedAar()));
+
+    TestLocalResourceRepository updatedModule = modules.get(0);
+    AtomicBoolean done = new AtomicBoolean();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(READER_COUNT + 1);
+    try {
+      Future<?> writer = executor.submit(() -> {
+        start.await();
+        boolean withVolatileId = false;
+        while (!done.get()) {
+          withVolatileId = !withVolatileId;
+          synchronized (AbstractResourceRepositoryWithLocking.ITEM_MAP_LOCK) {
+            updatedModule.addResources(RES_AUTO, ResourceType.ID, createIds(0, withVolatileId));
+            updatedModule.invalidateParentCaches(updatedModule, ResourceType.ID);
+          }
+          Thread.yield();
+        }
+        return null;
+      });
+
+      List<Future<?>> readers = new ArrayList<>();
+      for (int i = 0; i < READER_COUNT; i++) {
+        int reader = i;
+        readers.add(executor.submit(() -> {
+          start.await();
+          for (int j = 0; j < READS_PER_READER; j++) {
+            String name = idName((reader + j) % MODULE_COUNT, j % IDS_PER_MODULE);
+            assertTrue(appResources.hasResources(RES_AUTO, ResourceType.ID, name));
+            assertEquals(1, appResources.getResources(RES_AUTO, ResourceType.ID, name).size());
+          }
+          return null;
+        }));
+      }
+
+      start.countDown();
+      for (Future<?> reader : readers) {
+        reader.get(1, TimeUnit.MINUTES);
+      }
+      done.set(true);
+      writer.get(1, TimeUnit.MINUTES);
+    }
+    finally {
+      done.set(true);
+      executor.shutdownNow();
+    }
+
+    // After the last update, the merged view reflects the module's current state.
+    boolean hasVolatileId = updatedModule.getResources(RES_AUTO, ResourceType.ID).containsKey(VOLATILE_ID);
+    assertEquals(hasVolatileId, appResources.hasResources(RES_AUTO, ResourceType.ID, VOLATILE_ID));
+    assertEquals(hasVolatileId, projectResources.getResourceNames(RES_AUTO, ResourceType.ID).contains(VOLATILE_ID));
+  }
+
+  public void testInvalidationOnlyRebuildsInvalidatedTypes() {
+    List<TestLocalResourceRepository> modules = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      TestLocalResourceRepository module = new TestLocalResourceRepository(RES_AUTO);
+      module.addResources(RES_AUTO, ResourceType.ID, createIds(i, false));
+      ListMultimap<String, ResourceItem> strings = ArrayListMultimap.create();
+      String name = "string_" + i;
+      strings.put(name, new ResourceMergerItem(name, null, ResourceType.STRING, null, null, null));
+      module.addResources(RES_AUTO, ResourceType.STRING, strings);
+      modules.add(module);
+    }
+    ProjectResourceRepository projectResources = ProjectResourceRepository.createForTest(myFacet, ImmutableList.copyOf(modules));
+
+    ListMultimap<String, ResourceItem> ids = projectResources.getResources(RES_AUTO, ResourceType.ID);
+    ListMultimap<String, ResourceItem> strings = projectResources.getResources(RES_AUTO, ResourceType.STRING);
+    // Reads are served from the same copy until it is invalidated.
+    assertSame(ids, projectResources.getResources(RES_AUTO, ResourceType.ID));
+    assertFalse(ids.containsKey(VOLATILE_ID));
+
+    TestLocalResourceRepository updatedModule = modules.get(0);
+    synchronized (AbstractResourceRepositoryWithLocking.ITEM_MAP_LOCK) {
+      updatedModule.addResources(RES_AUTO, ResourceType.ID, createIds(0, true));
+      updatedModule.invalidateParentCaches(updatedModule, ResourceType.ID);
+    }
+
+    assertTrue(projectResources.getResources(RES_AUTO, ResourceType.ID).containsKey(VOLATILE_ID));
+    assertSame(strings, projectResources.getResources(RES_AUTO, ResourceType.STRING));
+  }
+
+  public void testNameLookupsAfterInvalidation() {
+    List<TestLocalResourceRepository> modules = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      TestLocalResourceRepository module = new TestLocalResourceRepository(RES_AUTO);
+      module.addResources(RES_AUTO, ResourceType.ID, createIds(i, false));
+      modules.add(module);
+    }
+    ProjectResourceRepository projectResources = ProjectResourceRepository.createForTest(myFacet, ImmutableList.copyOf(modules));
+    String name = idName(1, 0);
+
+    List<ResourceItem> items = projectResources.getResources(RES_AUTO, ResourceType.ID, name);
+    assertEquals(1, items.size());
+    // Lookups by name are served from the same copy until the type is invalidated.
+    assertSame(items, projectResources.getResources(RES_AUTO, ResourceType.ID, name));
+    assertFalse(projectResources.hasResources(RES_AUTO, ResourceType.ID, VOLATILE_ID));
+
+    TestLocalResourceRepository updatedModule = modules.get(0);
+    for (boolean withVolatileId : new boolean[] {true, false}) {
+      synchronized (AbstractResourceRepositoryWithLocking.ITEM_MAP_LOCK) {
+        updatedModule.addResources(RES_AUTO, ResourceType.ID, createIds(0, withVolatileId));
+        updatedModule.invalidateParentCaches(updatedModule, ResourceType.ID);
+      }
+      assertEquals(withVolatileId, projectResources.hasResources(RES_AUTO, ResourceType.ID, VOLATILE_ID));
+      assertEquals(items, projectResources.getResources(RES_AUTO, ResourceType.ID, name));
+      assertEquals(withVolatileId, projectResources.getResourceNames(RES_AUTO, ResourceType.ID).contains(VOLATILE_ID));
+    }
+  }
+
+  @NotNull
+  private static ListMultimap<String, ResourceItem> createIds(int module, boolean withVolatileId) {
+    ListMultimap<String, ResourceItem> ids = ArrayListMultimap.create();
+    for (int i = 0; i < IDS_PER_MODULE; i++) {
+      String name = idName(module, i);
+      ids.put(name, new ResourceMergerItem(name, null, ResourceType.ID, null, null, null));
+    }
+    if (withVolatileId) {
+      ids.put(VOLATILE_ID, new ResourceMergerItem(VOLATILE_ID, null, ResourceType.ID, null, null, null));
+    }
+    return ids;
+  }
+
+  @NotNull
+  private static String idName(int module, int index) {
+    return "id_" + module + "_" + index;
+  }
+}
@@ -3963,6 +3963,29 @@ public class ResourceFolderRepositoryTest extends AndroidTestCase {
     assertTrue(fromCacheFile.hasResources(RES_AUTO, ResourceType.STRING, "hello_there"));
   }
 
+  public void testSerializationTouchXmlFileAndLoad() {
+    VirtualFile file1 = myFixture.copyFileToProject(STRINGS, "res/values/strings.xml");
+    myFixture.copyFileToProject(LAYOUT1, "res/layout/layout.xml");
+    File file1AsFile = virtualToIoFile(file1);
+    ResourceFolderRepository resources = createRepository(true);
+    assertNotNull(resources);
+
+    // Changing the time stamp without changing the contents, as a VCS branch switch would do, should not cause reparsing.
+    if (!file1AsFile.setLastModified(file1AsFile.lastModified() + 2000)) {
+      // Not supported on this platform?
+      return;
+    }
+    file1.refresh(false, false);
+
+    ResourceFolderRepository fromCacheFile = createRepository(true);
+    assertNotNull(fromCacheFile);
+    assertEquals(2, fromCacheFile.getNumXmlFilesLoadedInitially());
+    assertEquals(0, fromCacheFile.getNumXmlFilesLoadedInitiallyFromSources());
+    assertEquals(1, fromCacheFile.getNumXmlFilesValidatedByContent());
+    assertTrue(fromCacheFile.hasResources(RES_AUTO, ResourceType.STRING, "hello_world"));
+    assertTrue(fromCacheFile.hasResources(RES_AUTO, ResourceType.ID, "noteArea"));
+  }
+
   public void testSerializationAddXmlFileAndLoad() {
     myFixture.copyFileToProject(STRINGS, "res/values/strings.xml");
     ResourceFolderRepository resources = createRepository(true);
@@ -19,6 +19,8 @@ import com.android.ddmlib.AdbCommandRejectedException;
 import com.android.ddmlib.IDevice;
 import com.android.ddmlib.ShellCommandUnresponsiveException;
 import com.android.ddmlib.TimeoutException;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.io.FileUtil;
 import junit.framework.TestCase;
@@ -28,6 +30,8 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 @SuppressWarnings("StaticMethodReferencedViaSubclass")
@@ -137,6 +141,62 @@ public class InstalledApkCacheTest extends TestCase {
     assertFalse(myService.isInstalled(myDevice1, myFile, myPkgName, 1));
   }
 
+  public void testStatePersisted() throws Exception {
+    myService.setInstalled(myDevice1, myFile, myPkgName);
+
+    InstalledApkCache restartedService = new InstalledApkCache() {
+      @Override
+      protected String executeShellCommand(@NotNull IDevice device, @NotNull String cmd, long timeout, @NotNull TimeUnit timeUnit) {
+        return myDumpSysOutput;
+      }
+    };
+    try {
+      restartedService.loadState(myService.getState());
+      assertTrue(restartedService.isInstalled(myDevice1, myFile, myPkgName, null));
+      assertFalse(restartedService.isInstalled(myDevice2, myFile, myPkgName, null));
+
+      FileUtil.writeToFile(myFile, "changed!");
+      assertFalse(restartedService.isInstalled(myDevice1, myFile, myPkgName, null));
+    }
+    finally {
+      Disposer.dispose(restartedService);
+    }
+  }
+
+  public void testBatchedInstallStates() throws Exception {
+    File otherFile = FileUtil.createTempFile("test", ".apk");
+    String batchedDumpSysOutput = "INSTALLED-APK-CACHE-PACKAGE com.foo.bar\n" +
+                                  "Packages:\n" +
+                                  "  Package [com.foo.bar] (423123d0):\n" +
+                                  "    lastUpdateTime=2014-09-29 11:58:19\n" +
+                                  "INSTALLED-APK-CACHE-PACKAGE com.foo.baz\n" +
+                                  "Packages:\n" +
+                                  "  Package [com.foo.baz] (523123d0):\n" +
+                                  "    lastUpdateTime=2015-09-29 11:58:19\n" +
+                                  "INSTALLED-APK-CACHE-PACKAGE com.foo.qux\n";
+    myDumpSysOutput = batchedDumpSysOutput;
+
+    Map<String, InstalledApkCache.InstallState> states =
+      myService.getInstallStates(myDevice1, Arrays.asList("com.foo.bar", "com.foo.baz", "com.foo.qux"));
+    assertEquals(2, states.size());
+    assertEquals("lastUpdateTime=2014-09-29 11:58:19", states.get("com.foo.bar").lastUpdateTime);
+    assertEquals("lastUpdateTime=2015-09-29 11:58:19", states.get("com.foo.baz").lastUpdateTime);
+
+    Map<String, File> apks = ImmutableMap.of("com.foo.bar", myFile, "com.foo.baz", otherFile);
+    assertTrue(myService.getInstalledPackages(myDevice1, apks, null).isEmpty());
+    myDumpSysOutput = "Package [com.foo.bar]\n" +
+                      "    lastUpdateTime=2014-09-29 11:58:19\n";
+    myService.setInstalled(myDevice1, myFile, "com.foo.bar");
+    myDumpSysOutput = "Package [com.foo.baz]\n" +
+                      "    lastUpdateTime=2015-09-29 11:58:19\n";
+    myService.setInstalled(myDevice1, otherFile, "com.foo.baz");
+
+    myDumpSysOutput = batchedDumpSysOutput;
+    assertEquals(ImmutableSet.of("com.foo.bar", "com.foo.baz"), myService.getInstalledPackages(myDevice1, apks, null));
+    FileUtil.writeToFile(myFile, "changed!");
+    assertEquals(ImmutableSet.of("com.foo.baz"), myService.getInstalledPackages(myDevice1, apks, null));
+  }
+
   public void testDumpsysParser() {
     myDumpSysOutput = "Packages:\n" +
                     "  Package [com.foo.bar] (423123d0):\n" +
@@ -16,11 +16,15 @@
 package org.jetbrains.android.uipreview
 
 import com.google.common.base.Ticker
+import com.google.common.util.concurrent.MoreExecutors
 import com.intellij.openapi.module.Module
 import org.junit.Before
+import org.junit.Rule
 import org.junit.Test
+import org.junit.rules.TemporaryFolder
 import org.mockito.Mock
 import org.mockito.MockitoAnnotations
+import java.util.concurrent.Executor
 import kotlin.test.assertEquals
 import kotlin.test.assertNotNull
 import kotlin.test.assertNull
@@ -31,6 +35,9 @@ class ClassBinaryCacheManagerTest {
     override fun read(): Long = timeNanos
   }
 
+  @get:Rule
+  val temporaryFolder = TemporaryFolder()
+
   @Mock
   private lateinit var module: Module
 
@@ -105,4 +112,120 @@ class ClassBinaryCacheManagerTest {
 
     assertNull(moduleCache.get("a.b.c"))
   }
-}
\ No newline at end of file
+
+  @Test
+  fun testPersistedAcrossInstances() {
+    val library = temporaryFolder.newFile("library.jar")
+    library.writeText("content")
+    val packFile = temporaryFolder.root.toPath().resolve("classes.pack")
+
+    val moduleCache = ClassBinaryCacheManager.getTestInstance(ManualTicker(), 100, 1, ClassBinaryPackFile(packFile, 1000, MoreExecutors.directExecutor()))
+      .getCache(module)
+    moduleCache.setDependencies(listOf(library.path))
+    moduleCache.put("a.b.c", "T", library.path, "hello".toByteArray())
+    moduleCache.put("d.e.f", library.path, "bye".toByteArray())
+
+    val newModuleCache = ClassBinaryCacheManager.getTestInstance(ManualTicker(), 100, 1, ClassBinaryPackFile(packFile, 1000, MoreExecutors.directExecutor()))
+      .getCache(module)
+    assertNull(newModuleCache.get("a.b.c", "T"))
+    newModuleCache.setDependencies(listOf(library.path))
+    assertEquals("hello", newModuleCache.get("a.b.c", "T")?.toString(Charsets.UTF_8))
+    assertNull(newModuleCache.get("a.b.c"))
+    assertEquals("bye", newModuleCache.get("d.e.f")?.toString(Charsets.UTF_8))
+  }
+
+  @Test
+  fun testPersistedClassesInvalidatedWhenLibraryChanged() {
+    val library = temporaryFolder.newFile("library.jar")
+    library.writeText("content")
+    val packFile = temporaryFolder.root.toPath().resolve("classes.pack")
+
+    val moduleCache = ClassBinaryCacheManager.getTestInstance(ManualTicker(), 100, 1, ClassBinaryPackFile(packFile, 1000, MoreExecutors.directExecutor()))
+      .getCache(module)
+    moduleCache.setDependencies(listOf(library.path))
+    moduleCache.put("a.b.c", library.path, "hello".toByteArray())
+
+    library.writeText("new content")
+
+    val newModuleCache = ClassBinaryCacheManager.getTestInstance(ManualTicker(), 100, 1, ClassBinaryPackFile(packFile, 1000, MoreExecutors.directExecutor()))
+      .getCache(module)
+    newModuleCache.setDependencies(listOf(library.path))
+    assertNull(newModuleCache.get("a.b.c"))
+  }
+
+  @Test
+  fun testPersistedInBackground() {
+    val library = temporaryFolder.newFile("library.jar")
+    library.writeText("content")
+    val packFile = temporaryFolder.root.toPath().resolve("classes.pack")
+    val tasks = mutableListOf<Runnable>()
+    val executor = Executor { tasks.add(it) }
+
+    val moduleCache = ClassBinaryCacheManager.getTestInstance(ManualTicker(), 100, 1, ClassBinaryPackFile(packFile, 1000, executor))
+      .getCache(module)
+    moduleCache.setDependencies(listOf(library.path))
+    moduleCache.put("a.b.c", library.path, "hello".toByteArray())
+    assertEquals("hello", moduleCache.get("a.b.c")?.toString(Charsets.UTF_8))
+    // The class is written to the pack in the background.
+    assertEquals(1, tasks.size)
+    runTasks(tasks)
+
+    val newModuleCache = ClassBinaryCacheManager.getTestInstance(ManualTicker(), 100, 1, ClassBinaryPackFile(packFile, 1000, executor))
+      .getCache(module)
+    newModuleCache.setDependencies(listOf(library.path))
+    // The hash of the library is stored in the pack, so it doesn't need to be hashed again as long as it hasn't changed.
+    assertEquals("hello", newModuleCache.get("a.b.c")?.toString(Charsets.UTF_8))
+    assertEquals(0, tasks.size)
+  }
+
+  @Test
+  fun testChangedLibraryHashedInBackground() {
+    val library = temporaryFolder.newFile("library.jar")
+    library.writeText("content")
+    val packFile = temporaryFolder.root.toPath().resolve("classes.pack")
+    val tasks = mutableListOf<Runnable>()
+    val executor = Executor { tasks.add(it) }
+
+    val moduleCache = ClassBinaryCacheManager.getTestInstance(ManualTicker(), 100, 1, ClassBinaryPackFile(packFile, 1000, executor))
+      .getCache(module)
+    moduleCache.setDependencies(listOf(library.path))
+    moduleCache.put("a.b.c", library.path, "hello".toByteArray())
+    runTasks(tasks)
+
+    // Same content, but the modification time doesn't match the one the library was hashed with anymore.
+    library.setLastModified(library.lastModified() - 10_000)
+    val newModuleCache = ClassBinaryCacheManager.getTestInstance(ManualTicker(), 100, 1, ClassBinaryPackFile(packFile, 1000, executor))
+      .getCache(module)
+    newModuleCache.setDependencies(listOf(library.path))
+    // The library is hashed in the background, and its classes can't be found in the pack until then.
+    assertNull(newModuleCache.get("a.b.c"))
+    runTasks(tasks)
+    assertEquals("hello", newModuleCache.get("a.b.c")?.toString(Charsets.UTF_8))
+  }
+
+  @Test
+  fun testClassStoredOncePerLibraryContent() {
+    val library = temporaryFolder.newFile("library.jar")
+    library.writeText("content")
+    val libraryCopy = temporaryFolder.newFile("library-copy.jar")
+    libraryCopy.writeText("content")
+    val packFile = temporaryFolder.root.toPath().resolve("classes.pack")
+
+    val packCache = ClassBinaryPackFile(packFile, 1000, MoreExecutors.directExecutor())
+    packCache.put("a.b.c", "", library.path, "hello".toByteArray())
+    val packSize = packFile.toFile().length()
+    packCache.put("a.b.c", "", library.path, "hello".toByteArray())
+    assertEquals(packSize, packFile.toFile().length())
+
+    // The copy only adds the record of its hash, and its class is found from the record of the original library.
+    packCache.put("a.b.c", "", libraryCopy.path, "hello".toByteArray())
+    assertEquals("hello", packCache.get("a.b.c", "", setOf(libraryCopy.path))?.second?.toString(Charsets.UTF_8))
+    assertEquals(libraryCopy.path, packCache.get("a.b.c", "", setOf(libraryCopy.path))?.first)
+  }
+
+  private fun runTasks(tasks: MutableList<Runnable>) {
+    while (tasks.isNotEmpty()) {
+      tasks.removeAt(0).run()
+    }
+  }
+}
@@ -37,9 +37,11 @@ import com.android.tools.idea.compose.preview.util.layoutlibSceneManagers
 import com.android.tools.idea.compose.preview.util.matchElementsToModels
 import com.android.tools.idea.compose.preview.util.modelAffinity
 import com.android.tools.idea.compose.preview.util.requestComposeRender
+import com.android.tools.idea.compose.preview.util.requestRendersWithBoundedConcurrency
 import com.android.tools.idea.compose.preview.util.sortByDisplayAndSourcePosition
 import com.android.tools.idea.configurations.Configuration
 import com.android.tools.idea.configurations.ConfigurationManager
+import com.android.tools.idea.flags.StudioFlags
 import com.android.tools.idea.run.util.StopWatch
 import com.android.tools.idea.uibuilder.actions.SurfaceLayoutManagerOption
 import com.android.tools.idea.uibuilder.graphics.NlConstants
@@ -63,7 +65,6 @@ import com.intellij.psi.PsiFile
 import kotlinx.coroutines.future.await
 import org.jetbrains.android.facet.AndroidFacet
 import java.util.UUID
-import java.util.concurrent.CompletableFuture
 import java.util.function.BiFunction
 
 /**
@@ -140,16 +141,17 @@ internal suspend fun NlDesignSurface.refreshExistingPreviewElements(
     val previewElement = it.dataContext.getData(COMPOSE_PREVIEW_ELEMENT) ?: return@mapNotNull null
     previewElement to sceneManager
   }
+  val maxConcurrentRenders = StudioFlags.COMPOSE_PREVIEW_MAX_CONCURRENT_RENDERS.get()
   previewElementsToSceneManagers
-    .forEachIndexed { index, pair ->
-      if (progressIndicator.isCanceled) return@refreshExistingPreviewElements // Return early if user cancels the refresh.
+    // Stop requesting renders early if user cancels the refresh.
+    .requestRendersWithBoundedConcurrency(maxConcurrentRenders, progressIndicator::isCanceled) { index, pair ->
       progressIndicator.text = message("refresh.progress.indicator.rendering.preview", index + 1, previewElementsToSceneManagers.size)
       val (previewElement, sceneManager) = pair
       // When showing decorations, show the full device size
       configureLayoutlibSceneManager(previewElement, sceneManager)
         .requestComposeRender()
-        .await()
     }
+    .await()
 }
 
 private fun NlDesignSurface.logSurfaceStatus(log: Logger) {
@@ -304,21 +306,14 @@ internal fun NlDesignSurface.updatePreviewsAndRefresh(
 
   repaint()
   if (newSceneManagers.isNotEmpty()) {
-    var preview = 1 // next preview to render
-    progressIndicator.text = message("refresh.progress.indicator.rendering.preview", preview++, newSceneManagers.size)
-    CompletableFuture.allOf(*newSceneManagers
-      .map {
-        if (progressIndicator.isCanceled) return@updatePreviewsAndRefresh previewElementsList // Return early if user cancels the refresh
-        val renderFuture = it.requestComposeRender()
-        renderFuture.whenComplete { _, _ ->
-          if (preview <= newSceneManagers.size) { // Skip the last one, since we log *before* rendering each preview.
-            progressIndicator.text = message("refresh.progress.indicator.rendering.preview", preview++, newSceneManagers.size)
-          }
-        }
-        return@map renderFuture
+    val maxConcurrentRenders = StudioFlags.COMPOSE_PREVIEW_MAX_CONCURRENT_RENDERS.get()
+    newSceneManagers
+      .requestRendersWithBoundedConcurrency(maxConcurrentRenders, progressIndicator::isCanceled) { index, sceneManager ->
+        progressIndicator.text = message("refresh.progress.indicator.rendering.preview", index + 1, newSceneManagers.size)
+        sceneManager.requestComposeRender()
       }
-      .toTypedArray())
       .join()
+    if (progressIndicator.isCanceled) return previewElementsList // Return early if user cancels the refresh
   }
   onRenderCompleted()
 
@@ -20,7 +20,10 @@ import com.android.tools.idea.common.surface.DesignSurface
 import com.android.tools.idea.flags.StudioFlags
 import com.android.tools.idea.rendering.RenderResult
 import com.android.tools.idea.uibuilder.scene.LayoutlibSceneManager
+import com.intellij.util.concurrency.AppExecutorUtil
 import java.util.concurrent.CompletableFuture
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
 
 
 /**
@@ -63,4 +66,55 @@ else {
 internal val DesignSurface.layoutlibSceneManagers: Sequence<LayoutlibSceneManager>
   get() = models.asSequence()
     .mapNotNull { getSceneManager(it) }
-    .filterIsInstance<LayoutlibSceneManager>()
\ No newline at end of file
+    .filterIsInstance<LayoutlibSceneManager>()
+
+/**
+ * Calls [requestRender] for every element of the list, keeping at most [maxConcurrentRenders] renders in flight. The next render is
+ * requested as soon as one completes.
+ *
+ * Layoutlib renders a single preview at a time, but a render request also spends time outside of the render thread, for example
+ * preparing the render task or processing its result. Keeping a few requests in flight overlaps that work with the renders of other
+ * previews, without flooding the render queue, which evicts requests over its limit.
+ *
+ * Elements not requested yet when [isCancelled] returns true, or once the returned future has been cancelled, are skipped. The returned
+ * future completes when all the requested renders have completed, exceptionally if any of them failed.
+ */
+internal fun <T> List<T>.requestRendersWithBoundedConcurrency(
+  maxConcurrentRenders: Int,
+  isCancelled: () -> Boolean,
+  requestRender: (index: Int, element: T) -> CompletableFuture<*>): CompletableFuture<Void> {
+  val result = CompletableFuture<Void>()
+  if (isEmpty()) {
+    result.complete(null)
+    return result
+  }
+
+  val nextIndex = AtomicInteger(0)
+  val workerCount = maxConcurrentRenders.coerceIn(1, size)
+  val runningWorkers = AtomicInteger(workerCount)
+  val firstFailure = AtomicReference<Throwable?>()
+  fun requestNext() {
+    val index = nextIndex.getAndIncrement()
+    if (index >= size || isCancelled() || result.isDone) {
+      if (runningWorkers.decrementAndGet() == 0) {
+        val failure = firstFailure.get()
+        if (failure != null) result.completeExceptionally(failure) else result.complete(null)
+      }
+      return
+    }
+
+    val renderFuture = try {
+      requestRender(index, this[index])
+    }
+    catch (t: Throwable) {
+      CompletableFuture<Any>().apply { completeExceptionally(t) }
+    }
+    // Request the next render from a pooled thread, instead of the thread that completed the previous one
+    renderFuture.whenCompleteAsync({ _, throwable ->
+                                     if (throwable != null) firstFailure.compareAndSet(null, throwable)
+                                     requestNext()
+                                   }, AppExecutorUtil.getAppExecutorService())
+  }
+  repeat(workerCount) { requestNext() }
+  return result
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.compose.preview.util
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+internal class RenderTest {
+  @Test
+  fun `requests at most the given number of renders at the same time`() {
+    val pendingRenders = (0 until 10).map { CompletableFuture<Void>() }
+    val requestedIndices = mutableListOf<Int>()
+
+    val result = pendingRenders.requestRendersWithBoundedConcurrency(3, { false }) { index, render ->
+      synchronized(requestedIndices) { requestedIndices.add(index) }
+      render
+    }
+
+    assertEquals(listOf(0, 1, 2), synchronized(requestedIndices) { requestedIndices.toList() })
+    pendingRenders.forEach {
+      it.complete(null)
+    }
+    result.get(10, TimeUnit.SECONDS)
+    assertEquals((0 until 10).toList(), synchronized(requestedIndices) { requestedIndices.sorted() })
+  }
+
+  @Test
+  fun `stops requesting renders once cancelled`() {
+    val requestCount = AtomicInteger(0)
+
+    val result = (0 until 10).toList().requestRendersWithBoundedConcurrency(1, { requestCount.get() >= 4 }) { _, _ ->
+      requestCount.incrementAndGet()
+      CompletableFuture.completedFuture(null)
+    }
+
+    result.get(10, TimeUnit.SECONDS)
+    assertEquals(4, requestCount.get())
+  }
+
+  @Test
+  fun `stops requesting renders once the result is cancelled`() {
+    val pendingRenders = (0 until 10).map { CompletableFuture<Void>() }
+    val requestCount = AtomicInteger(0)
+    // Checked once for each of the 2 first renders, then once more by each worker when its render completes.
+    val cancellationChecks = CountDownLatch(4)
+
+    val result = pendingRenders.requestRendersWithBoundedConcurrency(2, { cancellationChecks.countDown(); false }) { _, render ->
+      requestCount.incrementAndGet()
+      render
+    }
+    result.cancel(false)
+    pendingRenders.forEach { it.complete(null) }
+
+    // The next renders are requested from a pooled thread, wait for both workers to have checked whether to request another one.
+    assertTrue(cancellationChecks.await(10, TimeUnit.SECONDS))
+    assertTrue(result.isCancelled)
+    assertEquals(2, requestCount.get())
+  }
+
+  @Test
+  fun `completes exceptionally after all renders if one failed`() {
+    val requestCount = AtomicInteger(0)
+    val failure = IllegalStateException("Render failed")
+
+    val result = (0 until 5).toList().requestRendersWithBoundedConcurrency(2, { false }) { index, _ ->
+      requestCount.incrementAndGet()
+      if (index == 1) throw failure
+      CompletableFuture.completedFuture(null)
+    }
+
+    try {
+      result.get(10, TimeUnit.SECONDS)
+    }
+    catch (e: ExecutionException) {
+      assertEquals(failure, e.cause)
+    }
+    assertTrue(result.isCompletedExceptionally)
+    assertEquals(5, requestCount.get())
+  }
+}
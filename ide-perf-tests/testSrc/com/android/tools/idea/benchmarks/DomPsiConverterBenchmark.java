@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.benchmarks;
+
+import static com.android.SdkConstants.ANDROID_URI;
+
+import com.android.tools.idea.lint.common.DomPsiConverter;
+import com.android.tools.perflogger.Benchmark;
+import com.android.tools.perflogger.Metric;
+import com.android.tools.perflogger.WindowDeviationAnalyzer;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.testFramework.UsefulTestCase;
+import com.intellij.testFramework.fixtures.IdeaProjectTestFixture;
+import com.intellij.testFramework.fixtures.IdeaTestFixtureFactory;
+import com.intellij.testFramework.fixtures.JavaCodeInsightTestFixture;
+import com.intellij.testFramework.fixtures.JavaTestFixtureFactory;
+import com.intellij.testFramework.fixtures.TestFixtureBuilder;
+import java.time.Instant;
+import java.util.Collections;
+import org.jetbrains.annotations.NotNull;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Measures how long lint takes to get the DOM of a large layout after each keystroke, i.e. to convert the PSI of the
+ * edited file and visit all of its elements and attributes like the lint detectors do.
+ */
+public class DomPsiConverterBenchmark extends UsefulTestCase {
+  private static final int VIEW_COUNT = 2000;
+  private static final int KEYSTROKE_COUNT = 50;
+
+  // Note: metadata for this benchmark is uploaded by IdeBenchmarkTestSuite.
+  static final Benchmark BENCHMARK = new Benchmark.Builder("Lint DOM Conversion Timings (Nanos)")
+    .setDescription("Time to convert and visit a layout with " + VIEW_COUNT + " views after each keystroke.")
+    .build();
+
+  private JavaCodeInsightTestFixture myFixture;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    TestFixtureBuilder<IdeaProjectTestFixture> projectBuilder = IdeaTestFixtureFactory.getFixtureFactory().createFixtureBuilder(getName());
+    myFixture = JavaTestFixtureFactory.getFixtureFactory().createCodeInsightFixture(projectBuilder.getFixture());
+    myFixture.setUp();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myFixture.tearDown();
+    }
+    catch (Throwable e) {
+      addSuppressedException(e);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testKeystrokeLatency() {
+    XmlFile xmlFile = (XmlFile)myFixture.configureByText("res/layout/large_layout.xml", createLayout());
+
+    long startTime = System.nanoTime();
+    Document document = DomPsiConverter.convert(xmlFile);
+    assertNotNull(document);
+    int nodeCount = visit(document);
+    Metric initialMetric = new Metric("initial_conversion");
+    initialMetric.addSamples(BENCHMARK, new Metric.MetricSample(Instant.now().toEpochMilli(), System.nanoTime() - startTime));
+    initialMetric.commit();
+
+    Metric keystrokeMetric = new Metric("keystroke_conversion");
+    for (int i = 0; i < KEYSTROKE_COUNT; i++) {
+      myFixture.type('a');
+      PsiDocumentManager.getInstance(myFixture.getProject()).commitAllDocuments();
+
+      startTime = System.nanoTime();
+      document = DomPsiConverter.convert(xmlFile);
+      assertNotNull(document);
+      assertEquals(nodeCount, visit(document));
+      keystrokeMetric.addSamples(BENCHMARK, new Metric.MetricSample(Instant.now().toEpochMilli(), System.nanoTime() - startTime));
+    }
+    keystrokeMetric.setAnalyzers(BENCHMARK, Collections.singleton(
+      new WindowDeviationAnalyzer.Builder().addMeanTolerance(new WindowDeviationAnalyzer.MeanToleranceParams.Builder().build()).build()));
+    keystrokeMetric.commit();
+  }
+
+  @NotNull
+  private static String createLayout() {
+    StringBuilder xml = new StringBuilder();
+    xml.append("<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n")
+      .append("    android:layout_width=\"match_parent\"\n")
+      .append("    android:layout_height=\"match_parent\"\n")
+      .append("    android:orientation=\"vertical\">\n");
+    for (int i = 0; i < VIEW_COUNT; i++) {
+      xml.append("    <LinearLayout\n")
+        .append("        android:layout_width=\"match_parent\"\n")
+        .append("        android:layout_height=\"wrap_content\">\n")
+        .append("        <TextView\n")
+        .append("            android:id=\"@+id/text").append(i).append("\"\n")
+        .append("            android:layout_width=\"wrap_content\"\n")
+        .append("            android:layout_height=\"wrap_content\"\n")
+        .append("            android:text=\"").append(i == VIEW_COUNT / 2 ? "<caret>" : "Text").append("\" />\n")
+        .append("    </LinearLayout>\n");
+    }
+    xml.append("</LinearLayout>\n");
+    return xml.toString();
+  }
+
+  /**
+   * Visits the nodes of the document the way the lint detectors do, and returns the number of elements and attributes.
+   */
+  private static int visit(@NotNull Node node) {
+    int count = 0;
+    if (node.getNodeType() == Node.ELEMENT_NODE) {
+      count++;
+      node.getNodeName();
+      NamedNodeMap attributes = node.getAttributes();
+      for (int i = 0, n = attributes.getLength(); i < n; i++) {
+        Node attribute = attributes.item(i);
+        attribute.getNamespaceURI();
+        attribute.getLocalName();
+        attribute.getNodeValue();
+        count++;
+      }
+      attributes.getNamedItemNS(ANDROID_URI, "id");
+    }
+    NodeList children = node.getChildNodes();
+    for (int i = 0, n = children.getLength(); i < n; i++) {
+      count += visit(children.item(i));
+    }
+    return count;
+  }
+}
@@ -16,6 +16,8 @@
 package com.android.tools.idea.benchmarks
 
 import com.android.testutils.JarTestSuiteRunner
+import com.android.tools.idea.logcat.LogcatReceiverBenchmark
+import com.android.tools.idea.res.MultiResourceRepositoryBenchmark
 import com.android.tools.perflogger.PerfData
 import com.android.tools.tests.GradleDaemonsRule
 import com.android.tools.tests.IdeaTestSuiteBase
@@ -55,6 +57,9 @@ class IdeBenchmarkTestSuite : IdeaTestSuiteBase() {
         perfData.addBenchmark(FullProjectBenchmark.highlightingBenchmark)
         perfData.addBenchmark(FullProjectBenchmark.layoutCompletionBenchmark)
         perfData.addBenchmark(FullProjectBenchmark.completionBenchmark)
+        perfData.addBenchmark(LogcatReceiverBenchmark.benchmark)
+        perfData.addBenchmark(DomPsiConverterBenchmark.BENCHMARK)
+        perfData.addBenchmark(MultiResourceRepositoryBenchmark.BENCHMARK)
         perfData.commit()
       }
       catch (e: Throwable) {
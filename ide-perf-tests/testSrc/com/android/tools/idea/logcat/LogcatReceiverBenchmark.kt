@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat
+
+import com.android.ddmlib.logcat.LogCatMessage
+import com.android.tools.idea.logcat.LogcatBinaryReceiverTest.PRIORITY_WARN
+import com.android.tools.idea.logcat.LogcatBinaryReceiverTest.V4_HEADER_SIZE
+import com.android.tools.idea.logcat.LogcatBinaryReceiverTest.createRecord
+import com.android.tools.perflogger.Benchmark
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.util.concurrent.TimeUnit
+
+private const val MESSAGE_COUNT = 200_000
+
+/**
+ * Compares how fast logcat messages are decoded from the binary format of 'logcat -B' and from the text format of 'logcat -v long'.
+ */
+class LogcatReceiverBenchmark {
+  companion object {
+    // Note: metadata for this benchmark is uploaded by IdeBenchmarkTestSuite.
+    val benchmark = Benchmark.Builder("Logcat Receiver Throughput")
+      .setDescription("Messages per second decoded from $MESSAGE_COUNT single line messages.")
+      .build()
+  }
+
+  @Test
+  fun throughputComparedToTextFormat() {
+    val binary = ByteArrayOutputStream()
+    val text = arrayOfNulls<String>(MESSAGE_COUNT * 3)
+    for (i in 0 until MESSAGE_COUNT) {
+      val message = "Message number $i from a chatty application"
+      val record = createRecord(V4_HEADER_SIZE, 11698, 11698, 1516739696, i, PRIORITY_WARN, "ChattyLogger", message)
+      binary.write(record, 0, record.size)
+      text[i * 3] = "[ 1516739696.789 11698:11698 W/ChattyLogger     ]"
+      text[i * 3 + 1] = message
+      text[i * 3 + 2] = ""
+    }
+    val bytes = binary.toByteArray()
+
+    val device = AndroidLogcatReceiverTest.createMockDevice()
+    val binaryListener = CountingListener()
+    val binaryReceiver = LogcatBinaryReceiver(device, AndroidLogcatReceiver(device, binaryListener))
+    val binaryStart = System.nanoTime()
+    // Feed the stream in chunks of the size ddmlib reads from the socket.
+    for (offset in bytes.indices step 16 * 1024) {
+      binaryReceiver.addOutput(bytes, offset, minOf(16 * 1024, bytes.size - offset))
+    }
+    val binaryNanos = System.nanoTime() - binaryStart
+
+    val textListener = CountingListener()
+    val textReceiver = AndroidLogcatReceiver(device, textListener)
+    val textStart = System.nanoTime()
+    textReceiver.processNewLines(text)
+    val textNanos = System.nanoTime() - textStart
+
+    assertThat(binaryListener.count).isEqualTo(MESSAGE_COUNT)
+    assertThat(textListener.count).isEqualTo(MESSAGE_COUNT)
+
+    benchmark.log("binary_messages_per_second", MESSAGE_COUNT * TimeUnit.SECONDS.toNanos(1) / maxOf(binaryNanos, 1))
+    benchmark.log("text_messages_per_second", MESSAGE_COUNT * TimeUnit.SECONDS.toNanos(1) / maxOf(textNanos, 1))
+  }
+
+  private class CountingListener : AndroidLogcatService.LogcatListener {
+    var count = 0
+
+    override fun onLogLineReceived(line: LogCatMessage) {
+      count++
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res;
+
+import static com.android.ide.common.rendering.api.ResourceNamespace.RES_AUTO;
+
+import com.android.ide.common.resources.ResourceItem;
+import com.android.ide.common.resources.ResourceMergerItem;
+import com.android.resources.ResourceType;
+import com.android.tools.perflogger.Benchmark;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Measures the throughput of {@link MultiResourceRepository} lookups from many threads for a project with many modules and an AAR,
+ * while one of the module repositories keeps changing.
+ */
+public class MultiResourceRepositoryBenchmark extends AndroidTestCase {
+  private static final int MODULE_COUNT = 60;
+  private static final int IDS_PER_MODULE = 100;
+  private static final int READER_COUNT = 8;
+  private static final int READS_PER_READER = 200_000;
+
+  // Note: metadata for this benchmark is uploaded by IdeBenchmarkTestSuite.
+  public static final Benchmark BENCHMARK = new Benchmark.Builder("MultiResourceRepository Concurrent Reads")
+    .setDescription("Resource lookups per second from " + READER_COUNT + " threads while a module repository is being updated.")
+    .build();
+
+  public void testConcurrentReadsDuringUpdates() throws Exception {
+    List<TestLocalResourceRepository> modules = new ArrayList<>();
+    for (int i = 0; i < MODULE_COUNT; i++) {
+      TestLocalResourceRepository module = new TestLocalResourceRepository(RES_AUTO);
+      module.addResources(RES_AUTO, ResourceType.ID, createIds(i, 0));
+      modules.add(module);
+    }
+    ProjectResourceRepository projectResources = ProjectResourceRepository.createForTest(myFacet, ImmutableList.copyOf(modules));
+    AppResourceRepository appResources = AppResourceRepository.createForTest(
+      myFacet, ImmutableList.of(projectResources), ImmutableList.of(ResourcesTestsUtil.getTestAarRepositoryFromExplodedAar()));
+
+    TestLocalResourceRepository updatedModule = modules.get(0);
+    AtomicBoolean done = new AtomicBoolean();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(READER_COUNT + 1);
+    try {
+      Future<?> writer = executor.submit(() -> {
+        start.await();
+        int generation = 0;
+        while (!done.get()) {
+          generation++;
+          synchronized (AbstractResourceRepositoryWithLocking.ITEM_MAP_LOCK) {
+            updatedModule.addResources(RES_AUTO, ResourceType.ID, createIds(0, generation % 2));
+            updatedModule.invalidateParentCaches(updatedModule, ResourceType.ID);
+          }
+          Thread.yield();
+        }
+        return null;
+      });
+
+      List<Future<?>> readers = new ArrayList<>();
+      for (int i = 0; i < READER_COUNT; i++) {
+        int reader = i;
+        readers.add(executor.submit(() -> {
+          start.await();
+          for (int j = 0; j < READS_PER_READER; j++) {
+            String name = idName((reader + j) % MODULE_COUNT, j % IDS_PER_MODULE);
+            assertTrue(appResources.hasResources(RES_AUTO, ResourceType.ID, name));
+            assertFalse(appResources.getResources(RES_AUTO, ResourceType.ID, name).isEmpty());
+          }
+          return null;
+        }));
+      }
+
+      long startTime = System.nanoTime();
+      start.countDown();
+      for (Future<?> reader : readers) {
+        reader.get(5, TimeUnit.MINUTES);
+      }
+      long elapsedNanos = System.nanoTime() - startTime;
+      done.set(true);
+      writer.get(1, TimeUnit.MINUTES);
+
+      long readsPerSecond = (long)READER_COUNT * READS_PER_READER * 2 * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsedNanos, 1);
+      BENCHMARK.log("reads_per_second", readsPerSecond);
+    }
+    finally {
+      done.set(true);
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Creates the ids of a module, with {@code extraCount} additional ids that come and go as the module is updated.
+   */
+  @NotNull
+  private static ListMultimap<String, ResourceItem> createIds(int module, int extraCount) {
+    ListMultimap<String, ResourceItem> ids = ArrayListMultimap.create();
+    for (int i = 0; i < IDS_PER_MODULE + extraCount; i++) {
+      String name = idName(module, i);
+      ids.put(name, new ResourceMergerItem(name, null, ResourceType.ID, null, null, null));
+    }
+    return ids;
+  }
+
+  @NotNull
+  private static String idName(int module, int index) {
+    return "id_" + module + "_" + index;
+  }
+}
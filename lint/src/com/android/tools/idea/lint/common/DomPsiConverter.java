@@ -18,13 +18,16 @@ package com.android.tools.idea.lint.common;
 import com.android.annotations.NonNull;
 import com.android.ide.common.blame.SourcePosition;
 import com.android.utils.PositionXmlParser;
+import com.intellij.lang.ASTNode;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.impl.source.tree.CompositeElement;
 import com.intellij.psi.xml.XmlAttribute;
 import com.intellij.psi.xml.XmlAttributeValue;
 import com.intellij.psi.xml.XmlComment;
@@ -33,7 +36,9 @@ import com.intellij.psi.xml.XmlElement;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
 import com.intellij.psi.xml.XmlText;
+import com.intellij.reference.SoftReference;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -69,8 +74,15 @@ import org.w3c.dom.UserDataHandler;
  * converter only attempts to make the DOM correct as far as Lint cares (meaning that it
  * only worries about the details Lint cares about; currently this means it only wraps elements,
  * text and comment nodes.)
+ * <p>
+ * The DOM tree of a file is kept between lint runs. Nodes are created lazily, and check the modification
+ * count of their PSI element before returning their cached children and attributes, so that after an edit
+ * only the nodes along the path to the modified elements are computed again. The tree is only softly
+ * referenced from the file, since it keeps the PSI of the whole file reachable.
  */
 public class DomPsiConverter {
+  private static final Key<SoftReference<DomDocument>> DOM_DOCUMENT_KEY = Key.create("DomPsiConverter.DomDocument");
+
   private DomPsiConverter() {
   }
 
@@ -117,7 +129,25 @@ public class DomPsiConverter {
    */
   @NotNull
   private static Document convert(@NotNull XmlDocument document, @NotNull XmlFile xmlFile) {
-    return new DomDocument(document, xmlFile);
+    DomDocument domDocument = SoftReference.dereference(xmlFile.getUserData(DOM_DOCUMENT_KEY));
+    // The PSI document is replaced when the whole file is reparsed, in which case there is nothing to reuse.
+    if (domDocument == null || domDocument.myPsiDocument != document) {
+      domDocument = new DomDocument(document, xmlFile);
+      xmlFile.putUserData(DOM_DOCUMENT_KEY, new SoftReference<>(domDocument));
+    }
+    return domDocument;
+  }
+
+  /**
+   * Returns a number that changes whenever the given element or one of its descendants is modified.
+   */
+  private static long getModificationCount(@NotNull PsiElement element) {
+    ASTNode node = element.getNode();
+    if (node instanceof CompositeElement) {
+      return ((CompositeElement)node).getModificationCount();
+    }
+    PsiFile file = element.getContainingFile();
+    return file != null ? file.getModificationStamp() : -1;
   }
 
   @Nullable
@@ -338,13 +368,47 @@ public class DomPsiConverter {
     }
 
     void add(@NotNull DomNode node) {
+      myChildren.add(node);
+    }
+
+    /**
+     * Adds a child node, linking it to its previous sibling. Nodes that were children in an earlier version of the
+     * tree are unlinked from their former siblings.
+     */
+    void addChild(@NotNull DomNode node) {
       int size = myChildren.size();
-      if (size > 0) {
-        DomNode last = myChildren.get(size - 1);
-        node.myPrevious = last;
+      DomNode last = size > 0 ? myChildren.get(size - 1) : null;
+      node.myPrevious = last;
+      node.myNext = null;
+      if (last != null) {
         last.myNext = node;
       }
-      myChildren.add(node);
+      add(node);
+    }
+
+    /**
+     * Returns the nodes of this list by PSI element, so that they can be reused for the same elements.
+     */
+    @NotNull
+    Map<PsiElement, DomNode> getNodesByElement() {
+      Map<PsiElement, DomNode> nodes = new HashMap<>(myChildren.size());
+      for (DomNode node : myChildren) {
+        nodes.put(node.myElement, node);
+      }
+      return nodes;
+    }
+  }
+
+  /**
+   * The namespace declarations of an element, in scope of the declarations of its ancestors.
+   */
+  private static class NamespaceScope {
+    @Nullable private final NamespaceScope myParent;
+    @NotNull private final Map<String, String> myDeclarations;
+
+    private NamespaceScope(@Nullable NamespaceScope parent, @NotNull Map<String, String> declarations) {
+      myParent = parent;
+      myDeclarations = declarations;
     }
   }
 
@@ -353,7 +417,9 @@ public class DomPsiConverter {
     @NotNull protected final Map<String, Map<String, DomNode>> myNsMap;
     @NotNull protected final List<DomNode> mItems;
 
-    private DomNamedNodeMap(@NotNull DomElement element, @NotNull XmlAttribute[] attributes) {
+    private DomNamedNodeMap(@NotNull DomElement element,
+                            @NotNull XmlAttribute[] attributes,
+                            @Nullable DomNamedNodeMap previous) {
       int count = attributes.length;
       int namespaceCount = 0;
       for (XmlAttribute attribute : attributes) {
@@ -366,8 +432,12 @@ public class DomPsiConverter {
       mItems = new ArrayList<>(count);
 
       assert element.myOwner != null; // True for elements, not true for non-Element nodes
+      Map<PsiElement, DomNode> previousAttributes = previous != null ? previous.getNodesByElement() : Collections.emptyMap();
       for (XmlAttribute attribute : attributes) {
-        DomAttr attr = new DomAttr(element.myOwner, element, attribute);
+        DomNode attr = previousAttributes.get(attribute);
+        if (attr == null) {
+          attr = new DomAttr(element.myOwner, element, attribute);
+        }
         mItems.add(attr);
         String namespace = attribute.getNamespace();
         if (!namespace.isEmpty()) {
@@ -384,6 +454,15 @@ public class DomPsiConverter {
       }
     }
 
+    @NotNull
+    private Map<PsiElement, DomNode> getNodesByElement() {
+      Map<PsiElement, DomNode> nodes = new HashMap<>(mItems.size());
+      for (DomNode node : mItems) {
+        nodes.put(node.myElement, node);
+      }
+      return nodes;
+    }
+
     @Override
     public Node item(int i) {
       return mItems.get(i);
@@ -440,6 +519,8 @@ public class DomPsiConverter {
     @Nullable protected final DomNode myParent;
     @NotNull protected final XmlElement myElement;
     @Nullable protected DomNodeList myChildren;
+    /** The modification count of {@link #myElement} when {@link #myChildren} was computed. */
+    protected long myChildrenModificationCount;
     @Nullable protected DomNode myNext;
     @Nullable protected DomNode myPrevious;
 
@@ -457,24 +538,33 @@ public class DomPsiConverter {
 
     @NotNull
     @Override
-    public DomNodeList getChildNodes() {
-      if (myChildren == null) {
+    public synchronized DomNodeList getChildNodes() {
+      long modificationCount = getModificationCount(myElement);
+      if (myChildren == null || myChildrenModificationCount != modificationCount) {
+        myChildrenModificationCount = modificationCount;
         PsiElement[] children = myElement.getChildren();
         if (children.length > 0) {
+          // Children whose PSI element is still there are kept along with their own subtree, which is only
+          // computed again where it was modified.
+          Map<PsiElement, DomNode> previousChildren = myChildren != null ? myChildren.getNodesByElement() : Collections.emptyMap();
           DomNodeList list = new DomNodeList();
           myChildren = list;
           // True except for in DomDocument, which has custom getChildNodes
           assert myOwner != null;
 
           for (PsiElement child : children) {
-            if (child instanceof XmlTag) {
-              list.add(new DomElement(myOwner, this, (XmlTag)child));
+            DomNode node = previousChildren.get(child);
+            if (node != null) {
+              list.addChild(node);
+            }
+            else if (child instanceof XmlTag) {
+              list.addChild(new DomElement(myOwner, this, (XmlTag)child));
             }
             else if (child instanceof XmlText) {
-              list.add(new DomText(myOwner, this, (XmlText)child));
+              list.addChild(new DomText(myOwner, this, (XmlText)child));
             }
             else if (child instanceof XmlComment) {
-              list.add(new DomComment(myOwner, this, (XmlComment)child));
+              list.addChild(new DomComment(myOwner, this, (XmlComment)child));
             }
             else {
               // Skipping other types for now; lint doesn't care about them.
@@ -512,13 +602,26 @@ public class DomPsiConverter {
     @Nullable
     @Override
     public DomNode getPreviousSibling() {
-      return myPrevious;
+      if (myParent == null) {
+        return myPrevious;
+      }
+      // Siblings are linked by the parent, which first catches up with modifications of the PSI tree.
+      synchronized (myParent) {
+        myParent.getChildNodes();
+        return myPrevious;
+      }
     }
 
     @Nullable
     @Override
     public DomNode getNextSibling() {
-      return myNext;
+      if (myParent == null) {
+        return myNext;
+      }
+      synchronized (myParent) {
+        myParent.getChildNodes();
+        return myNext;
+      }
     }
 
     @Nullable
@@ -720,7 +823,6 @@ public class DomPsiConverter {
   private static class DomDocument extends DomNode implements Document {
     @NotNull private final XmlDocument myPsiDocument;
     private final XmlFile myFile;
-    @Nullable private DomElement myRoot;
 
     private DomDocument(@NotNull XmlDocument document, @NotNull XmlFile file) {
       super(null, null, document);
@@ -749,30 +851,26 @@ public class DomPsiConverter {
 
     @NotNull
     @Override
-    public DomNodeList getChildNodes() {
-      if (myChildren == null) {
+    public synchronized DomNodeList getChildNodes() {
+      long modificationCount = getModificationCount(myPsiDocument);
+      if (myChildren == null || myChildrenModificationCount != modificationCount) {
+        myChildrenModificationCount = modificationCount;
+        Map<PsiElement, DomNode> previousChildren = myChildren != null ? myChildren.getNodesByElement() : Collections.emptyMap();
         DomNodeList list = new DomNodeList();
         myChildren = list;
         // Include siblings as well such as the root comment
         PsiElement element = myPsiDocument.getFirstChild();
         while (element != null) {
-          if (element instanceof XmlTag) {
-            if (myRoot != null && myRoot.myTag == element) {
-              list.add(myRoot);
-            } else {
-              DomElement node = new DomElement(this, this, (XmlTag)element);
-              if (myRoot == null) {
-                myRoot = node;
-              }
-              list.add(node);
-            }
+          DomNode node = previousChildren.get(element);
+          if (node != null) {
+            list.addChild(node);
+          } else if (element instanceof XmlTag) {
+            list.addChild(new DomElement(this, this, (XmlTag)element));
           } else if (element instanceof XmlComment) {
-            DomNode node = new DomComment(this, this, (XmlComment)element);
-            list.add(node);
+            list.addChild(new DomComment(this, this, (XmlComment)element));
           } else if (element instanceof XmlText) {
             // This is not valid XML but PSI may represent erroneous XML being edited
-            DomNode node = new DomText(this, this, (XmlText)element);
-            list.add(node);
+            list.addChild(new DomText(this, this, (XmlText)element));
           }
           element = element.getNextSibling();
         }
@@ -806,16 +904,20 @@ public class DomPsiConverter {
 
     @Nullable
     @Override
-    public Element getDocumentElement() {
-      if (myRoot == null) {
-        XmlTag rootTag = myPsiDocument.getRootTag();
-        if (rootTag == null) {
-          return null;
+    public synchronized Element getDocumentElement() {
+      XmlTag rootTag = myPsiDocument.getRootTag();
+      if (rootTag == null) {
+        return null;
+      }
+      DomNodeList children = getChildNodes();
+      for (int i = 0, n = children.getLength(); i < n; i++) {
+        DomNode child = children.item(i);
+        if (child.myElement == rootTag) {
+          return (DomElement)child;
         }
-        myRoot = new DomElement(this, this, rootTag);
       }
 
-      return myRoot;
+      return new DomElement(this, this, rootTag);
     }
 
     @NotNull
@@ -986,6 +1088,16 @@ public class DomPsiConverter {
   private static class DomElement extends DomNode implements Element {
     private final XmlTag myTag;
     @Nullable private NamedNodeMap myAttributes;
+    /** The modification count of {@link #myTag} when {@link #myAttributes} was computed. */
+    private long myAttributesModificationCount;
+    /** The namespace declarations in scope when {@link #myAttributes} was computed, which its namespaces depend on. */
+    @Nullable private NamespaceScope myAttributesNamespaceScope;
+    /** The modification count of the document when {@link #myAttributes} was last checked to be up to date. */
+    private long myAttributesDocumentModificationCount;
+    @Nullable private NamespaceScope myNamespaceScope;
+    private long myNamespaceScopeModificationCount;
+    /** The modification count of the document when {@link #myNamespaceScope} was last checked to be up to date. */
+    private long myNamespaceScopeDocumentModificationCount;
 
     private DomElement(@NotNull Document owner, @NotNull DomNode parent, @NotNull XmlTag tag) {
       super(owner, parent, tag);
@@ -1021,14 +1133,63 @@ public class DomPsiConverter {
     @Override
     public NamedNodeMap getAttributes() {
       return ApplicationManager.getApplication().runReadAction((Computable<NamedNodeMap>)() -> {
-        if (myAttributes == null) {
-          XmlAttribute[] attributes = myTag.getAttributes();
-          myAttributes = attributes.length == 0 ? EMPTY_ATTRIBUTES : new DomNamedNodeMap(this, attributes);
+        synchronized (this) {
+          // Nothing in the file changed since the attributes were last checked, so neither did they nor the namespaces in scope.
+          long documentModificationCount = getDocumentModificationCount();
+          if (myAttributes != null && myAttributesDocumentModificationCount == documentModificationCount) {
+            return myAttributes;
+          }
+          myAttributesDocumentModificationCount = documentModificationCount;
+          long modificationCount = getModificationCount(myTag);
+          NamespaceScope namespaceScope = getNamespaceScope();
+          if (myAttributes == null ||
+              myAttributesModificationCount != modificationCount ||
+              myAttributesNamespaceScope != namespaceScope) {
+            myAttributesModificationCount = modificationCount;
+            myAttributesNamespaceScope = namespaceScope;
+            XmlAttribute[] attributes = myTag.getAttributes();
+            DomNamedNodeMap previous = myAttributes instanceof DomNamedNodeMap ? (DomNamedNodeMap)myAttributes : null;
+            myAttributes = attributes.length == 0 ? EMPTY_ATTRIBUTES : new DomNamedNodeMap(this, attributes, previous);
+          }
+          return myAttributes;
         }
-        return myAttributes;
       });
     }
 
+    /**
+     * Returns the namespace declarations in scope of this element. The same instance is returned for as long as
+     * neither this element nor its ancestors declare different namespaces. The ancestors are only checked again
+     * after the document has been modified.
+     */
+    @Nullable
+    private synchronized NamespaceScope getNamespaceScope() {
+      long documentModificationCount = getDocumentModificationCount();
+      if (myNamespaceScope != null && myNamespaceScopeDocumentModificationCount == documentModificationCount) {
+        return myNamespaceScope;
+      }
+      myNamespaceScopeDocumentModificationCount = documentModificationCount;
+      NamespaceScope parentScope = myParent instanceof DomElement ? ((DomElement)myParent).getNamespaceScope() : null;
+      long modificationCount = getModificationCount(myTag);
+      if (myNamespaceScope != null &&
+          myNamespaceScope.myParent == parentScope &&
+          myNamespaceScopeModificationCount == modificationCount) {
+        return myNamespaceScope;
+      }
+      myNamespaceScopeModificationCount = modificationCount;
+      Map<String, String> declarations = myTag.getLocalNamespaceDeclarations();
+      if (myNamespaceScope == null ||
+          myNamespaceScope.myParent != parentScope ||
+          !myNamespaceScope.myDeclarations.equals(declarations)) {
+        myNamespaceScope = new NamespaceScope(parentScope, declarations);
+      }
+      return myNamespaceScope;
+    }
+
+    private long getDocumentModificationCount() {
+      assert myOwner != null; // True for elements
+      return getModificationCount(((DomDocument)myOwner).myPsiDocument);
+    }
+
     // From org.w3c.dom.Element:
 
     @NotNull
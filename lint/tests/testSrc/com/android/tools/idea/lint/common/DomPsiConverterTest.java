@@ -22,10 +22,12 @@ import com.android.utils.PositionXmlParser;
 import com.android.utils.XmlUtils;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
 import com.intellij.testFramework.UsefulTestCase;
 import com.intellij.testFramework.fixtures.IdeaProjectTestFixture;
 import com.intellij.testFramework.fixtures.IdeaTestFixtureFactory;
@@ -211,4 +213,54 @@ public class DomPsiConverterTest extends UsefulTestCase {
     assertEquals(DomPsiConverter.getTextValueRange(psiElement), DomPsiConverter.getTextValueRange(domElement));
     assertEquals(DomPsiConverter.getTextValueRange(psiAttribute), DomPsiConverter.getTextValueRange(domAttribute));
   }
+
+  public void testNodesReusedAfterEdit() {
+    String xml = "" +
+                 "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\">\n" +
+                 "    <TextView android:text=\"first\" />\n" +
+                 "    <TextView android:text=\"second\" />\n" +
+                 "</LinearLayout>\n";
+    XmlFile xmlFile = (XmlFile)myFixture.configureByText("res/layout/layout.xml", xml);
+    Document domDocument = DomPsiConverter.convert(xmlFile);
+    assertNotNull(domDocument);
+    NodeList views = domDocument.getElementsByTagName("LinearLayout").item(0).getChildNodes();
+    Element first = (Element)views.item(1);
+    Element second = (Element)views.item(3);
+    assertEquals("second", second.getAttributeNS(ANDROID_URI, "text"));
+
+    XmlTag secondTag = (XmlTag)DomPsiConverter.getPsiElement(second);
+    assertNotNull(secondTag);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> secondTag.setAttribute("text", ANDROID_URI, "edited"));
+
+    assertSame(domDocument, DomPsiConverter.convert(xmlFile));
+    NodeList editedViews = domDocument.getElementsByTagName("LinearLayout").item(0).getChildNodes();
+    // The unmodified element is kept along with its attributes.
+    assertSame(first, editedViews.item(1));
+    assertSame(first.getAttributeNodeNS(ANDROID_URI, "text"), ((Element)editedViews.item(1)).getAttributeNodeNS(ANDROID_URI, "text"));
+    assertEquals("edited", ((Element)editedViews.item(3)).getAttributeNS(ANDROID_URI, "text"));
+
+    @SuppressWarnings("ConstantConditions")
+    String expected = XmlPrettyPrinter.prettyPrint(XmlUtils.parseDocumentSilently(xmlFile.getText(), true), true);
+    assertEquals(expected, XmlPrettyPrinter.prettyPrint(domDocument, true));
+  }
+
+  public void testNamespaceChangeSeenByUnmodifiedElements() {
+    String xml = "" +
+                 "<LinearLayout xmlns:app=\"http://schemas.android.com/apk/res-auto\">\n" +
+                 "    <TextView app:text=\"first\" />\n" +
+                 "</LinearLayout>\n";
+    XmlFile xmlFile = (XmlFile)myFixture.configureByText("res/layout/layout.xml", xml);
+    Document domDocument = DomPsiConverter.convert(xmlFile);
+    assertNotNull(domDocument);
+    Element root = domDocument.getDocumentElement();
+    Element textView = (Element)root.getChildNodes().item(1);
+    assertEquals("first", textView.getAttributeNS("http://schemas.android.com/apk/res-auto", "text"));
+
+    XmlTag rootTag = (XmlTag)DomPsiConverter.getPsiElement(root);
+    assertNotNull(rootTag);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> rootTag.setAttribute("xmlns:app", ANDROID_URI));
+
+    assertEquals("", textView.getAttributeNS("http://schemas.android.com/apk/res-auto", "text"));
+    assertEquals("first", textView.getAttributeNS(ANDROID_URI, "text"));
+  }
 }
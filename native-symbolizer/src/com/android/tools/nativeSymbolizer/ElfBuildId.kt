@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.nativeSymbolizer
+
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+private const val ELFCLASS64: Byte = 2
+private const val ELFDATA2LSB: Byte = 1
+private const val SHT_NOTE = 7
+private const val NT_GNU_BUILD_ID = 3
+/**
+ * Note sections holding a build ID are tiny, larger ones are skipped rather than read.
+ */
+private const val MAX_NOTE_SECTION_SIZE = 64 * 1024L
+
+/**
+ * Reads the build ID that the linker stored in the NT_GNU_BUILD_ID note of an ELF [file].
+ * @return the build ID as a lowercase hex string, or null if the file is not an ELF file or doesn't have a build ID
+ */
+internal fun readElfBuildId(file: File): String? {
+  try {
+    FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+      val header = read(channel, 0, 64) ?: return null
+      if (header.get(0) != 0x7F.toByte() || header.get(1) != 'E'.toByte() || header.get(2) != 'L'.toByte() || header.get(3) != 'F'.toByte()) {
+        return null
+      }
+      val is64Bit = header.get(4) == ELFCLASS64
+      header.order(if (header.get(5) == ELFDATA2LSB) ByteOrder.LITTLE_ENDIAN else ByteOrder.BIG_ENDIAN)
+      val sectionHeadersOffset = if (is64Bit) header.getLong(0x28) else header.getInt(0x20).toLong() and 0xFFFFFFFFL
+      val sectionHeaderSize = (if (is64Bit) header.getShort(0x3A) else header.getShort(0x2E)).toInt() and 0xFFFF
+      val sectionCount = (if (is64Bit) header.getShort(0x3C) else header.getShort(0x30)).toInt() and 0xFFFF
+      // The section headers are the size the ELF specification gives them, or a little larger for future fields.
+      if (sectionHeadersOffset <= 0 || sectionHeaderSize < (if (is64Bit) 0x40 else 0x28) || sectionHeaderSize > 0x100) {
+        return null
+      }
+
+      val sectionHeaders = read(channel, sectionHeadersOffset, sectionHeaderSize * sectionCount) ?: return null
+      sectionHeaders.order(header.order())
+      for (i in 0 until sectionCount) {
+        val start = i * sectionHeaderSize
+        if (sectionHeaders.getInt(start + 4) != SHT_NOTE) {
+          continue
+        }
+        val offset = if (is64Bit) sectionHeaders.getLong(start + 0x18) else sectionHeaders.getInt(start + 0x10).toLong() and 0xFFFFFFFFL
+        val size = if (is64Bit) sectionHeaders.getLong(start + 0x20) else sectionHeaders.getInt(start + 0x14).toLong() and 0xFFFFFFFFL
+        if (offset <= 0 || size <= 0 || size > MAX_NOTE_SECTION_SIZE) {
+          continue
+        }
+        val notes = read(channel, offset, size.toInt()) ?: continue
+        notes.order(header.order())
+        findBuildId(notes)?.let { return it }
+      }
+      return null
+    }
+  }
+  catch (e: IOException) {
+    return null
+  }
+}
+
+/**
+ * Looks for the NT_GNU_BUILD_ID note in the [notes] of a note section.
+ */
+private fun findBuildId(notes: ByteBuffer): String? {
+  var position = 0
+  while (position + 12 <= notes.limit()) {
+    val nameSize = notes.getInt(position)
+    val descriptorSize = notes.getInt(position + 4)
+    val type = notes.getInt(position + 8)
+    val nameStart = position + 12
+    val descriptorStart = nameStart + align4(nameSize)
+    if (nameSize < 0 || descriptorSize < 0 || descriptorStart + descriptorSize > notes.limit()) {
+      return null
+    }
+    if (type == NT_GNU_BUILD_ID && nameSize == 4 && notes.getInt(nameStart) == gnuNoteName(notes.order())) {
+      return buildString {
+        for (i in descriptorStart until descriptorStart + descriptorSize) {
+          append(String.format("%02x", notes.get(i)))
+        }
+      }
+    }
+    position = descriptorStart + align4(descriptorSize)
+  }
+  return null
+}
+
+/**
+ * The "GNU\0" owner name of the note, read as an int in the given byte [order].
+ */
+private fun gnuNoteName(order: ByteOrder): Int {
+  return ByteBuffer.wrap(byteArrayOf('G'.toByte(), 'N'.toByte(), 'U'.toByte(), 0)).order(order).int
+}
+
+private fun align4(size: Int) = (size + 3) and 3.inv()
+
+/**
+ * Reads [size] bytes at [position] of the [channel].
+ * @return the bytes read, or null if the file ends before
+ */
+private fun read(channel: FileChannel, position: Long, size: Int): ByteBuffer? {
+  val buffer = ByteBuffer.allocate(size)
+  while (buffer.hasRemaining()) {
+    if (channel.read(buffer, position + buffer.position()) < 0) {
+      return null
+    }
+  }
+  buffer.flip()
+  return buffer
+}
@@ -15,10 +15,27 @@
  */
 package com.android.tools.nativeSymbolizer
 
+import com.google.common.cache.CacheBuilder
 import com.intellij.openapi.Disposable
 import java.io.*
 import java.util.concurrent.*
 
+/**
+ * The maximum number of llvm-symbolizer processes that symbolize a batch of addresses at the same time.
+ */
+private const val MAX_PROCESSES = 4
+/**
+ * Requests are only spread over another process once there are this many for each process, as starting a process and loading the
+ * symbol files in it costs more than symbolizing a few addresses.
+ */
+private const val MIN_REQUESTS_PER_PROCESS = 256
+private const val MAX_CACHED_SYMBOLS = 500_000L
+private const val MAX_CACHED_SYMBOL_FILES = 1_000L
+/**
+ * Cached for the offsets that llvm-symbolizer couldn't symbolize.
+ */
+private val UNKNOWN_SYMBOL = Symbol("", "")
+
 /**
  * Implementation of NativeSymbolizer that uses llvm-symbolizer.
  *
@@ -33,63 +50,158 @@ import java.util.concurrent.*
  * TestSimpleMethodCall(_JNIEnv*, _jobject*)
  * /usr/local/google/home/ezemtsov/projects/android-apps/sum/app/src/main/cpp/native-lib.cpp:36:7
  *
+ * llvm-symbolizer answers the requests in order, so all the requests of a batch are written at once and the responses read as they come,
+ * spread over a few processes for large batches. Results are cached by the build ID and size of the symbol file and the offset, so they
+ * stay valid for as long as the same binary is used, wherever it is located and whenever it was written. The size tells a stripped copy
+ * apart from the binary with debug information, which have the same build ID. Symbol files without a build ID are identified by their
+ * path, size and modification time instead. The cache is kept when the processes are stopped.
+ *
  * More info about llvm-symbolizer: https://llvm.org/docs/CommandGuide/llvm-symbolizer.html
  */
 class LlvmSymbolizer(private val symbolizerExe: String,
                      private val symLocator: SymbolFilesLocator,
                      private val timeoutMsc: Long = 5000) : NativeSymbolizer {
 
-  private var procHolder : ProcessHolder? = null
-  private val executor : ExecutorService = Executors.newSingleThreadExecutor()
+  private val procHolders = arrayOfNulls<ProcessHolder>(MAX_PROCESSES)
+  /**
+   * Runs the threads writing the requests to and reading the responses from the processes. Created with the processes and shut down
+   * when they are stopped.
+   */
+  private var executor: ExecutorService? = null
+  private val symbolCache = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_SYMBOLS).build<SymbolKey, Symbol>()
+  /**
+   * The [BuildIdVersion] of each symbol file, or the [SymbolFileVersion] itself for those without a build ID, so that symbol files are
+   * only read again when they change.
+   */
+  private val symbolFileIds = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_SYMBOL_FILES).build<SymbolFileVersion, Any>()
 
   override fun symbolize(abiArch: String, module: String, offset: Long): Symbol? {
-    val symFiles = symLocator.findSymbolFiles(abiArch, module)
+    val address = NativeAddress(abiArch, module, offset)
+    return symbolize(listOf(address))[address]
+  }
 
-    for (symFile in symFiles) {
-      val request = formatRequest(symFile, offset)
+  @Synchronized
+  override fun symbolize(addresses: Collection<NativeAddress>): Map<NativeAddress, Symbol> {
+    val symFilesByModule = mutableMapOf<Pair<String, String>, List<Pair<File, Any>>>()
+    val candidates = addresses.toSet().associateWith { address ->
+      val symFiles = symFilesByModule.getOrPut(address.abiArch to address.module) {
+        symLocator.findSymbolFiles(address.abiArch, address.module).map { it to getSymbolFileId(it) }
+      }
+      symFiles.map { (symFile, symFileId) -> SymbolFileOffset(symFile, SymbolKey(symFileId, address.offset)) }
+    }
 
-      val holder = getProcHolder()
-      val future = executor.submit( Callable<List<String>> {
-        holder.stdin.write(request)
-        holder.stdin.flush()
+    // Copies of the same binary share their symbols, so only one of them is symbolized.
+    val requests = candidates.values.asSequence().flatten().distinctBy { it.key }.filter { symbolCache.getIfPresent(it.key) == null }.toList()
+    val responses = sendRequests(requests)
+    symbolCache.putAll(responses)
 
-        val response: MutableList<String> = mutableListOf()
-        var responseLine: String?
-        while (true) {
-          responseLine = holder.stdout.readLine()
-          if (responseLine == null || responseLine.isEmpty()) {
+    val result = mutableMapOf<NativeAddress, Symbol>()
+    for ((address, symFileOffsets) in candidates) {
+      // Symbol files are looked at in order, like when symbolizing the address alone.
+      val symbol = symFileOffsets.asSequence()
+        .mapNotNull { responses[it.key] ?: symbolCache.getIfPresent(it.key) }
+        .firstOrNull { it !== UNKNOWN_SYMBOL }
+      if (symbol != null) {
+        result[address] = symbol.copy(module = address.module)
+      }
+    }
+    return result
+  }
+
+  private fun getSymbolFileId(symFile: File): Any {
+    val version = SymbolFileVersion(symFile, symFile.length(), symFile.lastModified())
+    return symbolFileIds.get(version) { readElfBuildId(symFile)?.let { BuildIdVersion(it, version.length) } ?: version }
+  }
+
+  /**
+   * Sends the [requests] to the llvm-symbolizer processes and returns the symbols of the requests that got a response, or
+   * [UNKNOWN_SYMBOL] for those llvm-symbolizer couldn't symbolize.
+   */
+  private fun sendRequests(requests: List<SymbolFileOffset>): Map<SymbolKey, Symbol> {
+    if (requests.isEmpty()) {
+      return emptyMap()
+    }
+    val processCount = ((requests.size + MIN_REQUESTS_PER_PROCESS - 1) / MIN_REQUESTS_PER_PROCESS).coerceAtMost(MAX_PROCESSES)
+    val chunks = requests.chunked((requests.size + processCount - 1) / processCount)
+    // Start all the processes first, so that none of them is left with unread responses if one fails to start.
+    val holders = chunks.indices.map { getProcHolder(it) }
+    val responseQueues = chunks.mapIndexed { index, chunk -> startRequests(holders[index], chunk) }
+
+    val result = mutableMapOf<SymbolKey, Symbol>()
+    try {
+      for ((index, chunk) in chunks.withIndex()) {
+        for (request in chunk) {
+          val response = responseQueues[index].poll(timeoutMsc, TimeUnit.MILLISECONDS)
+          if (response == null) {
+            getLogger().warn("llvm-symbolizer timed out")
+            stopProcess(index)
+            break
+          }
+          if (response.error != null) {
+            getLogger().warn("llvm-symbolizer communication failed", response.error)
+            stopProcess(index)
             break
           }
-          response.add(responseLine)
+          result[request.key] = parseResponse(response.lines, "") ?: UNKNOWN_SYMBOL
         }
-        response
-      })
-      val response : List<String>
-      try {
-        response = future.get(timeoutMsc, TimeUnit.MILLISECONDS)
-      } catch (e: TimeoutException) {
-        getLogger().warn("llvm-symbolizer timed out", e)
-        stop()
-        continue
-      } catch (e: ExecutionException) {
-        getLogger().warn("llvm-symbolizer communication failed", e)
-        stop()
-        continue
       }
+    }
+    catch (e: InterruptedException) {
+      // The processes may still have responses to send, which would be read as the responses of the next requests.
+      stop()
+      Thread.currentThread().interrupt()
+    }
+    return result
+  }
 
-      val result = parseResponse(response, module)
-      if (result != null)
-        return result
+  /**
+   * Writes the [requests] to the process of [holder] and reads its responses in the background.
+   * @return the queue the responses are added to, in the order of the requests
+   */
+  private fun startRequests(holder: ProcessHolder, requests: List<SymbolFileOffset>): BlockingQueue<Response> {
+    val responses = LinkedBlockingQueue<Response>()
+    val executor = getExecutor()
+    executor.execute {
+      try {
+        for (request in requests) {
+          holder.stdin.write(formatRequest(request.symFile, request.key.offset))
+        }
+        holder.stdin.flush()
+      }
+      catch (e: IOException) {
+        // The process is gone, which the reader reports.
+      }
+    }
+    executor.execute {
+      try {
+        for (request in requests) {
+          val response: MutableList<String> = mutableListOf()
+          while (true) {
+            val responseLine = holder.stdout.readLine() ?: throw EOFException("llvm-symbolizer exited")
+            if (responseLine.isEmpty()) {
+              break
+            }
+            response.add(responseLine)
+          }
+          responses.add(Response(response))
+        }
+      }
+      catch (e: IOException) {
+        responses.add(Response(emptyList(), e))
+      }
     }
+    return responses
+  }
 
-    return null
+  private fun getExecutor(): ExecutorService {
+    return executor ?: Executors.newCachedThreadPool().also { executor = it }
   }
 
-  private fun getProcHolder() : ProcessHolder {
-    var holder = procHolder
+  private fun getProcHolder(index: Int) : ProcessHolder {
+    var holder = procHolders[index]
     if (holder == null || !holder.process.isAlive) {
-      start()
-      holder = procHolder!! // procHolder must't be null after start()
+      holder = start()
+      procHolders[index] = holder
     }
     return holder
   }
@@ -126,10 +238,7 @@ class LlvmSymbolizer(private val symbolizerExe: String,
     return Symbol(name, module, sourceFile, lineNumber)
   }
 
-  private fun start() {
-    if (procHolder != null)
-      stop()
-
+  private fun start(): ProcessHolder {
     val builder = ProcessBuilder(symbolizerExe)
     val process = builder.start()
     if (!process.isAlive) {
@@ -138,14 +247,41 @@ class LlvmSymbolizer(private val symbolizerExe: String,
 
     val stdin = OutputStreamWriter(process.outputStream, Charsets.UTF_8)
     val stdout = BufferedReader(InputStreamReader(process.inputStream, Charsets.UTF_8))
-    procHolder = ProcessHolder(process, stdout, stdin)
+    return ProcessHolder(process, stdout, stdin)
+  }
+
+  private fun stopProcess(index: Int) {
+    procHolders[index]?.dispose()
+    procHolders[index] = null
   }
 
+  @Synchronized
   override fun stop() {
-    procHolder?.dispose()
-    procHolder = null
+    for (index in procHolders.indices) {
+      stopProcess(index)
+    }
+    // The threads still reading the responses of the processes see them end and exit.
+    executor?.shutdown()
+    executor = null
   }
 
+  /**
+   * Identifies a symbol file without a build ID by its size and modification time, so that the symbols cached for it aren't used anymore
+   * once it is rebuilt.
+   */
+  private data class SymbolFileVersion(val file: File, val length: Long, val lastModified: Long)
+
+  private data class BuildIdVersion(val buildId: String, val length: Long)
+
+  /**
+   * An offset in a symbol file identified by its [BuildIdVersion], or by its [SymbolFileVersion] if it doesn't have a build ID.
+   */
+  private data class SymbolKey(val symFileId: Any, val offset: Long)
+
+  private data class SymbolFileOffset(val symFile: File, val key: SymbolKey)
+
+  private class Response(val lines: List<String>, val error: IOException? = null)
+
   private class ProcessHolder(val process: Process,
                               val stdout: BufferedReader,
                               val stdin: OutputStreamWriter) : Disposable {
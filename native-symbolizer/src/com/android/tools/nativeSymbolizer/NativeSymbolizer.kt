@@ -25,6 +25,11 @@ import java.nio.file.Paths
 
 data class Symbol(val name: String, val module: String, val sourceFile: String = "", val lineNumber: Int = 0)
 
+/**
+ * An [offset] in a native [module] built for the [abiArch] CPU architecture.
+ */
+data class NativeAddress(val abiArch: String, val module: String, val offset: Long)
+
 /**
  * Components that can fetch information about native symbols by a module and an offset.
  */
@@ -39,6 +44,22 @@ interface NativeSymbolizer {
    */
   @Throws(IOException::class)
   fun symbolize(abiArch: String, module: String, offset: Long): Symbol?
+
+  /**
+   * Obtains information about the functions located at the given addresses. Implementations should prefer this to symbolizing the
+   * addresses one by one when there are many of them.
+   * @return symbols info of the addresses which could be found
+   */
+  @JvmDefault
+  @Throws(IOException::class)
+  fun symbolize(addresses: Collection<NativeAddress>): Map<NativeAddress, Symbol> {
+    val result = mutableMapOf<NativeAddress, Symbol>()
+    for (address in addresses.toSet()) {
+      symbolize(address.abiArch, address.module, address.offset)?.let { result[address] = it }
+    }
+    return result
+  }
+
   fun stop()
 }
 
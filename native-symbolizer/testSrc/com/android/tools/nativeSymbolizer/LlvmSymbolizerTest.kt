@@ -63,6 +63,38 @@ class LlvmSymbolizerTest {
     }
   }
 
+  @Test
+  fun testSymbolizeBatch() {
+    val symbolizer = createSymbolizer()
+    val module = "/data/app/com.someapp.name-abcd09876abds==/lib/arm64/" + LIB_FILE_NAME
+    val expectedSymbols = mutableMapOf<NativeAddress, List<String>>()
+    for (arch in architectures) {
+      val expectedSymbolsFile = Paths.get(testDataDir, arch, EXPECTED_SYMBOLS_FILE_NAME).toFile()
+      for (line in expectedSymbolsFile.readLines()) {
+        val symParts = line.split('|')
+        // +1 to get an address within the function, rather than function start address
+        expectedSymbols[NativeAddress(arch, module, symParts[0].toLong(16) + 1)] = symParts
+      }
+    }
+    val unknownAddress = NativeAddress("arm", LIB_FILE_NAME, 0xffffffffff)
+
+    // Every address is requested twice, to check that they are deduplicated.
+    val addresses = expectedSymbols.keys.toList() + expectedSymbols.keys.toList() + unknownAddress
+    val symbols = symbolizer.symbolize(addresses)
+    Assert.assertEquals(expectedSymbols.keys, symbols.keys)
+    for ((address, symParts) in expectedSymbols) {
+      val symbol = symbols.getValue(address)
+      Assert.assertEquals(symParts[1], symbol.name)
+      Assert.assertEquals(module, symbol.module)
+      Assert.assertEquals(symParts[2], symbol.sourceFile)
+      Assert.assertTrue(symbol.lineNumber >= symParts[3].toInt())
+    }
+
+    // Symbols are cached, even once the symbolizer is stopped.
+    symbolizer.stop()
+    Assert.assertEquals(symbols, symbolizer.symbolize(expectedSymbols.keys))
+  }
+
   @Test
   fun testSymbolizeBinariesBuiltOnWindows() {
     val arch = "arm64"
@@ -158,6 +190,19 @@ class LlvmSymbolizerTest {
     }
   }
 
+  @Test
+  fun testReadElfBuildId() {
+    val expectedBuildIds = mapOf("arm" to "463de9a467d1bc1453c0e1f494308df8a8616b48",
+                                 "arm64" to "9b3ea9b018209bd554c02186a62cf2c7cca3e915",
+                                 "x86" to "77d9de6b9746662e7da8225fedd7533b57ded517",
+                                 "x86_64" to "415446799bd7b2495e1056857fc6dfc724ffc002")
+    for ((arch, buildId) in expectedBuildIds) {
+      Assert.assertEquals(buildId, readElfBuildId(Paths.get(testDataDir, arch, LIB_FILE_NAME).toFile()))
+    }
+    Assert.assertNull(readElfBuildId(Paths.get(testDataDir, "arm", EXPECTED_SYMBOLS_FILE_NAME).toFile()))
+    Assert.assertNull(readElfBuildId(Paths.get(testDataDir, "arm", "missing.so").toFile()))
+  }
+
   @Test
   fun testUnknownSymbols() {
     val symbolizer = createSymbolizer()
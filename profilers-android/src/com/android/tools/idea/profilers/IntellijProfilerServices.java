@@ -411,6 +411,11 @@ public class IntellijProfilerServices implements IdeProfilerServices, Disposable
       return StudioFlags.PROFILER_MEMORY_CSV_EXPORT.get();
     }
 
+    @Override
+    public boolean isMemoryMappedHeapDumpEnabled() {
+      return StudioFlags.PROFILER_MEMORY_MAPPED_HEAP_DUMP.get();
+    }
+
     @Override
     public boolean isMemorySnapshotEnabled() {
       return StudioFlags.PROFILER_MEMORY_SNAPSHOT.get();
@@ -431,6 +436,11 @@ public class IntellijProfilerServices implements IdeProfilerServices, Disposable
       return StudioFlags.PROFILEABLE_IN_QR.get();
     }
 
+    @Override
+    public boolean isSessionPersistenceEnabled() {
+      return StudioFlags.PROFILER_PERSIST_SESSIONS.get();
+    }
+
     @Override
     public boolean isStartupCpuProfilingEnabled() {
       return StudioFlags.PROFILER_STARTUP_CPU_PROFILING.get();
@@ -15,13 +15,19 @@
  */
 package com.android.tools.idea.profilers.stacktrace;
 
+import com.android.tools.nativeSymbolizer.NativeAddress;
 import com.android.tools.nativeSymbolizer.NativeSymbolizer;
 import com.android.tools.nativeSymbolizer.Symbol;
 import com.android.tools.profiler.proto.Memory.NativeCallStack;
 import com.android.tools.profilers.stacktrace.NativeFrameSymbolizer;
 import com.intellij.openapi.diagnostic.Logger;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Wrapper for {@link NativeSymbolizer} to return a NativeCallStack.NativeFrame instead of the Symbol class which profilers don't have a
@@ -52,7 +58,37 @@ public class IntelliJNativeFrameSymbolizer implements NativeFrameSymbolizer {
     catch (IOException | RuntimeException e) {
       getLogger().warn(e);
     }
+    return toSymbolizedFrame(unsymbolizedFrame, instructionOffset, symbol);
+  }
+
+  @NotNull
+  @Override
+  public List<NativeCallStack.NativeFrame> symbolize(String abi, @NotNull List<NativeCallStack.NativeFrame> unsymbolizedFrames) {
+    List<NativeAddress> addresses = unsymbolizedFrames.stream()
+      .map(frame -> new NativeAddress(abi, frame.getModuleName(), getOffsetOfPreviousInstruction(frame.getModuleOffset())))
+      .collect(Collectors.toList());
+    Map<NativeAddress, Symbol> symbols = Collections.emptyMap();
+    try {
+      symbols = mySymbolizer.symbolize(addresses);
+    }
+    catch (IOException | RuntimeException e) {
+      getLogger().warn(e);
+    }
 
+    Map<NativeAddress, Symbol> foundSymbols = symbols;
+    return unsymbolizedFrames.stream()
+      .map(frame -> {
+        long instructionOffset = getOffsetOfPreviousInstruction(frame.getModuleOffset());
+        Symbol symbol = foundSymbols.get(new NativeAddress(abi, frame.getModuleName(), instructionOffset));
+        return toSymbolizedFrame(frame, instructionOffset, symbol);
+      })
+      .collect(Collectors.toList());
+  }
+
+  @NotNull
+  private static NativeCallStack.NativeFrame toSymbolizedFrame(@NotNull NativeCallStack.NativeFrame unsymbolizedFrame,
+                                                               long instructionOffset,
+                                                               @Nullable Symbol symbol) {
     NativeCallStack.NativeFrame.Builder builder = unsymbolizedFrame.toBuilder();
     if (symbol == null) {
       String unfoundSymbolName = String.format("0x%x", instructionOffset);
@@ -21,6 +21,8 @@ import static com.google.common.truth.Truth.assertThat;
 import com.android.tools.nativeSymbolizer.NativeSymbolizer;
 import com.android.tools.nativeSymbolizer.Symbol;
 import com.android.tools.profiler.proto.Memory.NativeCallStack;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.junit.Test;
@@ -58,6 +60,31 @@ public class IntelliJNativeFrameSymbolizerTest {
     assertThat(symbolizedFrame2).isEqualTo(expectedSymbolizedFrame2);
   }
 
+  @Test
+  public void testSymbolizeBatch() {
+    IntelliJNativeFrameSymbolizer frameSymbolizer = new IntelliJNativeFrameSymbolizer(new FakeNativeSymbolizer());
+
+    NativeCallStack.NativeFrame frame1 = NativeCallStack.NativeFrame.newBuilder().setModuleName("test1").setModuleOffset(100).build();
+    NativeCallStack.NativeFrame frame2 = NativeCallStack.NativeFrame.newBuilder().setModuleName("test2").setModuleOffset(200).build();
+    List<NativeCallStack.NativeFrame> symbolizedFrames = frameSymbolizer.symbolize("arm", ImmutableList.of(frame1, frame2, frame1));
+
+    NativeCallStack.NativeFrame expectedSymbolizedFrame1 = frame1.toBuilder()
+      .setSymbolName("arm_frame")
+      .setModuleName("test1_symbolized")
+      .setFileName("symbols.java")
+      .setLineNumber(1000 + 100 + PREVIOUS_INSTRUCTION_OFFSET).build();
+    NativeCallStack.NativeFrame expectedSymbolizedFrame2 = frame2.toBuilder()
+      .setSymbolName("arm_frame")
+      .setModuleName("test2_symbolized")
+      .setFileName("symbols.java")
+      .setLineNumber(1000 + 200 + PREVIOUS_INSTRUCTION_OFFSET).build();
+    assertThat(symbolizedFrames).containsExactly(expectedSymbolizedFrame1, expectedSymbolizedFrame2, expectedSymbolizedFrame1).inOrder();
+
+    // verify unfound symbols
+    assertThat(frameSymbolizer.symbolize("arm64", ImmutableList.of(frame1)).get(0).getSymbolName())
+      .isEqualTo(String.format("0x%x", 100 - 1));
+  }
+
   private static class FakeNativeSymbolizer implements NativeSymbolizer {
     @Nullable
     @Override
@@ -16,8 +16,8 @@
 package com.android.tools.profilers.cpu
 
 import com.android.tools.adtui.chart.linechart.LineChart
+import com.android.tools.adtui.model.LongDataSeries
 import com.android.tools.adtui.model.Range
-import com.android.tools.adtui.model.SeriesData
 import com.android.tools.adtui.model.trackgroup.TrackModel
 import com.android.tools.profilers.ProfilerTrackRendererType
 import com.android.tools.profilers.cpu.systemtrace.CpuFrequencyTrackModel
@@ -36,10 +36,10 @@ class CpuFrequencyTrackRendererTest {
   }
 
   companion object {
-    private val CPU_FREQUENCY_COUNTERS = listOf(
-      SeriesData(0L, 1000000L),
-      SeriesData(1000L, 2000000L),
-      SeriesData(2000L, 1000000L)
-    )
+    private val CPU_FREQUENCY_COUNTERS = LongDataSeries().apply {
+      add(0L, 1000000L)
+      add(1000L, 2000000L)
+      add(2000L, 1000000L)
+    }
   }
 }
\ No newline at end of file
@@ -17,8 +17,8 @@ package com.android.tools.profilers.cpu
 
 import com.android.tools.adtui.AxisComponent
 import com.android.tools.adtui.chart.linechart.LineChart
+import com.android.tools.adtui.model.LongDataSeries
 import com.android.tools.adtui.model.Range
-import com.android.tools.adtui.model.SeriesData
 import com.android.tools.adtui.model.trackgroup.TrackModel
 import com.android.tools.profilers.ProfilerTrackRendererType
 import com.android.tools.profilers.cpu.systemtrace.RssMemoryTrackModel
@@ -38,10 +38,10 @@ class RssMemoryTrackRendererTest {
   }
 
   companion object {
-    private val RSS_MEMORY_COUNTERS = listOf(
-      SeriesData(0L, 1000L),
-      SeriesData(1000L, 2000L),
-      SeriesData(2000L, 3000L)
-    )
+    private val RSS_MEMORY_COUNTERS = LongDataSeries().apply {
+      add(0L, 1000L)
+      add(1000L, 2000L)
+      add(2000L, 3000L)
+    }
   }
 }
\ No newline at end of file
@@ -28,11 +28,13 @@ public interface FeatureConfig {
   boolean isLiveAllocationsEnabled();
   boolean isLiveAllocationsSamplingEnabled();
   boolean isMemoryCSVExportEnabled();
+  boolean isMemoryMappedHeapDumpEnabled();
   boolean isMemorySnapshotEnabled();
   boolean isNativeMemorySampleEnabled(); // Added in 4.1.
   boolean isPerformanceMonitoringEnabled();
   boolean isProfileableEnabled();
   boolean isProfileableInQrEnabled();
+  boolean isSessionPersistenceEnabled();
   boolean isStartupCpuProfilingEnabled();
   boolean isUnifiedPipelineEnabled();
   boolean isUseTraceProcessor();
@@ -16,6 +16,7 @@
 package com.android.tools.profilers;
 
 import com.android.tools.adtui.model.DataSeries;
+import com.android.tools.adtui.model.LongDataSeries;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.SeriesData;
 import com.android.tools.profiler.proto.Common;
@@ -26,7 +27,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.function.ToLongFunction;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -90,12 +91,19 @@ public class UnifiedEventDataSeries<T> implements DataSeries<T> {
    * Helper function that constructs list data extractor from a field extractor for the simple case of extracting one field out of every
    * {@link Common.Event}.
    *
-   * @param fieldExtractor a {@link Function} that extracts a Long field from an {@link Common.Event}.
+   * The events of a group are returned in timestamp order, so the values are stored unboxed in a {@link LongDataSeries} and the returned
+   * list is a view of it.
+   *
+   * @param fieldExtractor a {@link ToLongFunction} that extracts a long field from an {@link Common.Event}.
    * @return a {@link Function} that converts a list of events into a list of {@link SeriesData}.
    */
-  public static Function<List<Common.Event>, List<SeriesData<Long>>> fromFieldToDataExtractor(Function<Common.Event, Long> fieldExtractor) {
-    return events -> events.stream()
-      .map(event -> new SeriesData<>(TimeUnit.NANOSECONDS.toMicros(event.getTimestamp()), fieldExtractor.apply(event)))
-      .collect(Collectors.toList());
+  public static Function<List<Common.Event>, List<SeriesData<Long>>> fromFieldToDataExtractor(ToLongFunction<Common.Event> fieldExtractor) {
+    return events -> {
+      LongDataSeries series = new LongDataSeries(events.size());
+      for (Common.Event event : events) {
+        series.add(TimeUnit.NANOSECONDS.toMicros(event.getTimestamp()), fieldExtractor.applyAsLong(event));
+      }
+      return series.getAllData();
+    };
   }
 }
@@ -33,6 +33,8 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class CaptureNode implements HNode<CaptureNode> {
+  private static final int INITIAL_CHILDREN_CAPACITY = 2;
+
   /**
    * Start time with GLOBAL clock.
    */
@@ -53,8 +55,12 @@ public class CaptureNode implements HNode<CaptureNode> {
    */
   private long myEndThread;
 
+  /**
+   * Children of this node. Most nodes of a capture are leaves, so the list is only allocated when the first child is added, and with a
+   * small initial capacity since the majority of the remaining nodes only have one or two children.
+   */
   @NotNull
-  protected final List<CaptureNode> myChildren;
+  private List<CaptureNode> myChildren = Collections.emptyList();
 
   @NotNull
   private ClockType myClockType;
@@ -86,7 +92,6 @@ public class CaptureNode implements HNode<CaptureNode> {
   private AspectModel<Aspect> myAspectModel = null;
 
   public CaptureNode(@NotNull CaptureNodeModel model) {
-    myChildren = new ArrayList<>();
     myClockType = ClockType.GLOBAL;
     myFilterType = FilterType.MATCH;
     myDepth = 0;
@@ -94,10 +99,20 @@ public class CaptureNode implements HNode<CaptureNode> {
   }
 
   public void addChild(CaptureNode node) {
-    myChildren.add(node);
+    appendChild(node);
     node.myParent = this;
   }
 
+  /**
+   * Adds the given node to the list of children without changing its parent.
+   */
+  protected void appendChild(@NotNull CaptureNode node) {
+    if (myChildren.isEmpty()) {
+      myChildren = new ArrayList<>(INITIAL_CHILDREN_CAPACITY);
+    }
+    myChildren.add(node);
+  }
+
   @NotNull
   public List<CaptureNode> getChildren() {
     return myChildren;
@@ -224,9 +239,17 @@ public class CaptureNode implements HNode<CaptureNode> {
    */
   @NotNull
   public List<CaptureNode> getTopKNodes(int k, @NotNull Predicate<CaptureNode> filter, @NotNull Comparator<CaptureNode> comparator) {
+    return getTopKNodes(getDescendantsStream().filter(filter), k, comparator);
+  }
+
+  /**
+   * @return up to top k nodes of the given stream by the given comparator, in descending order
+   */
+  @NotNull
+  public static List<CaptureNode> getTopKNodes(@NotNull Stream<CaptureNode> nodes, int k, @NotNull Comparator<CaptureNode> comparator) {
     // Put all matched nodes in a priority queue capped at size n, so the queue always contain the n longest running ones.
     PriorityQueue<CaptureNode> candidates = new PriorityQueue<>(k + 1, comparator);
-    getDescendantsStream().filter(filter).forEach(node -> {
+    nodes.forEach(node -> {
       candidates.offer(node);
       if (candidates.size() > k) {
         candidates.poll();
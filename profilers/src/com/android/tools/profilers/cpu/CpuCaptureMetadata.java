@@ -143,6 +143,11 @@ public class CpuCaptureMetadata {
    */
   private long myParsingTimeMs;
 
+  /**
+   * Highest heap usage (in bytes) sampled while the trace file was parsed, or -1 if unknown.
+   */
+  private long myParsingPeakHeapBytes = -1;
+
   /**
    * How much time (in milliseconds) taken to stop the recording.
    */
@@ -198,6 +203,14 @@ public class CpuCaptureMetadata {
     myParsingTimeMs = parsingTimeMs;
   }
 
+  public long getParsingPeakHeapBytes() {
+    return myParsingPeakHeapBytes;
+  }
+
+  public void setParsingPeakHeapBytes(long parsingPeakHeapBytes) {
+    myParsingPeakHeapBytes = parsingPeakHeapBytes;
+  }
+
   public long getRecordDurationMs() {
     return myRecordDurationMs;
   }
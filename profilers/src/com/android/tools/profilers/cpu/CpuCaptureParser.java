@@ -189,13 +189,14 @@ public class CpuCaptureParser {
     // If we don't have a hint for the process id, we assume it was an imported trace as we have no extra information.
     boolean isImportedTrace = (processIdHint == 0);
 
+    ProcessTraceAction processTraceAction =
+      new ProcessTraceAction(traceFile, traceId, preferredProfilerType, processIdHint, processNameHint, myServices);
     CompletableFuture<CpuCapture> cpuCapture =
       CompletableFuture.runAsync(new TraceFileValidationAction(traceFile), myServices.getPoolExecutor())
         .thenRunAsync(new ParsingStartAction(traceFile), myServices.getMainExecutor())
-        .thenApplyAsync(
-          new ProcessTraceAction(traceFile, traceId, preferredProfilerType, processIdHint, processNameHint, myServices),
-          myServices.getPoolExecutor())
-        .whenCompleteAsync(new TraceResultHandler(traceFile, traceId, isImportedTrace), myServices.getMainExecutor());
+        .thenApplyAsync(processTraceAction, myServices.getPoolExecutor())
+        .whenCompleteAsync(new TraceResultHandler(traceFile, traceId, isImportedTrace, processTraceAction),
+                           myServices.getMainExecutor());
     myCaptures.put(traceId, cpuCapture);
     return cpuCapture;
   }
@@ -358,6 +359,11 @@ public class CpuCaptureParser {
     @NotNull
     private final IdeProfilerServices services;
 
+    /**
+     * Highest heap usage sampled while the trace was parsed, in bytes, or -1 if the parse hasn't finished.
+     */
+    private long peakHeapBytes = -1;
+
     // Parsers used by parseToCapture
     private static final Supplier<TraceParser> ART_PARSER_SUPPLIER = () -> new ArtTraceParser();
     private static final Supplier<TraceParser> SIMPLEPERF_PARSER_SUPPLIER = () -> new SimpleperfTraceParser();
@@ -383,7 +389,14 @@ public class CpuCaptureParser {
 
     @Override
     public CpuCapture apply(Void aVoid) {
-      return parseToCapture(traceFile, traceId, preferredProfilerType);
+      HeapUsageSampler heapUsageSampler = new HeapUsageSampler();
+      heapUsageSampler.start();
+      try {
+        return parseToCapture(traceFile, traceId, preferredProfilerType);
+      }
+      finally {
+        peakHeapBytes = heapUsageSampler.stop();
+      }
     }
 
     @Nullable
@@ -497,11 +510,17 @@ public class CpuCaptureParser {
     private final File traceFile;
     private final long traceId;
     private final boolean isImportedTrace;
+    @NotNull
+    private final ProcessTraceAction processTraceAction;
 
-    private TraceResultHandler(@NotNull File traceFile, long traceId, boolean isImportedTrace) {
+    private TraceResultHandler(@NotNull File traceFile,
+                               long traceId,
+                               boolean isImportedTrace,
+                               @NotNull ProcessTraceAction processTraceAction) {
       this.traceFile = traceFile;
       this.traceId = traceId;
       this.isImportedTrace = isImportedTrace;
+      this.processTraceAction = processTraceAction;
     }
 
     @Override
@@ -517,6 +536,7 @@ public class CpuCaptureParser {
         metadata.setStatus(CpuCaptureMetadata.CaptureStatus.SUCCESS);
         // Set the parsing time at least 1 millisecond, to make it easy to verify in tests.
         metadata.setParsingTimeMs(Math.max(1, System.currentTimeMillis() - myParsingStartTimeMs));
+        metadata.setParsingPeakHeapBytes(processTraceAction.peakHeapBytes);
         metadata.setCaptureDurationMs(TimeUnit.MICROSECONDS.toMillis(capture.getDurationUs()));
         metadata.setRecordDurationMs(calculateRecordDurationMs(capture));
       }
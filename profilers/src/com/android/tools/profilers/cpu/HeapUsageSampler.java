@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Tracks the highest heap usage reported by {@link MemoryMXBean} between {@link #start()} and {@link #stop()}, sampling it when started,
+ * periodically while running and when stopped.
+ *
+ * The value covers the whole heap, so work done by other threads at the same time is included. Unlike resetting the peaks of the memory
+ * pools, sampling doesn't interfere with anyone else reading them.
+ */
+public final class HeapUsageSampler {
+  private static final long DEFAULT_SAMPLING_INTERVAL_MS = 20;
+
+  @NotNull private final MemoryMXBean myMemoryBean = ManagementFactory.getMemoryMXBean();
+  @NotNull private final AtomicLong myPeakUsedBytes = new AtomicLong(-1);
+  private final long mySamplingIntervalMs;
+  private ScheduledExecutorService mySamplingExecutor;
+
+  public HeapUsageSampler() {
+    this(DEFAULT_SAMPLING_INTERVAL_MS);
+  }
+
+  public HeapUsageSampler(long samplingIntervalMs) {
+    mySamplingIntervalMs = samplingIntervalMs;
+  }
+
+  public void start() {
+    assert mySamplingExecutor == null : "Sampler has already been started";
+    sample();
+    mySamplingExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "HeapUsageSampler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    mySamplingExecutor.scheduleAtFixedRate(this::sample, mySamplingIntervalMs, mySamplingIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops sampling and returns the highest heap usage observed, in bytes.
+   */
+  public long stop() {
+    assert mySamplingExecutor != null : "Sampler has not been started";
+    mySamplingExecutor.shutdownNow();
+    sample();
+    return myPeakUsedBytes.get();
+  }
+
+  private void sample() {
+    long used = myMemoryBean.getHeapMemoryUsage().getUsed();
+    myPeakUsedBytes.accumulateAndGet(used, Math::max);
+  }
+}
@@ -25,11 +25,18 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class CaptureNodeAnalysisModel implements CpuAnalyzable<CaptureNodeAnalysisModel> {
   @NotNull private final CaptureNode myNode;
   @NotNull private final CpuCapture myCapture;
 
+  /**
+   * All the nodes in the tree of {@link #myNode} with the same full name, in pre-order. Computed on first use, as finding them requires
+   * walking the whole tree and both the summary statistics and the longest running occurrences are derived from them.
+   */
+  @Nullable private List<CaptureNode> myOccurrences;
+
   public CaptureNodeAnalysisModel(@NotNull CaptureNode node, @NotNull CpuCapture capture) {
     myNode = node;
     myCapture = capture;
@@ -50,7 +57,7 @@ public class CaptureNodeAnalysisModel implements CpuAnalyzable<CaptureNodeAnalys
    */
   @NotNull
   public List<CaptureNode> getLongestRunningOccurrences(int k) {
-    return myNode.findRootNode().getTopKNodes(k, this::matchesFullName, Comparator.comparing(CaptureNode::getDuration));
+    return CaptureNode.getTopKNodes(getAllOccurrences().stream(), k, Comparator.comparing(CaptureNode::getDuration));
   }
 
   /**
@@ -58,14 +65,18 @@ public class CaptureNodeAnalysisModel implements CpuAnalyzable<CaptureNodeAnalys
    */
   @NotNull
   public CaptureNodeAnalysisStats getAllOccurrenceStats() {
-    List<CaptureNode> allOccurrences = myNode.findRootNode().getDescendantsStream()
-      .filter(this::matchesFullName)
-      .collect(Collectors.toList());
-    return CaptureNodeAnalysisStats.Companion.fromNodes(allOccurrences);
+    return CaptureNodeAnalysisStats.Companion.fromNodes(getAllOccurrences());
   }
 
-  private boolean matchesFullName(@NotNull CaptureNode node) {
-    return myNode.getData().getFullName().equals(node.getData().getFullName());
+  @NotNull
+  private List<CaptureNode> getAllOccurrences() {
+    if (myOccurrences == null) {
+      String fullName = myNode.getData().getFullName();
+      myOccurrences = myNode.findRootNode().getDescendantsStream()
+        .filter(node -> fullName.equals(node.getData().getFullName()))
+        .collect(Collectors.toList());
+    }
+    return myOccurrences;
   }
 
   @NotNull
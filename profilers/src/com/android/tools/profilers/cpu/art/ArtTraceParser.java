@@ -27,6 +27,10 @@ import org.jetbrains.annotations.NotNull;
 
 /**
  * Receives a binary trace file generated by using ART and parse it into a {@link CpuCapture}
+ *
+ * The call trees of all threads are built while parsing. Building them lazily wouldn't save memory: the capture stage needs every tree as
+ * soon as it opens, to order the thread tracks by their number of calls ({@link com.android.tools.profilers.cpu.CaptureThreadComparator})
+ * and to compute the record duration, and {@link BaseCpuCapture} needs the duration of each tree to pick the main thread.
  */
 public class ArtTraceParser implements TraceParser {
 
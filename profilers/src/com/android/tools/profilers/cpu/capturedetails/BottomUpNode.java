@@ -30,6 +30,10 @@ import org.jetbrains.annotations.NotNull;
 public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
 
   private final List<CaptureNode> myPathNodes = new ArrayList<>();
+  /**
+   * The root of the tree of each node of {@link #myNodes}, by index. Computed on first use, as finding the root walks up the tree.
+   */
+  private final List<CaptureNode> myNodeRoots = new ArrayList<>();
   private final boolean myIsRoot;
   private boolean myChildrenBuilt;
 
@@ -131,7 +135,7 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
   }
 
   @Override
-  public void update(@NotNull Range range) {
+  protected void computeAggregates(@NotNull Range range) {
     // how much time was spent in this call stack path, and in the functions it called
     myGlobalTotal = 0;
     // how much time was spent doing work directly in this call stack path
@@ -145,13 +149,18 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
     // each of the threads. As such we keep a mapping of outer so far by parents to keep the book keeping done properly.
     HashMap<CaptureNode, CaptureNode> outerSoFarByParent = new HashMap<>();
 
+    // Nodes are only ever appended, so only the roots of the new ones are missing.
+    for (int i = myNodeRoots.size(); i < myNodes.size(); i++) {
+      myNodeRoots.add(myNodes.get(i).findRootNode());
+    }
+
     // myNodes is sorted by CaptureNode#getStart() in increasing order,
     // if they are equal then ancestor comes first
-    for (CaptureNode node : myNodes) {
+    for (int i = 0; i < myNodes.size(); i++) {
+      CaptureNode node = myNodes.get(i);
       // We use the root node to distinguish if two nodes share the same tree. In the event of multi-select we want to compute the bottom
       // up calculation independently for each tree then sum them after the fact.
-      // TODO(153306735): Cache the root calculation, otherwise our update algorithm is going to be O(n*depth) instead of O(n)
-      CaptureNode root = node.findRootNode();
+      CaptureNode root = myNodeRoots.get(i);
       CaptureNode outerSoFar = outerSoFarByParent.getOrDefault(root, null);
       if (outerSoFar == null || node.getEnd() > outerSoFar.getEnd()) {
         if (outerSoFar != null) {
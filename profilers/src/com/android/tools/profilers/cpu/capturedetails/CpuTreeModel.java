@@ -18,6 +18,7 @@ package com.android.tools.profilers.cpu.capturedetails;
 import com.android.tools.adtui.model.AspectModel;
 import com.android.tools.adtui.model.AspectObserver;
 import com.android.tools.adtui.model.Range;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -25,6 +26,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import org.jetbrains.annotations.NotNull;
@@ -38,6 +40,14 @@ public abstract class CpuTreeModel<T extends CpuTreeNode<T>> extends DefaultTree
     TREE_MODEL
   }
 
+  /**
+   * Minimum number of {@link com.android.tools.profilers.cpu.CaptureNode}s to aggregate before the work is split across
+   * {@link #ourAggregationPool}. Below that, the overhead of the fork-join tasks outweighs the gain.
+   */
+  private static final int PARALLEL_UPDATE_THRESHOLD = 10_000;
+
+  private static final ForkJoinPool ourAggregationPool = new ForkJoinPool(Math.min(Runtime.getRuntime().availableProcessors(), 4));
+
   private final Range myRange;
   private final Range myCurrentRange;
   private final AspectObserver myAspectObserver;
@@ -76,7 +86,10 @@ public abstract class CpuTreeModel<T extends CpuTreeNode<T>> extends DefaultTree
     // Add the ranges we don't have anymore
     diffs.addAll(myCurrentRange.subtract(myRange));
 
-    update(root, myRange, diffs);
+    List<DefaultMutableTreeNode> changed = new ArrayList<>();
+    update(root, myRange, diffs, changed);
+    updateAggregates(changed, new Range(myRange));
+    changed.forEach(this::nodeChanged);
 
     myCurrentRange.set(myRange);
     myAspectModel.changed(Aspect.TREE_MODEL);
@@ -91,7 +104,12 @@ public abstract class CpuTreeModel<T extends CpuTreeNode<T>> extends DefaultTree
     return false;
   }
 
-  private void update(DefaultMutableTreeNode node, Range range, List<Range> ranges) {
+  /**
+   * Updates the structure of the tree under the given node for the range, and collects the nodes whose aggregates need to be recomputed in
+   * post-order. The aggregates are computed separately, by {@link #updateAggregates(List, Range)}, since that part doesn't touch the tree
+   * model and can be done in parallel.
+   */
+  private void update(DefaultMutableTreeNode node, Range range, List<Range> ranges, List<DefaultMutableTreeNode> changed) {
     T data = (T)node.getUserObject();
 
     if (changes(data, ranges)) {
@@ -110,7 +128,7 @@ public abstract class CpuTreeModel<T extends CpuTreeNode<T>> extends DefaultTree
             existing = new DefaultMutableTreeNode(child);
             insertNodeInto(existing, node, node.getChildCount());
           }
-          update(existing, range, ranges);
+          update(existing, range, ranges, changed);
         } else {
           child.reset();
         }
@@ -120,8 +138,24 @@ public abstract class CpuTreeModel<T extends CpuTreeNode<T>> extends DefaultTree
           removeNodeFromParent(entry.getValue());
         }
       }
-      data.update(range);
-      nodeChanged(node);
+      changed.add(node);
+    }
+  }
+
+  /**
+   * Recomputes the aggregates of the given tree nodes for the range. Each {@link CpuTreeNode} only reads its own capture nodes, so large
+   * updates are split across {@link #ourAggregationPool}, and the call returns once all of them are done.
+   */
+  private void updateAggregates(@NotNull List<DefaultMutableTreeNode> nodes, @NotNull Range range) {
+    long captureNodeCount = 0;
+    for (DefaultMutableTreeNode node : nodes) {
+      captureNodeCount += ((T)node.getUserObject()).getNodes().size();
+    }
+    if (captureNodeCount < PARALLEL_UPDATE_THRESHOLD) {
+      nodes.forEach(node -> ((T)node.getUserObject()).update(range));
+    }
+    else {
+      ourAggregationPool.submit(() -> nodes.parallelStream().forEach(node -> ((T)node.getUserObject()).update(range))).join();
     }
   }
 
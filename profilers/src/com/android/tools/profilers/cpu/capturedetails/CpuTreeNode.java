@@ -20,10 +20,18 @@ import com.android.tools.perflib.vmtrace.ClockType;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public abstract class CpuTreeNode<T extends CpuTreeNode> {
+  /**
+   * Number of ranges whose aggregates are kept by each node, see {@link #update(Range)}.
+   */
+  private static final int MEMOIZED_RANGE_COUNT = 8;
+
   /**
    * References to {@link CaptureNode} that are used to extract information from to represent this CpuTreeNode,
    * such as {@link #getGlobalTotal()}, {@link #getGlobalChildrenTotal()}, etc...
@@ -37,6 +45,12 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
   protected double myThreadTotal = 0;
   protected double myThreadChildrenTotal = 0;
 
+  /**
+   * The aggregates computed for the most recently used ranges, or null until the node is first updated. Most nodes of a large tree are
+   * never shown, so they don't pay for the map.
+   */
+  @Nullable private MemoizedAggregates myMemoizedAggregates;
+
   public CpuTreeNode(String id) {
     myId = id;
   }
@@ -47,6 +61,7 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
 
   protected void addNode(@NotNull CaptureNode node) {
     myNodes.add(node);
+    myMemoizedAggregates = null;
   }
 
   protected void addNodes(@NotNull List<CaptureNode> nodes) {
@@ -82,7 +97,32 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
     return getGlobalTotal() - getGlobalChildrenTotal();
   }
 
-  public void update(@NotNull Range range) {
+  /**
+   * Updates the aggregates of this node for the given range. The aggregates of the last few ranges are memoized, so that moving the
+   * selection back to a range, e.g. while dragging the range selector back and forth, doesn't walk the capture nodes again.
+   */
+  public final void update(@NotNull Range range) {
+    if (myMemoizedAggregates == null) {
+      myMemoizedAggregates = new MemoizedAggregates();
+    }
+    RangeKey key = new RangeKey(range.getMin(), range.getMax());
+    double[] aggregates = myMemoizedAggregates.get(key);
+    if (aggregates == null) {
+      computeAggregates(range);
+      myMemoizedAggregates.put(key, new double[]{myGlobalTotal, myGlobalChildrenTotal, myThreadTotal, myThreadChildrenTotal});
+    }
+    else {
+      myGlobalTotal = aggregates[0];
+      myGlobalChildrenTotal = aggregates[1];
+      myThreadTotal = aggregates[2];
+      myThreadChildrenTotal = aggregates[3];
+    }
+  }
+
+  /**
+   * Computes the aggregates of this node for the given range from its capture nodes.
+   */
+  protected void computeAggregates(@NotNull Range range) {
     myGlobalTotal = 0.0;
     myGlobalChildrenTotal = 0;
     myThreadTotal = 0.0;
@@ -123,4 +163,42 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
   public boolean isUnmatched() {
     return getFilterType() == CaptureNode.FilterType.UNMATCH;
   }
+
+  /**
+   * The aggregates of the most recently used ranges, in access order.
+   */
+  private static final class MemoizedAggregates extends LinkedHashMap<RangeKey, double[]> {
+    MemoizedAggregates() {
+      super(MEMOIZED_RANGE_COUNT * 2, 0.75f, true);
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<RangeKey, double[]> eldest) {
+      return size() > MEMOIZED_RANGE_COUNT;
+    }
+  }
+
+  private static final class RangeKey {
+    private final double myMin;
+    private final double myMax;
+
+    private RangeKey(double min, double max) {
+      myMin = min;
+      myMax = max;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof RangeKey)) {
+        return false;
+      }
+      RangeKey other = (RangeKey)o;
+      return Double.compare(myMin, other.myMin) == 0 && Double.compare(myMax, other.myMax) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Double.hashCode(myMin) + Double.hashCode(myMax);
+    }
+  }
 }
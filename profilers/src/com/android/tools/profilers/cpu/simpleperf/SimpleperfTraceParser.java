@@ -42,6 +42,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import org.jetbrains.annotations.NotNull;
 
@@ -92,6 +93,17 @@ public class SimpleperfTraceParser implements TraceParser {
    */
   private final Map<CpuThreadInfo, CaptureNode> myCaptureTrees;
 
+  /**
+   * Caches the {@link CaptureNodeModel} created for each distinct call chain entry, so the nodes of all the call trees share one model
+   * instance per (file, symbol, call site) instead of parsing the symbol name again for every node. Cleared once the samples are parsed.
+   */
+  private final Map<ModelKey, CaptureNodeModel> myModels;
+
+  /**
+   * Whether nodes share their models through {@link #myModels}. Only turned off to measure the memory this saves.
+   */
+  private final boolean myShareModels;
+
   /**
    * Number of samples read from trace file.
    */
@@ -121,10 +133,17 @@ public class SimpleperfTraceParser implements TraceParser {
   private String myAppDataFolderPrefix;
 
   public SimpleperfTraceParser() {
+    this(true);
+  }
+
+  @VisibleForTesting
+  SimpleperfTraceParser(boolean shareModels) {
     myFiles = new HashMap<>();
     mySamples = new ArrayList<>();
     myCaptureTrees = new HashMap<>();
     myThreads = new HashMap<>();
+    myModels = new HashMap<>();
+    myShareModels = shareModels;
   }
 
   /**
@@ -296,6 +315,7 @@ public class SimpleperfTraceParser implements TraceParser {
     for (Map.Entry<Integer, List<SimpleperfReport.Sample>> threadSamplesEntry : threadSamples.entrySet()) {
       parseThreadSamples(threadSamplesEntry.getKey(), threadSamplesEntry.getValue());
     }
+    myModels.clear();
   }
 
   /**
@@ -449,6 +469,18 @@ public class SimpleperfTraceParser implements TraceParser {
   }
 
   private CaptureNodeModel methodModelFromCallchainEntry(SimpleperfReport.Sample.CallChainEntry callChainEntry, long parentVAddress) {
+    if (!myShareModels) {
+      return createMethodModel(callChainEntry, parentVAddress);
+    }
+    int symbolId = callChainEntry.getSymbolId();
+    // Entries without a symbol are identified by their address. The others are identified by their symbol and, as C++ function models
+    // record the line of the caller, by the parent address.
+    long address = symbolId == INVALID_SYMBOL_ID ? callChainEntry.getVaddrInFile() : parentVAddress;
+    return myModels.computeIfAbsent(new ModelKey(callChainEntry.getFileId(), symbolId, address),
+                                    key -> createMethodModel(callChainEntry, parentVAddress));
+  }
+
+  private CaptureNodeModel createMethodModel(SimpleperfReport.Sample.CallChainEntry callChainEntry, long parentVAddress) {
     int symbolId = callChainEntry.getSymbolId();
     SimpleperfReport.File symbolFile = myFiles.get(callChainEntry.getFileId());
     if (symbolFile == null) {
@@ -465,4 +497,36 @@ public class SimpleperfTraceParser implements TraceParser {
     boolean isUserWritten = symbolFile.getPath().startsWith(myAppDataFolderPrefix);
     return NodeNameParser.parseNodeName(symbolFile.getSymbol(symbolId), isUserWritten, symbolFile.getPath(), parentVAddress);
   }
+
+  /**
+   * Identifies the {@link CaptureNodeModel} of a call chain entry.
+   */
+  private static final class ModelKey {
+    private final int myFileId;
+    private final int mySymbolId;
+    private final long myAddress;
+
+    ModelKey(int fileId, int symbolId, long address) {
+      myFileId = fileId;
+      mySymbolId = symbolId;
+      myAddress = address;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ModelKey)) {
+        return false;
+      }
+      ModelKey other = (ModelKey)o;
+      return myFileId == other.myFileId && mySymbolId == other.mySymbolId && myAddress == other.myAddress;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myFileId, mySymbolId, myAddress);
+    }
+  }
 }
@@ -15,6 +15,7 @@
  */
 package com.android.tools.profilers.cpu.systemtrace
 
+import com.android.tools.adtui.model.LongDataSeries
 import com.android.tools.adtui.model.SeriesData
 import com.android.tools.profiler.perfetto.proto.TraceProcessor
 import com.android.tools.profilers.cpu.ThreadState
@@ -57,7 +58,7 @@ interface CpuSystemTraceData {
    * "mem.rss.shmem", "mem.rss.watermark", "mem.swap" and "mem.virt") present in the main process, the retuned map will contain
    * the corresponding data series for that counter.
    */
-  fun getMemoryCounters(): Map<String, List<SeriesData<Long>>>
+  fun getMemoryCounters(): Map<String, LongDataSeries>
 
   /**
    * The CPU counters by CPU core.
@@ -65,7 +66,7 @@ interface CpuSystemTraceData {
    * Each element of the list is a map of counter name to counter values for one CPU core.
    * Currently supported counters are "cpufreq" and "cpuidle".
    */
-  fun getCpuCounters(): List<Map<String, List<SeriesData<Long>>>>
+  fun getCpuCounters(): List<Map<String, LongDataSeries>>
 
   /**
    * Returns true if the capture is potentially missing data. For example, on a ATrace or Perfetto capture,
@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.systemtrace;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Sorts the lines generated from perfetto ftrace event bundles by timestamp. The bundles come in out of order, as well as
+ * the lines within a bundle, so all lines have to be collected before the first one can be handed to trebuchet.
+ * <p>
+ * Lines are stored as binary (timestamp, length, bytes) records. Records are accumulated in memory until the buffered data reaches
+ * the run size, then the run is sorted by timestamp and spilled to a temporary file. After {@link #resetForIterator()} the runs are
+ * read back through small buffers and k-way merged, so memory usage stays bounded by the run size regardless of the length of the
+ * capture. Records with equal timestamps are returned in the order they were added.
+ */
+public class PerfettoPacketSorter implements Iterator<String> {
+  private static final int DEFAULT_RUN_SIZE_BYTES = 32 * 1024 * 1024;
+  private static final int INITIAL_RUN_CAPACITY = 1024;
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+  private final int myRunSizeBytes;
+
+  // The run currently being filled. Record i occupies bytes [myOffsets[i], myOffsets[i + 1]) of myData.
+  private long[] myTimestamps = new long[INITIAL_RUN_CAPACITY];
+  private int[] myOffsets = new int[INITIAL_RUN_CAPACITY + 1];
+  private byte[] myData = new byte[INITIAL_RUN_CAPACITY * 64];
+  private int myRecordCount;
+
+  private final List<File> myRunFiles = new ArrayList<>();
+  private final List<FileChannel> myRunChannels = new ArrayList<>();
+  @Nullable private PriorityQueue<RunCursor> myMergeQueue;
+
+  private static Logger getLogger() {
+    return Logger.getInstance(PerfettoPacketSorter.class);
+  }
+
+  public PerfettoPacketSorter() {
+    this(DEFAULT_RUN_SIZE_BYTES);
+  }
+
+  @VisibleForTesting
+  PerfettoPacketSorter(int runSizeBytes) {
+    myRunSizeBytes = runSizeBytes;
+  }
+
+  /**
+   * Adds a line with the given timestamp to the sorter.
+   *
+   * @throws IOException if the lines added so far had to be spilled to disk and could not be written
+   */
+  public void addLine(long timestamp, @NotNull String line) throws IOException {
+    addRecord(timestamp, line.getBytes(Charsets.UTF_8));
+  }
+
+  /**
+   * Adds a record with the given timestamp to the sorter. The record is returned unchanged by {@link #nextRecord()}.
+   *
+   * @throws IOException if the records added so far had to be spilled to disk and could not be written
+   */
+  public void addRecord(long timestamp, byte @NotNull [] record) throws IOException {
+    if (myMergeQueue != null) {
+      return; // Already finalized for reading.
+    }
+    int end = myOffsets[myRecordCount];
+    if (myRecordCount > 0 && end + record.length > myRunSizeBytes) {
+      spillRun();
+      end = 0;
+    }
+    if (myRecordCount == myTimestamps.length) {
+      myTimestamps = Arrays.copyOf(myTimestamps, myRecordCount * 2);
+      myOffsets = Arrays.copyOf(myOffsets, myRecordCount * 2 + 1);
+    }
+    if (end + record.length > myData.length) {
+      myData = Arrays.copyOf(myData, Math.max(myData.length * 2, end + record.length));
+    }
+    System.arraycopy(record, 0, myData, end, record.length);
+    myTimestamps[myRecordCount] = timestamp;
+    myOffsets[++myRecordCount] = end + record.length;
+  }
+
+  /**
+   * This function should be called when we want to finalize this class for writing and enable it for reading.
+   * The run being filled is sorted and all spilled runs are opened for merging.
+   *
+   * @throws IOException if a spilled run could not be read
+   */
+  public void resetForIterator() throws IOException {
+    if (myMergeQueue != null) {
+      return;
+    }
+    myMergeQueue = new PriorityQueue<>();
+    for (int i = 0; i < myRunFiles.size(); i++) {
+      FileChannel channel = FileChannel.open(myRunFiles.get(i).toPath(), StandardOpenOption.READ);
+      myRunChannels.add(channel);
+      addCursor(new RunCursor(i, channel));
+    }
+    // The in-memory run is merged last so that records with equal timestamps keep the order in which they were added.
+    addCursor(new RunCursor(myRunFiles.size(), sortRun()));
+    myTimestamps = new long[0];
+    myOffsets = new int[1];
+    myData = new byte[0];
+    myRecordCount = 0;
+  }
+
+  /**
+   * Deletes the spilled runs and frees resources.
+   */
+  public void close() {
+    myMergeQueue = null;
+    // Close the runs before deleting them, as open files can't be deleted on Windows.
+    for (FileChannel channel : myRunChannels) {
+      try {
+        channel.close();
+      }
+      catch (IOException e) {
+        getLogger().warn(e);
+      }
+    }
+    myRunChannels.clear();
+    for (File file : myRunFiles) {
+      FileUtil.delete(file);
+    }
+    myRunFiles.clear();
+    myTimestamps = new long[INITIAL_RUN_CAPACITY];
+    myOffsets = new int[INITIAL_RUN_CAPACITY + 1];
+    myData = new byte[INITIAL_RUN_CAPACITY * 64];
+    myRecordCount = 0;
+  }
+
+  @VisibleForTesting
+  int getSpilledRunCount() {
+    return myRunFiles.size();
+  }
+
+  @Override
+  public boolean hasNext() {
+    return myMergeQueue != null && !myMergeQueue.isEmpty();
+  }
+
+  @Override
+  @NotNull
+  public String next() {
+    return new String(nextRecord(), Charsets.UTF_8);
+  }
+
+  /**
+   * Returns the next record in timestamp order, as it was passed to {@link #addRecord}.
+   *
+   * @throws UncheckedIOException if a spilled run could not be read
+   */
+  public byte @NotNull [] nextRecord() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    RunCursor cursor = myMergeQueue.poll();
+    try {
+      byte[] record = cursor.readRecord();
+      addCursor(cursor);
+      return record;
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void addCursor(@NotNull RunCursor cursor) throws IOException {
+    if (cursor.advance()) {
+      myMergeQueue.add(cursor);
+    }
+  }
+
+  /**
+   * Sorts the records of the run being filled and writes them to a temporary file.
+   */
+  private void spillRun() throws IOException {
+    File file = FileUtil.createTempFile("perfetto", ".run", true);
+    // Add the file first, so that it is deleted by close() even if it can't be written.
+    myRunFiles.add(file);
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      ByteBuffer run = sortRun();
+      while (run.hasRemaining()) {
+        out.getChannel().write(run);
+      }
+    }
+    myRecordCount = 0;
+  }
+
+  /**
+   * Returns the records of the run being filled, stably sorted by timestamp, in the run file format.
+   */
+  @NotNull
+  private ByteBuffer sortRun() {
+    int[] order = new int[myRecordCount];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    IntArrays.mergeSort(order, (a, b) -> Long.compare(myTimestamps[a], myTimestamps[b]));
+
+    ByteBuffer run = ByteBuffer.allocate(myOffsets[myRecordCount] + myRecordCount * (Long.BYTES + Integer.BYTES));
+    for (int i : order) {
+      int start = myOffsets[i];
+      int length = myOffsets[i + 1] - start;
+      run.putLong(myTimestamps[i]).putInt(length).put(myData, start, length);
+    }
+    run.flip();
+    return run;
+  }
+
+  /**
+   * Position in a sorted run. Cursors are ordered by the timestamp of their current record, then by run index.
+   */
+  private static final class RunCursor implements Comparable<RunCursor> {
+    private final int myRunIndex;
+    /**
+     * The spilled run the buffer is filled from, or null if the buffer holds the whole run.
+     */
+    @Nullable private final FileChannel myChannel;
+    @NotNull private final ByteBuffer myBuffer;
+    private long myTimestamp;
+
+    RunCursor(int runIndex, @NotNull ByteBuffer run) {
+      myRunIndex = runIndex;
+      myChannel = null;
+      myBuffer = run;
+    }
+
+    RunCursor(int runIndex, @NotNull FileChannel channel) {
+      myRunIndex = runIndex;
+      myChannel = channel;
+      myBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+      myBuffer.flip();
+    }
+
+    /**
+     * Reads the timestamp of the next record.
+     *
+     * @return false if the run has no more records
+     */
+    boolean advance() throws IOException {
+      if (!fill(Long.BYTES)) {
+        return false;
+      }
+      myTimestamp = myBuffer.getLong();
+      return true;
+    }
+
+    byte @NotNull [] readRecord() throws IOException {
+      if (!fill(Integer.BYTES)) {
+        throw new EOFException("Truncated perfetto sorter run");
+      }
+      byte[] record = new byte[myBuffer.getInt()];
+      int offset = 0;
+      while (offset < record.length) {
+        if (!fill(1)) {
+          throw new EOFException("Truncated perfetto sorter run");
+        }
+        int length = Math.min(myBuffer.remaining(), record.length - offset);
+        myBuffer.get(record, offset, length);
+        offset += length;
+      }
+      return record;
+    }
+
+    /**
+     * Makes sure that at least {@code byteCount} bytes are buffered, reading more of the run if needed.
+     *
+     * @return false if the end of the run has been reached
+     */
+    private boolean fill(int byteCount) throws IOException {
+      if (myBuffer.remaining() >= byteCount) {
+        return true;
+      }
+      if (myChannel != null) {
+        myBuffer.compact();
+        while (myBuffer.position() < byteCount && myChannel.read(myBuffer) >= 0) {
+          // Keep reading until enough bytes are buffered or the end of the run is reached
+        }
+        myBuffer.flip();
+      }
+      if (myBuffer.remaining() >= byteCount) {
+        return true;
+      }
+      if (myBuffer.hasRemaining()) {
+        throw new EOFException("Truncated perfetto sorter run");
+      }
+      return false;
+    }
+
+    @Override
+    public int compareTo(@NotNull RunCursor other) {
+      int result = Long.compare(myTimestamp, other.myTimestamp);
+      return result != 0 ? result : Integer.compare(myRunIndex, other.myRunIndex);
+    }
+  }
+}
@@ -52,7 +52,7 @@ public class PerfettoProducer implements TrebuchetBufferProducer {
 
   // Maps thread id to thread group id. A tgid is the thread id at the root of the tree. This is also known as the PID in user space.
   private final ArrayDeque<String> myGeneratedTrebuchetLines = new ArrayDeque<>();
-  private final PerfettoPacketDBSorter mySorter = new PerfettoPacketDBSorter();
+  private final PerfettoPacketSorter mySorter = new PerfettoPacketSorter();
   private final HashMap<Integer, String> myMappedState = new HashMap<>();
 
   private static double nanosToSeconds(double nanos) {
@@ -206,7 +206,7 @@ public class PerfettoProducer implements TrebuchetBufferProducer {
         PerfettoTrace.FtraceEventBundle bundle = packet.getFtraceEvents();
         for(PerfettoTrace.FtraceEvent event : bundle.getEventList())
         if (IS_SUPPORTED_EVENT.apply(event)) {
-          mySorter.addLine(event.getTimestamp(), formatter.formatLine(event, bundle.getCpu()));
+          mySorter.addRecord(event.getTimestamp(), toTrebuchetLine(formatter.formatLine(event, bundle.getCpu())));
         }
       }
     }
@@ -264,22 +264,23 @@ public class PerfettoProducer implements TrebuchetBufferProducer {
   @Nullable
   @Override
   public DataSlice next() {
-    // A line comes from either our required lines, or our line sorter.
-    String line;
+    // A line comes from either our required lines, or our line sorter. Lines in the sorter are already in trebuchet format.
     if (!myGeneratedTrebuchetLines.isEmpty()) {
-      line = myGeneratedTrebuchetLines.poll();
+      return new DataSlice(toTrebuchetLine(myGeneratedTrebuchetLines.poll()));
     }
-    else {
-      if (!mySorter.hasNext()) {
-        // Null signals end of file.
-        return null;
-      }
-      line = mySorter.next();
+    if (!mySorter.hasNext()) {
+      // Null signals end of file.
+      return null;
     }
-    assert line != null;
+    return new DataSlice(mySorter.nextRecord());
+  }
+
+  /**
+   * Converts a line to the bytes passed to trebuchet.
+   */
+  private static byte[] toTrebuchetLine(@NotNull String line) {
     // Trebuchet has a bug where all lines need to be truncated to 1023 characters including the newline.
-    byte[] data = String.format("%s\n", line.substring(0, Math.min(1022, line.length()))).getBytes(Charsets.UTF_8);
-    return new DataSlice(data);
+    return String.format("%s\n", line.substring(0, Math.min(1022, line.length()))).getBytes(Charsets.UTF_8);
   }
 
   @Override
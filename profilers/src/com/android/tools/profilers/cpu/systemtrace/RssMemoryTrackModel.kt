@@ -16,28 +16,25 @@
 package com.android.tools.profilers.cpu.systemtrace
 
 import com.android.tools.adtui.model.LineChartModel
+import com.android.tools.adtui.model.LongDataSeries
 import com.android.tools.adtui.model.Range
 import com.android.tools.adtui.model.RangedContinuousSeries
-import com.android.tools.adtui.model.SeriesData
 import com.android.tools.adtui.model.axis.AxisComponentModel
 import com.android.tools.adtui.model.axis.ResizingAxisComponentModel
 import com.android.tools.adtui.model.formatter.MemoryAxisFormatter
-import com.android.tools.profilers.cpu.LazyDataSeries
 
 /**
  * Track model for RSS (Resident Set Size) memory counter in CPU capture stage.
  */
-class RssMemoryTrackModel(dataSeries: List<SeriesData<Long>>, viewRange: Range) : LineChartModel() {
+class RssMemoryTrackModel(dataSeries: LongDataSeries, viewRange: Range) : LineChartModel() {
   val memoryCounterSeries: RangedContinuousSeries
   val axisComponentModel: AxisComponentModel
 
   init {
-    val maxValue = dataSeries.asSequence().map { it.value }.maxOrNull() ?: 0
+    val maxValue = (0 until dataSeries.size()).maxOfOrNull { dataSeries.getLongY(it) } ?: 0L
     val yRange = Range(0.0, maxValue.toDouble())
     axisComponentModel = ResizingAxisComponentModel.Builder(yRange, axisFormatter).build()
-    memoryCounterSeries = RangedContinuousSeries(
-      "RSS", viewRange, yRange, LazyDataSeries { dataSeries }
-    )
+    memoryCounterSeries = RangedContinuousSeries("RSS", viewRange, yRange, dataSeries)
     add(memoryCounterSeries)
   }
 
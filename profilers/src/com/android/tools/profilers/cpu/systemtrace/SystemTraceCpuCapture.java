@@ -15,6 +15,7 @@
  */
 package com.android.tools.profilers.cpu.systemtrace;
 
+import com.android.tools.adtui.model.LongDataSeries;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.SeriesData;
 import com.android.tools.profiler.perfetto.proto.TraceProcessor;
@@ -38,10 +39,10 @@ public class SystemTraceCpuCapture extends BaseCpuCapture implements CpuSystemTr
   private final List<SeriesData<Long>> myCpuUtilizationSeries;
 
   @NotNull
-  private final Map<String, List<SeriesData<Long>>> myProcessMemoryCountersMap;
+  private final Map<String, LongDataSeries> myProcessMemoryCountersMap;
 
   @NotNull
-  private final List<Map<String, List<SeriesData<Long>>>> myCpuCounters;
+  private final List<Map<String, LongDataSeries>> myCpuCounters;
 
   @NotNull
   private final List<SeriesData<Long>> myBlastBufferQueueCounter;
@@ -63,8 +64,8 @@ public class SystemTraceCpuCapture extends BaseCpuCapture implements CpuSystemTr
                                @NotNull Map<Integer, List<SeriesData<ThreadState>>> threadStateData,
                                @NotNull Map<Integer, List<SeriesData<CpuThreadSliceInfo>>> cpuSchedData,
                                @NotNull List<SeriesData<Long>> cpuUtilizationData,
-                               @NotNull List<Map<String, List<SeriesData<Long>>>> cpuCounters,
-                               @NotNull Map<String, List<SeriesData<Long>>> processMemoryCountersMap,
+                               @NotNull List<Map<String, LongDataSeries>> cpuCounters,
+                               @NotNull Map<String, LongDataSeries> processMemoryCountersMap,
                                @NotNull List<SeriesData<Long>> blastBufferQueueCounter,
                                @NotNull SystemTraceFrameManager frameManager,
                                @NotNull SystemTraceSurfaceflingerManager surfaceflingerManager,
@@ -121,7 +122,7 @@ public class SystemTraceCpuCapture extends BaseCpuCapture implements CpuSystemTr
 
   @NotNull
   @Override
-  public List<Map<String, List<SeriesData<Long>>>> getCpuCounters() {
+  public List<Map<String, LongDataSeries>> getCpuCounters() {
     return myCpuCounters;
   }
 
@@ -132,7 +133,7 @@ public class SystemTraceCpuCapture extends BaseCpuCapture implements CpuSystemTr
 
   @NotNull
   @Override
-  public Map<String, List<SeriesData<Long>>> getMemoryCounters() {
+  public Map<String, LongDataSeries> getMemoryCounters() {
     return myProcessMemoryCountersMap;
   }
 
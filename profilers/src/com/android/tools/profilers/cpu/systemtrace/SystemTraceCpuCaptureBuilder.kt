@@ -15,6 +15,7 @@
  */
 package com.android.tools.profilers.cpu.systemtrace
 
+import com.android.tools.adtui.model.LongDataSeries
 import com.android.tools.adtui.model.Range
 import com.android.tools.adtui.model.SeriesData
 import com.android.tools.profilers.cpu.CaptureNode
@@ -200,18 +201,18 @@ class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
     return CpuStateData(schedData, utilizationData)
   }
 
-  private fun buildMainProcessMemoryCountersData(mainProcessModel: ProcessModel): Map<String, List<SeriesData<Long>>> {
+  private fun buildMainProcessMemoryCountersData(mainProcessModel: ProcessModel): Map<String, LongDataSeries> {
     return mainProcessModel.counterByName.entries
       .filter { it.key.startsWith("mem.") }
-      .map { it.key to convertCounterToSeriesData(it.value) }
+      .map { it.key to convertCounterToDataSeries(it.value) }
       .toMap()
       .toSortedMap()
   }
 
-  private fun buildCpuCountersData(): List<Map<String, List<SeriesData<Long>>>> {
+  private fun buildCpuCountersData(): List<Map<String, LongDataSeries>> {
     return model.getCpuCores().map { cpuCoreModel ->
       cpuCoreModel.countersMap.map {
-        it.key to convertCounterToSeriesData(it.value)
+        it.key to convertCounterToDataSeries(it.value)
       }.toMap()
     }
   }
@@ -231,4 +232,13 @@ class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
   private fun convertCounterToSeriesData(counter: CounterModel): List<SeriesData<Long>> {
     return counter.valuesByTimestampUs.map { SeriesData(it.key, it.value.toLong()) }.toList()
   }
+
+  /**
+   * Stores the values of the [counter] directly in primitive arrays, as the counters of long captures can hold many values.
+   */
+  private fun convertCounterToDataSeries(counter: CounterModel): LongDataSeries {
+    val series = LongDataSeries(counter.valuesByTimestampUs.size)
+    counter.valuesByTimestampUs.forEach { (timestampUs, value) -> series.add(timestampUs, value.toLong()) }
+    return series
+  }
 }
\ No newline at end of file
@@ -15,13 +15,16 @@
  */
 package com.android.tools.profilers.memory.adapters
 
+import com.android.annotations.concurrency.GuardedBy
 import com.android.tools.adtui.model.Range
 import com.android.tools.idea.protobuf.ByteString
+import com.android.tools.perflib.captures.DataBuffer
 import com.android.tools.perflib.heap.ClassObj
 import com.android.tools.perflib.heap.Instance
 import com.android.tools.perflib.heap.Snapshot
 import com.android.tools.perflib.heap.ext.NativeRegistryPostProcessor
 import com.android.tools.perflib.heap.io.InMemoryBuffer
+import com.android.tools.perflib.heap.io.MemoryMappedFileBuffer
 import com.android.tools.profiler.proto.Common
 import com.android.tools.profiler.proto.Memory.HeapDumpInfo
 import com.android.tools.profiler.proto.Transport
@@ -42,12 +45,18 @@ import com.google.common.annotations.VisibleForTesting
 import com.google.common.util.concurrent.ListenableFuture
 import com.google.common.util.concurrent.MoreExecutors
 import com.google.common.util.concurrent.ThreadFactoryBuilder
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.util.io.FileUtil
 import gnu.trove.TLongObjectHashMap
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
 import java.io.OutputStream
 import java.util.HashMap
 import java.util.HashSet
 import java.util.concurrent.Executor
 import java.util.concurrent.Executors
+import java.util.function.Supplier
 import java.util.stream.Collectors
 import java.util.stream.Stream
 
@@ -68,6 +77,22 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
 
   @Volatile
   private var isLoadingError = false
+
+  private val bufferLock = Any()
+
+  // Backing storage of the loaded snapshot. Instances decode their fields from it on demand, so it must stay open until unload, and
+  // until the reads in progress at that time are done, since reading a disposed memory-mapped buffer can crash the JVM.
+  @GuardedBy("bufferLock")
+  private var buffer: DataBuffer? = null
+  @GuardedBy("bufferLock")
+  private var mappedFile: File? = null
+  @GuardedBy("bufferLock")
+  private var bufferReaderCount = 0
+  @GuardedBy("bufferLock")
+  private var isUnloaded = false
+
+  @get:VisibleForTesting
+  val dataBuffer: DataBuffer? get() = synchronized(bufferLock) { buffer }
   var hasNativeAllocations = false
     private set
   private val activityFragmentLeakFilter = ActivityFragmentLeakInstanceFilter(classDb)
@@ -97,15 +122,84 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
   override fun getClassDatabase() = classDb
   override fun getSession() = _session
 
-  override fun load(queryRange: Range?, queryJoiner: Executor?) = doGetBytesRequest().let { response ->
-    if (response.contents === ByteString.EMPTY) false.also { isLoadingError = true }
-    else true.also { load(InMemoryBuffer(response.contents.asReadOnlyByteBuffer())) }
+  override fun load(queryRange: Range?, queryJoiner: Executor?): Boolean {
+    val contents = doGetBytesRequest().contents
+    if (contents === ByteString.EMPTY) {
+      isLoadingError = true
+      return false
+    }
+    val mapped = if (ideProfilerServices.featureConfig.isMemoryMappedHeapDumpEnabled) mapToTempFile(contents) else null
+    load(mapped?.second ?: InMemoryBuffer(contents.asReadOnlyByteBuffer()), mapped?.first)
+    return true
+  }
+
+  /**
+   * Writes the heap dump to a temporary file and maps it, so that the only heap cost of the dump itself is the transient gRPC response
+   * rather than a copy kept alive for as long as the capture is selected. Returns null if the file could not be written or mapped, in
+   * which case the caller falls back to the in-memory buffer.
+   */
+  private fun mapToTempFile(contents: ByteString): Pair<File, DataBuffer>? {
+    var file: File? = null
+    return try {
+      file = FileUtil.createTempFile("heapdump_${heapDumpInfo.startTime}", ".hprof", true)
+      FileOutputStream(file).use { contents.writeTo(it) }
+      file to MemoryMappedFileBuffer(file)
+    }
+    catch (e: IOException) {
+      logger.warn("Unable to memory-map heap dump, falling back to loading it in memory", e)
+      file?.delete()
+      null
+    }
   }
 
   @VisibleForTesting
-  fun load(buffer: InMemoryBuffer) {
+  fun load(buffer: DataBuffer) = load(buffer, null)
+
+  private fun load(buffer: DataBuffer, file: File?) {
+    synchronized(bufferLock) {
+      if (isUnloaded) {
+        // Unloaded before loading started: nobody is going to read this buffer.
+        buffer.dispose()
+        file?.delete()
+        return
+      }
+      this.buffer = buffer
+      mappedFile = file
+    }
+    readBuffer(Unit, Supplier { loadSnapshot(buffer) })
+  }
+
+  /**
+   * Runs [read], which may read from the backing buffer of the snapshot, making sure the buffer isn't disposed until it is done. Returns
+   * [unloadedValue] without running [read] if the capture has already been unloaded.
+   */
+  fun <T> readBuffer(unloadedValue: T, read: Supplier<T>): T {
+    synchronized(bufferLock) {
+      if (isUnloaded) return unloadedValue
+      bufferReaderCount++
+    }
+    try {
+      return read.get()
+    }
+    finally {
+      synchronized(bufferLock) {
+        bufferReaderCount--
+        if (isUnloaded && bufferReaderCount == 0) disposeBuffer()
+      }
+    }
+  }
+
+  @GuardedBy("bufferLock")
+  private fun disposeBuffer() {
+    buffer?.dispose()
+    buffer = null
+    mappedFile?.delete()
+    mappedFile = null
+  }
+
+  private fun loadSnapshot(buffer: DataBuffer) {
     val nativeRegistryPostProcessor = NativeRegistryPostProcessor()
-    val snapshot = Snapshot.createSnapshot(buffer!!, proguardMap ?: ProguardMap(), listOf(nativeRegistryPostProcessor))
+    val snapshot = Snapshot.createSnapshot(buffer, proguardMap ?: ProguardMap(), listOf(nativeRegistryPostProcessor))
     snapshot.computeDominators()
     hasNativeAllocations = nativeRegistryPostProcessor.hasNativeAllocations
     hasLoaded = true
@@ -143,6 +237,11 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
   override fun isError() = isLoadingError
   override fun unload() {
     executorService.shutdownNow()
+    synchronized(bufferLock) {
+      isUnloaded = true
+      // Otherwise, the last reader disposes the buffer once it is done with it.
+      if (bufferReaderCount == 0) disposeBuffer()
+    }
   }
 
   override fun getClassifierAttributes() =
@@ -222,4 +321,9 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
   private fun ClassObj.makeEntry(name: String = this.className) =
     if (superClassObj != null) classDb.registerClass(id, superClassObj.id, name)
     else classDb.registerClass(id, name)
-}
\ No newline at end of file
+
+  companion object {
+    private val logger: Logger
+      get() = Logger.getInstance(HeapDumpCaptureObject::class.java)
+  }
+}
@@ -36,7 +36,8 @@ class HeapDumpInstanceObject implements InstanceObject {
   private static final Comparator<Instance> DEPTH_THEN_ID_COMPARATOR =
     // compare by id after depth to enforce more deterministic order
     Comparator.comparingInt(Instance::getDistanceToGcRoot).thenComparingLong(Instance::getId);
-  private static final String INVALID_STRING_VALUE = " ...<invalid string value>...";
+  @VisibleForTesting
+  static final String INVALID_STRING_VALUE = " ...<invalid string value>...";
   private static final Map<Type, ValueType> VALUE_TYPE_MAP = ImmutableMap.<Type, ValueObject.ValueType>builder()
     .put(Type.BOOLEAN, BOOLEAN)
     .put(Type.BYTE, BYTE)
@@ -118,6 +119,11 @@ class HeapDumpInstanceObject implements InstanceObject {
   @NotNull
   @Override
   public String getToStringText() {
+    return myCaptureObject.readBuffer("", this::readToStringText);
+  }
+
+  @NotNull
+  private String readToStringText() {
     if (myValueType == STRING) {
       String text = ((ClassInstance)myInstance).getAsString(MAX_VALUE_TEXT_LENGTH);
       if (text != null) {
@@ -173,6 +179,10 @@ class HeapDumpInstanceObject implements InstanceObject {
 
   @Override
   public int getFieldCount() {
+    return myCaptureObject.readBuffer(0, this::readFieldCount);
+  }
+
+  private int readFieldCount() {
     if (myInstance instanceof ClassInstance) {
       ClassInstance classInstance = (ClassInstance)myInstance;
       return classInstance.getValues().size();
@@ -191,6 +201,11 @@ class HeapDumpInstanceObject implements InstanceObject {
   @NotNull
   @Override
   public List<FieldObject> getFields() {
+    return myCaptureObject.readBuffer(Collections.emptyList(), this::readFields);
+  }
+
+  @NotNull
+  private List<FieldObject> readFields() {
     List<FieldObject> fields = new ArrayList<>();
     if (myInstance instanceof ClassInstance) {
       ClassInstance classInstance = (ClassInstance)myInstance;
@@ -238,7 +253,7 @@ class HeapDumpInstanceObject implements InstanceObject {
       @Override
       public byte[] getAsByteArray() {
         if (getArrayElementType() == BYTE) {
-          return arrayInstance.asRawByteArray(0, arrayInstance.getLength());
+          return myCaptureObject.readBuffer(null, () -> arrayInstance.asRawByteArray(0, arrayInstance.getLength()));
         }
         return null;
       }
@@ -247,7 +262,7 @@ class HeapDumpInstanceObject implements InstanceObject {
       @Override
       public char[] getAsCharArray() {
         if (getArrayElementType() == CHAR) {
-          return arrayInstance.asCharArray(0, arrayInstance.getLength());
+          return myCaptureObject.readBuffer(null, () -> arrayInstance.asCharArray(0, arrayInstance.getLength()));
         }
         return null;
       }
@@ -255,7 +270,7 @@ class HeapDumpInstanceObject implements InstanceObject {
       @NotNull
       @Override
       public Object[] getAsArray() {
-        return arrayInstance.getValues();
+        return myCaptureObject.readBuffer(new Object[0], arrayInstance::getValues);
       }
 
       @Override
@@ -310,6 +325,11 @@ class HeapDumpInstanceObject implements InstanceObject {
   @VisibleForTesting
   @NotNull
   public List<ReferenceObject> extractReferences() {
+    return myCaptureObject.readBuffer(Collections.emptyList(), this::readReferences);
+  }
+
+  @NotNull
+  private List<ReferenceObject> readReferences() {
     // Sort hard referrers to appear first.
     List<Instance> sortedReferences = new ArrayList<>(myInstance.getHardReverseReferences());
     sortedReferences.sort(DEPTH_THEN_ID_COMPARATOR);
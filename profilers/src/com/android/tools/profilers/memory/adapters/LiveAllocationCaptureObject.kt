@@ -498,22 +498,37 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
   fun resolveNativeBacktrace(backtrace: NativeBacktrace?): NativeCallStack = when {
     backtrace == null || backtrace.addressesCount == 0 -> NativeCallStack.getDefaultInstance()
     else -> NativeCallStack.newBuilder().let { builder ->
+      symbolizeNewAddresses(backtrace.addressesList)
       for (address in backtrace.addressesList) {
-        if (!nativeFrameMap.containsKey(address)) {
-          val (module, offset) = getRegionByAddress(address)?.let {
-            Pair(it.name, it.fileOffset + (address - it.startAddress)) // Adjust address to represent module offset.
-          } ?: Pair("", 0L)
-          val unsymbolizedFrame = NativeFrame.newBuilder().setAddress(address).setModuleName(module).setModuleOffset(offset).build()
-          val symbolizedFrame = stage.studioProfilers.ideServices.nativeFrameSymbolizer
-            .symbolize(stage.studioProfilers.sessionsManager.selectedSessionMetaData.processAbi, unsymbolizedFrame)
-          nativeFrameMap.put(address, symbolizedFrame)
-        }
         builder.addFrames(nativeFrameMap[address])
       }
       builder.build()
     }
   }
 
+  /**
+   * Symbolizes the addresses that haven't been seen before in a single batch, rather than sending them to the symbolizer one by one.
+   */
+  private fun symbolizeNewAddresses(addresses: List<Long>) {
+    val unsymbolizedFrames = addresses.asSequence()
+      .distinct()
+      .filterNot { nativeFrameMap.containsKey(it) }
+      .map { address ->
+        val (module, offset) = getRegionByAddress(address)?.let {
+          Pair(it.name, it.fileOffset + (address - it.startAddress)) // Adjust address to represent module offset.
+        } ?: Pair("", 0L)
+        NativeFrame.newBuilder().setAddress(address).setModuleName(module).setModuleOffset(offset).build()
+      }
+      .toList()
+    if (unsymbolizedFrames.isNotEmpty()) {
+      val symbolizedFrames = stage.studioProfilers.ideServices.nativeFrameSymbolizer
+        .symbolize(stage.studioProfilers.sessionsManager.selectedSessionMetaData.processAbi, unsymbolizedFrames)
+      unsymbolizedFrames.zip(symbolizedFrames).forEach { (unsymbolizedFrame, symbolizedFrame) ->
+        nativeFrameMap.put(unsymbolizedFrame.address, symbolizedFrame)
+      }
+    }
+  }
+
   private fun getRegionByAddress(address: Long) = jniMemoryRegionMap.floorEntry(address)?.let { entry ->
     val region = entry.value
     if (address in region.startAddress until region.endAddress) region else null
@@ -251,6 +251,7 @@ public class SessionsManager extends AspectModel<SessionAspect> {
     // want to select the last imported one.
     Collections.sort(sortedGroups, Comparator.comparing(EventGroup::getEventsCount, Comparator.reverseOrder())
       .thenComparingLong(g -> g.getEventsCount() > 0 ? g.getEvents(0).getSession().getSessionStarted().getStartTimestampEpochMs() : 0));
+    List<SessionItem> sessionItems = new ArrayList<>();
     sortedGroups.forEach(group -> {
       SessionItem sessionItem = mySessionItems.get(group.getGroupId());
       boolean sessionStateChanged = false;
@@ -281,11 +282,24 @@ public class SessionsManager extends AspectModel<SessionAspect> {
         }
         setSessionInternal(sessionItem.getSession());
       }
-      final SessionItem item = sessionItem;
+      sessionItems.add(sessionItem);
+    });
+
+    // Artifacts are only fetched once every session is processed, so that shouldFetchArtifacts sees the session that ends up selected
+    // rather than each session that is briefly selected while the groups are processed (e.g. all of them when a project is loaded).
+    sessionItems.forEach(item -> {
       sessionArtifacts.add(item);
-      List<SessionArtifact> artifacts = new ArrayList<>();
-      myArtifactsFetchers.forEach(fetcher -> artifacts.addAll(fetcher.fetch(myProfilers, item.getSession(), item.getSessionMetaData())));
-      item.setChildArtifacts(artifacts);
+      List<SessionArtifact> artifacts;
+      if (shouldFetchArtifacts(item)) {
+        List<SessionArtifact> fetchedArtifacts = new ArrayList<>();
+        myArtifactsFetchers.forEach(
+          fetcher -> fetchedArtifacts.addAll(fetcher.fetch(myProfilers, item.getSession(), item.getSessionMetaData())));
+        item.setChildArtifacts(fetchedArtifacts);
+        artifacts = fetchedArtifacts;
+      }
+      else {
+        artifacts = item.getChildArtifacts();
+      }
       if (item.getSessionMetaData().getType() == Common.SessionMetaData.SessionType.FULL) {
         sessionArtifacts.addAll(artifacts);
       }
@@ -302,6 +316,16 @@ public class SessionsManager extends AspectModel<SessionAspect> {
     }
   }
 
+  /**
+   * When sessions persist across restarts, the datastore can hold many ended sessions whose artifacts are not going to change. Their
+   * artifacts are only queried while they are selected, so listing the sessions does not read the capture data of every one of them.
+   */
+  private boolean shouldFetchArtifacts(@NotNull SessionItem item) {
+    return !myProfilers.getIdeServices().getFeatureConfig().isSessionPersistenceEnabled() ||
+           item.isOngoing() ||
+           item.getSession().getSessionId() == mySelectedSession.getSessionId();
+  }
+
   /**
    * Create a {@link Common.Session}, {@link Common.SessionMetaData}, and {@link SessionItem} for a given event with
    * {@link Common.SessionData.SessionStarted} data.
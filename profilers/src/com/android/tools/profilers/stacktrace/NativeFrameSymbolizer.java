@@ -16,6 +16,8 @@
 package com.android.tools.profilers.stacktrace;
 
 import com.android.tools.profiler.proto.Memory.NativeCallStack;
+import java.util.List;
+import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -25,6 +27,15 @@ public interface NativeFrameSymbolizer {
   @NotNull
   NativeCallStack.NativeFrame symbolize(String abi, NativeCallStack.NativeFrame unsymbolizedFrame);
 
+  /**
+   * Symbolizes all the given frames, in the same order. Implementations should prefer this to symbolizing the frames one by one when
+   * there are many of them.
+   */
+  @NotNull
+  default List<NativeCallStack.NativeFrame> symbolize(String abi, @NotNull List<NativeCallStack.NativeFrame> unsymbolizedFrames) {
+    return unsymbolizedFrames.stream().map(frame -> symbolize(abi, frame)).collect(Collectors.toList());
+  }
+
   /**
    * Stop / Cleanup any processes or state created by the symbolizer. This is a call made outside the symbolize function as an optimization.
    * It is the callers responsibility to call stop when done processing symbols allowing the symbolizer to reset state.
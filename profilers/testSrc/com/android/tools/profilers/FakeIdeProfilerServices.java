@@ -106,6 +106,11 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
    */
   private boolean myMemorySnapshotEnabled = true;
 
+  /**
+   * Toggle for memory-mapping heap dumps instead of loading them into the heap.
+   */
+  private boolean myMemoryMappedHeapDumpEnabled = false;
+
   /**
    * Whether a native CPU profiling configuration is preferred over a Java one.
    */
@@ -166,6 +171,11 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
    */
   private boolean myProfileableInQrEnabled = false;
 
+  /**
+   * Whether sessions from previous runs are reloaded, with their artifacts fetched lazily.
+   */
+  private boolean mySessionPersistenceEnabled = false;
+
   /**
    * List of custom CPU profiling configurations.
    */
@@ -285,6 +295,11 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
         return false;
       }
 
+      @Override
+      public boolean isMemoryMappedHeapDumpEnabled() {
+        return myMemoryMappedHeapDumpEnabled;
+      }
+
       @Override
       public boolean isNativeMemorySampleEnabled() { return myNativeMemorySampleEnabled; }
 
@@ -313,6 +328,11 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
         return myCustomEventVisualizationEnabled;
       }
 
+      @Override
+      public boolean isSessionPersistenceEnabled() {
+        return mySessionPersistenceEnabled;
+      }
+
       @Override
       public boolean isStartupCpuProfilingEnabled() {
         return myStartupCpuProfilingEnabled;
@@ -475,6 +495,10 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
     myLiveTrackingEnabled = enabled;
   }
 
+  public void enableSessionPersistence(boolean enabled) {
+    mySessionPersistenceEnabled = enabled;
+  }
+
   public void enableStartupCpuProfiling(boolean enabled) {
     myStartupCpuProfilingEnabled = enabled;
   }
@@ -491,6 +515,10 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
     myLiveAllocationsSamplingEnabled = enabled;
   }
 
+  public void enableMemoryMappedHeapDump(boolean enabled) {
+    myMemoryMappedHeapDumpEnabled = enabled;
+  }
+
   public void enableNativeMemorySampling(boolean enabled) {
     myNativeMemorySampleEnabled = enabled;
   }
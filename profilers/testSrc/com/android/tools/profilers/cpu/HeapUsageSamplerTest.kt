@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class HeapUsageSamplerTest {
+  @Test
+  fun peakIncludesMemoryRetainedUntilStop() {
+    val sampler = HeapUsageSampler()
+    sampler.start()
+    val retained = ByteArray(32 * 1024 * 1024)
+    val peak = sampler.stop()
+
+    // The array is still reachable when the sampler is stopped, so the last sample has to count it.
+    assertThat(peak).isAtLeast(retained.size.toLong())
+  }
+}
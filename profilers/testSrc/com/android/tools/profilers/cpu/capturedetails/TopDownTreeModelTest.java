@@ -104,6 +104,61 @@ public class TopDownTreeModelTest {
     assertEquals(     0, getChildrenTotal(root, "A", "C", "F"), 0);
   }
 
+  @Test
+  public void testTreeUpdateBackToPreviousRange() {
+    CaptureNode tree = TopDownNodeTest.createTree();
+    Range range = new Range(0, 10);
+    CpuTreeModel model = new TopDownTreeModel(range, new TopDownNode(tree));
+
+    range.set(8, 25);
+    // The aggregates of the first range are memoized, and must be the same when going back to it.
+    range.set(0, 10);
+    TreeNode root = (TreeNode)model.getRoot();
+    assertEquals(ImmutableSet.of("B"), getChildrenIds(root));
+    assertEquals(    10, getTotal(root, "A"), 0);
+    assertEquals(     8, getTotal(root, "A", "B"), 0);
+    assertEquals(     2, getTotal(root, "A", "B", "D"), 0);
+    assertEquals(     2, getTotal(root, "A", "B", "E"), 0);
+    assertEquals(     8, getChildrenTotal(root, "A"), 0);
+    assertEquals(     4, getChildrenTotal(root, "A", "B"), 0);
+
+    range.set(8, 25);
+    root = (TreeNode)model.getRoot();
+    assertEquals(    17, getTotal(root, "A"), 0);
+    assertEquals( 1 + 3, getTotal(root, "A", "B"), 0);
+    assertEquals(     6, getTotal(root, "A", "C"), 0);
+    assertEquals(    10, getChildrenTotal(root, "A"), 0);
+  }
+
+  @Test
+  public void testLargeTreeUpdate() {
+    // Enough nodes for the aggregates to be computed in parallel.
+    int callCount = 20_000;
+    CaptureNode tree = newNode("A", 0, callCount * 10);
+    for (int i = 0; i < callCount; i++) {
+      CaptureNode child = newNode(i % 2 == 0 ? "B" : "C", i * 10, i * 10 + 5);
+      child.addChild(newNode("D", i * 10, i * 10 + 2));
+      tree.addChild(child);
+    }
+
+    Range range = new Range(-Double.MAX_VALUE, Double.MAX_VALUE);
+    CpuTreeModel model = new TopDownTreeModel(range, new TopDownNode(tree));
+    TreeNode root = (TreeNode)model.getRoot();
+    assertEquals(callCount * 10, getTotal(root, "A"), 0);
+    assertEquals(callCount * 5, getChildrenTotal(root, "A"), 0);
+    assertEquals(callCount / 2 * 5, getTotal(root, "A", "B"), 0);
+    assertEquals(callCount / 2 * 2, getChildrenTotal(root, "A", "B"), 0);
+    assertEquals(callCount / 2 * 2, getTotal(root, "A", "C", "D"), 0);
+
+    range.set(0, 100);
+    root = (TreeNode)model.getRoot();
+    assertEquals(100, getTotal(root, "A"), 0);
+    assertEquals(25, getTotal(root, "A", "B"), 0);
+    assertEquals(10, getChildrenTotal(root, "A", "B"), 0);
+    assertEquals(25, getTotal(root, "A", "C"), 0);
+    assertEquals(10, getTotal(root, "A", "C", "D"), 0);
+  }
+
   @Test
   public void testRootNodeIdValid() {
     TopDownNode topDown = new TopDownNode(newNode("", 0, 10));
@@ -15,7 +15,7 @@
  */
 package com.android.tools.profilers.cpu.perfetto
 
-import com.android.tools.profilers.cpu.systemtrace.PerfettoPacketDBSorter
+import com.android.tools.profilers.cpu.systemtrace.PerfettoPacketSorter
 import com.google.common.truth.Truth.assertThat
 import org.junit.Test
 
@@ -23,7 +23,7 @@ class PerfettoSorterTest {
 
   @Test
   fun formattedLinesAreReturnedOnNext() {
-    val sorter = PerfettoPacketDBSorter()
+    val sorter = PerfettoPacketSorter()
     sorter.addLine(0, "Some line")
     assertThat(sorter.hasNext()).isFalse()
     sorter.resetForIterator()
@@ -33,7 +33,7 @@ class PerfettoSorterTest {
 
   @Test
   fun hasNextCanBeCalledMultipleTimes() {
-    val sorter = PerfettoPacketDBSorter()
+    val sorter = PerfettoPacketSorter()
     sorter.addLine(0, "Some Line")
     assertThat(sorter.hasNext()).isFalse()
     sorter.resetForIterator()
@@ -28,6 +28,7 @@ import com.android.tools.profiler.proto.SimpleperfReport;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.CpuCapture;
 import com.android.tools.profilers.cpu.CpuThreadInfo;
+import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import com.android.tools.profilers.cpu.nodemodel.CppFunctionModel;
 import com.google.common.collect.Lists;
 import com.intellij.openapi.util.io.FileUtil;
@@ -35,12 +36,18 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.junit.Before;
 import org.junit.Test;
 
 public class SimpleperfTraceParserTest {
+  /** Set to true to print the heap retained by the call trees of a capture. */
+  private static final boolean PRINT_STATS = false;
 
   private SimpleperfTraceParser myParser;
 
@@ -143,6 +150,46 @@ public class SimpleperfTraceParserTest {
     }
   }
 
+  @Test
+  public void nodesOfTheSameMethodShareTheirModel() throws IOException {
+    CpuCapture capture = myParser.parse(myTraceFile, 0);
+    List<CaptureNode> nodes =
+      capture.getCaptureNodes().stream().flatMap(CaptureNode::getDescendantsStream).collect(Collectors.toList());
+    Set<CaptureNodeModel> models = Collections.newSetFromMap(new IdentityHashMap<>());
+    nodes.forEach(node -> models.add(node.getData()));
+    // Call trees revisit the same methods many times, so there are far fewer models than nodes.
+    assertTrue(models.size() * 2 < nodes.size());
+  }
+
+  @Test
+  public void sharedModelsReduceRetainedHeap() throws IOException {
+    long heapBefore = getUsedHeapAfterGc();
+    CpuCapture unsharedCapture = new SimpleperfTraceParser(false).parse(myTraceFile, 0);
+    long unsharedHeap = getUsedHeapAfterGc() - heapBefore;
+    long nodeCount = unsharedCapture.getCaptureNodes().stream().flatMap(CaptureNode::getDescendantsStream).count();
+    unsharedCapture = null;
+
+    heapBefore = getUsedHeapAfterGc();
+    CpuCapture capture = new SimpleperfTraceParser().parse(myTraceFile, 0);
+    long sharedHeap = getUsedHeapAfterGc() - heapBefore;
+    // Keeps the capture reachable until the heap is measured.
+    assertEquals(nodeCount, capture.getCaptureNodes().stream().flatMap(CaptureNode::getDescendantsStream).count());
+
+    if (PRINT_STATS) {
+      System.out.println(String.format("Heap retained by %d nodes: %d KiB with a model per node, %d KiB with shared models",
+                                       nodeCount, unsharedHeap / 1024, sharedHeap / 1024));
+    }
+    assertTrue(sharedHeap < unsharedHeap);
+  }
+
+  private static long getUsedHeapAfterGc() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
   @Test
   public void cppModelVAddressComesFromParentInCallChain() throws IOException {
     ByteString traceBytes = traceFileToByteString("simpleperf_callchain.trace");
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.systemtrace
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.util.Random
+
+class PerfettoPacketSorterTest {
+
+  @Test
+  fun linesAreSortedAcrossSpilledRuns() {
+    // A small run size forces most of the lines to be spilled to disk.
+    val sorter = PerfettoPacketSorter(256)
+    val random = Random(0)
+    val timestamps = List(1000) { random.nextInt(100).toLong() }
+    timestamps.forEachIndexed { index, timestamp -> sorter.addLine(timestamp, "$timestamp $index") }
+    assertThat(sorter.spilledRunCount).isGreaterThan(1)
+
+    sorter.resetForIterator()
+    val lines = mutableListOf<String>()
+    while (sorter.hasNext()) {
+      lines.add(sorter.next())
+    }
+    sorter.close()
+
+    // Lines with equal timestamps keep the order in which they were added.
+    val expected = timestamps.withIndex().sortedBy { it.value }.map { "${it.value} ${it.index}" }
+    assertThat(lines).containsExactlyElementsIn(expected).inOrder()
+  }
+
+  @Test
+  fun spilledRecordsLargerThanTheReadBufferAreReadBack() {
+    val sorter = PerfettoPacketSorter(256)
+    val lines = List(3) { index -> index.toString().repeat(100 * 1024) }
+    lines.withIndex().reversed().forEach { sorter.addLine(it.index.toLong(), it.value) }
+    assertThat(sorter.spilledRunCount).isEqualTo(2)
+
+    sorter.resetForIterator()
+    val sortedLines = mutableListOf<String>()
+    while (sorter.hasNext()) {
+      sortedLines.add(sorter.next())
+    }
+    sorter.close()
+
+    assertThat(sortedLines).containsExactlyElementsIn(lines).inOrder()
+  }
+}
@@ -130,10 +130,10 @@ class SystemTraceCpuCaptureBuilderTest {
     val systemTraceData = capture.systemTraceData!!
 
     assertThat(systemTraceData.getCpuCount()).isEqualTo(2)
-    assertThat(systemTraceData.getCpuCounters()[0]).containsExactly(
+    assertThat(systemTraceData.getCpuCounters()[0].mapValues { it.value.allData }).containsExactly(
       "cpufreq", listOf(SeriesData(1, 0L), SeriesData(2, 1000L)),
       "cpuidle", listOf(SeriesData(2, 0L), SeriesData(3, 4294967295L)))
-    assertThat(systemTraceData.getCpuCounters()[1]).containsExactly(
+    assertThat(systemTraceData.getCpuCounters()[1].mapValues { it.value.allData }).containsExactly(
       "cpufreq", listOf(SeriesData(10, 2000L)),
       "cpuidle", listOf(SeriesData(20, 0L)))
   }
@@ -160,7 +160,7 @@ class SystemTraceCpuCaptureBuilderTest {
     val systemTraceData = capture.systemTraceData!!
 
     assertThat(systemTraceData.getMemoryCounters()).hasSize(2)
-    assertThat(systemTraceData.getMemoryCounters()).containsExactly(
+    assertThat(systemTraceData.getMemoryCounters().mapValues { it.value.allData }).containsExactly(
       "mem.locked", listOf(
       SeriesData(1, 1L),
       SeriesData(4, 2L),
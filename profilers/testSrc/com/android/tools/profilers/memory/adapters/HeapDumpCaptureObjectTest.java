@@ -28,6 +28,7 @@ import com.android.tools.idea.protobuf.ByteString;
 import com.android.tools.idea.transport.faketransport.FakeGrpcChannel;
 import com.android.tools.idea.transport.faketransport.FakeTransportService;
 import com.android.tools.perflib.heap.SnapshotBuilder;
+import com.android.tools.perflib.heap.io.MemoryMappedFileBuffer;
 import com.android.tools.profiler.proto.Memory.HeapDumpInfo;
 import com.android.tools.profilers.FakeIdeProfilerServices;
 import com.android.tools.profilers.ProfilerClient;
@@ -146,6 +147,46 @@ public class HeapDumpCaptureObjectTest {
     assertEquals(reference1.getReferenceInstance(), instance0);
   }
 
+  @Test
+  public void testMemoryMappedHeapDumpDecodesFieldsOnDemand() throws Exception {
+    myIdeProfilerServices.enableMemoryMappedHeapDump(true);
+    long startTimeNs = 3;
+    HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(startTimeNs).setEndTime(8).build();
+    HeapDumpCaptureObject capture =
+      new HeapDumpCaptureObject(new ProfilerClient(myGrpcChannel.getChannel()), ProfilersTestData.SESSION_DATA,
+                                dumpInfo, null, myIdeProfilerServices.getFeatureTracker(),
+                                myStage.getStudioProfilers().getIdeServices());
+
+    SnapshotBuilder snapshotBuilder = new SnapshotBuilder(2, 0, 0)
+      .addReferences(1, 2)
+      .addRoot(1);
+    myTransportService.addFile(Long.toString(startTimeNs), ByteString.copyFrom(snapshotBuilder.getByteBuffer()));
+    assertTrue(capture.load(null, null));
+    assertTrue(capture.isDoneLoading());
+    assertFalse(capture.isError());
+    assertTrue(capture.getDataBuffer() instanceof MemoryMappedFileBuffer);
+
+    HeapSet testHeap = capture.getHeapSets().stream().filter(heap -> "testHeap".equals(heap.getName())).findFirst().orElse(null);
+    assertNotNull(testHeap);
+    assertEquals(6, testHeap.getInstancesCount());
+
+    Classifier classClassifier = ClassSet.createDefaultClassifier();
+    classClassifier.partition(
+      Collections.emptyList(), testHeap.getInstancesStream().collect(HashSet::new, HashSet::add, HashSet::addAll));
+    InstanceObject instance0 = findChildClassSetWithName(classClassifier, "Class0").getInstancesStream().findFirst().orElse(null);
+    InstanceObject instance1 = findChildClassSetWithName(classClassifier, "Class1").getInstancesStream().findFirst().orElse(null);
+    assertEquals(instance1, instance0.getFields().get(0).getAsInstance());
+
+    // A read in progress keeps the buffer mapped until it is done.
+    capture.readBuffer(null, () -> {
+      capture.unload();
+      assertNotNull(capture.getDataBuffer());
+      return null;
+    });
+    assertNull(capture.getDataBuffer());
+    assertTrue(instance0.getFields().isEmpty());
+  }
+
   @Test
   public void testDefaultHeapShowsUpWhenItIsNonEmpty() throws Exception {
     long startTimeNs = 3;
@@ -275,6 +275,19 @@ public class HeapDumpInstanceObjectTest {
     assertEquals("softInstanceRef", refs.get(0));
   }
 
+  @Test
+  public void testToStringTextAfterCaptureIsUnloaded() {
+    // Without a value field, the string can't be decoded and is reported as invalid.
+    MockClassInstance stringInstance = new MockClassInstance(-1, 0, "java.lang.String");
+    HeapDumpInstanceObject instanceObject = new HeapDumpInstanceObject(
+      myCaptureObject, stringInstance, myCaptureObject.getClassDb().registerClass(1, "java.lang.String"), STRING);
+    assertEquals(HeapDumpInstanceObject.INVALID_STRING_VALUE, instanceObject.getToStringText());
+
+    // The string is decoded from the buffer of the heap dump, which is released when the capture is unloaded.
+    myCaptureObject.unload();
+    assertEquals("", instanceObject.getToStringText());
+  }
+
   private static class FakeHeapDumpCaptureObject extends HeapDumpCaptureObject {
     private Map<Instance, HeapDumpInstanceObject> myInstanceObjectMap = new HashMap<>();
 
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.performance
+
+import com.android.tools.adtui.model.Range
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.perflogger.Metric
+import com.android.tools.perflogger.WindowDeviationAnalyzer
+import com.android.tools.profilers.cpu.CpuCapture
+import com.android.tools.profilers.cpu.CpuProfilerTestUtils
+import com.android.tools.profilers.cpu.art.ArtTraceParser
+import com.android.tools.profilers.cpu.capturedetails.BottomUpNode
+import com.android.tools.profilers.cpu.capturedetails.BottomUpTreeModel
+import com.android.tools.profilers.cpu.capturedetails.CpuTreeModel
+import com.android.tools.profilers.cpu.capturedetails.TopDownNode
+import com.android.tools.profilers.cpu.capturedetails.TopDownTreeModel
+import com.android.tools.profilers.cpu.simpleperf.SimpleperfTraceParser
+import org.junit.Test
+import java.time.Instant
+
+/**
+ * Measures how long the top down and bottom up trees take to update while the selection range is dragged over recorded captures, which
+ * is what happens on the UI thread while the user moves the range selector of the CPU profiler.
+ */
+class CpuTreeModelPerformanceTest {
+  companion object {
+    /**
+     * Width of the selection range, as a fraction of the capture length.
+     */
+    private const val SELECTION_FRACTION = 0.1
+    private const val STEP_COUNT = 100
+  }
+
+  private val models = mutableListOf<CpuTreeModel<*>>()
+  private val updateBenchmark = Benchmark.Builder("CpuTreeModel Range Update Timings (Nanos)").setProject("Android Studio Profilers").build()
+
+  @Test
+  fun runPerformanceTest() {
+    val captures = mapOf(Pair("Simpleperf", SimpleperfTraceParser().parse(CpuProfilerTestUtils.getTraceFile("simpleperf.trace"), 1)),
+                         Pair("Art", ArtTraceParser().parse(CpuProfilerTestUtils.getTraceFile("valid_trace.trace"), 1)))
+    for ((captureName, capture) in captures) {
+      val selection = Range(capture.range.min, capture.range.min + capture.range.length * SELECTION_FRACTION)
+      val node = capture.getCaptureNode(capture.mainThreadId)!!
+      dragSelection("$captureName-TopDown", capture, selection) { TopDownTreeModel(it, TopDownNode(node)) }
+      dragSelection("$captureName-BottomUp", capture, selection) { BottomUpTreeModel(it, BottomUpNode(node)) }
+    }
+  }
+
+  private fun dragSelection(metricName: String, capture: CpuCapture, selection: Range, createModel: (Range) -> CpuTreeModel<*>) {
+    val range = Range(selection)
+    // Ranges only hold weak references to their observers, so the model is kept alive until the end of the test.
+    models.add(createModel(range))
+    val metric = Metric(metricName)
+    val step = (capture.range.length - selection.length) / STEP_COUNT
+    for (i in 1..STEP_COUNT) {
+      val startTime = System.nanoTime()
+      range.set(selection.min + i * step, selection.max + i * step)
+      metric.addSamples(updateBenchmark, Metric.MetricSample(Instant.now().toEpochMilli(), System.nanoTime() - startTime))
+    }
+    metric.setAnalyzers(updateBenchmark, setOf(WindowDeviationAnalyzer.Builder()
+                                                 .addMeanTolerance(WindowDeviationAnalyzer.MeanToleranceParams.Builder().build())
+                                                 .build()))
+    metric.commit()
+  }
+}
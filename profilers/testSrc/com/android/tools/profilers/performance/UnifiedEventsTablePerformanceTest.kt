@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.performance
+
+import com.android.testutils.TestUtils
+import com.android.tools.datastore.DataStoreDatabase
+import com.android.tools.datastore.FakeLogService
+import com.android.tools.datastore.database.UnifiedEventsTable
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.perflogger.Metric
+import com.android.tools.perflogger.WindowDeviationAnalyzer
+import com.android.tools.profiler.proto.Common
+import com.android.tools.profiler.proto.Cpu
+import com.android.tools.profiler.proto.Memory
+import com.android.tools.profiler.proto.Transport
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.time.Instant
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures windowed event group queries against a [UnifiedEventsTable] holding a multi-hour session, which is what the profilers issue
+ * every frame while the user scrolls through the timeline.
+ */
+class UnifiedEventsTablePerformanceTest {
+  companion object {
+    private const val STREAM_ID = 1L
+    private const val PID = 2
+    private const val THREAD_COUNT = 32
+    private const val INSERT_BATCH_SIZE = 1000
+    private val SESSION_LENGTH = TimeUnit.HOURS.toNanos(3)
+    private val MEMORY_INTERVAL = TimeUnit.MILLISECONDS.toNanos(500)
+    private val THREAD_STATE_INTERVAL = TimeUnit.SECONDS.toNanos(2)
+    private val QUERY_INTERVAL = TimeUnit.SECONDS.toNanos(60)
+    private val QUERY_STEP = TimeUnit.MINUTES.toNanos(10)
+  }
+
+  private val random = Random(0)
+  private val queryBenchmark = Benchmark.Builder("UnifiedEventsTable Query Timings (Nanos)").setProject("Android Studio Profilers").build()
+  private lateinit var dbFile: File
+  private lateinit var database: DataStoreDatabase
+  private lateinit var table: UnifiedEventsTable
+
+  @Before
+  fun setup() {
+    dbFile = File(TestUtils.createTempDirDeletedOnExit(), "unified_events.sql")
+    database = DataStoreDatabase(dbFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
+    table = UnifiedEventsTable()
+    table.initialize(database.connection)
+
+    val events = mutableListOf<Common.Event>()
+    for (timestamp in 0..SESSION_LENGTH step MEMORY_INTERVAL) {
+      events.add(memoryEvent(timestamp))
+      if (timestamp % THREAD_STATE_INTERVAL == 0L) {
+        for (tid in 1..THREAD_COUNT) {
+          events.add(threadEvent(timestamp, tid))
+        }
+      }
+      if (events.size >= INSERT_BATCH_SIZE) {
+        table.insertUnifiedEvents(STREAM_ID, events)
+        events.clear()
+      }
+    }
+    table.insertUnifiedEvents(STREAM_ID, events)
+    database.connection.commit()
+  }
+
+  @After
+  fun tearDown() {
+    database.disconnect()
+  }
+
+  @Test
+  fun runPerformanceTest() {
+    val kindsToTest = mapOf(Pair("Memory-Usage", Common.Event.Kind.MEMORY_USAGE),
+                            Pair("Cpu-Thread-State", Common.Event.Kind.CPU_THREAD))
+    val nameToMetrics = mutableMapOf<String, Metric>()
+    for (offset in 0 until SESSION_LENGTH step QUERY_STEP) {
+      for ((name, kind) in kindsToTest) {
+        val metric = nameToMetrics.getOrPut(name) { Metric(name) }
+        // We ignore the first query as it warms up the SQLite page cache.
+        collectAndReportTimes(offset, metric, kind, offset != 0L)
+      }
+    }
+    nameToMetrics.values.forEach {
+      it.setAnalyzers(queryBenchmark, setOf(WindowDeviationAnalyzer.Builder()
+                                              .addMeanTolerance(WindowDeviationAnalyzer.MeanToleranceParams.Builder().build())
+                                              .build()))
+      it.commit()
+    }
+  }
+
+  private fun collectAndReportTimes(offset: Long, metric: Metric, kind: Common.Event.Kind, recordMetric: Boolean) {
+    val request = Transport.GetEventGroupsRequest.newBuilder()
+      .setStreamId(STREAM_ID)
+      .setPid(PID)
+      .setKind(kind)
+      .setFromTimestamp(offset + 1)
+      .setToTimestamp(offset + QUERY_INTERVAL)
+      .build()
+    val startTime = System.nanoTime()
+    val groups = table.queryUnifiedEventGroups(request)
+    val elapsed = System.nanoTime() - startTime
+    assertThat(groups).isNotEmpty()
+    if (recordMetric) {
+      metric.addSamples(queryBenchmark, Metric.MetricSample(Instant.now().toEpochMilli(), elapsed))
+    }
+  }
+
+  private fun memoryEvent(timestamp: Long) = Common.Event.newBuilder()
+    .setPid(PID)
+    .setKind(Common.Event.Kind.MEMORY_USAGE)
+    .setTimestamp(timestamp)
+    .setMemoryUsage(Memory.MemoryUsageData.newBuilder()
+                      .setJavaMem(random.nextInt())
+                      .setNativeMem(random.nextInt())
+                      .setTotalMem(random.nextInt()))
+    .build()
+
+  private fun threadEvent(timestamp: Long, tid: Int) = Common.Event.newBuilder()
+    .setPid(PID)
+    .setKind(Common.Event.Kind.CPU_THREAD)
+    .setTimestamp(timestamp)
+    .setGroupId(tid.toLong())
+    .setCpuThread(Cpu.CpuThreadData.newBuilder()
+                    .setTid(tid)
+                    .setName("Thread-$tid")
+                    .setState(if (random.nextBoolean()) Cpu.CpuThreadData.State.RUNNING else Cpu.CpuThreadData.State.SLEEPING))
+    .build()
+}
@@ -476,6 +476,43 @@ class SessionsManagerTest {
     assertThat(legacyAllocationsItem1.timestampNs).isEqualTo(legacyAllocationsInfoTimestamp - session1Timestamp)
   }
 
+  @Test
+  fun testPersistedSessionsOnlyFetchArtifactsOfSelectedSession() {
+    ideProfilerServices.enableSessionPersistence(true)
+    val device = Common.Device.newBuilder().setDeviceId(1).setState(Common.Device.State.ONLINE).build()
+    val process1 = Common.Process.newBuilder().setPid(10).setState(Common.Process.State.ALIVE).build()
+    val process2 = Common.Process.newBuilder().setPid(20).setState(Common.Process.State.ALIVE).build()
+
+    myTimer.currentTimeNs = 1
+    beginSessionHelper(device, process1)
+    endSessionHelper()
+    val session1 = myManager.selectedSession
+    myTimer.currentTimeNs = 2
+    beginSessionHelper(device, process2)
+    endSessionHelper()
+    val session2 = myManager.selectedSession
+
+    val heapDumpInfo = HeapDumpInfo.newBuilder().setStartTime(10).setEndTime(11).build()
+    val heapDumpEvent = ProfilersTestData.generateMemoryHeapDumpData(1, 1, heapDumpInfo)
+    myTransportService.addEventToStream(device.deviceId, heapDumpEvent.setPid(session1.pid).build())
+    myTransportService.addEventToStream(device.deviceId, heapDumpEvent.setPid(session2.pid).build())
+
+    // Reopen the profilers on the same datastore, as after a restart: every session is seen for the first time.
+    val manager = StudioProfilers(ProfilerClient(myGrpcChannel.channel), ideProfilerServices, myTimer).sessionsManager
+    manager.update()
+    assertThat(manager.selectedSession).isEqualTo(session2)
+    var sessionItems = manager.sessionArtifacts.filterIsInstance<SessionItem>()
+    assertThat(sessionItems.map { it.session }).containsExactly(session2, session1).inOrder()
+    assertThat(sessionItems[0].childArtifacts).hasSize(1)
+    // Only the session that ends up selected has its artifacts fetched.
+    assertThat(sessionItems[1].childArtifacts).isEmpty()
+
+    manager.setSession(session1)
+    manager.update()
+    sessionItems = manager.sessionArtifacts.filterIsInstance<SessionItem>()
+    assertThat(sessionItems[1].childArtifacts).hasSize(1)
+  }
+
   @Test
   fun testImportedSessionOnlyProcessedWhenEnded() {
     myTransportService.addEventToStream(1, ProfilersTestData.generateSessionStartEvent(1, 1, 1,
@@ -38,12 +38,30 @@ class CachingRepositorySearchFactory : RepositorySearchFactory {
     private val lock = Any()
 
     @GuardedBy("lock")
-    private val requestCache = mutableMapOf<SearchRequest, ListenableFuture<SearchResult>>()
+    private val requestCache = mutableMapOf<SearchRequest, CachedSearch>()
+
+    /**
+     * Local repositories can change at any time. Each search schedules a revalidation of the index of the repository, which the index
+     * throttles, and a cached result is only returned while the index is still at the generation it was searched at.
+     */
+    private val localRepository = artifactRepositorySearch as? LocalMavenRepository
 
     override fun search(request: SearchRequest): ListenableFuture<SearchResult> =
       synchronized(lock) {
-        requestCache[request]?.takeUnless { it.isCancelled }
-        ?: artifactRepositorySearch.search(request).also { requestCache[request] = it }
+        localRepository?.revalidateIndex()
+        val cached = requestCache[request]?.takeUnless { it.result.isCancelled || it.isStale() }
+        cached?.result ?: searchAndCache(request)
       }
+
+    @GuardedBy("lock")
+    private fun searchAndCache(request: SearchRequest): ListenableFuture<SearchResult> {
+      // Read the generation first, so that a change found while searching makes the result stale rather than being missed.
+      val generation = localRepository?.indexGeneration ?: 0
+      return artifactRepositorySearch.search(request).also { requestCache[request] = CachedSearch(it, generation) }
+    }
+
+    private fun CachedSearch.isStale() = localRepository != null && result.isDone && generation != localRepository.indexGeneration
   }
+
+  private class CachedSearch(val result: ListenableFuture<SearchResult>, val generation: Long)
 }
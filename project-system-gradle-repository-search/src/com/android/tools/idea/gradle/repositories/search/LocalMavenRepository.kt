@@ -15,60 +15,46 @@
  */
 package com.android.tools.idea.gradle.repositories.search
 
-import com.android.ide.common.repository.GradleVersion
 import com.google.wireless.android.sdk.stats.PSDEvent.PSDRepositoryUsage.PSDRepository.PROJECT_STRUCTURE_DIALOG_REPOSITORY_LOCAL
 import com.intellij.openapi.diagnostic.Logger
 import com.intellij.util.Url
 import com.intellij.util.Urls
 import java.io.File
-import java.nio.file.FileVisitResult
-import java.nio.file.Files.walkFileTree
 import java.nio.file.Path
-import java.nio.file.SimpleFileVisitor
-import java.nio.file.attribute.BasicFileAttributes
 
-data class LocalMavenRepository(val rootLocation: File, override val name: String) :
-  ArtifactRepository(PROJECT_STRUCTURE_DIALOG_REPOSITORY_LOCAL) {
+/**
+ * @param index the index searched by this repository, by default the one shared by all the repositories at [rootLocation]
+ */
+data class LocalMavenRepository @JvmOverloads constructor(
+  val rootLocation: File,
+  override val name: String,
+  private val index: LocalMavenRepositoryIndex = LocalMavenRepositoryIndex.getInstance(rootLocation)
+) : ArtifactRepository(PROJECT_STRUCTURE_DIALOG_REPOSITORY_LOCAL) {
   private val rootLocationPath: Path = rootLocation.toPath()
   override val isRemote: Boolean = false
 
-  override fun doSearch(request: SearchRequest): SearchResult {
-    val foundArtifacts = mutableListOf<FoundArtifact>()
-    val groupIdPredicate = request.query.groupId?.toWildcardMatchingPredicate() ?: { true }
-    val artifactNamePredicate = request.query.artifactName?.toWildcardMatchingPredicate() ?: { true }
+  /**
+   * The [LocalMavenRepositoryIndex.generation] of the index. Search results obtained at an older generation may be stale.
+   */
+  val indexGeneration: Long get() = index.generation
 
-    try {
-      walkFileTree(rootLocationPath, object : SimpleFileVisitor<Path>() {
-        override fun preVisitDirectory(dir: Path, attrs: BasicFileAttributes): FileVisitResult {
-          val visitedDirFile: File = dir.toFile()
-          val repositoryRelativeDirectory = visitedDirFile.relativeTo(rootLocation)
-          if (repositoryRelativeDirectory.parentFile == null) return FileVisitResult.CONTINUE
-          val groupIdProbe = repositoryRelativeDirectory.parentFile.path.replace(File.separatorChar, '.')
-          val artifactNameProbe = visitedDirFile.name
+  /**
+   * Schedules a revalidation of the index, which is throttled by the index. [indexGeneration] changes once it finds a change.
+   */
+  fun revalidateIndex() = index.revalidate()
 
-          if (groupIdPredicate(groupIdProbe) && artifactNamePredicate(artifactNameProbe)) {
-            val versions =
-              visitedDirFile
-                .listFiles()
-                ?.mapNotNull {
-                  val versionProbe = it.name
-                  val expectedPomFileName = "$artifactNameProbe-$versionProbe.pom"
-                  if (it.isDirectory && it.resolve(expectedPomFileName).isFile) GradleVersion.tryParse(versionProbe) else null
-                }
-                .orEmpty()
-            if (versions.isNotEmpty()) {
-              foundArtifacts.add(FoundArtifact(name, groupIdProbe, artifactNameProbe, versions))
-              return FileVisitResult.SKIP_SUBTREE
-            }
-          }
-          return FileVisitResult.CONTINUE
-        }
-      })
-    }
-    catch (e: Throwable) {
-      val msg = "Failed to search local repository $rootLocationPath"
-      Logger.getInstance(LocalMavenRepository::class.java).warn(msg, e)
-    }
+  override fun doSearch(request: SearchRequest): SearchResult {
+    val foundArtifacts =
+      try {
+        index
+          .search(request.query.groupId, request.query.artifactName)
+          .map { FoundArtifact(name, it.groupId, it.name, it.versions) }
+      }
+      catch (e: Throwable) {
+        val msg = "Failed to search local repository $rootLocationPath"
+        Logger.getInstance(LocalMavenRepository::class.java).warn(msg, e)
+        emptyList<FoundArtifact>()
+      }
 
     return SearchResult(foundArtifacts.sortedWith(compareBy<FoundArtifact> { it.groupId }.thenBy { it.name }))
   }
@@ -88,14 +74,6 @@ data class LocalMavenRepository(val rootLocation: File, override val name: Strin
   }
 }
 
-private fun String.toWildcardMatchingPredicate(): (String) -> Boolean =
-  if (isBlank()) {
-    { true }
-  }
-  else {
-    Regex(replace("*", ".*")).let { { probe: String -> it.matches(probe) } }
-  }
-
 private fun parseToLocalFile(url: String, asLocalIfNoScheme: Boolean): Url? {
   val parsedRepositoryUrl = Urls.parse(url, asLocalIfNoScheme) ?: return null
   return if (parsedRepositoryUrl.isInLocalFileSystem) parsedRepositoryUrl else null
@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.repositories.search
+
+import com.android.annotations.concurrency.GuardedBy
+import com.android.ide.common.repository.GradleVersion
+import com.google.common.annotations.VisibleForTesting
+import com.google.common.hash.Hashing
+import com.intellij.openapi.application.PathManager
+import com.intellij.openapi.diagnostic.Logger
+import org.jetbrains.ide.PooledThreadExecutor
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.LinkOption
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.attribute.BasicFileAttributes
+import java.util.TreeMap
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+private const val INDEX_FORMAT_VERSION = 1
+/**
+ * Searches don't revalidate an index that was refreshed more recently than this, as searches are typically made while the user types.
+ */
+private val MIN_REVALIDATION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10)
+
+private val LOG = Logger.getInstance(LocalMavenRepositoryIndex::class.java)
+
+/**
+ * An index of the group id, artifact name and version triples of a local Maven repository.
+ *
+ * The index is persisted, so that it can be searched right away after the IDE restarts, and searches revalidate it in the background.
+ * Revalidating the index is incremental: the directories whose modification time and whose subdirectories' modification times didn't
+ * change since the last refresh are neither listed nor probed for pom files again.
+ */
+class LocalMavenRepositoryIndex @VisibleForTesting constructor(
+  private val rootLocation: File,
+  private val indexFile: File?,
+  private val minRevalidationIntervalNanos: Long = MIN_REVALIDATION_INTERVAL_NANOS
+) {
+  /**
+   * The state of a directory of the repository at the time it was listed.
+   *
+   * @param subdirectories the modification times of the subdirectories, by name
+   * @param versions the versions with a pom file if the directory is the directory of an artifact, null otherwise
+   */
+  private class DirectoryEntry(val lastModified: Long, val subdirectories: Map<String, Long>, val versions: List<String>?)
+
+  class IndexedArtifact(val groupId: String, val name: String, val versions: List<GradleVersion>)
+
+  /**
+   * @param refreshedAtNanos when the repository was last walked, or null if the snapshot was loaded from disk
+   */
+  private class Snapshot(val directories: Map<String, DirectoryEntry>, val refreshedAtNanos: Long?) {
+    /** The artifacts of the repository, by group id. */
+    val artifactsByGroupId = TreeMap<String, MutableList<IndexedArtifact>>()
+
+    init {
+      for ((relativePath, entry) in directories) {
+        val versions = entry.versions?.mapNotNull { GradleVersion.tryParse(it) } ?: continue
+        val groupId = relativePath.substringBeforeLast('/').replace('/', '.')
+        val artifact = IndexedArtifact(groupId, relativePath.substringAfterLast('/'), versions)
+        artifactsByGroupId.getOrPut(groupId) { mutableListOf() }.add(artifact)
+      }
+    }
+  }
+
+  private val refreshLock = Any()
+  private val isRevalidationScheduled = AtomicBoolean()
+
+  @Volatile
+  private var snapshot: Snapshot? = null
+
+  /**
+   * Incremented whenever a refresh finds that the repository changed, so that results derived from the index can tell whether they
+   * are still up to date.
+   */
+  @Volatile
+  var generation = 0L
+    private set
+
+  @GuardedBy("refreshLock")
+  private var isLoaded = false
+
+  /**
+   * Returns the artifacts whose group id and name match the given queries, in which `*` matches any sequence of characters. A null or
+   * blank query matches everything.
+   *
+   * The first search loads the persisted index, or builds it if there is none yet. The following searches are served from memory and
+   * schedule a revalidation of the index.
+   */
+  fun search(groupIdQuery: String?, artifactNameQuery: String?): List<IndexedArtifact> {
+    val current = snapshot ?: loadOrRefresh()
+    revalidate()
+
+    val groupIdPattern = groupIdQuery?.takeUnless { it.isBlank() }
+    val artifactNamePattern = artifactNameQuery?.takeUnless { it.isBlank() }
+    val candidates = when {
+      groupIdPattern == null -> current.artifactsByGroupId.values
+      '*' !in groupIdPattern -> listOfNotNull(current.artifactsByGroupId[groupIdPattern])
+      else -> {
+        val prefix = groupIdPattern.substringBefore('*')
+        current.artifactsByGroupId.subMap(prefix, true, prefix + Char.MAX_VALUE, true).values
+      }
+    }
+    return candidates.asSequence()
+      .flatten()
+      .filter { groupIdPattern == null || matchesWildcard(it.groupId, groupIdPattern) }
+      .filter { artifactNamePattern == null || matchesWildcard(it.name, artifactNamePattern) }
+      .toList()
+  }
+
+  /**
+   * Schedules a revalidation of the index in the background, unless it is not loaded yet or was refreshed too recently. The [generation]
+   * of the index is incremented once the revalidation finds a change.
+   */
+  fun revalidate() {
+    val current = snapshot ?: return
+    val refreshedAtNanos = current.refreshedAtNanos
+    if (refreshedAtNanos == null || System.nanoTime() - refreshedAtNanos > minRevalidationIntervalNanos) {
+      scheduleRevalidation()
+    }
+  }
+
+  /**
+   * Brings the index up to date with the repository and persists it.
+   */
+  fun refresh() {
+    synchronized(refreshLock) {
+      val previous = snapshot?.directories ?: emptyMap()
+      val directories = mutableMapOf<String, DirectoryEntry>()
+      val listedAny = refreshDirectory(rootLocation.toPath(), "", previous, directories)
+      snapshot = Snapshot(directories, System.nanoTime())
+      if (listedAny || directories.keys != previous.keys) {
+        generation++
+        save(directories)
+      }
+    }
+  }
+
+  private fun loadOrRefresh(): Snapshot {
+    synchronized(refreshLock) {
+      snapshot?.let { return it }
+      if (!isLoaded) {
+        isLoaded = true
+        val directories = load()
+        if (directories != null) {
+          // The repository may have changed while the IDE wasn't running, which the revalidation scheduled by the search catches up with.
+          return Snapshot(directories, null).also { snapshot = it }
+        }
+      }
+      refresh()
+      return snapshot!!
+    }
+  }
+
+  private fun scheduleRevalidation() {
+    if (isRevalidationScheduled.compareAndSet(false, true)) {
+      PooledThreadExecutor.INSTANCE.execute {
+        try {
+          refresh()
+        }
+        catch (e: Exception) {
+          LOG.warn("Failed to refresh the index of local repository $rootLocation", e)
+        }
+        finally {
+          isRevalidationScheduled.set(false)
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the entries of [dir] and its subdirectories to [directories], reusing the [previous] entries that are up to date, and returns
+   * whether any directory had to be listed again.
+   */
+  private fun refreshDirectory(dir: Path,
+                               relativePath: String,
+                               previous: Map<String, DirectoryEntry>,
+                               directories: MutableMap<String, DirectoryEntry>): Boolean {
+    var listedAny = false
+    val entry = previous[relativePath]?.takeIf { it.isUpToDate(dir) }
+                ?: listDirectory(dir, relativePath)?.also { listedAny = true }
+                ?: return false
+    directories[relativePath] = entry
+    if (entry.versions == null) {
+      for (name in entry.subdirectories.keys) {
+        if (refreshDirectory(dir.resolve(name), if (relativePath.isEmpty()) name else "$relativePath/$name", previous, directories)) {
+          listedAny = true
+        }
+      }
+    }
+    return listedAny
+  }
+
+  private fun DirectoryEntry.isUpToDate(dir: Path): Boolean =
+    getLastModified(dir) == lastModified &&
+    subdirectories.all { (name, subdirectoryLastModified) -> getLastModified(dir.resolve(name)) == subdirectoryLastModified }
+
+  private fun listDirectory(dir: Path, relativePath: String): DirectoryEntry? {
+    // Read before listing the directory, so that a change made while listing it is seen by the next refresh.
+    val lastModified = getLastModified(dir)
+    val subdirectories = mutableMapOf<String, Long>()
+    try {
+      Files.newDirectoryStream(dir).use { children ->
+        for (child in children) {
+          // Symbolic links are not followed, like when walking the file tree.
+          val attributes = Files.readAttributes(child, BasicFileAttributes::class.java, LinkOption.NOFOLLOW_LINKS)
+          if (attributes.isDirectory) {
+            subdirectories[child.fileName.toString()] = attributes.lastModifiedTime().toMillis()
+          }
+        }
+      }
+    }
+    catch (e: IOException) {
+      return null
+    }
+
+    // The directories directly under the root are group ids, but can't be artifacts.
+    if ('/' in relativePath) {
+      val artifactName = dir.fileName.toString()
+      val versions = subdirectories.keys.filter { version ->
+        Files.isRegularFile(dir.resolve(version).resolve("$artifactName-$version.pom")) && GradleVersion.tryParse(version) != null
+      }
+      if (versions.isNotEmpty()) {
+        return DirectoryEntry(lastModified, subdirectories, versions.sorted())
+      }
+    }
+    return DirectoryEntry(lastModified, subdirectories, null)
+  }
+
+  private fun getLastModified(path: Path): Long =
+    try {
+      Files.getLastModifiedTime(path).toMillis()
+    }
+    catch (e: IOException) {
+      -1
+    }
+
+  private fun load(): Map<String, DirectoryEntry>? {
+    if (indexFile == null || !indexFile.isFile) return null
+    try {
+      DataInputStream(indexFile.inputStream().buffered()).use { input ->
+        if (input.readInt() != INDEX_FORMAT_VERSION || input.readUTF() != rootLocation.path) return null
+        val directories = mutableMapOf<String, DirectoryEntry>()
+        repeat(input.readInt()) {
+          val relativePath = input.readUTF()
+          val lastModified = input.readLong()
+          val subdirectories = mutableMapOf<String, Long>()
+          repeat(input.readInt()) {
+            subdirectories[input.readUTF()] = input.readLong()
+          }
+          val versionCount = input.readInt()
+          val versions = if (versionCount < 0) null else List(versionCount) { input.readUTF() }
+          directories[relativePath] = DirectoryEntry(lastModified, subdirectories, versions)
+        }
+        return directories
+      }
+    }
+    catch (e: IOException) {
+      LOG.info("Failed to load the index of local repository $rootLocation", e)
+      return null
+    }
+  }
+
+  private fun save(directories: Map<String, DirectoryEntry>) {
+    if (indexFile == null) return
+    try {
+      Files.createDirectories(indexFile.parentFile.toPath())
+      val tempFile = File(indexFile.path + ".tmp")
+      DataOutputStream(tempFile.outputStream().buffered()).use { output ->
+        output.writeInt(INDEX_FORMAT_VERSION)
+        output.writeUTF(rootLocation.path)
+        output.writeInt(directories.size)
+        for ((relativePath, entry) in directories) {
+          output.writeUTF(relativePath)
+          output.writeLong(entry.lastModified)
+          output.writeInt(entry.subdirectories.size)
+          for ((name, lastModified) in entry.subdirectories) {
+            output.writeUTF(name)
+            output.writeLong(lastModified)
+          }
+          output.writeInt(entry.versions?.size ?: -1)
+          entry.versions?.forEach { output.writeUTF(it) }
+        }
+      }
+      Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING)
+    }
+    catch (e: IOException) {
+      LOG.info("Failed to save the index of local repository $rootLocation", e)
+    }
+  }
+
+  companion object {
+    private val indexes = ConcurrentHashMap<File, LocalMavenRepositoryIndex>()
+
+    /**
+     * Returns the index of the repository at [rootLocation], which is shared by all the repositories with that location.
+     */
+    @JvmStatic
+    fun getInstance(rootLocation: File): LocalMavenRepositoryIndex =
+      indexes.computeIfAbsent(rootLocation) {
+        val fileName = Hashing.farmHashFingerprint64().hashUnencodedChars(it.path).toString() + ".idx"
+        LocalMavenRepositoryIndex(it, File(PathManager.getSystemPath(), "android/maven-repository-index/$fileName"))
+      }
+  }
+}
+
+/**
+ * Returns whether [text] matches [pattern], in which `*` matches any sequence of characters and any other character matches itself.
+ */
+@VisibleForTesting
+fun matchesWildcard(text: String, pattern: String): Boolean {
+  var textIndex = 0
+  var patternIndex = 0
+  // Where to resume matching from if the characters after the last '*' don't match.
+  var starPatternIndex = -1
+  var starTextIndex = 0
+  while (textIndex < text.length) {
+    when {
+      patternIndex < pattern.length && pattern[patternIndex] == '*' -> {
+        starPatternIndex = patternIndex++
+        starTextIndex = textIndex
+      }
+      patternIndex < pattern.length && pattern[patternIndex] == text[textIndex] -> {
+        patternIndex++
+        textIndex++
+      }
+      starPatternIndex >= 0 -> {
+        patternIndex = starPatternIndex + 1
+        textIndex = ++starTextIndex
+      }
+      else -> return false
+    }
+  }
+  while (patternIndex < pattern.length && pattern[patternIndex] == '*') {
+    patternIndex++
+  }
+  return patternIndex == pattern.length
+}
@@ -52,6 +52,7 @@ import com.android.tools.idea.resources.base.RepositoryConfiguration;
 import com.android.tools.idea.resources.base.RepositoryLoader;
 import com.android.tools.idea.resources.base.ResourceSourceFile;
 import com.android.tools.idea.resources.base.ResourceSourceFileImpl;
+import com.android.tools.idea.resources.base.ResourceStringPool;
 import com.android.tools.idea.resources.base.ResourceUrlParser;
 import com.android.utils.SdkUtils;
 import com.google.common.base.CharMatcher;
@@ -332,7 +333,7 @@ public class AarProtoResourceRepository extends AbstractAarResourceRepository {
           }
           if (myResourceTypeFilter.test(resourceType)) {
             for (Resources.Entry entryMsg : typeMsg.getEntryList()) {
-              String resourceName = entryMsg.getName();
+              String resourceName = ResourceStringPool.intern(entryMsg.getName());
               Resources.Visibility visibilityMsg = entryMsg.getVisibility();
               ResourceVisibility visibility = decodeVisibility(visibilityMsg);
               for (Resources.ConfigValue configValueMsg : entryMsg.getConfigValueList()) {
@@ -428,7 +429,7 @@ public class AarProtoResourceRepository extends AbstractAarResourceRepository {
         }
 
         case STR: {
-          String textValue = itemMsg.getStr().getValue();
+          String textValue = ResourceStringPool.intern(itemMsg.getStr().getValue());
           return new BasicValueResourceItem(resourceType, resourceName, sourceFile, visibility, textValue);
         }
 
@@ -76,7 +76,7 @@ public class AarSourceResourceRepository extends AbstractAarResourceRepository {
    * Increment when making changes that may affect content of repository cache files.
    * Used together with CachingData.codeVersion. Important for developer builds.
    */
-  static final String CACHE_FILE_FORMAT_VERSION = "3";
+  static final String CACHE_FILE_FORMAT_VERSION = "4";
   private static final byte[] CACHE_FILE_HEADER = "Resource cache".getBytes(UTF_8);
   private static final Logger LOG = Logger.getInstance(AarSourceResourceRepository.class);
 
@@ -269,6 +269,7 @@ public class AarSourceResourceRepository extends AbstractAarResourceRepository {
       if (!stream.validateContents(fileHeader)) {
         return false; // Cache file header doesn't match.
       }
+      stream.enableStringTable();
       loadFromStream(stream, Maps.newHashMapWithExpectedSize(1000), null);
 
       populatePublicResourcesMap();
@@ -43,6 +43,7 @@ import com.google.common.collect.Sets;
 import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.util.SystemInfo;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.util.text.StringUtil;
 import java.io.IOException;
@@ -271,7 +272,7 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
     for (String language : languages) {
       if (!loadedLanguages.contains(language)) {
         Path cacheFile = fileNameGenerator.getCacheFile(language);
-        try (Base128InputStream stream = new Base128InputStream(cacheFile)) {
+        try (Base128InputStream stream = openCacheFile(cacheFile)) {
           byte[] header = ResourceSerializationUtil.getCacheFileHeader(s -> writeCacheHeaderContent(cachingData, language, s));
           if (!stream.validateContents(header)) {
             // Cache file header doesn't match.
@@ -280,6 +281,7 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
             }
             continue;
           }
+          stream.enableStringTable();
           loadFromStream(stream, stringCache, namespaceResolverCache);
           loadedLanguages.add(language);
           myNumberOfLanguageGroupsLoadedFromCache++;
@@ -311,6 +313,23 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
     myNumberOfLanguageGroupsLoadedFromCache = 0;
   }
 
+  /**
+   * Opens a cache file for reading. Where possible, the file is memory-mapped so that its contents are decoded
+   * straight from the OS page cache, which is shared by all IDE instances using the same SDK. On Windows
+   * a mapped file cannot be replaced until the mapping is garbage collected, so the file is read as a regular
+   * stream there to keep a stale cache file from blocking creation of a new one.
+   * <p>
+   * The mapping only replaces the buffered reads of the file. All resource items are still decoded eagerly
+   * into heap objects, so the heap retained by the repository is the same as when the file is read as a
+   * stream. Decoding items lazily from the mapping would require the mapping to outlive loading, which
+   * keeps the cache file from being replaced on some platforms, and an off-heap representation of
+   * {@link com.android.tools.idea.resources.base.BasicResourceItem}.
+   */
+  @NotNull
+  private static Base128InputStream openCacheFile(@NotNull Path cacheFile) throws IOException {
+    return SystemInfo.isWindows ? new Base128InputStream(cacheFile) : Base128InputStream.mapFile(cacheFile);
+  }
+
   private void createPersistentCache(@NotNull CachingData cachingData, @NotNull Set<String> languagesToSkip) {
     CacheFileNameGenerator fileNameGenerator = new CacheFileNameGenerator(cachingData);
     for (String language : myLanguageGroups) {
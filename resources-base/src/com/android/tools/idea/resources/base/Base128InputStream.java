@@ -17,10 +17,16 @@ package com.android.tools.idea.resources.base;
 
 import com.android.io.CancellableFileIo;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import org.jetbrains.annotations.NotNull;
@@ -33,12 +39,25 @@ import org.jetbrains.annotations.Nullable;
  */
 public final class Base128InputStream extends BufferedInputStream {
   @Nullable private Map<String, String> myStringCache;
+  @NotNull private Function<String, String> myStringInterner = Function.identity();
+  @Nullable private List<String> myStringTable;
+  /** The buffer the data is read from, or null if the data is read from the wrapped input stream. */
+  @Nullable private final ByteBuffer myBuffer;
 
   /**
    * Wraps a given input stream.
    */
   public Base128InputStream(@NotNull InputStream stream) {
     super(stream);
+    myBuffer = null;
+  }
+
+  /**
+   * Reads from the given buffer starting from its current position.
+   */
+  public Base128InputStream(@NotNull ByteBuffer buffer) {
+    super(new ByteArrayInputStream(new byte[0]), 1);
+    myBuffer = buffer;
   }
 
   /**
@@ -50,6 +69,26 @@ public final class Base128InputStream extends BufferedInputStream {
    */
   public Base128InputStream(@NotNull Path file) throws IOException {
     super(CancellableFileIo.newInputStream(file));
+    myBuffer = null;
+  }
+
+  /**
+   * Opens a stream to read from a read-only memory mapping of the given file. The file contents are
+   * decoded directly from the OS page cache without being copied into an intermediate heap buffer,
+   * and the pages are shared with all other processes reading the same file.
+   * <p>
+   * The mapping stays valid until the returned stream is garbage collected. On some platforms, most
+   * notably Windows, the file cannot be deleted or replaced while it is mapped.
+   *
+   * @param file the file to read from
+   * @throws NoSuchFileException if the file does not exist
+   * @throws IOException if any other error occurs
+   */
+  @NotNull
+  public static Base128InputStream mapFile(@NotNull Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return new Base128InputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
   }
 
   /**
@@ -59,7 +98,30 @@ public final class Base128InputStream extends BufferedInputStream {
    * @param stringCache the map used for storing previously encountered strings; keys and values are identical.
    */
   public void setStringCache(@Nullable Map<String, String> stringCache) {
+    setStringCache(stringCache, Function.identity());
+  }
+
+  /**
+   * Same as {@link #setStringCache(Map)}, but strings not present in the cache are passed through
+   * the {@code interner} function before being added to it. This makes it possible to share string
+   * instances with data read from other streams.
+   *
+   * @param stringCache the map used for storing previously encountered strings; keys and values are equal.
+   * @param interner the function returning the canonical instance of a string
+   */
+  public void setStringCache(@Nullable Map<String, String> stringCache, @NotNull Function<String, String> interner) {
     myStringCache = stringCache;
+    myStringInterner = interner;
+  }
+
+  /**
+   * Enables the string table for the rest of the stream. Has to be called at the same position in the stream
+   * where {@link Base128OutputStream#enableStringTable()} was called when the stream was written.
+   */
+  public void enableStringTable() {
+    if (myStringTable == null) {
+      myStringTable = new ArrayList<>();
+    }
   }
 
   /**
@@ -70,13 +132,13 @@ public final class Base128InputStream extends BufferedInputStream {
    * @throws StreamFormatException if an invalid data format is detected
    */
   public int readInt() throws IOException {
-    int b = super.read();
+    int b = nextByte();
     if (b < 0) {
       throw StreamFormatException.prematureEndOfFile();
     }
     int value = b & 0x7F;
     for (int shift = 7; (b & 0x80) != 0; shift += 7) {
-      b = super.read();
+      b = nextByte();
       if (b < 0) {
         throw StreamFormatException.prematureEndOfFile();
       }
@@ -96,13 +158,13 @@ public final class Base128InputStream extends BufferedInputStream {
    * @throws StreamFormatException if an invalid data format is detected
    */
   public long readLong() throws IOException, StreamFormatException {
-    int b = super.read();
+    int b = nextByte();
     if (b < 0) {
       throw StreamFormatException.prematureEndOfFile();
     }
     long value = b & 0x7F;
     for (int shift = 7; (b & 0x80) != 0; shift += 7) {
-      b = super.read();
+      b = nextByte();
       if (b < 0) {
         throw StreamFormatException.prematureEndOfFile();
       }
@@ -131,16 +193,35 @@ public final class Base128InputStream extends BufferedInputStream {
     if (len == 0) {
       return null;
     }
+    if (myStringTable != null) {
+      if (len == 1) {
+        int index = readInt();
+        if (index < 0 || index >= myStringTable.size()) {
+          throw StreamFormatException.invalidFormat();
+        }
+        return myStringTable.get(index);
+      }
+      --len;
+    }
     --len;
+    String str;
     if (len == 0) {
-      return "";
+      str = "";
+    }
+    else {
+      StringBuilder buf = new StringBuilder(len);
+      for (int i = 0; i < len; i++) {
+        buf.append(readChar());
+      }
+      str = buf.toString();
+      if (myStringCache != null) {
+        str = myStringCache.computeIfAbsent(str, myStringInterner);
+      }
     }
-    StringBuilder buf = new StringBuilder(len);
-    for (int i = 0; i < len; i++) {
-      buf.append(readChar());
+    if (myStringTable != null) {
+      myStringTable.add(str);
     }
-    String str = buf.toString();
-    return myStringCache == null ? str : myStringCache.computeIfAbsent(str, Function.identity());
+    return str;
   }
 
   /**
@@ -166,7 +247,7 @@ public final class Base128InputStream extends BufferedInputStream {
    * @throws StreamFormatException if the stream does not contain any more data
    */
   public byte readByte() throws IOException {
-    int b = super.read();
+    int b = nextByte();
     if (b < 0) {
       throw StreamFormatException.prematureEndOfFile();
     }
@@ -188,6 +269,13 @@ public final class Base128InputStream extends BufferedInputStream {
     return c != 0;
   }
 
+  private int nextByte() throws IOException {
+    if (myBuffer != null) {
+      return myBuffer.hasRemaining() ? myBuffer.get() & 0xFF : -1;
+    }
+    return super.read();
+  }
+
   /**
    * @deprecated Use {@link #readByte()} or {@link #readInt()} instead.
    * @throws UnsupportedOperationException when called
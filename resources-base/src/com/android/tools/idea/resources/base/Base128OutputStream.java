@@ -15,6 +15,8 @@
  */
 package com.android.tools.idea.resources.base;
 
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -29,6 +31,8 @@ import org.jetbrains.annotations.Nullable;
  * @see Base128InputStream
  */
 public class Base128OutputStream extends BufferedOutputStream {
+  @Nullable private Object2IntMap<String> myStringIndexes;
+
   public Base128OutputStream(@NotNull OutputStream stream) {
     super(stream);
   }
@@ -37,6 +41,20 @@ public class Base128OutputStream extends BufferedOutputStream {
     super(Files.newOutputStream(file));
   }
 
+  /**
+   * Makes all subsequent {@link #writeString} calls write each distinct string only once. Repeated occurrences
+   * of a string are written as references to its first occurrence. The data written after this call can only be
+   * read by a {@link Base128InputStream} with the string table enabled at the same position in the stream.
+   *
+   * @see Base128InputStream#enableStringTable()
+   */
+  public void enableStringTable() {
+    if (myStringIndexes == null) {
+      myStringIndexes = new Object2IntOpenHashMap<>();
+      myStringIndexes.defaultReturnValue(-1);
+    }
+  }
+
   /**
    * Writes a 32-bit integer to the stream. Small positive integers take less space than larger ones:
    * <ul>
@@ -96,6 +114,9 @@ public class Base128OutputStream extends BufferedOutputStream {
   /**
    * Write a String to the stream. The string is prefixed by its length + 1.
    * Each character is then written using the {@link #writeChar} method.
+   * <p>
+   * If the string table is enabled, a string that has already been written is represented by 1 followed by
+   * the index of the string in the table, and a new string is prefixed by its length + 2.
    *
    * @param str the string to write or null
    * @throws IOException if an I/O error occurs.
@@ -106,7 +127,19 @@ public class Base128OutputStream extends BufferedOutputStream {
     }
     else {
       int len = str.length();
-      writeInt(len + 1);
+      if (myStringIndexes == null) {
+        writeInt(len + 1);
+      }
+      else {
+        int index = myStringIndexes.getInt(str);
+        if (index >= 0) {
+          writeInt(1);
+          writeInt(index);
+          return;
+        }
+        myStringIndexes.put(str, myStringIndexes.size());
+        writeInt(len + 2);
+      }
       for (int i = 0; i < len; i++) {
         writeChar(str.charAt(i));
       }
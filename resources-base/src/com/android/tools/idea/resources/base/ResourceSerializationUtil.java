@@ -57,6 +57,10 @@ public class ResourceSerializationUtil {
    * The data is stored as follows:
    * <ol>
    *   <li>The header provided by the caller (sequence of bytes)</li>
+   * </ol>
+   * The rest of the file is written with the string table enabled (see {@link Base128OutputStream#enableStringTable()}),
+   * so that each distinct string is stored only once:
+   * <ol>
    *   <li>Number of folder configurations (int)</li>
    *   <li>Qualifier strings of folder configurations (strings)</li>
    *   <li>Number of value resource files (int)</li>
@@ -89,6 +93,7 @@ public class ResourceSerializationUtil {
 
     try (Base128OutputStream stream = new Base128OutputStream(tempFile)) {
       stream.write(fileHeader);
+      stream.enableStringTable();
       contentWriter.write(stream);
     }
     catch (Throwable e) {
@@ -190,7 +195,8 @@ public class ResourceSerializationUtil {
                                              @Nullable Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache,
                                              @NotNull LoadableResourceRepository repository,
                                              @NotNull Consumer<BasicResourceItem> resourceConsumer) throws IOException {
-    stream.setStringCache(stringCache); // Enable string instance sharing to minimize memory consumption.
+    // Enable string instance sharing within and across repositories to minimize memory consumption.
+    stream.setStringCache(stringCache, ResourceStringPool::intern);
 
     int n = stream.readInt();
     if (n == 0) {
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.resources.base;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Process-wide pool of strings used by resource repositories. Resource names, file names and values are
+ * heavily repeated across AARs, framework resources and project modules. Interning them through this pool
+ * makes repositories loaded independently of each other share the same string instances. Strings are held
+ * weakly and are released when no repository refers to them anymore.
+ */
+public final class ResourceStringPool {
+  private static final Interner<String> ourInterner = Interners.newWeakInterner();
+
+  /**
+   * Returns the canonical instance of the given string.
+   */
+  @NotNull
+  public static String intern(@NotNull String str) {
+    return ourInterner.intern(str);
+  }
+
+  private ResourceStringPool() {}
+}
@@ -130,6 +130,14 @@ public class FrameworkResourceRepositoryTest extends PlatformTestCase {
     }
   }
 
+  private static long getUsedHeapAfterGc() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
   private static void checkContents(@NotNull ResourceRepository repository) {
     checkPublicResources(repository);
     checkAttributes(repository);
@@ -268,6 +276,14 @@ public class FrameworkResourceRepositoryTest extends PlatformTestCase {
         String type = "Load time with " + (languages == null ? "all" : languages.size()) + " languages";
         System.out.println(type + " without cache: " + loadTimeFromSources / (count * 1000.)
                            + " sec, with cache " + loadTimeFromCache / (count * 1000.) + " sec");
+
+        long heapBefore = getUsedHeapAfterGc();
+        FrameworkResourceRepository fromCache =
+            FrameworkResourceRepository.create(myResourceFolder, languages, createCachingData(null), false);
+        long retainedHeap = getUsedHeapAfterGc() - heapBefore;
+        assertThat(fromCache.isLoadedFromCache()).isTrue(); // Keeps the repository reachable until the heap is measured.
+        System.out.println("Heap retained with " + (languages == null ? "all" : languages.size()) + " languages loaded from cache: "
+                           + retainedHeap / 1024 + " KiB");
       }
     }
   }
@@ -349,4 +365,21 @@ public class FrameworkResourceRepositoryTest extends PlatformTestCase {
     assertThat(withItalian.getNumberOfLanguageGroupsLoadedFromCache()).isEqualTo(2);
     checkContents(withItalian);
   }
+
+  public void testResourceNamesSharedBetweenRepositoriesLoadedFromCache() {
+    CachingData cachingData = createCachingData(directExecutor());
+    FrameworkResourceRepository.create(myResourceFolder, ImmutableSet.of(), cachingData, false);
+
+    FrameworkResourceRepository first = FrameworkResourceRepository.create(myResourceFolder, ImmutableSet.of(), cachingData, false);
+    FrameworkResourceRepository second = FrameworkResourceRepository.create(myResourceFolder, ImmutableSet.of(), cachingData, false);
+    assertThat(first.isLoadedFromCache()).isTrue();
+    assertThat(second.isLoadedFromCache()).isTrue();
+    compareContents(first, second);
+
+    for (ResourceItem item : first.getAllResources()) {
+      List<ResourceItem> others = second.getResources(item.getNamespace(), item.getType(), item.getName());
+      assertThat(others).isNotEmpty();
+      assertThat(others.get(0).getName()).isSameAs(item.getName());
+    }
+  }
 }
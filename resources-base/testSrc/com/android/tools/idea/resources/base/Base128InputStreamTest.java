@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.resources.base;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.android.tools.idea.resources.base.Base128InputStream.StreamFormatException;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link Base128InputStream} reading from a memory-mapped file.
+ */
+public class Base128InputStreamTest {
+  @Rule public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  @NotNull
+  private Path writeTestData() throws IOException {
+    Path file = myTemporaryFolder.newFile("data.bin").toPath();
+    try (Base128OutputStream stream = new Base128OutputStream(file)) {
+      stream.writeByte((byte)0xCA);
+      stream.writeInt(0);
+      stream.writeInt(300);
+      stream.writeInt(-1);
+      stream.writeLong(Long.MAX_VALUE);
+      stream.writeLong(Long.MIN_VALUE);
+      stream.writeChar('€');
+      stream.writeBoolean(true);
+      stream.writeString(null);
+      stream.writeString("");
+      stream.enableStringTable();
+      stream.writeString("abc");
+      stream.writeString("abc");
+      stream.writeString("été");
+    }
+    return file;
+  }
+
+  private static void checkTestData(@NotNull Base128InputStream stream) throws IOException {
+    assertThat(stream.readByte()).isEqualTo((byte)0xCA);
+    assertThat(stream.readInt()).isEqualTo(0);
+    assertThat(stream.readInt()).isEqualTo(300);
+    assertThat(stream.readInt()).isEqualTo(-1);
+    assertThat(stream.readLong()).isEqualTo(Long.MAX_VALUE);
+    assertThat(stream.readLong()).isEqualTo(Long.MIN_VALUE);
+    assertThat(stream.readChar()).isEqualTo('€');
+    assertThat(stream.readBoolean()).isTrue();
+    assertThat(stream.readString()).isNull();
+    assertThat(stream.readString()).isEmpty();
+    stream.enableStringTable();
+    String first = stream.readString();
+    assertThat(first).isEqualTo("abc");
+    assertThat(stream.readString()).isSameAs(first);
+    assertThat(stream.readString()).isEqualTo("été");
+  }
+
+  @Test
+  public void mappedFileReadsSameDataAsStream() throws Exception {
+    Path file = writeTestData();
+    try (Base128InputStream stream = new Base128InputStream(file)) {
+      checkTestData(stream);
+    }
+    try (Base128InputStream stream = Base128InputStream.mapFile(file)) {
+      checkTestData(stream);
+    }
+  }
+
+  @Test
+  public void mappedFilePrematureEndOfFile() throws Exception {
+    Path file = writeTestData();
+    try (Base128InputStream stream = Base128InputStream.mapFile(file)) {
+      checkTestData(stream);
+      stream.readInt();
+      fail("Expected StreamFormatException");
+    }
+    catch (StreamFormatException e) {
+      assertThat(e.getMessage()).isEqualTo("Premature end of file");
+    }
+  }
+
+  @Test
+  public void mappedFileValidateContents() throws Exception {
+    Path file = myTemporaryFolder.newFile("header.bin").toPath();
+    try (Base128OutputStream stream = new Base128OutputStream(file)) {
+      stream.writeByte((byte)1);
+      stream.writeByte((byte)2);
+      stream.writeByte((byte)3);
+      stream.writeInt(42);
+    }
+    try (Base128InputStream stream = Base128InputStream.mapFile(file)) {
+      assertThat(stream.validateContents(new byte[] {1, 2, 3})).isTrue();
+      assertThat(stream.readInt()).isEqualTo(42);
+    }
+    try (Base128InputStream stream = Base128InputStream.mapFile(file)) {
+      assertThat(stream.validateContents(new byte[] {1, 2, 4})).isFalse();
+      // Exactly as many bytes as expected are consumed even when the contents don't match.
+      assertThat(stream.readInt()).isEqualTo(42);
+    }
+  }
+
+  @Test
+  public void mapMissingFile() throws Exception {
+    Path file = myTemporaryFolder.getRoot().toPath().resolve("missing.bin");
+    try {
+      Base128InputStream.mapFile(file);
+      fail("Expected NoSuchFileException");
+    }
+    catch (NoSuchFileException e) {
+      assertThat(e.getFile()).isEqualTo(file.toString());
+    }
+  }
+}
@@ -15,15 +15,58 @@
  */
 package com.android.tools.datastore;
 
+import com.android.tools.datastore.database.DataStoreTable;
+import com.android.tools.datastore.database.DataStoreWriteMetrics;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 public class DataStoreDatabase {
+  /**
+   * How often the open transaction of a {@link Characteristic#DURABLE} database is committed. Committing groups all the writes since
+   * the previous commit into a single WAL append instead of paying for a journal sync per write, while bounding how much data an
+   * unclean shutdown can lose.
+   */
+  private static final long COMMIT_PERIOD_MS = 1000;
+
+  /**
+   * Version of the on-disk schema of {@link Characteristic#DURABLE} databases, stored in SQLite's user_version. Bump this whenever a table
+   * changes in a way that existing databases cannot be read as is, and add the migration from the previous version to {@link #MIGRATIONS}.
+   * Databases that can't be migrated, such as the unversioned ones written by previous versions of Studio, are deleted instead of being
+   * reloaded.
+   */
+  @VisibleForTesting
+  public static final int SCHEMA_VERSION = 1;
+
+  /**
+   * The migrations of reloaded databases, in order. The migration at index i brings a database from schema version i + 1 to i + 2, so the
+   * last one brings it to {@link #SCHEMA_VERSION}. Version 1 is the first versioned schema, so there are none yet.
+   */
+  private static final List<SchemaMigration> MIGRATIONS = ImmutableList.of();
+
+  static {
+    assert MIGRATIONS.size() == SCHEMA_VERSION - 1 : "Each schema version but the first needs a migration from the previous version";
+  }
+
+  /**
+   * Brings a database from one schema version to the next, e.g. by altering its tables. It runs in the transaction of the whole migration.
+   */
+  public interface SchemaMigration {
+    void migrate(@NotNull Connection connection) throws SQLException;
+  }
+
   public enum Characteristic {
     // TODO handle potential db file name clashes
     DURABLE,
@@ -39,6 +82,13 @@ public class DataStoreDatabase {
 
   private final Connection myConnection;
 
+  private final boolean myReloaded;
+
+  @NotNull private final DataStoreWriteMetrics myWriteMetrics;
+
+  // Only set for durable databases, in-memory databases have nothing to gain from committing.
+  private final ScheduledExecutorService myCommitExecutor;
+
   /**
    * @param dbPath the path to the backing DB file, if {@link Characteristic#DURABLE}.
    */
@@ -52,8 +102,34 @@ public class DataStoreDatabase {
                            @NotNull Characteristic characteristic,
                            @NotNull LogService logService,
                            @NotNull Consumer<Throwable> noPiiExceptionHandler) {
+    this(dbPath, characteristic, logService, noPiiExceptionHandler, false);
+  }
+
+  /**
+   * @param reloadExisting if true, a {@link Characteristic#DURABLE} database left by a previous run is kept so its sessions can be
+   *                       reopened. Otherwise, or if the existing file is not at {@link #SCHEMA_VERSION}, it is deleted.
+   */
+  public DataStoreDatabase(@NotNull String dbPath,
+                           @NotNull Characteristic characteristic,
+                           @NotNull LogService logService,
+                           @NotNull Consumer<Throwable> noPiiExceptionHandler,
+                           boolean reloadExisting) {
+    this(dbPath, characteristic, logService, noPiiExceptionHandler, reloadExisting, new DataStoreWriteMetrics());
+  }
+
+  /**
+   * @param writeMetrics updated with the latency of each commit.
+   */
+  public DataStoreDatabase(@NotNull String dbPath,
+                           @NotNull Characteristic characteristic,
+                           @NotNull LogService logService,
+                           @NotNull Consumer<Throwable> noPiiExceptionHandler,
+                           boolean reloadExisting,
+                           @NotNull DataStoreWriteMetrics writeMetrics) {
     myLogService = logService;
+    myWriteMetrics = writeMetrics;
     Connection connection = null;
+    boolean reloaded = false;
     try {
       // For older versions of the JDBC we need to force load the sqlite.JDBC driver to trigger static initializer's and register
       // the JDBC driver with the java DriverMangaer.
@@ -65,11 +141,11 @@ public class DataStoreDatabase {
           break;
         case DURABLE:
           File dbFile = new File(dbPath);
-          // Due to an incompatible update in SQLite we do not support loading SQL files from previous versions of studio.
-          // As a intermediate measure we delete the file until we support loading existing databases.
-          // TODO: Investigate removing this when we add a feature to restore sessions from prior Studio runs.
           if (dbFile.exists()) {
-            dbFile.delete();
+            reloaded = reloadExisting && migrateToCurrentSchema(dbFile);
+            if (!reloaded) {
+              deleteDatabaseFiles(dbFile);
+            }
           }
 
           File parent = dbFile.getParentFile();
@@ -79,13 +155,19 @@ public class DataStoreDatabase {
             }
           }
           connection = DriverManager.getConnection(String.format("jdbc:sqlite:%s", dbFile.getPath()));
+          // The journal mode can only be changed outside of a transaction, so this must happen before auto-commit is disabled below.
+          // WAL lets readers proceed while a commit is in progress, and NORMAL synchronization only syncs the WAL on checkpoints.
+          try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+            statement.execute(String.format("PRAGMA user_version=%d", SCHEMA_VERSION));
+          }
           break;
         default:
           throw new RuntimeException("Characteristic not handled!");
       }
 
-      // Performance optimization.
-      // TODO: Create a timer and commit the database transaction every X seconds.
+      // Performance optimization. Writes accumulate in a single transaction that is periodically committed by myCommitTimer.
       connection.setAutoCommit(false);
     }
     catch (ClassNotFoundException e) {
@@ -98,16 +180,147 @@ public class DataStoreDatabase {
       noPiiExceptionHandler.accept(e);
     }
     myConnection = connection;
+    myReloaded = reloaded && connection != null;
+    if (myReloaded) {
+      DataStoreTable.markReloaded(connection);
+    }
+
+    if (characteristic == Characteristic.DURABLE && connection != null) {
+      myCommitExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "DataStoreCommitTimer");
+        thread.setDaemon(true);
+        return thread;
+      });
+      myCommitExecutor.scheduleWithFixedDelay(this::commit, COMMIT_PERIOD_MS, COMMIT_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+    else {
+      myCommitExecutor = null;
+    }
   }
 
-  public void disconnect() {
+  /**
+   * Migrates the database in the file to {@link #SCHEMA_VERSION} if it is at an older version.
+   *
+   * @return true if the file is a database at {@link #SCHEMA_VERSION}, false if it must be deleted because it is not a database or was
+   * written with a schema it can't be migrated from.
+   */
+  private boolean migrateToCurrentSchema(@NotNull File dbFile) {
+    try (Connection connection = DriverManager.getConnection(String.format("jdbc:sqlite:%s", dbFile.getPath()))) {
+      int version;
+      try (Statement statement = connection.createStatement();
+           ResultSet result = statement.executeQuery("PRAGMA user_version")) {
+        version = result.getInt(1);
+      }
+      if (!migrateSchema(connection, version, MIGRATIONS)) {
+        getLogger().info(String.format("Discarding datastore with unsupported schema version %d", version));
+        return false;
+      }
+      return true;
+    }
+    catch (SQLException e) {
+      // Most likely not a database at all, e.g. a partially written file, or a failed migration.
+      getLogger().warn(e);
+      return false;
+    }
+  }
+
+  /**
+   * Applies the {@code migrations} of a database at the given schema version, in a single transaction, and updates its user_version.
+   *
+   * @param migrations the migrations from version 1 on, as in {@link #MIGRATIONS}
+   * @return true if the database is now at version {@code migrations.size() + 1}, false if there is no migration from its version
+   * @throws SQLException if a migration fails, in which case the database is left unchanged
+   */
+  @VisibleForTesting
+  public static boolean migrateSchema(@NotNull Connection connection, int version, @NotNull List<SchemaMigration> migrations)
+    throws SQLException {
+    int targetVersion = migrations.size() + 1;
+    if (version < 1 || version > targetVersion) {
+      return false;
+    }
+    if (version == targetVersion) {
+      return true;
+    }
+
+    boolean autoCommit = connection.getAutoCommit();
+    connection.setAutoCommit(false);
     try {
-      myConnection.commit();
+      for (; version < targetVersion; version++) {
+        migrations.get(version - 1).migrate(connection);
+      }
+      try (Statement statement = connection.createStatement()) {
+        statement.execute(String.format("PRAGMA user_version=%d", targetVersion));
+      }
+      connection.commit();
     }
     catch (SQLException e) {
-      getLogger().error(e);
+      connection.rollback();
+      throw e;
     }
     finally {
+      connection.setAutoCommit(autoCommit);
+    }
+    return true;
+  }
+
+  private static void deleteDatabaseFiles(@NotNull File dbFile) {
+    dbFile.delete();
+    // Remove the write-ahead log and its index too, so they are not mistaken as belonging to the new database.
+    new File(dbFile.getPath() + "-wal").delete();
+    new File(dbFile.getPath() + "-shm").delete();
+  }
+
+  /**
+   * @return true if the database was left by a previous run and kept, so it may contain sessions that were ongoing when that run exited.
+   */
+  public boolean isReloaded() {
+    return myReloaded;
+  }
+
+  @NotNull
+  public DataStoreWriteMetrics getWriteMetrics() {
+    return myWriteMetrics;
+  }
+
+  /**
+   * Commits the current transaction, making everything written so far durable.
+   */
+  public void commit() {
+    if (myConnection == null) {
+      return;
+    }
+    // Wait for the write in progress, if any, so that it is not split across two transactions.
+    synchronized (DataStoreTable.getWriteLock(myConnection)) {
+      try {
+        if (myConnection.isClosed()) {
+          return;
+        }
+        long startNs = System.nanoTime();
+        myConnection.commit();
+        myWriteMetrics.recordCommit(System.nanoTime() - startNs);
+      }
+      catch (SQLException e) {
+        getLogger().error(e);
+      }
+    }
+  }
+
+  public void disconnect() {
+    if (myCommitExecutor != null) {
+      // Make sure a periodic commit is not running concurrently with closing the connection.
+      myCommitExecutor.shutdown();
+      try {
+        myCommitExecutor.awaitTermination(1, TimeUnit.MINUTES);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (myConnection == null) {
+      return;
+    }
+    commit();
+    synchronized (DataStoreTable.getWriteLock(myConnection)) {
       try {
         if (!myConnection.isClosed()) {
           myConnection.close();
@@ -20,6 +20,7 @@ import static com.android.tools.idea.flags.StudioFlags.PROFILER_UNIFIED_PIPELINE
 
 import com.android.tools.analytics.UsageTracker;
 import com.android.tools.datastore.database.DataStoreTable;
+import com.android.tools.datastore.database.DataStoreWriteMetrics;
 import com.android.tools.datastore.database.UnifiedEventsTable;
 import com.android.tools.datastore.service.CpuService;
 import com.android.tools.datastore.service.EnergyService;
@@ -132,6 +133,8 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
 
   private final Timer myReportTimer;
 
+  @NotNull private final DataStoreWriteMetrics myWriteMetrics = new DataStoreWriteMetrics();
+
   /**
    * @param fetchExecutor A callback which is given a {@link Runnable} for each datastore service.
    *                      The runnable, when run, begins polling the target service. You probably
@@ -189,6 +192,14 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
     return myDatabases;
   }
 
+  /**
+   * @return write throughput, commit latency and queue depth shared by all the databases and pollers of this datastore.
+   */
+  @NotNull
+  public DataStoreWriteMetrics getWriteMetrics() {
+    return myWriteMetrics;
+  }
+
   /**
    * Entry point for the datastore pollers and passthrough services are created,
    * and registered as the set of features the datastore supports.
@@ -197,7 +208,7 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
     // TODO b/73538507 shared between all services to support inserting file content into generic byte cache (e.g. importing hprof)
     // We should be able to keep this inside TransportService after legacy pipeline removal.
     UnifiedEventsTable unifiedTable = new UnifiedEventsTable();
-    myTransportService = new TransportService(this, unifiedTable, myFetchExecutor, !PROFILER_UNIFIED_PIPELINE.get());
+    myTransportService = new TransportService(this, unifiedTable, myFetchExecutor, !PROFILER_UNIFIED_PIPELINE.get(), myWriteMetrics);
     registerService(myTransportService);
     registerService(new ProfilerService(this, myLogService));
     registerService(new EventService(this, myFetchExecutor));
@@ -212,7 +223,8 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
   public DataStoreDatabase createDatabase(@NotNull String dbPath,
                                           @NotNull DataStoreDatabase.Characteristic characteristic,
                                           Consumer<Throwable> noPiiExceptionHandler) {
-    return new DataStoreDatabase(dbPath, characteristic, myLogService, noPiiExceptionHandler);
+    return new DataStoreDatabase(dbPath, characteristic, myLogService, noPiiExceptionHandler,
+                                 StudioFlags.PROFILER_PERSIST_SESSIONS.get(), myWriteMetrics);
   }
 
   /**
@@ -227,7 +239,12 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
       assert !namespace.myNamespace.isEmpty();
       DataStoreDatabase db = myDatabases.computeIfAbsent(namespace, backingNamespace -> createDatabase(
         myDatastoreDirectory + backingNamespace.myNamespace, backingNamespace.myCharacteristic, myNoPiiExceptionHandler));
-      service.setBackingStore(namespace, db.getConnection());
+      if (db.isReloaded()) {
+        service.setReloadedBackingStore(namespace, db.getConnection());
+      }
+      else {
+        service.setBackingStore(namespace, db.getConnection());
+      }
     });
 
     // Build server and start listening for RPC calls for the registered service
@@ -273,6 +290,9 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
       client.getChannel().shutdownNow();
     }
     myConnectedClients.clear();
+    if (myTransportService != null) {
+      myTransportService.shutdown();
+    }
     myDatabases.forEach((name, db) -> db.disconnect());
     DataStoreTable.removeDataStoreErrorCallback(this);
   }
@@ -396,6 +416,8 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
       // Cast to int. Unlikely we'll ever have more than 2 billion seconds (e.g. ~60 years) here...
       dbStats.setAgeSec((int)TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - myStartTime));
       collectReport(dbStats);
+      // AndroidProfilerDbStats has no fields for the write path yet, so it is only logged.
+      getLogger().debug("Datastore writes: " + myWriteMetrics);
 
       AndroidStudioEvent.Builder event = AndroidStudioEvent
         .newBuilder()
@@ -43,4 +43,12 @@ public interface ServicePassThrough {
    * @param connection {@link Connection} to the backing store
    */
   void setBackingStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull Connection connection);
+
+  /**
+   * Same as {@link #setBackingStore(DataStoreService.BackingNamespace, Connection)}, for a backing store that was left by a previous run
+   * instead of being created empty.
+   */
+  default void setReloadedBackingStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull Connection connection) {
+    setBackingStore(namespace, connection);
+  }
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Decouples receiving rows from a device from inserting them into a {@link DataStoreTable}. Rows are queued by the producers and written
+ * on a single dedicated thread in batches of up to {@code maxBatchSize}, so that a burst of rows costs a single batched prepared statement
+ * execution instead of one statement per row. Since {@link DataStoreTable} prepares its statements once per thread, one long-lived queue
+ * should be shared by all the producers writing to a table.
+ * <p>
+ * This class cannot be restarted once {@link #close()} is called.
+ */
+public class BatchedWriteQueue<E> implements AutoCloseable {
+  private static final long POLL_TIMEOUT_MS = 100;
+
+  @NotNull private final BlockingQueue<E> myQueue;
+  @NotNull private final Consumer<List<E>> myWriter;
+  @NotNull private final DataStoreWriteMetrics myMetrics;
+  @NotNull private final Thread myThread;
+  private final int myMaxBatchSize;
+  private final AtomicLong myQueuedCount = new AtomicLong();
+  private final Object myWrittenLock = new Object();
+  // Guarded by myWrittenLock.
+  private long myWrittenCount = 0;
+  private volatile boolean myIsClosed = false;
+
+  /**
+   * @param capacity maximum number of rows waiting to be written, after which {@link #add(Object)} blocks.
+   * @param writer   receives each batch on the writer thread, in the order the rows were queued.
+   */
+  public BatchedWriteQueue(@NotNull String name, int capacity, int maxBatchSize, @NotNull Consumer<List<E>> writer) {
+    this(name, capacity, maxBatchSize, writer, new DataStoreWriteMetrics());
+  }
+
+  /**
+   * @param metrics updated with the queue depth and the rows written by this queue.
+   */
+  public BatchedWriteQueue(@NotNull String name,
+                           int capacity,
+                           int maxBatchSize,
+                           @NotNull Consumer<List<E>> writer,
+                           @NotNull DataStoreWriteMetrics metrics) {
+    assert maxBatchSize > 0;
+    myQueue = new LinkedBlockingQueue<>(capacity);
+    myMaxBatchSize = maxBatchSize;
+    myWriter = writer;
+    myMetrics = metrics;
+    myThread = new Thread(this::writeLoop, name);
+    myThread.setDaemon(true);
+    myThread.start();
+  }
+
+  /**
+   * Queues a row, blocking while the queue is full. This slows down a producer that is faster than the database instead of letting the
+   * queue grow without bounds. Rows added once the queue is closed are dropped, as nothing is going to write them.
+   */
+  public void add(@NotNull E row) throws InterruptedException {
+    if (myIsClosed) {
+      return;
+    }
+    // Count the row before it can be dequeued, so that the reported depth never goes negative.
+    myMetrics.recordEnqueued(1);
+    try {
+      myQueue.put(row);
+    }
+    catch (InterruptedException e) {
+      myMetrics.recordDequeued(1);
+      throw e;
+    }
+    myQueuedCount.incrementAndGet();
+  }
+
+  /**
+   * Blocks until every row queued so far, by any producer, has been written.
+   */
+  public void flush() throws InterruptedException {
+    long queuedCount = myQueuedCount.get();
+    synchronized (myWrittenLock) {
+      while (myWrittenCount < queuedCount && myThread.isAlive()) {
+        myWrittenLock.wait(POLL_TIMEOUT_MS);
+      }
+    }
+  }
+
+  /**
+   * Stops accepting rows and blocks until every row queued so far has been written.
+   */
+  @Override
+  public void close() {
+    myIsClosed = true;
+    try {
+      myThread.join();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void writeLoop() {
+    List<E> batch = new ArrayList<>(myMaxBatchSize);
+    while (true) {
+      try {
+        E first = myQueue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          if (myIsClosed && myQueue.isEmpty()) {
+            return;
+          }
+          continue;
+        }
+        batch.add(first);
+        myQueue.drainTo(batch, myMaxBatchSize - 1);
+        myMetrics.recordDequeued(batch.size());
+        myWriter.accept(batch);
+        myMetrics.recordRowsWritten(batch.size());
+        synchronized (myWrittenLock) {
+          myWrittenCount += batch.size();
+          myWrittenLock.notifyAll();
+        }
+        batch.clear();
+      }
+      catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+}
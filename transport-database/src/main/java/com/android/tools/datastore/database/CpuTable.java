@@ -129,6 +129,11 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
     execute(CpuStatements.INSERT_CPU_DATA, session.getSessionId(), data.getEndTimestamp(), data.toByteArray());
   }
 
+  public void insert(Common.Session session, List<CpuUsageData> data) {
+    executeBatch(CpuStatements.INSERT_CPU_DATA, data,
+                 usage -> new Object[]{session.getSessionId(), usage.getEndTimestamp(), usage.toByteArray()});
+  }
+
   public List<CpuUsageData> getCpuDataByRequest(CpuDataRequest request) {
     List<CpuUsageData> cpuData = new ArrayList<>();
     try {
@@ -152,11 +157,8 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
                                String name,
                                List<GetThreadsResponse.ThreadActivity> activities) {
     getThreadIdCacheForSession(session.getSessionId()).add(tid);
-    for (GetThreadsResponse.ThreadActivity activity : activities) {
-      // TODO: optimize it by adding the states in batches
-      execute(CpuStatements.INSERT_THREAD_ACTIVITY, session.getSessionId(), tid, activity.getTimestamp(), activity.getNewState().toString(),
-              name);
-    }
+    executeBatch(CpuStatements.INSERT_THREAD_ACTIVITY, activities,
+                 activity -> new Object[]{session.getSessionId(), tid, activity.getTimestamp(), activity.getNewState().toString(), name});
   }
 
   public void insertSnapshot(Common.Session session,
@@ -166,9 +168,10 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
     // For now, insert it as activity. TODO: differentiate the concepts of snapshot and activity
     for (GetThreadsResponse.ThreadSnapshot.Snapshot snapshot : snapshots) {
       idSet.add(snapshot.getTid());
-      execute(CpuStatements.INSERT_THREAD_ACTIVITY,
-              session.getSessionId(), snapshot.getTid(), timestamp, snapshot.getState().toString(), snapshot.getName());
     }
+    executeBatch(CpuStatements.INSERT_THREAD_ACTIVITY, snapshots,
+                 snapshot -> new Object[]{session.getSessionId(), snapshot.getTid(), timestamp, snapshot.getState().toString(),
+                   snapshot.getName()});
   }
 
   public List<GetThreadsResponse.Thread> getThreadsDataByRequest(GetThreadsRequest request) {
@@ -28,8 +28,13 @@ import java.util.function.Function;
  */
 public abstract class DataStoreTable<T extends Enum> {
   private static final Set<DataStoreTableErrorCallback> ERROR_CALLBACKS = ConcurrentHashMap.newKeySet();
+  // Weak keys, so that the lock of a closed connection goes away with the connection.
+  private static final Map<Connection, Object> WRITE_LOCKS = Collections.synchronizedMap(new WeakHashMap<>());
+  // Connections to durable databases reloaded from a previous run, whose existing tables are kept.
+  private static final Set<Connection> RELOADED_CONNECTIONS = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
 
   private Connection myConnection;
+  private Object myWriteLock;
   private final ThreadLocal<Map<T, PreparedStatement>> myStatementMap = new ThreadLocal<>();
 
   // Cache custom queries we have a limited number and we call the same query multiple times.
@@ -46,6 +51,7 @@ public abstract class DataStoreTable<T extends Enum> {
    */
   public void initialize(@NotNull Connection connection) {
     myConnection = connection;
+    myWriteLock = getWriteLock(connection);
   }
 
   /**
@@ -54,6 +60,23 @@ public abstract class DataStoreTable<T extends Enum> {
    */
   public abstract void prepareStatements();
 
+  /**
+   * Returns the lock held by the tables while they write through {@code connection}. Whoever commits the connection's transaction must
+   * hold it too, so that a commit never happens in the middle of a write.
+   */
+  @NotNull
+  public static Object getWriteLock(@NotNull Connection connection) {
+    return WRITE_LOCKS.computeIfAbsent(connection, key -> new Object());
+  }
+
+  /**
+   * Marks the connection as opened on a durable database reloaded from a previous run, so that {@link #createTable} keeps the tables
+   * that already exist instead of recreating them.
+   */
+  public static void markReloaded(@NotNull Connection connection) {
+    RELOADED_CONNECTIONS.add(connection);
+  }
+
   public static void addDataStoreErrorCallback(@NotNull DataStoreTableErrorCallback callback) {
     ERROR_CALLBACKS.add(callback);
   }
@@ -99,10 +122,20 @@ public abstract class DataStoreTable<T extends Enum> {
     return myStatementMap.get();
   }
 
+  /**
+   * Creates the table, replacing any existing one. On a connection {@link #markReloaded marked as reloaded}, an existing table is kept as
+   * is instead, so that the durable database retains its data. Its schema was brought up to date by
+   * {@link com.android.tools.datastore.DataStoreDatabase} when the database was opened.
+   */
   protected void createTable(@NotNull String table, String... columns) throws SQLException {
-    myConnection.createStatement().execute(String.format("DROP TABLE IF EXISTS %s ", table));
     StringBuilder statement = new StringBuilder();
-    statement.append(String.format("CREATE TABLE %s", table));
+    if (RELOADED_CONNECTIONS.contains(myConnection)) {
+      statement.append(String.format("CREATE TABLE IF NOT EXISTS %s", table));
+    }
+    else {
+      myConnection.createStatement().execute(String.format("DROP TABLE IF EXISTS %s ", table));
+      statement.append(String.format("CREATE TABLE %s", table));
+    }
     executeUniqueStatement(statement, columns);
   }
 
@@ -139,9 +172,18 @@ public abstract class DataStoreTable<T extends Enum> {
    *                       of the specified statement.
    */
   protected <K> void executeBatch(@NotNull T statement, @NotNull List<K> batchParams, @NotNull Function<K, Object[]> paramConverter) {
-    if (isClosed()) {
+    if (batchParams.isEmpty() || isClosed()) {
       return;
     }
+    // Holding the writers' lock keeps a periodic commit from splitting the batch across two transactions.
+    synchronized (myWriteLock) {
+      executeBatchLocked(statement, batchParams, paramConverter);
+    }
+  }
+
+  private <K> void executeBatchLocked(@NotNull T statement,
+                                      @NotNull List<K> batchParams,
+                                      @NotNull Function<K, Object[]> paramConverter) {
     try {
       PreparedStatement stmt = getStatementMap().get(statement);
       batchParams.forEach((object) -> {
@@ -153,6 +195,8 @@ public abstract class DataStoreTable<T extends Enum> {
         }
       });
       int[] results = stmt.executeBatch();
+      // Clear parameters on exit so cached statements don't keep potentially large objects in memory.
+      stmt.clearParameters();
       for(int i = 0; i < results.length; i++) {
         if (results[i] == Statement.EXECUTE_FAILED) {
           throw new SQLException(String.format("Failed to insert batch element %d with result %d", i, results[i]));
@@ -168,16 +212,18 @@ public abstract class DataStoreTable<T extends Enum> {
     if (isClosed()) {
       return;
     }
-    try {
-      PreparedStatement stmt = getStatementMap().get(statement);
-      applyParams(stmt, params);
-      stmt.execute();
-      // Clear parameters on exit so cached statements don't keep potentially large objects in memory.
-      // Example: Inserting a payload into the database.
-      stmt.clearParameters();
-    }
-    catch (SQLException ex) {
-      onError(ex);
+    synchronized (myWriteLock) {
+      try {
+        PreparedStatement stmt = getStatementMap().get(statement);
+        applyParams(stmt, params);
+        stmt.execute();
+        // Clear parameters on exit so cached statements don't keep potentially large objects in memory.
+        // Example: Inserting a payload into the database.
+        stmt.clearParameters();
+      }
+      catch (SQLException ex) {
+        onError(ex);
+      }
     }
   }
 
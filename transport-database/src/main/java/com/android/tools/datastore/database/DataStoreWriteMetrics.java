@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing how well the datastore write path keeps up with the device. A single instance is shared by the databases and
+ * pollers owned by a {@link com.android.tools.datastore.DataStoreService} and may be updated from any thread.
+ */
+public class DataStoreWriteMetrics {
+  private final LongAdder myRowsWritten = new LongAdder();
+  private final AtomicInteger myQueueDepth = new AtomicInteger();
+  private final LongAdder myCommitCount = new LongAdder();
+  private final LongAdder myTotalCommitNs = new LongAdder();
+  private final AtomicLong myMaxCommitNs = new AtomicLong();
+  private final long myStartNs = System.nanoTime();
+
+  public void recordRowsWritten(int rows) {
+    myRowsWritten.add(rows);
+  }
+
+  public void recordEnqueued(int rows) {
+    myQueueDepth.addAndGet(rows);
+  }
+
+  public void recordDequeued(int rows) {
+    myQueueDepth.addAndGet(-rows);
+  }
+
+  public void recordCommit(long durationNs) {
+    myCommitCount.increment();
+    myTotalCommitNs.add(durationNs);
+    myMaxCommitNs.accumulateAndGet(durationNs, Math::max);
+  }
+
+  public long getRowsWritten() {
+    return myRowsWritten.sum();
+  }
+
+  /**
+   * @return the average number of rows written per second since these metrics were created.
+   */
+  public double getRowsPerSecond() {
+    long elapsedNs = Math.max(1, System.nanoTime() - myStartNs);
+    return getRowsWritten() / (elapsedNs / (double)TimeUnit.SECONDS.toNanos(1));
+  }
+
+  /**
+   * @return the number of rows received from the device that have not been handed to the database yet.
+   */
+  public int getQueueDepth() {
+    return myQueueDepth.get();
+  }
+
+  public long getCommitCount() {
+    return myCommitCount.sum();
+  }
+
+  public long getAverageCommitLatencyNs() {
+    long count = getCommitCount();
+    return count == 0 ? 0 : myTotalCommitNs.sum() / count;
+  }
+
+  public long getMaxCommitLatencyNs() {
+    return myMaxCommitNs.get();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("rows=%d (%.1f/s), queued=%d, commits=%d (avg %d us, max %d us)",
+                         getRowsWritten(), getRowsPerSecond(), getQueueDepth(), getCommitCount(),
+                         TimeUnit.NANOSECONDS.toMicros(getAverageCommitLatencyNs()),
+                         TimeUnit.NANOSECONDS.toMicros(getMaxCommitLatencyNs()));
+  }
+}
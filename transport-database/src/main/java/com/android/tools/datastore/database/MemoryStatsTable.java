@@ -144,24 +144,21 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
   }
 
   public void insertMemory(@NotNull Common.Session session, @NotNull List<MemoryData.MemorySample> samples) {
-    for (MemoryData.MemorySample sample : samples) {
-      execute(INSERT_SAMPLE, session.getSessionId(), sample.getTimestamp(), MemorySamplesType.MEMORY.ordinal(),
-              sample.toByteArray());
-    }
+    executeBatch(INSERT_SAMPLE, samples,
+                 sample -> new Object[]{session.getSessionId(), sample.getTimestamp(), MemorySamplesType.MEMORY.ordinal(),
+                   sample.toByteArray()});
   }
 
   public void insertAllocStats(@NotNull Common.Session session, @NotNull List<MemoryData.AllocStatsSample> samples) {
-    for (MemoryData.AllocStatsSample sample : samples) {
-      execute(INSERT_SAMPLE, session.getSessionId(), sample.getTimestamp(), MemorySamplesType.ALLOC_STATS.ordinal(),
-              sample.toByteArray());
-    }
+    executeBatch(INSERT_SAMPLE, samples,
+                 sample -> new Object[]{session.getSessionId(), sample.getTimestamp(), MemorySamplesType.ALLOC_STATS.ordinal(),
+                   sample.toByteArray()});
   }
 
   public void insertGcStats(@NotNull Common.Session session, @NotNull List<MemoryData.GcStatsSample> samples) {
-    for (MemoryData.GcStatsSample sample : samples) {
-      execute(INSERT_SAMPLE, session.getSessionId(), sample.getStartTime(), MemorySamplesType.GC_STATS.ordinal(),
-              sample.toByteArray());
-    }
+    executeBatch(INSERT_SAMPLE, samples,
+                 sample -> new Object[]{session.getSessionId(), sample.getStartTime(), MemorySamplesType.GC_STATS.ordinal(),
+                   sample.toByteArray()});
   }
 
   /**
@@ -142,6 +142,12 @@ public class NetworkTable extends DataStoreTable<NetworkTable.NetworkStatements>
             data.getEndTimestamp(), data.toByteArray());
   }
 
+  public void insert(@NotNull Common.Session session, @NotNull List<NetworkProfiler.NetworkProfilerData> data) {
+    executeBatch(NetworkStatements.INSERT_NETWORK_DATA, data,
+                 sample -> new Object[]{session.getSessionId(), DATACASE_REQUEST_TYPE_MAP.get(sample.getDataCase()),
+                   sample.getEndTimestamp(), sample.toByteArray()});
+  }
+
   public NetworkProfiler.HttpDetailsResponse getHttpDetailsResponseById(long connId,
                                                                         Common.Session session,
                                                                         NetworkProfiler.HttpDetailsRequest.Type type) {
@@ -35,6 +35,14 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statements> {
+  /**
+   * Finds, per group, the row of the latest event before (MAX) or earliest event after (MIN) the requested range. SQLite returns the bare
+   * columns of the row holding the single MIN/MAX aggregate, and all of them are in idx_UnifiedEventsTable_0_pk, so these queries never
+   * read the Data of the (potentially many) events outside of the requested range.
+   */
+  private static final String BOUNDARY_EVENTS_SQL =
+    "SELECT ROWID, GroupId, IsEnded, %s(Timestamp) FROM [UnifiedEventsTable] WHERE Kind = ? %s GROUP BY GroupId";
+
   public enum Statements {
     // Since no data should be updated after it has been inserted we drop any duplicated request from the poller.
     INSERT_EVENT(
@@ -45,6 +53,12 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
       "WHERE StreamId = ? AND ProcessId = ? And GroupId = ? And Kind = ? AND Timestamp >= ? AND Timestamp <= ?"),
     // Only used for test.
     QUERY_EVENTS("SELECT Data FROM [UnifiedEventsTable]"),
+    // Session groups without an end event, and the latest timestamp seen for a process, used to end sessions of a reloaded database.
+    FIND_ONGOING_SESSIONS(
+      "SELECT StreamId, ProcessId, GroupId FROM [UnifiedEventsTable] WHERE Kind = ? " +
+      "GROUP BY StreamId, ProcessId, GroupId HAVING MAX(IsEnded) = 0"),
+    QUERY_LAST_TIMESTAMP("SELECT MAX(Timestamp) FROM [UnifiedEventsTable] WHERE StreamId = ? AND ProcessId = ?"),
+    QUERY_EVENT_BY_ROWID("SELECT Data FROM [UnifiedEventsTable] WHERE ROWID = ?"),
     INSERT_BYTES("INSERT OR IGNORE INTO [BytesTable] (StreamId, Id, Data) VALUES (?, ?, ?)"),
     GET_BYTES("SELECT Data FROM [BytesTable] WHERE StreamId = ? AND Id = ?");
 
@@ -87,6 +101,11 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
                   "Data BLOB");
       createTable("BytesTable", "StreamId INTEGER NOT NULL", "Id STRING NOT NULL", "Data BLOB");
       createUniqueIndex("UnifiedEventsTable", "Kind", "StreamId", "ProcessId", "GroupId", "Timestamp", "IsEnded");
+      // Covering index for the per-stream queries issued while profiling, in particular the before/after range lookups of
+      // queryUnifiedEventGroups which only need these columns.
+      createIndex("UnifiedEventsTable", 0, "StreamId", "Kind", "GroupId", "Timestamp", "IsEnded");
+      // Lets queries that do not filter by group seek straight to the requested time range of a stream.
+      createIndex("UnifiedEventsTable", 1, "StreamId", "Kind", "Timestamp");
       createUniqueIndex("BytesTable", "StreamId", "Id");
     }
     catch (SQLException ex) {
@@ -106,10 +125,73 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
             event.toByteArray());
   }
 
+  /**
+   * Inserts {@code events} as a single batched execution of the insert statement. This is much cheaper than calling
+   * {@link #insertUnifiedEvent(long, Event)} once per event when many events arrive at once.
+   */
+  public void insertUnifiedEvents(long streamId, @NotNull List<Event> events) {
+    executeBatch(Statements.INSERT_EVENT, events, event -> getInsertParams(streamId, event));
+  }
+
+  /**
+   * Same as {@link #insertUnifiedEvents(long, List)}, for events received from different streams.
+   */
+  public void insertStreamEvents(@NotNull List<StreamEvent> events) {
+    executeBatch(Statements.INSERT_EVENT, events, event -> getInsertParams(event.getStreamId(), event.getEvent()));
+  }
+
+  @NotNull
+  private static Object[] getInsertParams(long streamId, @NotNull Event event) {
+    return new Object[]{
+      streamId,
+      event.getPid(),
+      event.getGroupId(),
+      event.getKind().getNumber(),
+      event.getCommandId(),
+      event.getTimestamp(),
+      event.getIsEnded() ? 1 : 0,
+      event.toByteArray()};
+  }
+
   public void deleteEvents(long streamId, int pid, long groupId, Event.Kind kind, long fromTimestamp, long toTimestamp) {
     execute(Statements.DELETE_EVENTS, streamId, pid, groupId, kind.getNumber(), fromTimestamp, toTimestamp);
   }
 
+  /**
+   * Ends the sessions that were still ongoing when a reloaded database was last written to, e.g. because the IDE exited while
+   * profiling. Those sessions can never receive their end event from the device, so each one is ended at the timestamp of the last event
+   * stored for its process. Must be called before any stream is connected.
+   */
+  public void endOngoingSessions() {
+    List<Event> endEvents = new ArrayList<>();
+    List<Long> streamIds = new ArrayList<>();
+    try {
+      ResultSet sessions = executeQuery(Statements.FIND_ONGOING_SESSIONS, Event.Kind.SESSION.getNumber());
+      while (sessions.next()) {
+        long streamId = sessions.getLong(1);
+        int pid = sessions.getInt(2);
+        long groupId = sessions.getLong(3);
+        ResultSet lastTimestamp = executeQuery(Statements.QUERY_LAST_TIMESTAMP, streamId, pid);
+        if (lastTimestamp.next()) {
+          streamIds.add(streamId);
+          endEvents.add(Event.newBuilder()
+                          .setKind(Event.Kind.SESSION)
+                          .setPid(pid)
+                          .setGroupId(groupId)
+                          .setTimestamp(lastTimestamp.getLong(1))
+                          .setIsEnded(true)
+                          .build());
+        }
+      }
+    }
+    catch (SQLException ex) {
+      onError(ex);
+    }
+    for (int i = 0; i < endEvents.size(); i++) {
+      insertUnifiedEvent(streamIds.get(i), endEvents.get(i));
+    }
+  }
+
   @VisibleForTesting
   public List<Event> queryUnifiedEvents() {
     return queryUnifiedEvents(Statements.QUERY_EVENTS);
@@ -159,7 +241,7 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
     List<Object> afterRangeParams = null;
 
     HashMap<Long, EventGroup.Builder> builderGroups = new HashMap<>();
-    // The string format allows for altering the group by results for +1 and -1 queries.
+    // The string format allows for appending the filters of the in range query.
     String sql = "SELECT Data, GroupId%s From [UnifiedEventsTable] WHERE Kind = ? %s";
     StringBuilder filter = new StringBuilder();
     baseParams.add(request.getKind().getNumber());
@@ -184,8 +266,8 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
       baseParams.add(request.getCommandId());
     }
 
-    String sqlBefore = String.format(sql, ", IsEnded, MAX(Timestamp), MAX(ROWID)", filter + " AND Timestamp < ? GROUP BY GroupId");
-    String sqlAfter = String.format(sql, ", MIN(Timestamp), MIN(ROWID)", filter + " AND Timestamp > ? GROUP BY GroupId");
+    String sqlBefore = String.format(BOUNDARY_EVENTS_SQL, "MAX", filter + " AND Timestamp < ?");
+    String sqlAfter = String.format(BOUNDARY_EVENTS_SQL, "MIN", filter + " AND Timestamp > ?");
     ArrayList<Object> inRangeQueryParams = new ArrayList<>(baseParams);
     if (request.getFromTimestamp() > 0) {
       beforeRangeParams = new ArrayList<>(baseParams);
@@ -203,10 +285,9 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
 
     // Gather before range events if needed.
     // Query before example:
-    // SELECT [Data], [GroupId], [IsEnded], MAX(Timestamp), MAX(ROWID) From [UnifiedEventsTable] WHERE Kind = ? AND Timestamp < ?
-    // GROUP BY GroupId;
+    // SELECT ROWID, GroupId, IsEnded, MAX(Timestamp) FROM [UnifiedEventsTable] WHERE Kind = ? AND Timestamp < ? GROUP BY GroupId;
     if (beforeRangeParams != null) {
-      gatherEvents(sqlBefore, beforeRangeParams, builderGroups, resultSet -> {
+      gatherBoundaryEvents(sqlBefore, beforeRangeParams, builderGroups, resultSet -> {
         try {
           return !resultSet.getBoolean("IsEnded");
         }
@@ -224,9 +305,9 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
 
     // Gather after range events if needed.
     // Query after example:
-    // SELECT [Data], [GroupId], MIN(Timestamp), MIN(ROWID) From [UnifiedEventsTable] WHERE Kind = ? AND Timestamp > ? GROUP BY GroupId;
+    // SELECT ROWID, GroupId, IsEnded, MIN(Timestamp) FROM [UnifiedEventsTable] WHERE Kind = ? AND Timestamp > ? GROUP BY GroupId;
     if (afterRangeParams != null) {
-      gatherEvents(sqlAfter, afterRangeParams, builderGroups, resultSet -> {
+      gatherBoundaryEvents(sqlAfter, afterRangeParams, builderGroups, resultSet -> {
         try {
           return builderGroups.containsKey(resultSet.getLong("GroupId"));
         }
@@ -288,6 +369,37 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
     }
   }
 
+  /**
+   * Same as {@link #gatherEvents(String, List, HashMap, Predicate)}, except that {@code sql} selects the ROWID, GroupId and IsEnded of
+   * events instead of their data. The filter is evaluated on those columns and only the data of accepted events is then read and parsed.
+   */
+  private void gatherBoundaryEvents(String sql,
+                                    List<Object> params,
+                                    HashMap<Long, EventGroup.Builder> builderGroups,
+                                    Predicate<ResultSet> filter) {
+    try {
+      List<Long> rowIds = new ArrayList<>();
+      List<Long> groupIds = new ArrayList<>();
+      ResultSet results = executeOneTimeQuery(sql, params.toArray());
+      while (results.next()) {
+        if (filter.test(results)) {
+          rowIds.add(results.getLong("ROWID"));
+          groupIds.add(results.getLong("GroupId"));
+        }
+      }
+      for (int i = 0; i < rowIds.size(); i++) {
+        ResultSet data = executeQuery(Statements.QUERY_EVENT_BY_ROWID, rowIds.get(i));
+        if (data.next()) {
+          EventGroup.Builder group = builderGroups.computeIfAbsent(groupIds.get(i), EventGroup.newBuilder()::setGroupId);
+          group.addEvents(Event.parser().parseFrom(data.getBytes(1)));
+        }
+      }
+    }
+    catch (SQLException | InvalidProtocolBufferException ex) {
+      onError(ex);
+    }
+  }
+
   private List<Event> queryUnifiedEvents(Statements stmt, Object... args) {
     List<Event> records = new ArrayList<>();
     try {
@@ -301,4 +413,26 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
     }
     return records;
   }
+
+  /**
+   * An {@link Event} along with the id of the stream it was received from.
+   */
+  public static final class StreamEvent {
+    private final long myStreamId;
+    @NotNull private final Event myEvent;
+
+    public StreamEvent(long streamId, @NotNull Event event) {
+      myStreamId = streamId;
+      myEvent = event;
+    }
+
+    public long getStreamId() {
+      return myStreamId;
+    }
+
+    @NotNull
+    public Event getEvent() {
+      return myEvent;
+    }
+  }
 }
@@ -74,8 +74,8 @@ public class CpuDataPoller extends PollRunner {
     CpuProfiler.CpuDataResponse response = myPollingService.getData(request.build());
     for (Cpu.CpuUsageData data : response.getDataList()) {
       getDataStartNs = Math.max(getDataStartNs, data.getEndTimestamp());
-      myCpuTable.insert(mySession, data);
     }
+    myCpuTable.insert(mySession, response.getDataList());
 
     // Poll thread activities.
     long getThreadsStartNs = myDataRequestStartTimestampNs;
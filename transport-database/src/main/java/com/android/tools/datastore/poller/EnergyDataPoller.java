@@ -213,9 +213,8 @@ public final class EnergyDataPoller extends PollRunner {
       }
     }
 
-    for (EnergyProfiler.EnergySample sample : myBatteryModel.getSamplesBetween(request.getStartTimestamp(), request.getEndTimestamp())) {
-      myEnergyTable.insertOrReplace(mySession, sample);
-    }
+    myEnergyTable.insertOrReplaceSamples(mySession,
+                                         myBatteryModel.getSamplesBetween(request.getStartTimestamp(), request.getEndTimestamp()));
   }
 
   @NotNull
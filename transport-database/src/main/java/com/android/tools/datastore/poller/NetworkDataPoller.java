@@ -50,8 +50,8 @@ public class NetworkDataPoller extends PollRunner {
 
     for (NetworkProfilerData data : response.getDataList()) {
       myDataRequestStartTimestampNs = Math.max(myDataRequestStartTimestampNs, data.getEndTimestamp());
-      myNetworkTable.insert(mySession, data);
     }
+    myNetworkTable.insert(mySession, response.getDataList());
     pollHttpRange();
   }
 
@@ -16,8 +16,9 @@
 package com.android.tools.datastore.poller;
 
 import com.android.tools.datastore.DataStoreService;
+import com.android.tools.datastore.database.BatchedWriteQueue;
 import com.android.tools.datastore.database.DataStoreTable;
-import com.android.tools.datastore.database.UnifiedEventsTable;
+import com.android.tools.datastore.database.UnifiedEventsTable.StreamEvent;
 import com.android.tools.profiler.proto.Common.Event;
 import com.android.tools.profiler.proto.Transport.GetEventsRequest;
 import com.android.tools.profiler.proto.TransportServiceGrpc;
@@ -33,20 +34,20 @@ import org.jetbrains.annotations.NotNull;
  */
 public class UnifiedEventsDataPoller implements Runnable, DataStoreTable.DataStoreTableErrorCallback {
   private final long myStreamId;
-  @NotNull private final UnifiedEventsTable myTable;
+  @NotNull private final BatchedWriteQueue<StreamEvent> myWriteQueue;
   @NotNull private final TransportServiceGrpc.TransportServiceBlockingStub myEventPollingService;
   @NotNull private final DataStoreService myDataStoreService;
   @NotNull private final CountDownLatch myRunningLatch;
   @NotNull private final AtomicBoolean myIsRunning = new AtomicBoolean(false);
 
   public UnifiedEventsDataPoller(long streamId,
-                                 @NotNull UnifiedEventsTable unifiedEventsTable,
+                                 @NotNull BatchedWriteQueue<StreamEvent> writeQueue,
                                  @NotNull TransportServiceGrpc.TransportServiceBlockingStub pollingService,
                                  @NotNull DataStoreService dataStoreService) {
     myEventPollingService = pollingService;
     myDataStoreService = dataStoreService;
     myStreamId = streamId;
-    myTable = unifiedEventsTable;
+    myWriteQueue = writeQueue;
     myRunningLatch = new CountDownLatch(1);
   }
 
@@ -75,13 +76,24 @@ public class UnifiedEventsDataPoller implements Runnable, DataStoreTable.DataSto
       while (events.hasNext()) {
         Event event = events.next();
         if (event != null) {
-          myTable.insertUnifiedEvent(myStreamId, event);
+          // Decouple receiving events from inserting them so the stream is drained as fast as the device produces events.
+          myWriteQueue.add(new StreamEvent(myStreamId, event));
         }
       }
     }
     catch (StatusRuntimeException exception) {
       // device disconnect logic handle via TransportDeviceManager
     }
+    catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      // Make sure every received event is in the database before signaling that we are done.
+      myWriteQueue.flush();
+    }
+    catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
     // Signal end of run.
     myRunningLatch.countDown();
   }
@@ -17,9 +17,12 @@ package com.android.tools.datastore.service;
 
 import com.android.tools.datastore.DataStoreService;
 import com.android.tools.datastore.ServicePassThrough;
+import com.android.tools.datastore.database.BatchedWriteQueue;
 import com.android.tools.datastore.database.DataStoreTable;
+import com.android.tools.datastore.database.DataStoreWriteMetrics;
 import com.android.tools.datastore.database.DeviceProcessTable;
 import com.android.tools.datastore.database.UnifiedEventsTable;
+import com.android.tools.datastore.database.UnifiedEventsTable.StreamEvent;
 import com.android.tools.datastore.poller.DeviceProcessPoller;
 import com.android.tools.datastore.poller.UnifiedEventsDataPoller;
 import com.android.tools.idea.flags.StudioFlags;
@@ -65,6 +68,12 @@ import org.jetbrains.annotations.NotNull;
  * {@link #getDevices(GetDevicesRequest, StreamObserver)}, {@link #getProcesses(GetProcessesRequest, StreamObserver)}, etc.
  */
 public class TransportService extends TransportServiceGrpc.TransportServiceImplBase implements ServicePassThrough {
+  // Upper bound of events inserted by a single batched statement. Events are inserted as soon as they arrive, so batches only grow this
+  // large when the devices stream events faster than the database can insert them one by one.
+  private static final int MAX_INSERT_BATCH_SIZE = 500;
+  // Events waiting to be inserted before the pollers block, bounding how much memory a database that falls behind can use.
+  private static final int WRITE_QUEUE_CAPACITY = 10000;
+
   private final Map<Channel, DeviceProcessPoller> myLegacyPollers = Maps.newHashMap();
   private final Consumer<Runnable> myFetchExecutor;
   @NotNull private final UnifiedEventsTable myTable;
@@ -80,17 +89,41 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
    * A map of active channels to unified event streams. This map helps us clean up streams when a channel is closed.
    */
   private final Map<Channel, Stream> myChannelToStream = Maps.newHashMap();
+  /**
+   * Events received by all the {@link UnifiedEventsDataPoller}s, inserted into {@link #myTable} by a single writer thread.
+   */
+  @NotNull private final BatchedWriteQueue<StreamEvent> myEventWriteQueue;
   @VisibleForTesting final AtomicInteger myNextCommandId = new AtomicInteger();
 
   public TransportService(@NotNull DataStoreService service,
                           @NotNull UnifiedEventsTable unifiedTable,
                           Consumer<Runnable> fetchExecutor,
                           boolean legacyPipelineForProfilers) {
+    this(service, unifiedTable, fetchExecutor, legacyPipelineForProfilers, new DataStoreWriteMetrics());
+  }
+
+  /**
+   * @param writeMetrics updated with the depth of the event write queue and the number of events written.
+   */
+  public TransportService(@NotNull DataStoreService service,
+                          @NotNull UnifiedEventsTable unifiedTable,
+                          Consumer<Runnable> fetchExecutor,
+                          boolean legacyPipelineForProfilers,
+                          @NotNull DataStoreWriteMetrics writeMetrics) {
     myService = service;
     myFetchExecutor = fetchExecutor;
     myTable = unifiedTable;
     myLegacyTable = new DeviceProcessTable();
     myLegacyPipelineForProfilers = legacyPipelineForProfilers;
+    myEventWriteQueue = new BatchedWriteQueue<>("DataStoreEventWriter", WRITE_QUEUE_CAPACITY, MAX_INSERT_BATCH_SIZE,
+                                                myTable::insertStreamEvents, writeMetrics);
+  }
+
+  /**
+   * Writes the events received so far and stops the event writer thread. Called once the pollers are stopped.
+   */
+  public void shutdown() {
+    myEventWriteQueue.close();
   }
 
   @NotNull
@@ -109,6 +142,13 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
     }
   }
 
+  @Override
+  public void setReloadedBackingStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull Connection connection) {
+    setBackingStore(namespace, connection);
+    // The sessions that were still ongoing when the previous run exited are over.
+    myTable.endOngoingSessions();
+  }
+
   /**
    * Connects the datastore layer to a channel. By default ths starts the {@link UnifiedEventsDataPoller} for the transport pipeline which
    * streams Events into the database. If the profiler is using the legacy pipeline ({@link StudioFlags#PROFILER_UNIFIED_PIPELINE} flag),
@@ -119,7 +159,7 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
     TransportServiceGrpc.TransportServiceBlockingStub stub = myService.getTransportClient(streamId);
     assert (stub != null);
     streamConnected(stream);
-    UnifiedEventsDataPoller unifiedPoller = new UnifiedEventsDataPoller(stream.getStreamId(), myTable, stub, myService);
+    UnifiedEventsDataPoller unifiedPoller = new UnifiedEventsDataPoller(stream.getStreamId(), myEventWriteQueue, stub, myService);
     myUnifiedEventsPollers.put(channel, unifiedPoller);
     myChannelToStream.put(channel, stream);
     DataStoreTable.addDataStoreErrorCallback(unifiedPoller);
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class BatchedWriteQueueTest {
+
+  @Test
+  fun closeWritesAllQueuedRowsInOrder() {
+    val written = Collections.synchronizedList(mutableListOf<Int>())
+    val batchSizes = Collections.synchronizedList(mutableListOf<Int>())
+    val metrics = DataStoreWriteMetrics()
+    val queue = BatchedWriteQueue<Int>("BatchedWriteQueueTest", 100, 10, { batch ->
+      batchSizes.add(batch.size)
+      written.addAll(batch)
+    }, metrics)
+    for (i in 0 until 1000) {
+      queue.add(i)
+    }
+    queue.close()
+
+    assertThat(written).containsExactlyElementsIn(0 until 1000).inOrder()
+    assertThat(batchSizes.maxOrNull()).isAtMost(10)
+    assertThat(metrics.rowsWritten).isEqualTo(1000)
+    assertThat(metrics.queueDepth).isEqualTo(0)
+  }
+
+  @Test
+  fun flushWaitsForQueuedRows() {
+    val written = Collections.synchronizedList(mutableListOf<Int>())
+    val queue = BatchedWriteQueue<Int>("BatchedWriteQueueTest", 100, 10) { batch -> written.addAll(batch) }
+    for (i in 0 until 50) {
+      queue.add(i)
+    }
+    queue.flush()
+    assertThat(written).containsExactlyElementsIn(0 until 50).inOrder()
+    queue.close()
+  }
+
+  @Test
+  fun addBlocksWhileQueueIsFull() {
+    val writerBlocked = CountDownLatch(1)
+    val releaseWriter = CountDownLatch(1)
+    val queue = BatchedWriteQueue<Int>("BatchedWriteQueueTest", 1, 1) {
+      writerBlocked.countDown()
+      releaseWriter.await()
+    }
+    // The writer holds the first row, and the second one fills the queue.
+    queue.add(0)
+    assertThat(writerBlocked.await(1, TimeUnit.SECONDS)).isTrue()
+    queue.add(1)
+
+    val producer = Thread { queue.add(2) }
+    producer.start()
+    producer.join(200)
+    assertThat(producer.isAlive).isTrue()
+
+    releaseWriter.countDown()
+    producer.join(TimeUnit.SECONDS.toMillis(1))
+    assertThat(producer.isAlive).isFalse()
+    queue.close()
+  }
+}
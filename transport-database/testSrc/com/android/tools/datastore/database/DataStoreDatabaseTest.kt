@@ -20,6 +20,8 @@ import org.junit.Test
 import java.io.BufferedOutputStream
 import java.io.File
 import java.io.FileOutputStream
+import java.sql.DriverManager
+import java.sql.SQLException
 
 class DataStoreDatabaseTest {
 
@@ -40,7 +42,9 @@ class DataStoreDatabaseTest {
     outputStream.close()
     assertThat(myDatabaseFile.length()).isEqualTo(1024)
     val db = DataStoreDatabase(myDatabaseFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
-    assertThat(myDatabaseFile.length()).isEqualTo(0)
+    // The garbage content is gone, replaced by a fresh database (whose header may already be written to switch to WAL).
+    assertThat(myDatabaseFile.readBytes()).isNotEqualTo(ByteArray(1024))
+    db.connection.createStatement().use { assertThat(it.executeQuery("SELECT COUNT(*) FROM sqlite_master").getInt(1)).isEqualTo(0) }
     db.disconnect()
     assertThat(myDatabaseFile.exists()).isTrue()
   }
@@ -63,4 +67,119 @@ class DataStoreDatabaseTest {
     db.disconnect()
     assertThat(db.connection.isClosed).isTrue()
   }
+
+  @Test
+  fun testDurableDatabaseUsesWriteAheadLog() {
+    val db = DataStoreDatabase(myDatabaseFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
+    db.connection.createStatement().use { assertThat(it.executeQuery("PRAGMA journal_mode").getString(1)).isEqualTo("wal") }
+    db.disconnect()
+  }
+
+  @Test
+  fun testCommitMakesWritesVisibleToOtherConnections() {
+    val db = DataStoreDatabase(myDatabaseFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
+    db.connection.createStatement().use {
+      it.execute("CREATE TABLE Test (Value INTEGER)")
+      it.execute("INSERT INTO Test (Value) VALUES (1)")
+    }
+    db.commit()
+    assertThat(db.writeMetrics.commitCount).isAtLeast(1)
+    assertThat(db.connection.autoCommit).isFalse()
+    DriverManager.getConnection("jdbc:sqlite:${myDatabaseFile.absolutePath}").use { connection ->
+      connection.createStatement().use { assertThat(it.executeQuery("SELECT COUNT(*) FROM Test").getInt(1)).isEqualTo(1) }
+    }
+    db.disconnect()
+  }
+
+  @Test
+  fun testReloadKeepsExistingDatabase() {
+    var db = DataStoreDatabase(myDatabaseFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService(), {}, true)
+    db.connection.createStatement().use {
+      it.execute("CREATE TABLE Test (Value INTEGER)")
+      it.execute("INSERT INTO Test (Value) VALUES (42)")
+    }
+    db.disconnect()
+
+    db = DataStoreDatabase(myDatabaseFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService(), {}, true)
+    assertThat(db.isReloaded).isTrue()
+    db.connection.createStatement().use {
+      assertThat(it.executeQuery("SELECT Value FROM Test").getInt(1)).isEqualTo(42)
+      assertThat(it.executeQuery("PRAGMA user_version").getInt(1)).isEqualTo(DataStoreDatabase.SCHEMA_VERSION)
+    }
+    db.disconnect()
+  }
+
+  @Test
+  fun testMigrateSchema() {
+    DriverManager.getConnection("jdbc:sqlite:${myDatabaseFile.absolutePath}").use { connection ->
+      connection.createStatement().use {
+        it.execute("CREATE TABLE Test (Value INTEGER)")
+        it.execute("INSERT INTO Test (Value) VALUES (42)")
+        it.execute("PRAGMA user_version=1")
+      }
+      val migrations = listOf(
+        DataStoreDatabase.SchemaMigration { db -> db.createStatement().use { it.execute("ALTER TABLE Test ADD COLUMN Name TEXT") } },
+        DataStoreDatabase.SchemaMigration { db -> db.createStatement().use { it.execute("UPDATE Test SET Name = 'migrated'") } })
+
+      assertThat(DataStoreDatabase.migrateSchema(connection, 1, migrations)).isTrue()
+      connection.createStatement().use {
+        assertThat(it.executeQuery("SELECT Name FROM Test WHERE Value = 42").getString(1)).isEqualTo("migrated")
+        assertThat(it.executeQuery("PRAGMA user_version").getInt(1)).isEqualTo(3)
+      }
+      assertThat(connection.autoCommit).isTrue()
+    }
+  }
+
+  @Test
+  fun testMigrateSchemaFromUnsupportedVersion() {
+    DriverManager.getConnection("jdbc:sqlite:${myDatabaseFile.absolutePath}").use { connection ->
+      val migrations = listOf(DataStoreDatabase.SchemaMigration { throw AssertionError("Unexpected migration") })
+      assertThat(DataStoreDatabase.migrateSchema(connection, 0, migrations)).isFalse()
+      assertThat(DataStoreDatabase.migrateSchema(connection, 3, migrations)).isFalse()
+      // Already at the last version.
+      assertThat(DataStoreDatabase.migrateSchema(connection, 2, migrations)).isTrue()
+    }
+  }
+
+  @Test
+  fun testFailedMigrationLeavesDatabaseUnchanged() {
+    DriverManager.getConnection("jdbc:sqlite:${myDatabaseFile.absolutePath}").use { connection ->
+      connection.createStatement().use {
+        it.execute("CREATE TABLE Test (Value INTEGER)")
+        it.execute("PRAGMA user_version=1")
+      }
+      val migrations = listOf(
+        DataStoreDatabase.SchemaMigration { db -> db.createStatement().use { it.execute("ALTER TABLE Test ADD COLUMN Name TEXT") } },
+        DataStoreDatabase.SchemaMigration { throw SQLException("Migration failed") })
+
+      try {
+        DataStoreDatabase.migrateSchema(connection, 1, migrations)
+        throw AssertionError("Expected SQLException")
+      }
+      catch (expected: SQLException) {
+      }
+      connection.createStatement().use {
+        assertThat(it.executeQuery("SELECT COUNT(*) FROM pragma_table_info('Test') WHERE name = 'Name'").getInt(1)).isEqualTo(0)
+        assertThat(it.executeQuery("PRAGMA user_version").getInt(1)).isEqualTo(1)
+      }
+    }
+  }
+
+  @Test
+  fun testReloadDiscardsUnversionedDatabase() {
+    var db = DataStoreDatabase(myDatabaseFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
+    db.connection.createStatement().use {
+      it.execute("CREATE TABLE Test (Value INTEGER)")
+      // Simulate a database written by a version of Studio that did not version its schema.
+      it.execute("PRAGMA user_version=0")
+    }
+    db.disconnect()
+
+    db = DataStoreDatabase(myDatabaseFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService(), {}, true)
+    assertThat(db.isReloaded).isFalse()
+    db.connection.createStatement().use {
+      assertThat(it.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE name = 'Test'").getInt(1)).isEqualTo(0)
+    }
+    db.disconnect()
+  }
 }
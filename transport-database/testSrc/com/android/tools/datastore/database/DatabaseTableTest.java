@@ -73,6 +73,27 @@ public class DatabaseTableTest {
     assertThat(resultSet).isInstanceOf(EmptyResultSet.class);
   }
 
+  @Test
+  public void testCreateTableReplacesExistingTable() throws Exception {
+    myTable.insertData(1, 2);
+    ThreadTestTable table = new ThreadTestTable();
+    table.initialize(myDatabase.getConnection());
+    assertThat(countRows(table)).isEqualTo(0);
+  }
+
+  @Test
+  public void testCreateTableKeepsTableOfReloadedDatabase() throws Exception {
+    myTable.insertData(1, 2);
+    myDatabase.disconnect();
+
+    myDatabase = new DataStoreDatabase(myDbFile.getAbsolutePath(), DataStoreDatabase.Characteristic.DURABLE, new FakeLogService(), t -> {
+    }, true);
+    assertTrue(myDatabase.isReloaded());
+    ThreadTestTable table = new ThreadTestTable();
+    table.initialize(myDatabase.getConnection());
+    assertThat(countRows(table)).isEqualTo(2);
+  }
+
   @Test
   public void testThreadMultiThreadExecute() throws Exception {
     // Insert some fake data
@@ -106,6 +127,15 @@ public class DatabaseTableTest {
     }
   }
 
+  private static int countRows(@NotNull ThreadTestTable table) throws SQLException {
+    int count = 0;
+    ResultSet resultSet = table.readDataRaw();
+    while (resultSet.next()) {
+      count++;
+    }
+    return count;
+  }
+
   /**
    * Runnable class that handles querying the database as fast as possible.
    */
@@ -61,7 +61,9 @@ class UnifiedEventsTableTest : DatabaseTest<UnifiedEventsTable>() {
     val events = mutableListOf(Common.Event.newBuilder().build())
     return mutableListOf(
       (Consumer { it.insertUnifiedEvent(1, events[0]) }),
+      (Consumer { it.insertUnifiedEvents(1, events) }),
       (Consumer { it.deleteEvents(1, 1, 1, Common.Event.Kind.SESSION, 1, 1) }),
+      (Consumer { it.endOngoingSessions() }),
       (Consumer {
         it.queryUnifiedEventGroups(
           GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).setStreamId(1).setPid(1).setToTimestamp(
@@ -123,6 +125,31 @@ class UnifiedEventsTableTest : DatabaseTest<UnifiedEventsTable>() {
     }
   }
 
+  @Test
+  fun endOngoingSessionsEndsAtLastProcessEvent() {
+    // Session 1 of pid 1 is ongoing and its process produced data up to timestamp 20.
+    table.insertUnifiedEvent(1, eventBuilder(Common.Event.Kind.SESSION, false, 1, 1, 0, 5))
+    table.insertUnifiedEvent(1, eventBuilder(Common.Event.Kind.CPU_USAGE, false, 1, 0, 0, 20))
+    // Session 2 of pid 2 already ended.
+    table.insertUnifiedEvent(1, eventBuilder(Common.Event.Kind.SESSION, false, 2, 2, 0, 5))
+    table.insertUnifiedEvent(1, eventBuilder(Common.Event.Kind.SESSION, true, 2, 2, 0, 8))
+
+    table.endOngoingSessions()
+
+    val groups = table.queryUnifiedEventGroups(GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).build())
+    assertThat(groups).hasSize(2)
+    groups.forEach { group ->
+      assertThat(group.eventsCount).isEqualTo(2)
+      assertThat(group.getEvents(1).isEnded).isTrue()
+    }
+    assertThat(groups.first { it.groupId == 1L }.getEvents(1).timestamp).isEqualTo(20)
+    assertThat(groups.first { it.groupId == 2L }.getEvents(1).timestamp).isEqualTo(8)
+
+    // Ending sessions again is a no-op.
+    table.endOngoingSessions()
+    assertThat(table.queryUnifiedEvents()).hasSize(6)
+  }
+
   @Test
   fun queryEvents() {
     val events = insertData(2, true)
@@ -19,7 +19,9 @@ import com.android.testutils.TestUtils
 import com.android.tools.datastore.DataStorePollerTest
 import com.android.tools.datastore.DataStoreService
 import com.android.tools.datastore.FakeLogService
+import com.android.tools.datastore.database.BatchedWriteQueue
 import com.android.tools.datastore.database.UnifiedEventsTable
+import com.android.tools.datastore.database.UnifiedEventsTable.StreamEvent
 import com.android.tools.profiler.proto.Common
 import com.android.tools.profiler.proto.Transport.GetEventsRequest
 import com.android.tools.profiler.proto.TransportServiceGrpc
@@ -40,6 +42,7 @@ class UnifiedEventsDataPollerTest : DataStorePollerTest() {
   private lateinit var transportService: FakeTransportService
   private lateinit var table: UnifiedEventsTable
   private lateinit var server: Server
+  private lateinit var writeQueue: BatchedWriteQueue<StreamEvent>
   private lateinit var poller: UnifiedEventsDataPoller
 
   @Before
@@ -57,7 +60,8 @@ class UnifiedEventsDataPollerTest : DataStorePollerTest() {
     val managedChannel = InProcessChannelBuilder.forName("UnifiedEventsPollerServer").build()
     val serviceStub = TransportServiceGrpc.newBlockingStub(managedChannel)
 
-    poller = UnifiedEventsDataPoller(1, table, serviceStub, dataStore)
+    writeQueue = BatchedWriteQueue("UnifiedEventsDataPollerTest", 100, 10, table::insertStreamEvents)
+    poller = UnifiedEventsDataPoller(1, writeQueue, serviceStub, dataStore)
   }
 
   @After
@@ -65,6 +69,7 @@ class UnifiedEventsDataPollerTest : DataStorePollerTest() {
     server.shutdownNow()
     dataStore.shutdown()
     poller.stop()
+    writeQueue.close()
   }
 
   @Test